@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import businessLogic.ProductDAO;
+import businessLogic.RunningTotalCalculator;
+import data.CompactShoppingTrolley;
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * Measures filling a trolley with cases of 24 units (with a running total following it) as 24 unit scans against one
+ * scan of the whole quantity (per unit), for ShoppingTrolley and CompactShoppingTrolley, and merging a trolley into
+ * another (per line)
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AggregatedScanBenchmark {
+
+	private static final int PRODUCTS = 1_000;
+	private static final int CASE = 24;
+
+	@Param({ "false", "true" })
+	boolean compact;
+
+	private Product[] products;
+	private ShoppingTrolley trolley;
+	private ShoppingTrolley other;
+	private RunningTotalCalculator runningTotal;
+
+	@Setup
+	public void setUp() throws ProductNotFound, OfferNotFound {
+		ProductDAO productDatabase = new ProductDAO(false);
+		products = new Product[PRODUCTS];
+		for (int i = 0; i < PRODUCTS; i++) {
+			products[i] = new Product("Product " + i, 10 + i % 990, "SKU" + i);
+			productDatabase.addProduct("SKU" + i, products[i]);
+			if (i % 3 == 0) {
+				productDatabase.addOffer("Offer " + i, new Offer("Offer " + i, 2 + i % 3, 15 + i % 990));
+				productDatabase.attachOfferToProduct("Offer " + i, "SKU" + i);
+			}
+		}
+
+		trolley = compact ? new CompactShoppingTrolley(PRODUCTS) : new ShoppingTrolley();
+		runningTotal = new RunningTotalCalculator(trolley, productDatabase);
+		other = compact ? new CompactShoppingTrolley(PRODUCTS) : new ShoppingTrolley();
+		for (Product p : products)
+			other.addItem(p, CASE);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PRODUCTS * CASE)
+	public long caseScansUnitByUnit() throws InvalidItemInTrolley {
+		trolley.clear();
+		for (Product p : products) {
+			for (int u = 0; u < CASE; u++)
+				trolley.addItem(p);
+		}
+		return runningTotal.getRunningTotal();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PRODUCTS * CASE)
+	public long caseScansAggregated() throws InvalidItemInTrolley {
+		trolley.clear();
+		for (Product p : products)
+			trolley.addItem(p, CASE);
+		return runningTotal.getRunningTotal();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PRODUCTS)
+	public long mergeTrolleys() throws InvalidItemInTrolley {
+		trolley.clear();
+		trolley.addAll(other);
+		return runningTotal.getRunningTotal();
+	}
+}
@@ -0,0 +1,142 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import businessLogic.BasketOptimiser;
+import businessLogic.ProductDAO;
+import businessLogic.TrolleyTotalCalculator;
+import data.Offer;
+import data.Product;
+import data.Promotion;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * Measures the time to find the cheapest total of a trolley with competing promotions (per trolley): typical 200-line
+ * trolleys from a large range with a few promotions each, and adversarial ones of 200 and 12 lines whose items are all
+ * in overlapping bundles, mix and match and "buy one get one free" promotions, so that they form a single group to
+ * search. How many of the trolleys were priced optimally is printed when the trolleys are set up.
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BasketOptimiserBenchmark {
+
+	private static final int PRODUCTS = 10_000;
+	private static final int TROLLEYS = 50;
+	private static final int OVERLAPPING_PRODUCTS = 250; // the products of the adversarial trolleys
+	private static final int OVERLAPPING_PROMOTIONS = 400;
+
+	@Param({ "typical", "adversarial", "adversarial-12" })
+	String trolleys;
+
+	private BasketOptimiser optimiser;
+	private ShoppingTrolley[] trolleysToPrice;
+
+	@Setup
+	public void setUp() throws InvalidItemInTrolley, ProductNotFound, OfferNotFound {
+		ProductDAO productDatabase = new ProductDAO(false);
+		Random random = new Random(1);
+		for (int i = 0; i < PRODUCTS; i++) {
+			productDatabase.addProduct("SKU" + i, new Product("Product " + i, 50 + random.nextInt(500), "SKU" + i));
+			if (i % 3 == 0) {
+				productDatabase.addOffer("Offer " + i, new Offer("Offer " + i, 2 + i % 3, 60 + random.nextInt(600)));
+				productDatabase.attachOfferToProduct("Offer " + i, "SKU" + i);
+			}
+		}
+
+		List<Promotion> promotions = new ArrayList<>();
+		for (int p = 0; p < 300; p++) {
+			int from = random.nextInt(PRODUCTS - 30);
+			promotions.add(promotion(p, from, 30, random));
+		}
+		for (int p = 0; p < OVERLAPPING_PROMOTIONS; p++) // all over the first products, for the adversarial trolleys
+			promotions.add(promotion(300 + p, random.nextInt(OVERLAPPING_PRODUCTS - 12), 12, random));
+		optimiser = new BasketOptimiser(productDatabase, promotions);
+
+		trolleysToPrice = new ShoppingTrolley[TROLLEYS];
+		for (int t = 0; t < TROLLEYS; t++) {
+			switch (trolleys) {
+			case "typical":
+				trolleysToPrice[t] = trolley(productDatabase, random, 200, PRODUCTS);
+				break;
+			case "adversarial":
+				trolleysToPrice[t] = trolley(productDatabase, random, 200, OVERLAPPING_PRODUCTS);
+				break;
+			default:
+				trolleysToPrice[t] = trolley(productDatabase, random, 12, 15);
+			}
+		}
+
+		int optimal = 0;
+		long saved = 0;
+		for (ShoppingTrolley trolley : trolleysToPrice) {
+			long total = optimiser.calculateTrolleyTotal(trolley);
+			if (optimiser.isOptimal())
+				++optimal;
+			saved += new TrolleyTotalCalculator(trolley, productDatabase).calculateTrolleyTotal() - total;
+		}
+		System.out.printf("%s trolleys: %d/%d optimal, %.2f saved per trolley over offers alone\n", trolleys, optimal,
+				TROLLEYS, saved / 100.0 / TROLLEYS);
+	}
+
+	// a bundle, mix and match, BOGOF or percentage off over a range of products
+	private static Promotion promotion(int p, int from, int range, Random random) {
+		String[] SKUs = new String[4];
+		for (int i = 0; i < SKUs.length; i++)
+			SKUs[i] = "SKU" + (from + random.nextInt(range));
+		switch (p % 4) {
+		case 0:
+			return Promotion.bundle("Meal deal " + p, 200 + random.nextInt(300), new String[] { SKUs[0], SKUs[1] },
+					new String[] { SKUs[2] }, new String[] { SKUs[3] });
+		case 1:
+			return Promotion.multiBuy("Any 3 " + p, 3, 300 + random.nextInt(600), SKUs);
+		case 2:
+			return Promotion.buyGetFree("BOGOF " + p, 1, 1, SKUs);
+		default:
+			return Promotion.percentageOff("Save " + p, 10 + random.nextInt(40), SKUs);
+		}
+	}
+
+	// a trolley of distinct products, 1 to 3 of each
+	private static ShoppingTrolley trolley(ProductDAO productDatabase, Random random, int lines, int products) {
+		ShoppingTrolley trolley = new ShoppingTrolley();
+		while (trolley.getAllItemsInTrolley().size() < lines) {
+			Product p = productDatabase.findProduct("SKU" + random.nextInt(products));
+			if (trolley.getAllItemsInTrolley().stream().noneMatch(e -> e.getKey() == p))
+				trolley.addItem(p, 1 + random.nextInt(3));
+		}
+		return trolley;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TROLLEYS)
+	public void cheapestTotal(Blackhole blackhole) throws InvalidItemInTrolley {
+		for (ShoppingTrolley trolley : trolleysToPrice)
+			blackhole.consume(optimiser.calculateTrolleyTotal(trolley));
+	}
+}
@@ -0,0 +1,150 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import businessLogic.CachingCatalogue;
+import businessLogic.Catalogue;
+import businessLogic.MappedCatalogue;
+import businessLogic.MappedCatalogueWriter;
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * Measures scan lookups (per scan) against a slow store of 1M products (a catalogue file with a simulated 20us read
+ * latency, standing in for a database), directly (entries=0) and through caches of several sizes. Scans follow a
+ * small hot set: 90% go to 1% of the SKUs, and 1% are mistyped. The hit rate of each cache is printed at the end.
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CachingCatalogueBenchmark {
+
+	private static final int PRODUCTS = 1_000_000;
+	private static final int HOT_PRODUCTS = PRODUCTS / 100;
+	private static final int SCANS = 1_000_000; // not repeated within an iteration, so that the cold SKUs stay cold
+	private static final int SCANS_PER_CALL = 10_000;
+	private static final long STORE_LATENCY_NANOS = 20_000;
+
+	@Param({ "0", "5000", "20000", "100000" })
+	int entries;
+
+	private Path file;
+	private Catalogue catalogue;
+	private String[] scans;
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException, OfferNotFound {
+		file = Files.createTempFile("catalogue", ".bin");
+		try (MappedCatalogueWriter writer = new MappedCatalogueWriter(file)) {
+			for (int i = 0; i < PRODUCTS; i++) {
+				String offerName = null;
+				if (i % 3 == 0) {
+					offerName = "Offer " + i;
+					writer.addOffer(new Offer(offerName, 3, 20 + i % 990));
+				}
+				writer.addProduct(new Product("Product " + i, 10 + i % 990, "SKU" + i), offerName);
+			}
+			writer.commit();
+		}
+		Catalogue store = slow(MappedCatalogue.open(file));
+		catalogue = (entries == 0) ? store : new CachingCatalogue(store, entries);
+
+		Random random = new Random(1);
+		scans = new String[SCANS];
+		for (int i = 0; i < SCANS; i++) {
+			int r = random.nextInt(100);
+			if (r == 0)
+				scans[i] = "MISTYPED" + random.nextInt(100);
+			else if (r < 90)
+				scans[i] = "SKU" + random.nextInt(HOT_PRODUCTS) * 100;
+			else
+				scans[i] = "SKU" + random.nextInt(PRODUCTS);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if (catalogue instanceof CachingCatalogue) {
+			CachingCatalogue cache = (CachingCatalogue) catalogue;
+			System.out.printf("entries=%d: %.1f%% hits, %,d evictions\n", entries, cache.getHitRate() * 100,
+					cache.getEvictionCount());
+		}
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SCANS_PER_CALL)
+	public void findProductOffer(Blackhole blackhole) {
+		int from = next;
+		for (int i = from; i < from + SCANS_PER_CALL; i++)
+			blackhole.consume(catalogue.findProductOffer(scans[i]));
+		next = (from + SCANS_PER_CALL) % SCANS;
+	}
+
+	// every read of the store takes at least the simulated latency
+	private static Catalogue slow(Catalogue store) {
+		return new Catalogue() {
+			@Override
+			public Product findProduct(String SKU) {
+				pause();
+				return store.findProduct(SKU);
+			}
+
+			@Override
+			public Offer findProductOffer(String SKU) {
+				pause();
+				return store.findProductOffer(SKU);
+			}
+
+			@Override
+			public Product getProduct(String SKU) throws ProductNotFound {
+				pause();
+				return store.getProduct(SKU);
+			}
+
+			@Override
+			public Offer getProductOffer(String SKU) throws ProductNotFound {
+				pause();
+				return store.getProductOffer(SKU);
+			}
+
+			@Override
+			public Catalogue getSnapshot() {
+				return this;
+			}
+
+			private void pause() {
+				long until = System.nanoTime() + STORE_LATENCY_NANOS;
+				while (System.nanoTime() < until)
+					;
+			}
+		};
+	}
+}
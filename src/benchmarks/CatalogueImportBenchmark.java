@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import businessLogic.CatalogueImporter;
+import businessLogic.ProductDAO;
+
+/**
+ * Measures the time to import a price file into a ProductDAO: by default 5M rows, 3M products and 1M offers attached
+ * to one product each (the number of products can be changed with -p products=...)
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CatalogueImportBenchmark {
+
+	@Param("3000000")
+	int products;
+
+	private Path file;
+
+	@Setup
+	public void setUp() throws IOException {
+		file = Files.createTempFile("prices", ".csv");
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < products; i++) {
+				out.append("P,SKU").append(Integer.toString(i)).append(",\"Product ").append(Integer.toString(i))
+						.append("\",").append(Integer.toString(i % 20)).append('.').append(Integer.toString(10 + i % 90))
+						.append('\n');
+				if (i % 3 == 0) {
+					out.append("O,Offer ").append(Integer.toString(i)).append(",3,").append(Integer.toString(i % 50))
+							.append(".00\n");
+					out.append("L,SKU").append(Integer.toString(i)).append(",Offer ").append(Integer.toString(i))
+							.append('\n');
+				}
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public ProductDAO importPriceFile() throws IOException {
+		ProductDAO productDatabase = new ProductDAO();
+		CatalogueImporter importer = new CatalogueImporter(productDatabase, new CatalogueImporter.Listener() {
+			@Override
+			public void progress(long read, long bytes) {
+			}
+
+			@Override
+			public void rejected(long line, String row, String reason) {
+				throw new IllegalStateException("Row " + line + " rejected: " + reason);
+			}
+		});
+		importer.importFrom(file);
+		return productDatabase;
+	}
+}
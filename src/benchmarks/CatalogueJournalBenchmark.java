@@ -0,0 +1,183 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import businessLogic.CatalogueJournal;
+import businessLogic.ProductDAO;
+import data.Product;
+
+/**
+ * Measures the throughput of journaled catalogue changes, with group commit and with a disk sync per change from 1 and
+ * 8 threads, and the time to recover the database from a journal of 1M changes and from a snapshot, and to compact
+ * such a journal
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CatalogueJournalBenchmark {
+
+	private static final int JOURNAL_ENTRIES = 1_000_000;
+	private static final int COMMIT_MILLIS = 5;
+	private static final long NO_COMPACTION = Long.MAX_VALUE;
+
+	@State(Scope.Benchmark)
+	public static class Changes {
+		Path directory;
+		CatalogueJournal journal;
+		ProductDAO productDatabase;
+		final AtomicInteger next = new AtomicInteger();
+
+		@Setup
+		public void setUp() throws IOException {
+			directory = Files.createTempDirectory("journal");
+			journal = CatalogueJournal.open(directory, true, COMMIT_MILLIS, NO_COMPACTION);
+			productDatabase = journal.getProductDatabase();
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			journal.close();
+			deleteDirectory(directory);
+		}
+
+		// a change of one of 1M products, so that the database stays the same size
+		void change() {
+			int i = next.getAndIncrement() % JOURNAL_ENTRIES;
+			productDatabase.addProduct("SKU" + i, new Product("Product " + i, 10 + i % 990, "SKU" + i));
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Recovery {
+		@Param({ "journal", "snapshot" })
+		String from;
+
+		Path directory;
+
+		@Setup
+		public void setUp() throws IOException {
+			directory = journalOf(JOURNAL_ENTRIES, from.equals("snapshot"));
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			deleteDirectory(directory);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Compaction {
+		Path template;
+		Path directory;
+		CatalogueJournal journal;
+
+		@Setup
+		public void setUp() throws IOException {
+			template = journalOf(JOURNAL_ENTRIES, false);
+		}
+
+		@Setup(Level.Invocation)
+		public void open() throws IOException {
+			directory = Files.createTempDirectory("journal");
+			try (Stream<Path> files = Files.list(template)) {
+				for (Path file : (Iterable<Path>) files::iterator)
+					Files.copy(file, directory.resolve(file.getFileName()));
+			}
+			journal = CatalogueJournal.open(directory, true, COMMIT_MILLIS, NO_COMPACTION);
+		}
+
+		@TearDown(Level.Invocation)
+		public void close() throws IOException {
+			journal.close();
+			deleteDirectory(directory);
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			deleteDirectory(template);
+		}
+	}
+
+	// a directory with a journal of the given number of changes, compacted into a snapshot if asked
+	static Path journalOf(int changes, boolean compacted) throws IOException {
+		Path directory = Files.createTempDirectory("journal");
+		try (CatalogueJournal journal = CatalogueJournal.open(directory, true, COMMIT_MILLIS, NO_COMPACTION)) {
+			ProductDAO productDatabase = journal.getProductDatabase();
+			for (int i = 0; i < changes; i++)
+				productDatabase.addProduct("SKU" + i, new Product("Product " + i, 10 + i % 990, "SKU" + i));
+			journal.sync();
+			if (compacted)
+				journal.compact();
+		}
+		return directory;
+	}
+
+	static void deleteDirectory(Path directory) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public void changeGroupCommit(Changes c) {
+		c.change();
+	}
+
+	@Benchmark
+	public void changeSyncEach(Changes c) throws IOException {
+		c.change();
+		c.journal.sync();
+	}
+
+	@Benchmark
+	@Threads(8)
+	public void changeSyncEachEightThreads(Changes c) throws IOException {
+		c.change();
+		c.journal.sync();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	public int recover(Recovery r) throws IOException {
+		try (CatalogueJournal journal = CatalogueJournal.open(r.directory, true, COMMIT_MILLIS, NO_COMPACTION)) {
+			return journal.getProductDatabase().getAllAvailableProducts().size();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	public void compact(Compaction c) throws IOException {
+		c.journal.compact();
+	}
+}
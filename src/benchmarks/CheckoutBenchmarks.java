@@ -0,0 +1,208 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import businessLogic.Catalogue;
+import businessLogic.ProductDAO;
+import businessLogic.TrolleyTotalCalculator;
+import data.CompactShoppingTrolley;
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * The benchmark suite for the checkout hot path: scanning (per scan), pricing trolleys of 1 to 100k lines (per
+ * trolley), catalogue lookups in catalogues of 4 to 1M SKUs (per lookup) and offer changes (per offer)
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CheckoutBenchmarks {
+
+	private static final int SCANS_PER_BASKET = 100;
+	private static final int LOOKUPS = 1024;
+	private static final int BULK_OFFERS = 100;
+	private static final int OFFER_GROUP = 3;
+
+	// a database of the given number of products, every third one with an offer
+	static ProductDAO createCatalogue(int size) {
+		ProductDAO productDatabase = new ProductDAO();
+		for (int i = 0; i < size; i++) {
+			String SKU = "SKU" + i;
+			productDatabase.addProduct(SKU, new Product("Product " + i, 10 + i % 990, SKU));
+			if (i % 3 == 0) {
+				productDatabase.addOffer("Offer " + i, new Offer("Offer " + i, OFFER_GROUP, 20 + i % 990));
+				try {
+					productDatabase.attachOfferToProduct("Offer " + i, SKU);
+				} catch (ProductNotFound | OfferNotFound e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+		return productDatabase;
+	}
+
+	static Product[] productsOf(Catalogue productDatabase, int count) {
+		Product[] products = new Product[count];
+		try {
+			for (int i = 0; i < count; i++)
+				products[i] = productDatabase.getProduct("SKU" + i);
+		} catch (ProductNotFound e) {
+			throw new IllegalStateException(e);
+		}
+		return products;
+	}
+
+	@State(Scope.Benchmark)
+	public static class Scans {
+		Product[] products;
+		ShoppingTrolley trolley;
+		CompactShoppingTrolley compactTrolley;
+		int next;
+
+		@Setup
+		public void setUp() {
+			products = productsOf(createCatalogue(1_000), 1_000);
+			trolley = new ShoppingTrolley();
+			compactTrolley = new CompactShoppingTrolley(SCANS_PER_BASKET);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Totals {
+		@Param({ "1", "10", "100", "1000", "10000", "100000" })
+		int lines;
+
+		TrolleyTotalCalculator calc;
+
+		@Setup
+		public void setUp() {
+			ProductDAO productDatabase = createCatalogue(lines);
+			Product[] products = productsOf(productDatabase, lines);
+			ShoppingTrolley trolley = new ShoppingTrolley();
+			for (int i = 0; i < lines; i++)
+				trolley.addItem(products[i], 1 + i % (OFFER_GROUP + 1));
+			calc = new TrolleyTotalCalculator(trolley, productDatabase);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Lookups {
+		@Param({ "4", "100", "10000", "1000000" })
+		int skus;
+
+		ProductDAO productDatabase;
+		String[] SKUs;
+		int mask;
+
+		@Setup
+		public void setUp() {
+			productDatabase = createCatalogue(skus);
+			SKUs = new String[Math.min(skus, 4096)];
+			for (int i = 0; i < SKUs.length; i++)
+				SKUs[i] = "SKU" + (int) ((long) i * skus / SKUs.length);
+			mask = Integer.highestOneBit(SKUs.length) - 1;
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class OfferChanges {
+		@Param({ "100", "10000" })
+		int skus;
+
+		ProductDAO productDatabase;
+		List<String> offerNames;
+		int next;
+
+		@Setup
+		public void setUp() {
+			productDatabase = createCatalogue(skus);
+			offerNames = new ArrayList<>();
+			for (int i = 0; i < BULK_OFFERS; i++)
+				offerNames.add("Bulk offer " + i);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SCANS_PER_BASKET)
+	public int scanShoppingTrolley(Scans s) {
+		s.trolley.clear();
+		int i = s.next;
+		for (int scan = 0; scan < SCANS_PER_BASKET; scan++)
+			s.trolley.addItem(s.products[i++ % s.products.length]);
+		s.next = i;
+		return i;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SCANS_PER_BASKET)
+	public int scanCompactShoppingTrolley(Scans s) {
+		s.compactTrolley.clear();
+		int i = s.next;
+		for (int scan = 0; scan < SCANS_PER_BASKET; scan++)
+			s.compactTrolley.addItem(s.products[i++ % s.products.length]);
+		s.next = i;
+		return s.compactTrolley.getLineCount();
+	}
+
+	@Benchmark
+	public long calculateTrolleyTotal(Totals t) throws InvalidItemInTrolley {
+		return t.calc.calculateTrolleyTotal();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void getProduct(Lookups l, Blackhole blackhole) throws ProductNotFound {
+		for (int i = 0; i < LOOKUPS; i++)
+			blackhole.consume(l.productDatabase.getProduct(l.SKUs[i & l.mask]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void getProductOffer(Lookups l, Blackhole blackhole) throws ProductNotFound {
+		for (int i = 0; i < LOOKUPS; i++)
+			blackhole.consume(l.productDatabase.getProductOffer(l.SKUs[i & l.mask]));
+	}
+
+	@Benchmark
+	public void attachAndRemoveOffer(OfferChanges c) throws ProductNotFound, OfferNotFound {
+		String SKU = "SKU" + (c.next++ % c.skus);
+		c.productDatabase.addOffer("Benchmark offer", new Offer("Benchmark offer", 2, 10));
+		c.productDatabase.attachOfferToProduct("Benchmark offer", SKU);
+		c.productDatabase.removeOffer("Benchmark offer");
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BULK_OFFERS)
+	public void removeOffersInBulk(OfferChanges c) throws ProductNotFound, OfferNotFound {
+		for (int i = 0; i < BULK_OFFERS; i++) {
+			String offerName = c.offerNames.get(i);
+			c.productDatabase.addOffer(offerName, new Offer(offerName, 2, 10));
+			c.productDatabase.attachOfferToProduct(offerName, "SKU" + (i * 3 % c.skus));
+		}
+		c.productDatabase.removeOffers(c.offerNames);
+	}
+}
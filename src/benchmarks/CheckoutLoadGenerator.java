@@ -0,0 +1,159 @@
+package benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import businessLogic.ProductDAO;
+import data.Product;
+import main.CheckoutServer;
+
+/**
+ * Drives a checkout server in the same process: connects many idle lanes, then has busy lanes (the benchmark threads,
+ * 64 unless changed with -t) scan as fast as the server answers, checking out every 50 scans. The latency of a scan
+ * seen by a till is sampled, so percentiles are reported; the memory and threads held by the idle lanes are printed
+ * once they are connected. Each connection takes two file descriptors in this process, so 50k idle lanes need 'ulimit
+ * -n' above 100k.
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class CheckoutLoadGenerator {
+
+	private static final int PRODUCTS = 100_000;
+	private static final int SCANS_PER_TROLLEY = 50;
+
+	@State(Scope.Benchmark)
+	public static class Server {
+		@Param("5000")
+		int idleLanes;
+
+		CheckoutServer server;
+		List<Till> idle;
+
+		@Setup
+		public void setUp() throws IOException {
+			ProductDAO productDatabase = new ProductDAO(true);
+			for (int i = 0; i < PRODUCTS; i++)
+				productDatabase.addProduct("SKU" + i, new Product("Product " + i, 10 + i % 990, "SKU" + i));
+			server = new CheckoutServer(productDatabase, 0);
+
+			long memoryBefore = usedMemory();
+			int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+			long start = System.nanoTime();
+			idle = new ArrayList<>(idleLanes);
+			for (int i = 0; i < idleLanes; i++) {
+				Till till = new Till(server.getPort());
+				till.request("TOTAL"); // the lane is being served once it has answered
+				idle.add(till);
+			}
+			System.out.printf("%d idle lanes on %s connected in %.3f s, %d bytes and %d platform threads per lane\n",
+					idleLanes, server.isUsingVirtualThreads() ? "virtual threads" : "platform threads",
+					(System.nanoTime() - start) / 1e9, (usedMemory() - memoryBefore) / Math.max(idleLanes, 1),
+					(ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore) / Math.max(idleLanes, 1));
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			for (Till till : idle)
+				till.close();
+			server.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Lane {
+		Till till;
+		Random random;
+		int scans;
+
+		@Setup
+		public void setUp(Server s) throws IOException {
+			till = new Till(s.server.getPort());
+			random = new Random(System.identityHashCode(this));
+		}
+
+		// checking out is not part of the latency of a scan
+		@TearDown(Level.Invocation)
+		public void checkout() throws IOException {
+			if (++scans % SCANS_PER_TROLLEY == 0)
+				till.request("CHECKOUT");
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			till.close();
+		}
+	}
+
+	@Benchmark
+	public void scan(Lane lane) throws IOException {
+		lane.till.request("SCAN SKU" + lane.random.nextInt(PRODUCTS));
+	}
+
+	private static long usedMemory() {
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * A client lane, sending one request at a time and waiting for its answer
+	 */
+	static final class Till {
+		private final Socket socket;
+		private final OutputStream out;
+		private final InputStream in;
+
+		Till(int port) throws IOException {
+			socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			socket.setTcpNoDelay(true);
+			out = socket.getOutputStream();
+			in = new BufferedInputStream(socket.getInputStream(), 256);
+		}
+
+		void request(String request) throws IOException {
+			out.write((request + "\n").getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			int b;
+			while ((b = in.read()) != '\n') {
+				if (b < 0)
+					throw new IOException("Disconnected");
+			}
+		}
+
+		void close() throws IOException {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import businessLogic.Catalogue;
+import businessLogic.CatalogueSnapshot;
+import businessLogic.CompiledCatalogue;
+import businessLogic.ProductDAO;
+import businessLogic.TrolleyTotalCalculator;
+import data.CompactShoppingTrolley;
+import data.Offer;
+import data.Product;
+import exceptions.InvalidItemInTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * Measures trolley totals (per trolley) priced with a product and an offer lookup per line against the same totals
+ * priced with the compiled catalogue, for trolleys of 3 to 10k lines, and the time to compile the catalogue (1M
+ * products unless changed with -p products=...)
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CompiledCatalogueBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Products {
+		@Param("1000000")
+		int products;
+
+		ProductDAO productDatabase;
+
+		@Setup
+		public void setUp() throws ProductNotFound, OfferNotFound {
+			productDatabase = new ProductDAO(false);
+			for (int i = 0; i < products; i++) {
+				productDatabase.addProduct("SKU" + i, new Product("Product " + i, 10 + i % 990, "SKU" + i));
+				if (i % 3 == 0) {
+					productDatabase.addOffer("Offer " + i, new Offer("Offer " + i, 2 + i % 3, 15 + i % 990));
+					productDatabase.attachOfferToProduct("Offer " + i, "SKU" + i);
+				}
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Trolley {
+		@Param({ "3", "30", "300", "3000", "10000" })
+		int lines;
+
+		TrolleyTotalCalculator looked;
+		TrolleyTotalCalculator compiled;
+
+		@Setup
+		public void setUp(Products p) throws InvalidItemInTrolley {
+			CatalogueSnapshot snapshot = p.productDatabase.getSnapshot();
+			Random random = new Random(1);
+			CompactShoppingTrolley trolley = new CompactShoppingTrolley(lines);
+			while (trolley.getLineCount() < lines)
+				trolley.addItem(snapshot.findProduct("SKU" + random.nextInt(p.products)), 1 + random.nextInt(4));
+			looked = new TrolleyTotalCalculator(trolley, new LookupsOnly(snapshot));
+			compiled = new TrolleyTotalCalculator(trolley, snapshot);
+			if (looked.calculateTrolleyTotal() != compiled.calculateTrolleyTotal())
+				throw new IllegalStateException("Compiled catalogue gives a different total");
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Uncompiled {
+		CatalogueSnapshot snapshot;
+
+		// a new snapshot, not compiled yet
+		@Setup(Level.Invocation)
+		public void setUp(Products p) {
+			Product first = p.productDatabase.findProduct("SKU0");
+			p.productDatabase.addProduct("SKU0", first);
+			snapshot = p.productDatabase.getSnapshot();
+		}
+	}
+
+	@Benchmark
+	public long totalWithLookups(Trolley t) throws InvalidItemInTrolley {
+		return t.looked.calculateTrolleyTotal();
+	}
+
+	@Benchmark
+	public long totalCompiled(Trolley t) throws InvalidItemInTrolley {
+		return t.compiled.calculateTrolleyTotal();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public CompiledCatalogue compile(Uncompiled u) {
+		return u.snapshot.compile();
+	}
+
+	/**
+	 * Hides the snapshot behind the Catalogue interface, so that the calculator looks up each line as it did before
+	 * catalogues were compiled
+	 */
+	private static final class LookupsOnly implements Catalogue {
+		private final Catalogue snapshot;
+
+		LookupsOnly(Catalogue snapshot) {
+			this.snapshot = snapshot;
+		}
+
+		@Override
+		public Product findProduct(String SKU) {
+			return snapshot.findProduct(SKU);
+		}
+
+		@Override
+		public Offer findProductOffer(String SKU) {
+			return snapshot.findProductOffer(SKU);
+		}
+
+		@Override
+		public Product getProduct(String SKU) throws ProductNotFound {
+			return snapshot.getProduct(SKU);
+		}
+
+		@Override
+		public Offer getProductOffer(String SKU) throws ProductNotFound {
+			return snapshot.getProductOffer(SKU);
+		}
+
+		@Override
+		public Catalogue getSnapshot() {
+			return this;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import businessLogic.ProductDAO;
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * Measures the lookups of a product and its offer per second on a concurrent ProductDAO shared by 1, 2 and 4 checkout
+ * lanes, while another thread keeps changing the catalogue. Scaling against a single lane is the throughput of the
+ * lookups of a group against that of 'oneLane' (other lane counts can be run with -tg lanes,1).
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ConcurrentLookupBenchmark {
+
+	private static final int STABLE_PRODUCTS = 1000;
+
+	private ProductDAO productDatabase;
+
+	@Setup
+	public void setUp() throws ProductNotFound, OfferNotFound {
+		productDatabase = new ProductDAO(true);
+		for (int i = 0; i < STABLE_PRODUCTS; i++)
+			productDatabase.addProduct("S" + i, new Product("Stable " + i, 10, "S" + i));
+		productDatabase.addOffer("Stable offer", new Offer("Stable offer", 2, 15));
+		productDatabase.attachOfferToProduct("Stable offer", "S0");
+	}
+
+	@State(Scope.Thread)
+	public static class Lane {
+		int next;
+	}
+
+	@State(Scope.Thread)
+	public static class Writer {
+		int round;
+	}
+
+	private void lookup(Lane lane, Blackhole blackhole) {
+		String SKU = "S" + (lane.next++ % STABLE_PRODUCTS);
+		blackhole.consume(productDatabase.findProduct(SKU));
+		blackhole.consume(productDatabase.findProductOffer(SKU));
+	}
+
+	// volatile products and offers come and go
+	private void change(Writer writer) throws ProductNotFound, OfferNotFound {
+		int round = writer.round++;
+		String SKU = "V" + (round % 50);
+		String offerName = "V offer " + (round % 10);
+		productDatabase.addProduct(SKU, new Product("Volatile", 20, SKU));
+		productDatabase.addOffer(offerName, new Offer(offerName, 3, 50));
+		productDatabase.attachOfferToProduct(offerName, SKU);
+		if (round % 3 == 0)
+			productDatabase.removeOffer(offerName);
+	}
+
+	@Benchmark
+	@Group("oneLane")
+	@GroupThreads(1)
+	public void oneLaneLookups(Lane lane, Blackhole blackhole) {
+		lookup(lane, blackhole);
+	}
+
+	@Benchmark
+	@Group("oneLane")
+	@GroupThreads(1)
+	public void oneLaneWriter(Writer writer) throws ProductNotFound, OfferNotFound {
+		change(writer);
+	}
+
+	@Benchmark
+	@Group("twoLanes")
+	@GroupThreads(2)
+	public void twoLanesLookups(Lane lane, Blackhole blackhole) {
+		lookup(lane, blackhole);
+	}
+
+	@Benchmark
+	@Group("twoLanes")
+	@GroupThreads(1)
+	public void twoLanesWriter(Writer writer) throws ProductNotFound, OfferNotFound {
+		change(writer);
+	}
+
+	@Benchmark
+	@Group("fourLanes")
+	@GroupThreads(4)
+	public void fourLanesLookups(Lane lane, Blackhole blackhole) {
+		lookup(lane, blackhole);
+	}
+
+	@Benchmark
+	@Group("fourLanes")
+	@GroupThreads(1)
+	public void fourLanesWriter(Writer writer) throws ProductNotFound, OfferNotFound {
+		change(writer);
+	}
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import businessLogic.Catalogue;
+
+/**
+ * Compares the cost of a failed product lookup (e.g. a mistyped SKU at the till) when it throws an exception with a
+ * stack trace, as before, when it throws a stackless exception, and when 'findProduct()' just returns null
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExceptionBenchmark {
+
+	private static final int PRODUCTS = 1000;
+	private static final int LOOKUPS = 1000;
+
+	// the lookup failure as it was thrown before, filling in the stack trace on every miss
+	private static final class LegacyProductNotFound extends Throwable {
+		private static final long serialVersionUID = 1L;
+
+		LegacyProductNotFound() {
+			super("Product not found in the database");
+		}
+	}
+
+	private static final class StacklessProductNotFound extends Throwable {
+		private static final long serialVersionUID = 1L;
+
+		StacklessProductNotFound() {
+			super("Product not found in the database", null, false, false);
+		}
+	}
+
+	private Catalogue catalogue;
+	private String[] misses;
+
+	@Setup
+	public void setUp() {
+		catalogue = CheckoutBenchmarks.createCatalogue(PRODUCTS);
+		misses = new String[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++)
+			misses[i] = "missing " + i;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void missWithStackTrace(Blackhole blackhole) {
+		for (String SKU : misses) {
+			try {
+				if (catalogue.findProduct(SKU) == null)
+					throw new LegacyProductNotFound();
+			} catch (LegacyProductNotFound e) {
+				blackhole.consume(e.getStackTrace()); // trace is inspected, as a logger would
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void missWithStacklessException(Blackhole blackhole) {
+		for (String SKU : misses) {
+			try {
+				if (catalogue.findProduct(SKU) == null)
+					throw new StacklessProductNotFound();
+			} catch (StacklessProductNotFound e) {
+				blackhole.consume(e);
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void missWithFindProduct(Blackhole blackhole) {
+		for (String SKU : misses)
+			blackhole.consume(catalogue.findProduct(SKU));
+	}
+}
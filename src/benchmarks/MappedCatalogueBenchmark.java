@@ -0,0 +1,127 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import businessLogic.Catalogue;
+import businessLogic.MappedCatalogue;
+import businessLogic.MappedCatalogueWriter;
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+
+/**
+ * Compares starting a till (ready to price the first scanned item) with a memory-mapped catalogue file against loading
+ * the same catalogue into a ProductDAO, and the cost of lookups (per lookup) in each once started. The catalogue has 2M
+ * products unless changed with -p products=...
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MappedCatalogueBenchmark {
+
+	private static final int LOOKUPS = 10_000;
+
+	@State(Scope.Benchmark)
+	public static class CatalogueFile {
+		@Param("2000000")
+		int products;
+
+		Path file;
+
+		@Setup
+		public void setUp() throws IOException, OfferNotFound {
+			file = Files.createTempFile("catalogue", ".bin");
+			try (MappedCatalogueWriter writer = new MappedCatalogueWriter(file)) {
+				// the same catalogue as CheckoutBenchmarks.createCatalogue()
+				for (int i = 0; i < products; i++) {
+					String offerName = null;
+					if (i % 3 == 0) {
+						offerName = "Offer " + i;
+						writer.addOffer(new Offer(offerName, 3, 20 + i % 990));
+					}
+					writer.addProduct(new Product("Product " + i, 10 + i % 990, "SKU" + i), offerName);
+				}
+				writer.commit();
+			}
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Lookups {
+		@Param({ "mapped", "heap" })
+		String catalogue;
+
+		Catalogue started;
+		String[] SKUs;
+
+		@Setup
+		public void setUp(CatalogueFile f) throws IOException {
+			started = catalogue.equals("mapped") ? MappedCatalogue.open(f.file)
+					: CheckoutBenchmarks.createCatalogue(f.products).getSnapshot();
+			Random random = new Random(1);
+			SKUs = new String[LOOKUPS];
+			for (int i = 0; i < LOOKUPS; i++)
+				SKUs[i] = "SKU" + random.nextInt(f.products);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 5)
+	public Offer startupMapped(CatalogueFile f) throws IOException {
+		return MappedCatalogue.open(f.file).findProductOffer("SKU0");
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 5)
+	public Offer startupHeap(CatalogueFile f) {
+		return CheckoutBenchmarks.createCatalogue(f.products).getSnapshot().findProductOffer("SKU0");
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void findProduct(Lookups l, Blackhole blackhole) {
+		for (String SKU : l.SKUs)
+			blackhole.consume(l.started.findProduct(SKU));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void findProductOffer(Lookups l, Blackhole blackhole) {
+		for (String SKU : l.SKUs)
+			blackhole.consume(l.started.findProductOffer(SKU));
+	}
+}
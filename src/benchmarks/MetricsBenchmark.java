@@ -0,0 +1,106 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import businessLogic.CatalogueSnapshot;
+import data.CompactShoppingTrolley;
+import data.Product;
+import exceptions.ProductNotFound;
+import metrics.LatencyHistogram;
+
+/**
+ * Measures what the checkout metrics cost (per operation). As they are switched on or off for the whole JVM, each
+ * operation is measured in a JVM with metrics disabled and in one with metrics enabled.
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+	private static final int PRODUCTS = 1_000;
+	private static final String METRICS_OFF = "-Dcheckout.metrics=false";
+	private static final String METRICS_ON = "-Dcheckout.metrics=true";
+
+	private CatalogueSnapshot catalogue;
+	private Product[] products;
+	private String[] SKUs;
+	private CompactShoppingTrolley trolley;
+	private LatencyHistogram histogram;
+
+	@Setup
+	public void setUp() {
+		catalogue = CheckoutBenchmarks.createCatalogue(PRODUCTS).getSnapshot();
+		products = CheckoutBenchmarks.productsOf(catalogue, PRODUCTS);
+		SKUs = new String[PRODUCTS];
+		for (int i = 0; i < PRODUCTS; i++)
+			SKUs[i] = products[i].getSKU();
+		trolley = new CompactShoppingTrolley(PRODUCTS);
+		histogram = new LatencyHistogram();
+	}
+
+	private void getProducts(Blackhole blackhole) throws ProductNotFound {
+		for (String SKU : SKUs)
+			blackhole.consume(catalogue.getProduct(SKU));
+	}
+
+	private int addItems() {
+		trolley.clear();
+		for (Product p : products)
+			trolley.addItem(p);
+		return trolley.getLineCount();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = METRICS_OFF)
+	@OperationsPerInvocation(PRODUCTS)
+	public void getProductMetricsOff(Blackhole blackhole) throws ProductNotFound {
+		getProducts(blackhole);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = METRICS_ON)
+	@OperationsPerInvocation(PRODUCTS)
+	public void getProductMetricsOn(Blackhole blackhole) throws ProductNotFound {
+		getProducts(blackhole);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = METRICS_OFF)
+	@OperationsPerInvocation(PRODUCTS)
+	public int addItemMetricsOff() {
+		return addItems();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = METRICS_ON)
+	@OperationsPerInvocation(PRODUCTS)
+	public int addItemMetricsOn() {
+		return addItems();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = METRICS_ON)
+	@OperationsPerInvocation(PRODUCTS)
+	public LatencyHistogram recordLatency() {
+		for (int i = 0; i < PRODUCTS; i++)
+			histogram.record(i * 7);
+		return histogram;
+	}
+}
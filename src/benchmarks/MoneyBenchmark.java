@@ -0,0 +1,121 @@
+package benchmarks;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import data.Money;
+
+/**
+ * Compares pricing trolley lines (per line) in float pounds (the old representation, which then needs re-pricing in
+ * BigDecimal to reconcile) with pricing them in long pence
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoneyBenchmark {
+
+	private static final int LINES = 10_000;
+
+	// a trolley line as priced before, with float prices in pounds
+	private static final class FloatLine {
+		final float unitPrice;
+		final int groupNumber;
+		final float groupPrice;
+		final int quantity;
+
+		FloatLine(float unitPrice, int groupNumber, float groupPrice, int quantity) {
+			this.unitPrice = unitPrice;
+			this.groupNumber = groupNumber;
+			this.groupPrice = groupPrice;
+			this.quantity = quantity;
+		}
+	}
+
+	// the same line with long prices in pence
+	private static final class PenceLine {
+		final long unitPrice;
+		final int groupNumber;
+		final long groupPrice;
+		final int quantity;
+
+		PenceLine(long unitPrice, int groupNumber, long groupPrice, int quantity) {
+			this.unitPrice = unitPrice;
+			this.groupNumber = groupNumber;
+			this.groupPrice = groupPrice;
+			this.quantity = quantity;
+		}
+	}
+
+	private FloatLine[] floatLines;
+	private PenceLine[] penceLines;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(1);
+		floatLines = new FloatLine[LINES];
+		penceLines = new PenceLine[LINES];
+		for (int i = 0; i < LINES; i++) {
+			int unit = 1 + random.nextInt(2000);
+			int groupNumber = 2 + random.nextInt(4);
+			int group = unit * groupNumber - random.nextInt(unit);
+			int quantity = 1 + random.nextInt(10);
+			floatLines[i] = new FloatLine(unit / 100f, groupNumber, group / 100f, quantity);
+			penceLines[i] = new PenceLine(unit, groupNumber, group, quantity);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public float floatLinePricing() {
+		float total = 0.0f;
+		for (FloatLine line : floatLines) {
+			total += line.groupPrice * (line.quantity / line.groupNumber)
+					+ (line.quantity % line.groupNumber) * line.unitPrice;
+		}
+		return total;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public void floatLinePricingWithBigDecimal(Blackhole blackhole) {
+		float total = 0.0f;
+		BigDecimal exact = BigDecimal.ZERO;
+		for (FloatLine line : floatLines) {
+			int groups = line.quantity / line.groupNumber;
+			total += line.groupPrice * groups + (line.quantity % line.groupNumber) * line.unitPrice;
+			exact = exact.add(new BigDecimal(Float.toString(line.groupPrice)).multiply(BigDecimal.valueOf(groups)))
+					.add(new BigDecimal(Float.toString(line.unitPrice))
+							.multiply(BigDecimal.valueOf(line.quantity % line.groupNumber)));
+		}
+		blackhole.consume(total);
+		blackhole.consume(exact);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public long penceLinePricing() {
+		long total = Money.ZERO;
+		for (PenceLine line : penceLines)
+			total = Money.add(total, Money.groupPrice(line.unitPrice, line.quantity, line.groupNumber, line.groupPrice));
+		return total;
+	}
+}
@@ -0,0 +1,160 @@
+package benchmarks;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import businessLogic.OfferScheduler;
+import businessLogic.ProductDAO;
+import data.Offer;
+import data.Product;
+
+/**
+ * Measures a month of scheduled offers on a catalogue of 50k products: applying the starts and ends of the offers
+ * with businessLogic.OfferScheduler as the month goes by a minute at a time (per month), and offer lookups against
+ * the database it keeps (per lookup), compared with lookups that check the period of validity of each offer of the
+ * product instead
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class OfferSchedulerBenchmark {
+
+	private static final int PRODUCTS = 50_000;
+	private static final int OFFERS_PER_PRODUCT = 4;
+	private static final int LOOKUPS = 1_000;
+	private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+	private static final long MONTH_SECONDS = 30 * 86_400L;
+	private static final long MINUTES = MONTH_SECONDS / 60 + 7 * 24 * 60 + 60; // until the last offer has ended
+
+	// a clock the benchmark moves by hand
+	private static final class MonthClock extends Clock {
+		volatile Instant now = START;
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+
+	// the products with their offers, scheduled at the start of the month
+	private static final class Schedule {
+		final MonthClock clock = new MonthClock();
+		final ProductDAO productDatabase = new ProductDAO(true);
+		final OfferScheduler scheduler = new OfferScheduler(productDatabase, clock);
+		final Offer[][] productOffers = new Offer[PRODUCTS][OFFERS_PER_PRODUCT];
+
+		Schedule() {
+			Random random = new Random(1);
+			for (int i = 0; i < PRODUCTS; i++) {
+				productDatabase.addProduct("SKU" + i, new Product("Product " + i, 10 + i % 990, "SKU" + i));
+				for (int o = 0; o < OFFERS_PER_PRODUCT; o++) {
+					Instant start = START.plusSeconds((long) (random.nextDouble() * MONTH_SECONDS));
+					Instant end = start.plusSeconds(3_600 + random.nextInt(7 * 86_400));
+					productOffers[i][o] = new Offer("Offer " + i + "/" + o, 2 + o, 15 + i % 990, start, end);
+					scheduler.schedule(productOffers[i][o], "SKU" + i);
+				}
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Month {
+		Schedule schedule;
+
+		@Setup(Level.Invocation)
+		public void setUp() {
+			schedule = new Schedule();
+		}
+	}
+
+	// the offers valid mid-month, applied up to then
+	@State(Scope.Benchmark)
+	public static class MidMonth {
+		Schedule schedule;
+		String[] SKUs;
+		int[] indexes;
+
+		@Setup
+		public void setUp() {
+			schedule = new Schedule();
+			schedule.clock.now = START.plusSeconds(MONTH_SECONDS / 2);
+			schedule.scheduler.advance();
+
+			Random random = new Random(2);
+			SKUs = new String[LOOKUPS];
+			indexes = new int[LOOKUPS];
+			for (int i = 0; i < LOOKUPS; i++) {
+				indexes[i] = random.nextInt(PRODUCTS);
+				SKUs[i] = "SKU" + indexes[i];
+			}
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3)
+	@Measurement(iterations = 5)
+	public long offerTimelineMonth(Month m) {
+		Schedule s = m.schedule;
+		for (long minute = 1; minute <= MINUTES; minute++) {
+			s.clock.now = START.plusSeconds(minute * 60);
+			s.scheduler.advance();
+		}
+		return s.scheduler.getAppliedCount();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void offerLookupScheduled(MidMonth m, Blackhole blackhole) {
+		for (String SKU : m.SKUs)
+			blackhole.consume(m.schedule.productDatabase.findProductOffer(SKU));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void offerLookupValidityChecked(MidMonth m, Blackhole blackhole) {
+		for (int i = 0; i < LOOKUPS; i++) {
+			blackhole.consume(m.schedule.productDatabase.findProduct(m.SKUs[i]));
+			Instant now = m.schedule.clock.instant();
+			Offer valid = null;
+			for (Offer offer : m.schedule.productOffers[m.indexes[i]]) {
+				if (offer.isValidAt(now) && (valid == null || offer.getStart().isAfter(valid.getStart())))
+					valid = offer;
+			}
+			blackhole.consume(valid);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import businessLogic.PriceImpact;
+import businessLogic.PriceImpactSimulator;
+import businessLogic.ProductDAO;
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * Measures the time businessLogic.PriceImpactSimulator takes to price a log file of 25-line trolleys (400k unless
+ * changed with -p trolleys=...) under a current and a proposed catalogue of 50k products, with a tenth of the offers
+ * changed
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PriceImpactBenchmark {
+
+	private static final int PRODUCTS = 50_000;
+	private static final int LINES = 25;
+
+	@Param("400000")
+	int trolleys;
+
+	private PriceImpactSimulator simulator;
+	private Path log;
+
+	@Setup
+	public void setUp() throws IOException, ProductNotFound, OfferNotFound {
+		ProductDAO productDatabase = new ProductDAO(false);
+		for (int i = 0; i < PRODUCTS; i++) {
+			productDatabase.addProduct("SKU" + i, new Product("Product " + i, 10 + i % 990, "SKU" + i));
+			if (i % 3 == 0) {
+				productDatabase.addOffer("Offer " + i, new Offer("Offer " + i, 2 + i % 3, 15 + i % 990));
+				productDatabase.attachOfferToProduct("Offer " + i, "SKU" + i);
+			}
+		}
+		simulator = new PriceImpactSimulator(productDatabase);
+		ProductDAO proposed = (ProductDAO) simulator.getProposed();
+		for (int i = 0; i < PRODUCTS; i += 30) {
+			proposed.addOffer("Proposed " + i, new Offer("Proposed " + i, 3, 10 + i % 990));
+			proposed.attachOfferToProduct("Proposed " + i, "SKU" + i);
+		}
+
+		log = Files.createTempFile("trolleys", ".log");
+		Random random = new Random(1);
+		try (BufferedWriter out = Files.newBufferedWriter(log, StandardCharsets.UTF_8)) {
+			for (int t = 0; t < trolleys; t++) {
+				for (int l = 0; l < LINES; l++) {
+					out.write("SKU");
+					out.write(Integer.toString(random.nextInt(PRODUCTS)));
+					out.write(',');
+					out.write(Integer.toString(1 + random.nextInt(4)));
+					out.write(l < LINES - 1 ? ';' : '\n');
+				}
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.delete(log);
+	}
+
+	@Benchmark
+	public PriceImpact simulateLogFile() throws IOException {
+		return simulator.simulate(log);
+	}
+}
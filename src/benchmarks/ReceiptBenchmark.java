@@ -0,0 +1,141 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import businessLogic.ProductDAO;
+import businessLogic.ReceiptRenderer;
+import businessLogic.TrolleyTotalCalculator;
+import data.CompactShoppingTrolley;
+import data.Money;
+import data.Offer;
+import data.Product;
+import data.ProductCounter;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * Measures rendering the receipts of 30-line trolleys (per receipt) as the till printed them before (pricing, then
+ * printf per line with two offer lookups) against businessLogic.ReceiptRenderer in text and compact formats. The bytes
+ * allocated per receipt are reported by -prof gc (gc.alloc.rate.norm).
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReceiptBenchmark {
+
+	private static final int PRODUCTS = 10_000;
+	private static final int LINES = 30;
+	private static final int TROLLEYS = 100;
+
+	@State(Scope.Benchmark)
+	public static class Trolleys {
+		ProductDAO productDatabase;
+		ShoppingTrolley[] trolleys;
+		Writer discard;
+		PrintWriter printer;
+
+		@Setup
+		public void setUp() throws ProductNotFound, OfferNotFound {
+			productDatabase = new ProductDAO(false);
+			Random random = new Random(1);
+			for (int i = 0; i < PRODUCTS; i++) {
+				productDatabase.addProduct("SKU" + i, new Product("Product " + i, 10 + i % 990, "SKU" + i));
+				if (i % 3 == 0) {
+					productDatabase.addOffer("Offer " + i, new Offer("Offer " + i, 2 + i % 3, 15 + i % 990));
+					productDatabase.attachOfferToProduct("Offer " + i, "SKU" + i);
+				}
+			}
+			trolleys = new ShoppingTrolley[TROLLEYS];
+			for (int t = 0; t < TROLLEYS; t++) {
+				CompactShoppingTrolley trolley = new CompactShoppingTrolley(LINES);
+				while (trolley.getLineCount() < LINES)
+					trolley.addItem(productDatabase.findProduct("SKU" + random.nextInt(PRODUCTS)), 1 + random.nextInt(4));
+				trolleys[t] = trolley;
+			}
+			discard = new Writer() {
+				@Override
+				public void write(char[] cbuf, int off, int len) {
+				}
+
+				@Override
+				public void flush() {
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+			printer = new PrintWriter(discard);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Renderer {
+		@Param({ "TEXT", "COMPACT" })
+		ReceiptRenderer.Format format;
+
+		ReceiptRenderer renderer;
+
+		@Setup
+		public void setUp() {
+			renderer = new ReceiptRenderer(format);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TROLLEYS)
+	public void receiptsPrintf(Trolleys t, Blackhole blackhole) throws InvalidItemInTrolley {
+		for (ShoppingTrolley trolley : t.trolleys)
+			blackhole.consume(printf(trolley, t.productDatabase, t.printer));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TROLLEYS)
+	public void receiptsRenderer(Trolleys t, Renderer r, Blackhole blackhole) throws InvalidItemInTrolley, IOException {
+		for (ShoppingTrolley trolley : t.trolleys) {
+			r.renderer.render(trolley, t.productDatabase);
+			r.renderer.writeTo(t.discard);
+			blackhole.consume(r.renderer.getTotal());
+		}
+	}
+
+	// the receipt as CheckOutMain printed it
+	private static long printf(ShoppingTrolley trolley, ProductDAO productDatabase, PrintWriter out)
+			throws InvalidItemInTrolley {
+		TrolleyTotalCalculator totalCalculator = new TrolleyTotalCalculator(trolley, productDatabase);
+		long total = totalCalculator.calculateTrolleyTotal();
+		out.printf("%-12s%-12s%-12s\n", "Product", "Quantity", "Applied Offer");
+		for (Entry<Product, ProductCounter> e : trolley.getAllItemsInTrolley()) {
+			String appliedOffer = (totalCalculator.getOfferAppliedTo(e.getKey()) == null) ? "-"
+					: totalCalculator.getOfferAppliedTo(e.getKey());
+			out.printf("%-12s%-12s%-12s\n", e.getKey().getName(), e.getValue().getCount(), appliedOffer);
+		}
+		out.printf("Your total is: £%s", Money.format(total));
+		return total;
+	}
+}
@@ -0,0 +1,120 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import businessLogic.ProductDAO;
+import businessLogic.RunningTotalCalculator;
+import businessLogic.ScanPipeline;
+import data.Money;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+
+/**
+ * Measures the time to replay a file of 1M queued scans into one trolley, a line at a time as the till reads the
+ * keyboard (a lookup, an add and an unbuffered running total per scan) against businessLogic.ScanPipeline with several
+ * batch sizes. Output goes to /dev/null, so that writing costs the same system calls as a console.
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanReplayBenchmark {
+
+	private static final int PRODUCTS = 100_000;
+	private static final int SCANS = 1_000_000;
+
+	@State(Scope.Benchmark)
+	public static class Scans {
+		ProductDAO productDatabase;
+		Path file;
+
+		@Setup
+		public void setUp() throws IOException {
+			productDatabase = new ProductDAO(true);
+			for (int i = 0; i < PRODUCTS; i++)
+				productDatabase.addProduct("SKU" + i, new Product("Product " + i, 10 + i % 990, "SKU" + i));
+
+			file = Files.createTempFile("scans", ".txt");
+			Random random = new Random(1);
+			try (Writer w = Files.newBufferedWriter(file)) {
+				for (int s = 0; s < SCANS;) { // some products are scanned several times in a row
+					String SKU = "SKU" + random.nextInt(PRODUCTS);
+					for (int q = 1 + (random.nextInt(4) == 0 ? random.nextInt(6) : 0); q > 0 && s < SCANS; q--, s++)
+						w.write(SKU + "\n");
+				}
+			}
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			Files.delete(file);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Batches {
+		@Param({ "1", "64", "1024", "8192" })
+		int batchSize;
+	}
+
+	@Benchmark
+	public ShoppingTrolley replayLineAtATime(Scans s) throws IOException, InvalidItemInTrolley {
+		ShoppingTrolley trolley = new ShoppingTrolley();
+		RunningTotalCalculator runningTotal = new RunningTotalCalculator(trolley, s.productDatabase);
+		try (BufferedReader in = Files.newBufferedReader(s.file);
+				PrintStream out = new PrintStream(new FileOutputStream("/dev/null"), true)) {
+			String SKU;
+			while ((SKU = in.readLine()) != null) {
+				Product product = s.productDatabase.findProduct(SKU);
+				if (product == null) {
+					out.println("Error: No such product in the database. Please try again.\n");
+					continue;
+				}
+				trolley.addItem(product);
+				out.printf("Running total: £%s\n", Money.format(runningTotal.getRunningTotal()));
+			}
+		}
+		return trolley;
+	}
+
+	@Benchmark
+	public ShoppingTrolley replayPipelined(Scans s, Batches b) throws IOException, InvalidItemInTrolley {
+		ShoppingTrolley trolley = new ShoppingTrolley();
+		RunningTotalCalculator runningTotal = new RunningTotalCalculator(trolley, s.productDatabase);
+		ScanPipeline pipeline = new ScanPipeline(s.productDatabase, runningTotal, b.batchSize);
+		try (BufferedReader in = Files.newBufferedReader(s.file);
+				Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("/dev/null")))) {
+			pipeline.replay(in, out);
+		}
+		if (pipeline.getScanCount() != SCANS)
+			throw new IllegalStateException("Scans lost");
+		return trolley;
+	}
+}
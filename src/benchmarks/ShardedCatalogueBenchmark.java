@@ -0,0 +1,117 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import businessLogic.CatalogueReplica;
+import businessLogic.ShardedCatalogue;
+import data.Product;
+import metrics.LatencyHistogram;
+
+/**
+ * Measures keeping till replicas of a sharded catalogue of 200k products up to date: the time to load a replica from
+ * snapshots of the shards, then the rate of price changes made on the shards while replicas follow them. The rate at
+ * which each replica applied the changes and its lag, from a change being made to it being applied, are printed at the
+ * end. The number of shards and replicas can be changed with -p shards=... and -p replicas=...
+ * @author Daniele Palazzo
+ *
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ShardedCatalogueBenchmark {
+
+	private static final int PRODUCTS = 200_000;
+
+	@State(Scope.Benchmark)
+	public static class Primary {
+		@Param("4")
+		int shards;
+
+		ShardedCatalogue primary;
+		Product[] products;
+
+		@Setup
+		public void setUp() {
+			primary = new ShardedCatalogue(shards);
+			products = new Product[PRODUCTS];
+			for (int i = 0; i < PRODUCTS; i++) {
+				products[i] = new Product("Product " + i, 10 + i % 990, "SKU" + i);
+				primary.addProduct(products[i].getSKU(), products[i]);
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Followed {
+		@Param("2")
+		int replicas;
+
+		Primary p;
+		CatalogueReplica[] replicaOf;
+		final Random random = new Random(1);
+		long changes;
+		long start;
+
+		@Setup
+		public void setUp(Primary p) {
+			this.p = p;
+			replicaOf = new CatalogueReplica[replicas];
+			for (int r = 0; r < replicas; r++) {
+				replicaOf[r] = new CatalogueReplica(p.primary);
+				replicaOf[r].start();
+			}
+			start = System.nanoTime();
+		}
+
+		@TearDown
+		public void tearDown() throws InterruptedException {
+			for (CatalogueReplica replica : replicaOf) {
+				while (replica.getAppliedCount() < changes && replica.getReloadCount() == 0)
+					Thread.sleep(1);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			for (int r = 0; r < replicas; r++) {
+				CatalogueReplica replica = replicaOf[r];
+				LatencyHistogram.Snapshot lag = replica.getLag();
+				System.out.printf("replica %d: %,.0f changes/s, lag p50 %.1f us, p99 %.1f us, max %.1f ms, %d reloads\n",
+						r, replica.getAppliedCount() / seconds, lag.getValueAtPercentile(50) / 1e3,
+						lag.getValueAtPercentile(99) / 1e3, lag.getMax() / 1e6, replica.getReloadCount());
+				replica.close();
+			}
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public CatalogueReplica loadReplica(Primary p) {
+		CatalogueReplica replica = new CatalogueReplica(p.primary);
+		replica.close();
+		return replica;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public void changeShards(Followed f) {
+		Product p = f.p.products[f.random.nextInt(PRODUCTS)];
+		f.p.primary.addProduct(p.getSKU(), new Product(p.getName(), 10 + f.random.nextInt(990), p.getSKU()));
+		++f.changes;
+	}
+}
@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import data.CompactShoppingTrolley;
+import data.Product;
+import data.ShoppingTrolley;
+
+/**
+ * Replays 10M scans (per scan) into a ShoppingTrolley and into a CompactShoppingTrolley, a basket of 100 scans at a
+ * time. A trolley is reused for every basket, as a checkout lane would. Run with -prof gc for the bytes allocated per
+ * scan (gc.alloc.rate.norm) and the garbage collections of each.
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrolleyAllocationBenchmark {
+
+	private static final int SCANS = 10_000_000;
+	private static final int BASKET_SIZE = 100;
+	private static final int PRODUCTS = 5_000;
+
+	private Product[] products;
+	private int[] scans;
+	private int next;
+	private ShoppingTrolley trolley;
+	private CompactShoppingTrolley compactTrolley;
+
+	@Setup
+	public void setUp() {
+		products = new Product[PRODUCTS];
+		for (int i = 0; i < PRODUCTS; i++)
+			products[i] = new Product("Product " + i, 1 + i % 500, "SKU" + i);
+
+		// the scans to replay, skewed towards popular products
+		Random random = new Random(11);
+		scans = new int[SCANS];
+		for (int i = 0; i < SCANS; i++)
+			scans[i] = (int) (PRODUCTS * Math.pow(random.nextDouble(), 3));
+		trolley = new ShoppingTrolley();
+		compactTrolley = new CompactShoppingTrolley(BASKET_SIZE);
+	}
+
+	// the next basket of scans, then the number of items in it
+	private long basket(ShoppingTrolley basket) {
+		int from = next;
+		for (int i = from; i < from + BASKET_SIZE; i++)
+			basket.addItem(products[scans[i]]);
+		next = (from + BASKET_SIZE) % SCANS;
+		long[] count = { 0 };
+		basket.forEachLine((p, quantity) -> count[0] += quantity);
+		basket.clear();
+		return count[0];
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BASKET_SIZE)
+	public long shoppingTrolley() {
+		return basket(trolley);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BASKET_SIZE)
+	public long compactShoppingTrolley() {
+		return basket(compactTrolley);
+	}
+}
@@ -0,0 +1,165 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import businessLogic.ProductDAO;
+import businessLogic.TrolleySession;
+import businessLogic.TrolleySessionStore;
+import data.Product;
+import data.ShoppingTrolley;
+
+/**
+ * Measures the compact encoding of trolleys (per line, the bytes per line are printed when it is set up), the time to
+ * log the scans of 2,000 concurrent sessions, and the time to resume all of them
+ * @author Daniele Palazzo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrolleySessionBenchmark {
+
+	private static final int PRODUCTS = 100_000;
+	private static final int LINES = 50;
+	private static final int SESSIONS = 2_000;
+	private static final int SCANS = 50;
+
+	@State(Scope.Benchmark)
+	public static class Store {
+		ProductDAO productDatabase;
+		Product[] products;
+		Path directory;
+		TrolleySessionStore store;
+
+		@Setup
+		public void setUp() throws IOException {
+			productDatabase = new ProductDAO(true);
+			products = new Product[PRODUCTS];
+			for (int i = 0; i < PRODUCTS; i++) {
+				products[i] = new Product("Product " + i, 10 + i % 990, "SKU" + i);
+				productDatabase.addProduct(products[i].getSKU(), products[i]);
+			}
+			directory = Files.createTempDirectory("sessions");
+			store = new TrolleySessionStore(directory);
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			store.close();
+			CatalogueJournalBenchmark.deleteDirectory(directory);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Encoded {
+		ShoppingTrolley trolley;
+		byte[] encoded;
+
+		@Setup
+		public void setUp(Store s) throws IOException {
+			trolley = new ShoppingTrolley();
+			for (int l = 0; l < LINES; l++)
+				trolley.addItem(s.products[(l * 7919) % PRODUCTS], 1 + l % 3);
+			encoded = s.store.encode(trolley);
+			System.out.printf("encoded trolley: %.2f bytes/line\n", (double) encoded.length / LINES);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Sessions {
+		ShoppingTrolley[] trolleys;
+		TrolleySession[] sessions;
+
+		// the sessions are opened anew for each run of 'logScans()', and left logged for 'resumeSessions()'
+		@Setup(Level.Invocation)
+		public void open(Store s) throws IOException {
+			trolleys = new ShoppingTrolley[SESSIONS];
+			sessions = new TrolleySession[SESSIONS];
+			for (int i = 0; i < SESSIONS; i++) {
+				trolleys[i] = new ShoppingTrolley();
+				sessions[i] = s.store.open("session-" + i, trolleys[i]);
+			}
+		}
+
+		@TearDown(Level.Invocation)
+		public void close() throws IOException {
+			for (TrolleySession session : sessions)
+				session.close();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Logged {
+		@Setup
+		public void setUp(Store s) throws IOException {
+			Sessions sessions = new Sessions();
+			sessions.open(s);
+			scan(s, sessions);
+			sessions.close();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public byte[] encodeTrolley(Store s, Encoded e) throws IOException {
+		return s.store.encode(e.trolley);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public ShoppingTrolley decodeTrolley(Store s, Encoded e) throws IOException {
+		ShoppingTrolley decoded = new ShoppingTrolley();
+		s.store.decode(e.encoded, s.productDatabase, decoded);
+		return decoded;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public long logScans(Store s, Sessions sessions) throws IOException {
+		return scan(s, sessions);
+	}
+
+	// every session scans in turn, as customers do at the lanes of a busy store, then the bytes logged by all of them
+	private static long scan(Store s, Sessions sessions) throws IOException {
+		for (int i = 0; i < SCANS; i++) {
+			for (int session = 0; session < SESSIONS; session++)
+				sessions.trolleys[session].addItem(s.products[(session * 31 + i * 7) % PRODUCTS]);
+		}
+		long bytes = 0;
+		for (TrolleySession session : sessions.sessions)
+			bytes += session.getBytesWritten();
+		return bytes;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public void resumeSessions(Store s, Logged l) throws IOException {
+		for (int session = 0; session < SESSIONS; session++)
+			s.store.resume("session-" + session, s.productDatabase, new ShoppingTrolley()).close();
+	}
+}
@@ -0,0 +1,900 @@
+package businessLogic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import data.Money;
+import data.Offer;
+import data.Product;
+import data.Promotion;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import metrics.CheckoutMetrics;
+import metrics.CheckoutMetrics.Event;
+import metrics.CheckoutMetrics.Operation;
+
+/**
+ * A pricing engine for trolleys with promotions that compete for the same items: it finds the cheapest way of
+ * applying the offers attached to products in the catalogue together with a set of Promotions (bundles, mix and
+ * match, "buy N get M free", percentage off), each item being used by at most one of them.
+ * <p>
+ * Products linked by the promotions they share form independent groups, priced one at a time: a single product with
+ * its offers by dynamic programming over its quantity, several products by a depth-first search over the items left.
+ * The search always takes the first item left either at its unit price or in a promotion, and looks for a price below
+ * the one found greedily, by applying the promotion saving the most until none saves anything. It skips promotions
+ * that can't beat the best price found from a lower bound of each item, raised as far as the promotions allow, and
+ * remembers the best price (or a price it can't beat) of every set of items left, keyed by their counts.
+ * <p>
+ * Groups of overlapping promotions have many more ways of being priced than items, so a group of more than 64 items,
+ * or one left when the trolley has taken its steps of search (see the constructor), is priced greedily instead, and
+ * 'isOptimal()' is false.
+ * <p>
+ * An optimiser keeps the working state of the trolley being priced, so each lane should have its own.
+ * @author Daniele Palazzo
+ *
+ */
+public final class BasketOptimiser {
+
+	/**
+	 * The default number of steps of search per trolley, which keeps it to about a millisecond
+	 */
+	public static final int MAX_SEARCH_STEPS = 20_000;
+
+	private static final int MAX_SEARCH_ITEMS = 64; // larger groups of overlapping deals have too many ways to search
+	private static final int MAX_FILLINGS = 1_000; // of a cheapest-free deal, when raising the lower bounds
+	private static final long CANT_FILL = Long.MIN_VALUE;
+
+	// a promotion, or the offer of a product, that can be applied to the lines of the trolley being priced
+	private static final class Deal {
+		final String name;
+		final boolean cheapestFree;
+		final long price;
+		final int freeItems;
+		final int[][] slotLines; // the lines each slot can be filled from
+		final int[] slotSizes;
+		final int items;
+		int index; // in 'deals'
+
+		Deal(String name, boolean cheapestFree, long price, int freeItems, int[][] slotLines, int[] slotSizes) {
+			this.name = name;
+			this.cheapestFree = cheapestFree;
+			this.price = price;
+			this.freeItems = freeItems;
+			this.slotLines = slotLines;
+			this.slotSizes = slotSizes;
+			int items = 0;
+			for (int size : slotSizes)
+				items += size;
+			this.items = items;
+		}
+
+		// the price of the given items, their unit prices are sorted if needed
+		long priceOf(long[] unitPrices, int count) {
+			if (!cheapestFree)
+				return price;
+			Arrays.sort(unitPrices, 0, count);
+			long total = Money.ZERO;
+			for (int i = freeItems; i < count; i++)
+				total = Money.add(total, unitPrices[i]);
+			return total;
+		}
+	}
+
+	// the best way found so far of pricing the items left at a depth of the search
+	private static final class Choice {
+		long price;
+		int next; // the entry of the items left after this choice
+		Deal deal; // or null for the first item at its unit price
+		long[] chosen = new long[8]; // the unit prices of the items a deal is being filled with
+		long[] sorted = new long[8];
+	}
+
+	/**
+	 * The best way of pricing each set of items left that has been searched. A set is keyed by the number of items left
+	 * on each line of the group, packed in a few longs, and the table is open-addressed so that looking one up creates
+	 * nothing. Each entry also holds the deal chosen for the set and the entry of the set left after it, or BOUND if no
+	 * price below its limit was found, the limit being kept as its price.
+	 */
+	private static final class StateTable {
+		static final int EMPTY = -1; // the entry of the set with no items left, which is never stored
+		static final int BOUND = -2; // the next entry of a set whose price is only a bound it can't be priced below
+
+		private int words; // per key
+		private long[] keys = new long[64];
+		private long[] prices = new long[64];
+		private Deal[] choices = new Deal[64]; // null for the first item at its unit price
+		private int[] nexts = new int[64];
+		private int[] entrySlots = new int[64];
+		private int size;
+		private int[] slots = new int[128]; // entry + 1, or 0 if free
+		private int mask = 127;
+
+		// empties the table for keys of the given number of words
+		void clear(int words) {
+			for (int e = 0; e < size; e++)
+				slots[entrySlots[e]] = 0;
+			size = 0;
+			this.words = words;
+			if (keys.length < prices.length * words)
+				keys = new long[prices.length * words];
+		}
+
+		int find(long[] key) {
+			for (int slot = hash(key, 0) & mask;; slot = (slot + 1) & mask) {
+				int entry = slots[slot] - 1;
+				if (entry < 0 || sameKey(entry, key))
+					return entry;
+			}
+		}
+
+		int add(long[] key, long price, Deal choice, int next) {
+			if (size == prices.length)
+				grow();
+			if (2 * (size + 1) > slots.length)
+				rehash(2 * slots.length);
+			int entry = size++;
+			System.arraycopy(key, 0, keys, entry * words, words);
+			prices[entry] = price;
+			choices[entry] = choice;
+			nexts[entry] = next;
+			int slot = hash(key, 0) & mask;
+			while (slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			slots[slot] = entry + 1;
+			entrySlots[entry] = slot;
+			return entry;
+		}
+
+		void set(int entry, long price, Deal choice, int next) {
+			prices[entry] = price;
+			choices[entry] = choice;
+			nexts[entry] = next;
+		}
+
+		long price(int entry) {
+			return prices[entry];
+		}
+
+		Deal choice(int entry) {
+			return choices[entry];
+		}
+
+		int next(int entry) {
+			return nexts[entry];
+		}
+
+		// a field of the key of an entry, 0 for the empty set
+		int field(int entry, int word, int shift, long fieldMask) {
+			return (entry == EMPTY) ? 0 : (int) (keys[entry * words + word] >>> shift & fieldMask);
+		}
+
+		private boolean sameKey(int entry, long[] key) {
+			for (int w = 0, k = entry * words; w < words; w++, k++) {
+				if (keys[k] != key[w])
+					return false;
+			}
+			return true;
+		}
+
+		private int hash(long[] key, int offset) {
+			long h = 0;
+			for (int w = 0; w < words; w++)
+				h = (h ^ key[offset + w]) * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+
+		private void grow() {
+			int capacity = 2 * prices.length;
+			keys = Arrays.copyOf(keys, capacity * words);
+			prices = Arrays.copyOf(prices, capacity);
+			choices = Arrays.copyOf(choices, capacity);
+			nexts = Arrays.copyOf(nexts, capacity);
+			entrySlots = Arrays.copyOf(entrySlots, capacity);
+		}
+
+		private void rehash(int capacity) {
+			slots = new int[capacity];
+			mask = capacity - 1;
+			for (int entry = 0; entry < size; entry++) {
+				int slot = hash(keys, entry * words) & mask;
+				while (slots[slot] != 0)
+					slot = (slot + 1) & mask;
+				slots[slot] = entry + 1;
+				entrySlots[entry] = slot;
+			}
+		}
+	}
+
+	private final Catalogue productDatabase;
+	private final int maxSearchSteps;
+	private final HashMap<String, List<Promotion>> promotionsBySKU = new HashMap<>();
+
+	// the trolley being priced, by line
+	private int lineCount;
+	private Product[] products = new Product[16];
+	private int[] quantities = new int[16];
+	private Offer[] offers = new Offer[16];
+	private long[] unitPrices = new long[16];
+	private long[] discountedPrices = new long[16]; // with the best percentage off, if any
+	private Promotion[] percentages = new Promotion[16];
+	private int[] dealItems = new int[16]; // items used by deals
+	private int[] groups = new int[16]; // union-find of lines sharing deals
+	private final HashMap<String, Integer> linesBySKU = new HashMap<>();
+	private final List<Deal> deals = new ArrayList<>();
+	private final List<List<Deal>> dealsByLine = new ArrayList<>();
+
+	// the search of a group of lines
+	private int[] left = new int[16];
+	private int[] words = new int[16]; // where the number of items left on each line is packed in 'state'
+	private int[] shifts = new int[16];
+	private long[] lowerBounds = new long[16];
+	private long[] state = new long[1];
+	private int itemsLeft;
+	private long boundLeft; // the sum of the lower bounds of the items left
+	private long[] slacks = new long[16]; // by deal, see 'raiseLowerBounds()'
+	private int fillings;
+	private final StateTable best = new StateTable();
+	private int lastEntry; // the entry of the items left, set by 'search()'
+	private Choice[] choices = new Choice[0]; // by depth of the search
+	private int depth;
+	private int maxDealItems;
+	private int steps;
+
+	private final Map<String, Integer> appliedPromotions = new LinkedHashMap<>();
+	private boolean optimal;
+
+	/**
+	 * @param productDatabase The product database to get the offers attached to products from (each trolley is priced
+	 *                        against a single snapshot of it)
+	 * @param promotions The promotions to apply on top of the offers
+	 */
+	public BasketOptimiser(Catalogue productDatabase, Collection<Promotion> promotions) {
+		this(productDatabase, promotions, MAX_SEARCH_STEPS);
+	}
+
+	/**
+	 * @param productDatabase The product database to get the offers attached to products from (each trolley is priced
+	 *                        against a single snapshot of it)
+	 * @param promotions The promotions to apply on top of the offers
+	 * @param maxSearchSteps How many steps of search a trolley can take before the groups left in it are priced
+	 *                       greedily (0 to price every group of several products greedily)
+	 */
+	public BasketOptimiser(Catalogue productDatabase, Collection<Promotion> promotions, int maxSearchSteps) {
+		if (maxSearchSteps < 0)
+			throw new IllegalArgumentException("Invalid number of search steps: " + maxSearchSteps);
+		this.productDatabase = productDatabase;
+		this.maxSearchSteps = maxSearchSteps;
+		for (Promotion promotion : promotions) {
+			for (int slot = 0; slot < promotion.getSlotCount(); slot++) {
+				for (String SKU : promotion.getSlotSKUs(slot)) {
+					List<Promotion> forSKU = promotionsBySKU.computeIfAbsent(SKU, s -> new ArrayList<>(2));
+					if (!forSKU.contains(promotion))
+						forSKU.add(promotion);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate the lowest total price of a trolley
+	 * @param trolley The trolley to price
+	 * @return The total for the trolley in pence
+	 * @throws InvalidItemInTrolley Thrown if the trolley contains an item which is not in the database
+	 */
+	public long calculateTrolleyTotal(ShoppingTrolley trolley) throws InvalidItemInTrolley {
+		long start = CheckoutMetrics.start();
+		Catalogue pricingRules = productDatabase.getSnapshot(); // same prices for the whole trolley
+		appliedPromotions.clear();
+		optimal = true;
+		steps = 0;
+		readLines(trolley, pricingRules);
+		findDeals();
+
+		// chain the lines of each group of lines linked by deals, in line order
+		int[] firstOfGroup = new int[lineCount];
+		int[] nextInGroup = new int[lineCount];
+		Arrays.fill(firstOfGroup, -1);
+		for (int line = lineCount - 1; line >= 0; line--) {
+			nextInGroup[line] = firstOfGroup[group(line)];
+			firstOfGroup[group(line)] = line;
+		}
+
+		long total = Money.ZERO;
+		for (int line = 0; line < lineCount; line++) {
+			if (dealsByLine.get(line).isEmpty()) {
+				total = Money.add(total, Money.multiply(discountedPrices[line], quantities[line]));
+			} else if (firstOfGroup[group(line)] == line) {
+				int size = 0;
+				for (int member = line; member >= 0; member = nextInGroup[member])
+					++size;
+				int[] members = new int[size];
+				for (int member = line, i = 0; member >= 0; member = nextInGroup[member])
+					members[i++] = member;
+				total = Money.add(total, priceGroup(members));
+			}
+		}
+
+		for (int line = 0; line < lineCount; line++) {
+			if (percentages[line] != null && quantities[line] > dealItems[line])
+				appliedPromotions.merge(percentages[line].getName(), quantities[line] - dealItems[line], Integer::sum);
+		}
+		CheckoutMetrics.record(Operation.CALCULATE_TROLLEY_TOTAL, start);
+		return total;
+	}
+
+	/**
+	 * @return For the last trolley priced, how many times each offer and promotion was applied (items discounted for a
+	 *         percentage off), by name
+	 */
+	public Map<String, Integer> getAppliedPromotions() {
+		return Collections.unmodifiableMap(appliedPromotions);
+	}
+
+	/**
+	 * @return False if part of the last trolley priced was too large to search, or the steps of search ran out, and was
+	 *         priced greedily
+	 */
+	public boolean isOptimal() {
+		return optimal;
+	}
+
+	private void readLines(ShoppingTrolley trolley, Catalogue pricingRules) throws InvalidItemInTrolley {
+		lineCount = 0;
+		linesBySKU.clear();
+		trolley.forEachLine((product, quantity) -> {
+			Offer offer = pricingRules.findProductOffer(product.getSKU());
+			if (offer == Catalogue.PRODUCT_NOT_FOUND) {
+				CheckoutMetrics.count(Event.INVALID_ITEM_IN_TROLLEY);
+				throw new InvalidItemInTrolley();
+			}
+			if (lineCount == products.length)
+				grow();
+			int line = lineCount++;
+			products[line] = product;
+			quantities[line] = quantity;
+			offers[line] = offer;
+			unitPrices[line] = product.getPrice();
+			discountedPrices[line] = product.getPrice();
+			percentages[line] = null;
+			dealItems[line] = 0;
+			groups[line] = line;
+			linesBySKU.put(product.getSKU(), line);
+		});
+	}
+
+	private void findDeals() {
+		deals.clear();
+		dealsByLine.clear();
+		IdentityHashMap<Promotion, Boolean> seen = new IdentityHashMap<>();
+		for (int line = 0; line < lineCount; line++) {
+			dealsByLine.add(new ArrayList<>(2));
+			Offer offer = offers[line];
+			if (offer != null && offer.getGroupNumber() > 0)
+				deals.add(new Deal(offer.getName(), false, offer.getPrice(), 0, new int[][] { { line } },
+						new int[] { offer.getGroupNumber() }));
+
+			List<Promotion> promotions = promotionsBySKU.get(products[line].getSKU());
+			for (int i = 0; promotions != null && i < promotions.size(); i++) {
+				Promotion promotion = promotions.get(i);
+				if (promotion.getKind() == Promotion.Kind.PERCENTAGE_OFF) {
+					long discounted = promotion.discounted(unitPrices[line]);
+					if (discounted < discountedPrices[line]) {
+						discountedPrices[line] = discounted;
+						percentages[line] = promotion;
+					}
+				} else if (seen.put(promotion, Boolean.TRUE) == null) {
+					addDeal(promotion);
+				}
+			}
+		}
+
+		maxDealItems = 0;
+		for (int d = 0; d < deals.size(); d++) {
+			Deal deal = deals.get(d);
+			deal.index = d;
+			maxDealItems = Math.max(maxDealItems, deal.items);
+			int first = deal.slotLines[0][0];
+			for (int[] slot : deal.slotLines) {
+				for (int line : slot) {
+					List<Deal> forLine = dealsByLine.get(line);
+					if (forLine.isEmpty() || forLine.get(forLine.size() - 1) != deal)
+						forLine.add(deal);
+					groups[group(line)] = group(first);
+				}
+			}
+		}
+	}
+
+	// add a promotion if the trolley has enough items to fill its slots
+	private void addDeal(Promotion promotion) {
+		int[][] slotLines = new int[promotion.getSlotCount()][];
+		int[] slotSizes = new int[promotion.getSlotCount()];
+		for (int slot = 0; slot < slotLines.length; slot++) {
+			String[] SKUs = promotion.getSlotSKUs(slot);
+			int[] lines = new int[SKUs.length];
+			int count = 0;
+			int items = 0;
+			for (String SKU : SKUs) {
+				Integer line = linesBySKU.get(SKU);
+				if (line != null) {
+					lines[count++] = line;
+					items += quantities[line];
+				}
+			}
+			slotSizes[slot] = promotion.getSlotSize(slot);
+			if (items < slotSizes[slot])
+				return;
+			slotLines[slot] = Arrays.copyOf(lines, count);
+			Arrays.sort(slotLines[slot]);
+		}
+		boolean cheapestFree = promotion.getKind() == Promotion.Kind.CHEAPEST_FREE;
+		deals.add(new Deal(promotion.getName(), cheapestFree, promotion.getPrice(), promotion.getFreeItems(), slotLines,
+				slotSizes));
+	}
+
+	// the deals of a group of lines, each listed by the first line of its first slot
+	private List<Deal> dealsOf(int[] lines) {
+		List<Deal> groupDeals = new ArrayList<>();
+		for (int line : lines) {
+			for (Deal deal : dealsByLine.get(line)) {
+				if (deal.slotLines[0][0] == line)
+					groupDeals.add(deal);
+			}
+		}
+		return groupDeals;
+	}
+
+	private int group(int line) {
+		while (groups[line] != line) {
+			groups[line] = groups[groups[line]];
+			line = groups[line];
+		}
+		return line;
+	}
+
+	private long priceGroup(int[] lines) {
+		if (lines.length == 1)
+			return priceLine(lines[0]);
+
+		// the number of items left on each line is packed in as few longs as hold them
+		long items = 0;
+		int word = 0;
+		int shift = 0;
+		for (int line : lines) {
+			items += quantities[line];
+			int bits = bitsOf(quantities[line]);
+			if (shift + bits > Long.SIZE) {
+				++word;
+				shift = 0;
+			}
+			words[line] = word;
+			shifts[line] = shift;
+			shift += bits;
+		}
+		if (items > MAX_SEARCH_ITEMS || steps >= maxSearchSteps) {
+			optimal = false;
+			return priceGreedily(lines, true);
+		}
+		long greedyTotal = priceGreedily(lines, false);
+
+		if (state.length <= word)
+			state = new long[word + 1];
+		Arrays.fill(state, 0);
+		for (int line : lines) {
+			left[line] = quantities[line];
+			state[words[line]] |= (long) quantities[line] << shifts[line];
+			lowerBounds[line] = discountedPrices[line];
+			for (Deal deal : dealsByLine.get(line)) {
+				// no deal lets an item cost less than this, whatever it is used with
+				long share = deal.cheapestFree ? unitPrices[line] * (deal.items - deal.freeItems) / deal.items
+						: deal.price / deal.items;
+				lowerBounds[line] = Math.min(lowerBounds[line], share);
+			}
+		}
+		raiseLowerBounds(lines);
+		itemsLeft = (int) items;
+		boundLeft = 0;
+		for (int line : lines)
+			boundLeft += lowerBounds[line] * quantities[line];
+
+		best.clear(word + 1);
+		depth = 0;
+		long total = search(lines, greedyTotal); // only a lower price is looked for
+		if (steps > maxSearchSteps)
+			optimal = false;
+		if (steps > maxSearchSteps || total >= greedyTotal)
+			return priceGreedily(lines, true);
+
+		for (int entry = lastEntry; entry != StateTable.EMPTY; entry = best.next(entry)) {
+			Deal deal = best.choice(entry);
+			if (deal != null) {
+				appliedPromotions.merge(deal.name, 1, Integer::sum);
+				for (int line : lines)
+					dealItems[line] += itemsLeft(entry, line) - itemsLeft(best.next(entry), line);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Raise the lower bounds of the lines of a group, dearest first, as far as their deals let them: the bounds of the
+	 * items a deal is filled with must never add up to more than the price of the deal. The bounds of any items left
+	 * then still add up to no more than their lowest price (they are a feasible solution of the dual of pricing the
+	 * group as a linear program), but skip many more of the deals that can't beat the best price found.
+	 */
+	private void raiseLowerBounds(int[] lines) {
+		if (slacks.length < deals.size())
+			slacks = new long[deals.size()];
+		for (Deal deal : dealsOf(lines))
+			slacks[deal.index] = slackOf(deal);
+
+		Integer[] dearestFirst = new Integer[lines.length];
+		for (int i = 0; i < lines.length; i++)
+			dearestFirst[i] = lines[i];
+		Arrays.sort(dearestFirst, (a, b) -> Long.compare(discountedPrices[b], discountedPrices[a]));
+		for (int line : dearestFirst) {
+			long raise = discountedPrices[line] - lowerBounds[line];
+			for (Deal deal : dealsByLine.get(line))
+				raise = Math.min(raise, slacks[deal.index] / itemsOfLineIn(deal, line));
+			if (raise <= 0)
+				continue;
+			lowerBounds[line] += raise;
+			for (Deal deal : dealsByLine.get(line))
+				slacks[deal.index] -= raise * itemsOfLineIn(deal, line);
+		}
+	}
+
+	// the most items of a line a deal can be filled with
+	private int itemsOfLineIn(Deal deal, int line) {
+		int items = 0;
+		for (int slot = 0; slot < deal.slotLines.length; slot++) {
+			if (Arrays.binarySearch(deal.slotLines[slot], line) >= 0)
+				items += deal.slotSizes[slot];
+		}
+		return Math.min(items, quantities[line]);
+	}
+
+	/**
+	 * How much less than its price the lower bounds of the items a deal can be filled with add up to, at least: from
+	 * the highest bounds of each slot for a deal at a fixed price, or from every way of filling it for a cheapest-free
+	 * deal (0 if there are too many)
+	 */
+	private long slackOf(Deal deal) {
+		if (deal.cheapestFree) {
+			fillings = 0;
+			long slack = cheapestFreeSlack(deal, 0, 0, 0, 0, new long[deal.items], new long[deal.items], 0);
+			return (fillings > MAX_FILLINGS) ? 0 : slack;
+		}
+		long bounds = 0;
+		for (int slot = 0; slot < deal.slotLines.length; slot++) {
+			int[] slotLines = deal.slotLines[slot];
+			int[] used = new int[slotLines.length];
+			for (int filled = 0; filled < deal.slotSizes[slot]; filled++) {
+				int highest = -1;
+				for (int i = 0; i < slotLines.length; i++) {
+					if (used[i] < quantities[slotLines[i]]
+							&& (highest < 0 || lowerBounds[slotLines[i]] > lowerBounds[slotLines[highest]]))
+						highest = i;
+				}
+				if (highest < 0)
+					return 0;
+				++used[highest];
+				bounds += lowerBounds[slotLines[highest]];
+			}
+		}
+		return deal.price - bounds;
+	}
+
+	private long cheapestFreeSlack(Deal deal, int slot, int filled, int from, int items, long[] prices,
+			long[] sorted, long bounds) {
+		if (slot == deal.slotLines.length) {
+			++fillings;
+			System.arraycopy(prices, 0, sorted, 0, items);
+			return deal.priceOf(sorted, items) - bounds;
+		}
+		if (filled == deal.slotSizes[slot])
+			return cheapestFreeSlack(deal, slot + 1, 0, 0, items, prices, sorted, bounds);
+
+		long slack = Long.MAX_VALUE;
+		int[] slotLines = deal.slotLines[slot];
+		for (int i = from; i < slotLines.length && fillings <= MAX_FILLINGS; i++) {
+			int line = slotLines[i];
+			if (left[line] == 0)
+				continue;
+			--left[line];
+			prices[items] = unitPrices[line];
+			slack = Math.min(slack, cheapestFreeSlack(deal, slot, filled + 1, i, items + 1, prices, sorted,
+					bounds + lowerBounds[line]));
+			++left[line];
+		}
+		return slack;
+	}
+
+	private static int bitsOf(int quantity) {
+		return Integer.SIZE - Integer.numberOfLeadingZeros(quantity);
+	}
+
+	private int itemsLeft(int entry, int line) {
+		return best.field(entry, words[line], shifts[line], (1L << bitsOf(quantities[line])) - 1);
+	}
+
+	// take an item of a line out of the items left, or put it back
+	private void take(int line) {
+		--left[line];
+		state[words[line]] -= 1L << shifts[line];
+		--itemsLeft;
+		boundLeft -= lowerBounds[line];
+	}
+
+	private void putBack(int line) {
+		++left[line];
+		state[words[line]] += 1L << shifts[line];
+		++itemsLeft;
+		boundLeft += lowerBounds[line];
+	}
+
+	/**
+	 * The lowest price of the items left in a group, as held by 'left' and 'state', if it is below a limit: 'lastEntry'
+	 * is then set to their entry in the table of the best prices. Otherwise a price no lower than the limit that they
+	 * can't be priced below.
+	 */
+	private long search(int[] lines, long limit) {
+		if (itemsLeft == 0) {
+			lastEntry = StateTable.EMPTY;
+			return Money.ZERO;
+		}
+		int entry = best.find(state);
+		if (entry >= 0 && (best.next(entry) != StateTable.BOUND || best.price(entry) >= limit)) {
+			lastEntry = entry;
+			return best.price(entry);
+		}
+		if (boundLeft >= limit)
+			return boundLeft;
+		if (++steps > maxSearchSteps)
+			return limit; // abandoned, the group is priced greedily
+
+		int first = 0;
+		while (left[lines[first]] == 0)
+			++first;
+		first = lines[first];
+
+		// either the first item is in one of its deals...
+		Choice choice = choiceAt(depth++);
+		choice.price = limit;
+		choice.next = StateTable.BOUND;
+		choice.deal = null;
+		for (Deal deal : dealsByLine.get(first)) {
+			if (steps > maxSearchSteps)
+				break;
+			fill(lines, deal, first, choice, 0, 0, 0, 0, false, boundLeft);
+		}
+
+		// ...or it is paid at its unit price
+		long price = discountedPrices[first];
+		if (price + boundLeft - lowerBounds[first] < choice.price) {
+			take(first);
+			price = Money.add(price, search(lines, choice.price - price));
+			int next = lastEntry;
+			putBack(first);
+			if (price < choice.price) {
+				choice.price = price;
+				choice.next = next;
+				choice.deal = null;
+			}
+		}
+		--depth;
+		if (entry >= 0)
+			best.set(entry, choice.price, choice.deal, choice.next);
+		else
+			entry = best.add(state, choice.price, choice.deal, choice.next);
+		lastEntry = entry;
+		return choice.price;
+	}
+
+	private Choice choiceAt(int depth) {
+		if (depth == choices.length) {
+			choices = Arrays.copyOf(choices, Math.max(16, 2 * depth));
+			for (int d = depth; d < choices.length; d++)
+				choices[d] = new Choice();
+		}
+		Choice choice = choices[depth];
+		if (choice.chosen.length < maxDealItems) {
+			choice.chosen = new long[maxDealItems];
+			choice.sorted = new long[maxDealItems];
+		}
+		return choice;
+	}
+
+	/**
+	 * Try every way of filling the slots of a deal with the items left that uses the first item, taking the items of a
+	 * slot in line order so that each way is tried once
+	 */
+	private void fill(int[] lines, Deal deal, int first, Choice choice, int slot, int filled, int from, int items,
+			boolean usesFirst, long lowerBound) {
+		if (slot == deal.slotLines.length) {
+			if (!usesFirst || ++steps > maxSearchSteps)
+				return;
+			long[] prices = choice.chosen;
+			if (deal.cheapestFree) { // sorted apart, the items chosen are still being replaced one by one
+				System.arraycopy(prices, 0, choice.sorted, 0, items);
+				prices = choice.sorted;
+			}
+			long price = deal.priceOf(prices, items);
+			if (price + lowerBound >= choice.price) // can't be better than the best so far
+				return;
+			price = Money.add(price, search(lines, choice.price - price));
+			if (price < choice.price) {
+				choice.price = price;
+				choice.next = lastEntry;
+				choice.deal = deal;
+			}
+			return;
+		}
+		if (filled == deal.slotSizes[slot]) {
+			if (!usesFirst && !canStillUse(deal, slot + 1, first))
+				return;
+			fill(lines, deal, first, choice, slot + 1, 0, 0, items, usesFirst, lowerBound);
+			return;
+		}
+
+		int[] slotLines = deal.slotLines[slot];
+		for (int i = from; i < slotLines.length && steps <= maxSearchSteps; i++) {
+			int line = slotLines[i];
+			if (left[line] == 0)
+				continue;
+			take(line);
+			choice.chosen[items] = unitPrices[line];
+			fill(lines, deal, first, choice, slot, filled + 1, i, items + 1, usesFirst || line == first,
+					lowerBound - lowerBounds[line]);
+			putBack(line);
+		}
+	}
+
+	private static boolean canStillUse(Deal deal, int fromSlot, int line) {
+		for (int slot = fromSlot; slot < deal.slotLines.length; slot++) {
+			if (Arrays.binarySearch(deal.slotLines[slot], line) >= 0)
+				return true;
+		}
+		return false;
+	}
+
+	// a single line with its own deals, by dynamic programming over the quantity
+	private long priceLine(int line) {
+		List<Deal> lineDeals = dealsByLine.get(line);
+		int quantity = quantities[line];
+		long[] prices = new long[quantity + 1];
+		Deal[] choices = new Deal[quantity + 1];
+		for (int q = 1; q <= quantity; q++) {
+			prices[q] = Money.add(prices[q - 1], discountedPrices[line]);
+			for (Deal deal : lineDeals) {
+				if (deal.items > q)
+					continue;
+				long price = deal.cheapestFree ? Money.multiply(unitPrices[line], deal.items - deal.freeItems)
+						: deal.price;
+				price = Money.add(prices[q - deal.items], price);
+				if (price < prices[q]) {
+					prices[q] = price;
+					choices[q] = deal;
+				}
+			}
+		}
+		for (int q = quantity; q > 0;) {
+			if (choices[q] == null) {
+				--q;
+			} else {
+				appliedPromotions.merge(choices[q].name, 1, Integer::sum);
+				dealItems[line] += choices[q].items;
+				q -= choices[q].items;
+			}
+		}
+		return prices[quantity];
+	}
+
+	/**
+	 * Apply the deal saving the most until none saves anything, for groups too large to search, or for the search to
+	 * beat (without applying the deals). Savings only fall as the dearest items get used, so a deal is only filled
+	 * again when the saving it had last time is the best.
+	 */
+	private long priceGreedily(int[] lines, boolean apply) {
+		List<Deal> groupDeals = dealsOf(lines);
+		for (int line : lines)
+			left[line] = quantities[line];
+
+		long[] savings = new long[groupDeals.size()];
+		Arrays.fill(savings, Long.MAX_VALUE);
+		PriorityQueue<Integer> bySaving = new PriorityQueue<>(Math.max(1, savings.length),
+				(a, b) -> Long.compare(savings[b], savings[a]));
+		int[] chosen = new int[0];
+		for (int d = 0; d < savings.length; d++) {
+			bySaving.add(d);
+			chosen = (chosen.length < groupDeals.get(d).items) ? new int[groupDeals.get(d).items] : chosen;
+		}
+
+		long total = Money.ZERO;
+		while (!bySaving.isEmpty()) {
+			int d = bySaving.poll();
+			Deal deal = groupDeals.get(d);
+			long saving = fillGreedily(deal, chosen);
+			if (saving == CANT_FILL)
+				continue; // for good
+			if (saving > 0 && (bySaving.isEmpty() || saving >= savings[bySaving.peek()])) {
+				for (int i = 0; i < deal.items; i++) {
+					total = Money.add(total, discountedPrices[chosen[i]]);
+					if (apply)
+						++dealItems[chosen[i]];
+				}
+				total -= saving;
+				if (apply)
+					appliedPromotions.merge(deal.name, 1, Integer::sum);
+			} else {
+				for (int i = 0; i < deal.items; i++)
+					++left[chosen[i]];
+				if (saving <= 0)
+					continue; // for good
+			}
+			savings[d] = saving;
+			bySaving.add(d);
+		}
+
+		for (int line : lines)
+			total = Money.add(total, Money.multiply(discountedPrices[line], left[line]));
+		return total;
+	}
+
+	/**
+	 * Fill a deal with the dearest items left, taking them out of 'left'
+	 * @return The saving over the unit prices of the items, or CANT_FILL (with 'left' unchanged) if the deal can't be
+	 *         filled
+	 */
+	private long fillGreedily(Deal deal, int[] chosen) {
+		int items = 0;
+		for (int slot = 0; slot < deal.slotLines.length; slot++) {
+			for (int filled = 0; filled < deal.slotSizes[slot]; filled++) {
+				int dearest = -1;
+				for (int line : deal.slotLines[slot]) {
+					if (left[line] > 0 && (dearest < 0 || discountedPrices[line] > discountedPrices[dearest]))
+						dearest = line;
+				}
+				if (dearest < 0) {
+					for (int i = 0; i < items; i++)
+						++left[chosen[i]];
+					return CANT_FILL;
+				}
+				--left[dearest];
+				chosen[items++] = dearest;
+			}
+		}
+
+		long[] prices = new long[items];
+		long full = Money.ZERO;
+		for (int i = 0; i < items; i++) {
+			prices[i] = unitPrices[chosen[i]];
+			full = Money.add(full, discountedPrices[chosen[i]]);
+		}
+		return full - deal.priceOf(prices, items);
+	}
+
+	private void grow() {
+		int size = 2 * products.length;
+		products = Arrays.copyOf(products, size);
+		quantities = Arrays.copyOf(quantities, size);
+		offers = Arrays.copyOf(offers, size);
+		unitPrices = Arrays.copyOf(unitPrices, size);
+		discountedPrices = Arrays.copyOf(discountedPrices, size);
+		percentages = Arrays.copyOf(percentages, size);
+		dealItems = Arrays.copyOf(dealItems, size);
+		groups = Arrays.copyOf(groups, size);
+		left = Arrays.copyOf(left, size);
+		words = Arrays.copyOf(words, size);
+		shifts = Arrays.copyOf(shifts, size);
+		lowerBounds = Arrays.copyOf(lowerBounds, size);
+	}
+}
@@ -0,0 +1,89 @@
+package businessLogic;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+
+/**
+ * A service for pricing large numbers of trolleys against one catalogue, spread over all available cores
+ * @author Daniele Palazzo
+ *
+ */
+public class BatchTrolleyPricer {
+
+	// placeholder for the offer cache, which cannot hold nulls
+	private static final Offer NO_OFFER = new Offer("-", 1, 0);
+
+	private Catalogue pricingRules;
+	private ConcurrentHashMap<String, Offer> offersBySKU; // offers resolved so far, shared by all threads
+
+	/**
+	 * @param productDatabase The product database to use for getting the associated offers (all trolleys are priced
+	 *                        against the same snapshot of it)
+	 */
+	public BatchTrolleyPricer(Catalogue productDatabase) {
+		this.pricingRules = productDatabase.getSnapshot();
+		this.offersBySKU = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Price a collection of trolleys in parallel
+	 * @param trolleys The trolleys to price
+	 * @return The priced trolleys, in the same order as the given ones
+	 */
+	public List<PricedTrolley> priceAll(Collection<? extends ShoppingTrolley> trolleys) {
+		return priceAll(trolleys.stream());
+	}
+
+	/**
+	 * Price a stream of trolleys in parallel
+	 * @param trolleys The trolleys to price
+	 * @return The priced trolleys, in the encounter order of the stream
+	 */
+	public List<PricedTrolley> priceAll(Stream<? extends ShoppingTrolley> trolleys) {
+		return trolleys.parallel().map(this::price).collect(Collectors.toList());
+	}
+
+	/**
+	 * Price a single trolley
+	 * @param trolley The trolley to price
+	 * @return The priced trolley
+	 */
+	public PricedTrolley price(ShoppingTrolley trolley) {
+		PricingResult result = new PricingResult();
+		boolean[] valid = { true };
+
+		trolley.forEachLine((product, quantity) -> {
+			Offer offer = resolveOffer(product);
+			if (offer == Catalogue.PRODUCT_NOT_FOUND) {
+				valid[0] = false;
+				return;
+			}
+			if (offer == NO_OFFER)
+				offer = null;
+
+			result.addLine(product, quantity, offer, TrolleyTotalCalculator.isOfferApplied(offer, quantity),
+					TrolleyTotalCalculator.priceLine(product, quantity, offer));
+		});
+
+		return new PricedTrolley(trolley, result, valid[0]);
+	}
+
+	// looks up the offer of a SKU once per batch, however many trolleys it appears in
+	private Offer resolveOffer(Product p) {
+		Offer offer = offersBySKU.get(p.getSKU());
+		if (offer == null) {
+			offer = pricingRules.findProductOffer(p.getSKU());
+			if (offer == null)
+				offer = NO_OFFER;
+			offersBySKU.putIfAbsent(p.getSKU(), offer);
+		}
+		return offer;
+	}
+}
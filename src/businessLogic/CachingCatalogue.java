@@ -0,0 +1,305 @@
+package businessLogic;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import data.Offer;
+import data.Product;
+import exceptions.ProductNotFound;
+import metrics.CheckoutMetrics;
+import metrics.CheckoutMetrics.Event;
+import metrics.CheckoutMetrics.Operation;
+
+/**
+ * A bounded read-through cache in front of a catalogue that is slow to read or too large for the heap (e.g. a
+ * MappedCatalogue, or a database behind a Catalogue implementation). Each product is cached together with its offer,
+ * least recently used first out; SKUs that are not in the catalogue are cached too, so that repeated mistyped scans
+ * don't reach the store.
+ * <p>
+ * The cache learns about changes to the store as a CatalogueListener (e.g. of the ProductDAO the store is written
+ * through), and drops the entries they affect. Offers are matched by the key they were added to the store under, as
+ * told by 'offerAdded()' (or found in the store's snapshot when the cache is made); any change to an offer also drops
+ * the entries whose offer the cache doesn't know the key of, e.g. one added before the cache was listening. The cache
+ * is shared between lanes: it is split into independently locked segments, and the store is read without holding a
+ * lock.
+ * @author Daniele Palazzo
+ *
+ */
+public final class CachingCatalogue implements Catalogue, CatalogueListener {
+
+	private static final int SEGMENTS = 16; // must be a power of two
+
+	// a cached product with its offer, or a SKU that is not in the catalogue
+	private static final class Line {
+		final Product product;
+		final Offer offer;
+
+		Line(Product product, Offer offer) {
+			this.product = product;
+			this.offer = offer;
+		}
+	}
+
+	private static final Line NOT_IN_CATALOGUE = new Line(null, null);
+
+	private final class Segment extends LinkedHashMap<String, Line> {
+		private static final long serialVersionUID = 1L;
+
+		final ReentrantLock lock = new ReentrantLock();
+		final int capacity;
+		long epoch; // incremented whenever entries are dropped, so that a load started before is not cached
+
+		Segment(int capacity) {
+			super(16, 0.75f, true); // access order, for LRU eviction
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Line> eldest) {
+			if (size() <= capacity)
+				return false;
+			evictions.increment();
+			return true;
+		}
+	}
+
+	private final Catalogue store;
+	private final Segment[] segments = new Segment[SEGMENTS];
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	// the offers of the store by the key they were added under, guarded by its monitor
+	private final HashMap<String, Offer> offersByKey = new HashMap<>();
+
+	/**
+	 * @param store The catalogue to read products and offers from on a miss
+	 * @param maxEntries The number of SKUs to keep in the cache
+	 */
+	public CachingCatalogue(Catalogue store, int maxEntries) {
+		this.store = store;
+		int perSegment = Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+		for (int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment(perSegment);
+		Catalogue snapshot = store.getSnapshot();
+		if (snapshot instanceof CatalogueSnapshot) {
+			for (Map.Entry<String, Offer> e : ((CatalogueSnapshot) snapshot).getAllAvailableOffers())
+				offersByKey.put(e.getKey(), e.getValue());
+		}
+	}
+
+	@Override
+	public Product getProduct(String SKU) throws ProductNotFound {
+		Product p = findProduct(SKU);
+		if (p == null)
+			throw new ProductNotFound();
+		else
+			return p;
+	}
+
+	@Override
+	public Product findProduct(String SKU) {
+		long start = CheckoutMetrics.start();
+		Line line = (SKU == null) ? NOT_IN_CATALOGUE : lookup(SKU);
+		if (line.product == null)
+			CheckoutMetrics.count(Event.PRODUCT_NOT_FOUND);
+		else
+			CheckoutMetrics.record(Operation.GET_PRODUCT, start);
+		return line.product;
+	}
+
+	@Override
+	public Offer getProductOffer(String SKU) throws ProductNotFound {
+		Offer o = findProductOffer(SKU);
+		if (o == PRODUCT_NOT_FOUND)
+			throw new ProductNotFound();
+		else
+			return o;
+	}
+
+	@Override
+	public Offer findProductOffer(String SKU) {
+		long start = CheckoutMetrics.start();
+		Line line = (SKU == null) ? NOT_IN_CATALOGUE : lookup(SKU);
+		if (line.product == null) {
+			CheckoutMetrics.count(Event.PRODUCT_NOT_FOUND);
+			return PRODUCT_NOT_FOUND;
+		}
+		CheckoutMetrics.record(Operation.GET_PRODUCT_OFFER, start);
+		return line.offer;
+	}
+
+	/**
+	 * The cache follows the changes of its store, so it is not a fixed view: prefer pinning the snapshot of the store
+	 * itself where the store provides one cheaply
+	 */
+	@Override
+	public Catalogue getSnapshot() {
+		return this;
+	}
+
+	/**
+	 * @return The number of lookups answered from the cache, including SKUs cached as not in the catalogue
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of lookups that had to read the store
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return The share of lookups answered from the cache, between 0 and 1
+	 */
+	public double getHitRate() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return (total == 0) ? 0.0 : (double) h / total;
+	}
+
+	/**
+	 * @return The number of entries dropped to make room for new ones
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return The number of SKUs in the cache
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment s : segments) {
+			s.lock.lock();
+			try {
+				size += s.size();
+			} finally {
+				s.lock.unlock();
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public void productAdded(String SKU, Product product) {
+		invalidate(SKU);
+	}
+
+	@Override
+	public void productRemoved(String SKU) {
+		invalidate(SKU);
+	}
+
+	@Override
+	public void offerAdded(String offerName, Offer offer) {
+		Offer replaced;
+		synchronized (offersByKey) {
+			replaced = offersByKey.put(offerName, offer);
+		}
+		if (replaced != offer)
+			invalidateOffer(replaced); // replaces the offer on every product it is attached to
+	}
+
+	@Override
+	public void offerRemoved(String offerName) {
+		Offer removed;
+		synchronized (offersByKey) {
+			removed = offersByKey.remove(offerName);
+		}
+		invalidateOffer(removed);
+	}
+
+	@Override
+	public void offerAttached(String offerName, String SKU) {
+		invalidate(SKU);
+	}
+
+	@Override
+	public void offerDetached(String SKU) {
+		invalidate(SKU);
+	}
+
+	private Segment segmentFor(String SKU) {
+		int h = SKU.hashCode();
+		return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+	}
+
+	private Line lookup(String SKU) {
+		Segment s = segmentFor(SKU);
+		long epoch;
+		s.lock.lock();
+		try {
+			Line line = s.get(SKU);
+			if (line != null) {
+				hits.increment();
+				return line;
+			}
+			epoch = s.epoch;
+		} finally {
+			s.lock.unlock();
+		}
+
+		misses.increment();
+		Line line = NOT_IN_CATALOGUE;
+		Offer o = store.findProductOffer(SKU); // first, so that a SKU not in the catalogue takes a single read
+		if (o != PRODUCT_NOT_FOUND) {
+			Product p = store.findProduct(SKU);
+			if (p != null) // unless the product was removed in between
+				line = new Line(p, o);
+		}
+
+		s.lock.lock();
+		try {
+			if (s.epoch == epoch) // nothing dropped while reading the store, so the line is not stale
+				s.put(SKU, line);
+		} finally {
+			s.lock.unlock();
+		}
+		return line;
+	}
+
+	private void invalidate(String SKU) {
+		Segment s = segmentFor(SKU);
+		s.lock.lock();
+		try {
+			s.remove(SKU);
+			++s.epoch;
+		} finally {
+			s.lock.unlock();
+		}
+	}
+
+	// offer changes are rare, so they are worth a scan of the cache rather than an index of products by offer; drops
+	// the entries with the given offer (if known) and with any offer whose key is not known
+	private void invalidateOffer(Offer offer) {
+		Set<Offer> known = Collections.newSetFromMap(new IdentityHashMap<>());
+		synchronized (offersByKey) {
+			known.addAll(offersByKey.values());
+		}
+		for (Segment s : segments) {
+			s.lock.lock();
+			try {
+				for (Iterator<Line> i = s.values().iterator(); i.hasNext();) {
+					Offer o = i.next().offer;
+					if (o != null && (o == offer || !known.contains(o)))
+						i.remove();
+				}
+				++s.epoch;
+			} finally {
+				s.lock.unlock();
+			}
+		}
+	}
+}
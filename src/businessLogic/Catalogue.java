@@ -0,0 +1,67 @@
+package businessLogic;
+
+import data.Offer;
+import data.Product;
+import exceptions.ProductNotFound;
+
+/**
+ * Read access to a set of products and the offers attached to them (the pricing rules of a checkout transaction)
+ * @author Daniele Palazzo
+ *
+ */
+public interface Catalogue {
+
+	/**
+	 * Returned by 'findProductOffer()' for a product that is not in the catalogue
+	 */
+	Offer PRODUCT_NOT_FOUND = new Offer("Product not found", 1, 0);
+
+	/**
+	 * Find a product in the catalogue without throwing if it is missing (e.g. for mistyped SKUs)
+	 * @param SKU Unique product identified of the desired product
+	 * @return Requested product, or null if the product is not in the catalogue
+	 */
+	Product findProduct(String SKU);
+
+	/**
+	 * Find the products of many SKUs at once, e.g. a batch of scans. Each SKU is looked up on its own, so on a catalogue
+	 * which is changing the batch may see some of the changes: look it up in 'getSnapshot()' to see a single version.
+	 * @param SKUs The SKUs to look up
+	 * @param count The number of SKUs to look up, from the start of the array
+	 * @param products Filled with the product of each SKU, or null where the product is not in the catalogue
+	 */
+	default void findProducts(String[] SKUs, int count, Product[] products) {
+		for (int i = 0; i < count; i++)
+			products[i] = findProduct(SKUs[i]);
+	}
+
+	/**
+	 * Find the offer associated with a specific product without throwing if the product is missing
+	 * @param SKU The unique identifier for the product in question
+	 * @return The associated offer, null if there is no offer for that product, or PRODUCT_NOT_FOUND if the product is
+	 *         not in the catalogue
+	 */
+	Offer findProductOffer(String SKU);
+
+	/**
+	 * Get product from the catalogue
+	 * @param SKU Unique product identified of the desired product
+	 * @return Requested product
+	 * @throws ProductNotFound Exception is thrown if the product is not in the catalogue
+	 */
+	Product getProduct(String SKU) throws ProductNotFound;
+
+	/**
+	 * Get the offer associated with a specific product (or null if there is no offer for that product)
+	 * @param SKU The unique identifier for the product in question
+	 * @return Returns an offer object describing the associated offer
+	 * @throws ProductNotFound Thrown if no such product exists in the catalogue
+	 */
+	Offer getProductOffer(String SKU) throws ProductNotFound;
+
+	/**
+	 * Get an immutable view of the catalogue as it is now, to be pinned for the length of a checkout transaction
+	 * @return The current snapshot, which will not reflect any later changes (the catalogue itself if it never changes)
+	 */
+	Catalogue getSnapshot();
+}
@@ -0,0 +1,170 @@
+package businessLogic;
+
+import data.Offer;
+import data.Product;
+
+/**
+ * An ordered feed of the changes made to a ProductDAO, from which replicas of the database (e.g. on till nodes) are
+ * kept up to date with deltas rather than reloaded. Every change gets the next position in the feed; the latest
+ * changes are kept in a ring, so a reader that falls further behind than the ring holds has to start again from a
+ * snapshot of the database.
+ * @author Daniele Palazzo
+ *
+ */
+public final class CatalogueChangeFeed implements CatalogueListener {
+
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/**
+	 * Returned by 'read()' when the changes from the requested position are no longer kept
+	 */
+	public static final int TOO_OLD = -1;
+
+	enum Type {
+		ADD_PRODUCT, REMOVE_PRODUCT, ADD_OFFER, REMOVE_OFFER, ATTACH_OFFER, DETACH_OFFER
+	}
+
+	/**
+	 * One change to the database, as passed to the listener
+	 */
+	static final class Change {
+		final Type type;
+		final long version; // of the database after the change
+		final long publishedNanos;
+		final String SKU;
+		final String offerName;
+		final Product product;
+		final Offer offer;
+
+		Change(Type type, long version, String SKU, String offerName, Product product, Offer offer) {
+			this.type = type;
+			this.version = version;
+			this.publishedNanos = System.nanoTime();
+			this.SKU = SKU;
+			this.offerName = offerName;
+			this.product = product;
+			this.offer = offer;
+		}
+	}
+
+	private final ProductDAO source;
+	private final Change[] ring;
+
+	// guarded by the monitor of this object
+	private long next; // the position of the next change
+	private boolean closed;
+
+	/**
+	 * Start recording the changes of a database
+	 * @param source The database
+	 * @param capacity The number of latest changes kept for readers
+	 */
+	public CatalogueChangeFeed(ProductDAO source, int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+		this.source = source;
+		this.ring = new Change[capacity];
+		source.addListener(this);
+	}
+
+	/**
+	 * @return The database whose changes are recorded
+	 */
+	public ProductDAO getSource() {
+		return source;
+	}
+
+	/**
+	 * @return The position the next change will get, i.e. the number of changes recorded so far
+	 */
+	public synchronized long getPosition() {
+		return next;
+	}
+
+	/**
+	 * @return The position of the oldest change still kept
+	 */
+	public synchronized long getOldestPosition() {
+		return Math.max(0, next - ring.length);
+	}
+
+	/**
+	 * Copy the changes recorded from a position on
+	 * @param position The position of the first change to read
+	 * @param into Filled with the changes, as many as fit
+	 * @return The number of changes read (0 if there are none yet), or TOO_OLD if some of them are no longer kept
+	 */
+	synchronized int read(long position, Change[] into) {
+		if (position < next - ring.length)
+			return TOO_OLD;
+		int count = (int) Math.min(into.length, next - position);
+		for (int i = 0; i < count; i++)
+			into[i] = ring[(int) ((position + i) % ring.length)];
+		return count;
+	}
+
+	/**
+	 * Wait until a change is recorded at a position, or the feed is closed
+	 * @param position The position to wait for
+	 * @param timeoutMillis How long to wait at most
+	 * @return True if there is a change at the position
+	 */
+	public synchronized boolean awaitChange(long position, long timeoutMillis) throws InterruptedException {
+		long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+		while (next <= position && !closed) {
+			long remaining = (deadline - System.nanoTime()) / 1_000_000;
+			if (remaining <= 0)
+				break;
+			wait(remaining);
+		}
+		return next > position;
+	}
+
+	/**
+	 * Stop recording changes, and wake up the readers waiting for one
+	 */
+	public void close() {
+		source.removeListener(this);
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+	}
+
+	// called by the listener methods, from the thread changing the database
+	private synchronized void append(Type type, String SKU, String offerName, Product product, Offer offer) {
+		ring[(int) (next % ring.length)] = new Change(type, source.getVersion(), SKU, offerName, product, offer);
+		++next;
+		notifyAll();
+	}
+
+	@Override
+	public void productAdded(String SKU, Product product) {
+		append(Type.ADD_PRODUCT, SKU, null, product, null);
+	}
+
+	@Override
+	public void productRemoved(String SKU) {
+		append(Type.REMOVE_PRODUCT, SKU, null, null, null);
+	}
+
+	@Override
+	public void offerAdded(String offerName, Offer offer) {
+		append(Type.ADD_OFFER, null, offerName, null, offer);
+	}
+
+	@Override
+	public void offerRemoved(String offerName) {
+		append(Type.REMOVE_OFFER, null, offerName, null, null);
+	}
+
+	@Override
+	public void offerAttached(String offerName, String SKU) {
+		append(Type.ATTACH_OFFER, SKU, offerName, null, null);
+	}
+
+	@Override
+	public void offerDetached(String SKU) {
+		append(Type.DETACH_OFFER, SKU, null, null, null);
+	}
+}
@@ -0,0 +1,329 @@
+package businessLogic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+import data.Money;
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * Streams a price file into a ProductDAO. The file is read in fixed-size chunks and each row is applied as soon as it
+ * is parsed, so the file is never held in memory as a whole and the database fills up as the import goes on.
+ * <p>
+ * The file is UTF-8 text with one comma-separated row per line; fields may be quoted with double quotes (doubled
+ * inside a quoted field), and empty lines and lines starting with '#' are skipped. Prices are in pounds, as parsed by
+ * Money.parse(). The first field gives the kind of row:
+ * <ul>
+ * <li>P,SKU,name,price - add (or replace) a product</li>
+ * <li>O,name,group number,group price[,start,end] - add (or replace) an offer, valid from its start (inclusive) to its
+ * end (exclusive) if they are given: ISO-8601 instants such as 2024-05-01T00:00:00Z, either of which may be left
+ * empty</li>
+ * <li>L,SKU,offer name - attach an offer, added earlier in the file or already in the database, to a product</li>
+ * </ul>
+ * Rows that can't be applied are reported to the listener and skipped.
+ * @author Daniele Palazzo
+ *
+ */
+public final class CatalogueImporter {
+
+	/**
+	 * Receives the progress of an import
+	 */
+	public interface Listener {
+
+		/**
+		 * Called after each chunk of the file has been imported
+		 * @param rows The number of rows read so far, including rejected ones
+		 * @param bytes The number of bytes read so far
+		 */
+		void progress(long rows, long bytes);
+
+		/**
+		 * Called for each row that can't be imported
+		 * @param line The line number of the row, starting from 1
+		 * @param row The text of the row
+		 * @param reason Why the row was rejected
+		 */
+		void rejected(long line, String row, String reason);
+	}
+
+	private static final int CHUNK_SIZE = 1 << 20;
+	private static final int MAX_FIELDS = 6;
+
+	private final ProductDAO productDatabase;
+	private final Listener listener;
+
+	private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+	private final byte[] bytes = chunk.array();
+	private final byte[][] fieldBytes = new byte[MAX_FIELDS + 1][]; // the chunk, or 'unquoted' for quoted fields
+	private final int[] fieldStarts = new int[MAX_FIELDS + 1];
+	private final int[] fieldEnds = new int[MAX_FIELDS + 1];
+	private final AsciiSequence priceText = new AsciiSequence();
+	private byte[] unquoted = new byte[256];
+
+	private long lines;
+	private long importedRows;
+	private long rejectedRows;
+	private long bytesRead;
+
+	/**
+	 * @param productDatabase The database to import into
+	 * @param listener Receives progress and rejected rows
+	 */
+	public CatalogueImporter(ProductDAO productDatabase, Listener listener) {
+		this.productDatabase = productDatabase;
+		this.listener = listener;
+	}
+
+	/**
+	 * Import a price file
+	 * @param file The file to import
+	 * @return The number of rows imported
+	 * @throws IOException Thrown if the file can't be read; rows read before the error stay imported
+	 */
+	public long importFrom(Path file) throws IOException {
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			return importFrom(in);
+		}
+	}
+
+	/**
+	 * Import price rows until the end of the input
+	 * @param in The input, which is not closed
+	 * @return The number of rows imported from this input
+	 * @throws IOException Thrown if the input can't be read; rows read before the error stay imported
+	 */
+	public long importFrom(ReadableByteChannel in) throws IOException {
+		long importedBefore = importedRows;
+		boolean skippingLongRow = false;
+		chunk.clear();
+
+		while (true) {
+			int n = in.read(chunk);
+			boolean end = (n < 0);
+			if (n > 0)
+				bytesRead += n;
+
+			// apply every complete line in the chunk
+			int lineStart = 0;
+			int limit = chunk.position();
+			for (int i = 0; i < limit; i++) {
+				if (bytes[i] == '\n') {
+					if (skippingLongRow)
+						skippingLongRow = false;
+					else
+						importRow(lineStart, i);
+					lineStart = i + 1;
+				}
+			}
+			if (end) {
+				if (lineStart < limit && !skippingLongRow)
+					importRow(lineStart, limit); // last line without a newline
+				listener.progress(lines, bytesRead);
+				return importedRows - importedBefore;
+			}
+
+			if (lineStart == 0 && limit == CHUNK_SIZE) { // a line longer than a chunk, skip it
+				if (!skippingLongRow) {
+					++lines;
+					reject(new String(bytes, 0, 80, StandardCharsets.UTF_8) + "...", "Row too long");
+				}
+				skippingLongRow = true;
+				lineStart = limit;
+			}
+
+			// keep the partial line at the end for the next read
+			chunk.position(lineStart);
+			chunk.limit(limit);
+			chunk.compact();
+			if (lineStart > 0)
+				listener.progress(lines, bytesRead - chunk.position());
+		}
+	}
+
+	/**
+	 * @return The number of rows imported so far
+	 */
+	public long getImportedRows() {
+		return importedRows;
+	}
+
+	/**
+	 * @return The number of rows rejected so far
+	 */
+	public long getRejectedRows() {
+		return rejectedRows;
+	}
+
+	private void importRow(int start, int end) {
+		++lines;
+		if (end > start && bytes[end - 1] == '\r')
+			--end;
+		if (end == start || bytes[start] == '#')
+			return;
+
+		int fields = splitFields(start, end);
+		if (fields < 0) {
+			reject(start, end, "Unterminated quoted field");
+			return;
+		}
+		int kindLength = fieldEnds[0] - fieldStarts[0];
+		byte kind = (kindLength == 1) ? fieldBytes[0][fieldStarts[0]] : 0;
+		int expectedFields = (kind == 'P' || kind == 'O') ? 4 : (kind == 'L') ? 3 : -1;
+		if (expectedFields < 0) {
+			reject(start, end, "Unknown row type");
+			return;
+		}
+		if (fields != expectedFields && !(kind == 'O' && fields == 6)) { // an offer may have a period of validity
+			reject(start, end, "Expected " + expectedFields + " fields");
+			return;
+		}
+
+		try {
+			if (kind == 'P') {
+				String SKU = field(1);
+				productDatabase.addProduct(SKU, new Product(field(2), price(3), SKU));
+			} else if (kind == 'O') {
+				String name = field(1);
+				int groupNumber = Integer.parseInt(field(2));
+				if (groupNumber < 1)
+					throw new NumberFormatException("Group number must be positive");
+				if (fields == 6)
+					productDatabase.addOffer(name, new Offer(name, groupNumber, price(3), time(4), time(5)));
+				else
+					productDatabase.addOffer(name, new Offer(name, groupNumber, price(3)));
+			} else {
+				productDatabase.attachOfferToProduct(field(2), field(1));
+			}
+			++importedRows;
+		} catch (NumberFormatException | ArithmeticException e) {
+			reject(start, end, "Invalid number");
+		} catch (DateTimeParseException e) {
+			reject(start, end, "Invalid time");
+		} catch (IllegalArgumentException e) {
+			reject(start, end, "Offer must start before it ends");
+		} catch (ProductNotFound e) {
+			reject(start, end, "Unknown product");
+		} catch (OfferNotFound e) {
+			reject(start, end, "Unknown offer");
+		}
+	}
+
+	/**
+	 * Find the fields of a row, copying quoted fields without their quotes to 'unquoted'
+	 * @return The number of fields, MAX_FIELDS + 1 if there are more, or -1 if a quoted field is not terminated
+	 */
+	private int splitFields(int start, int end) {
+		if (unquoted.length < end - start)
+			unquoted = new byte[Math.max(end - start, 2 * unquoted.length)];
+		int out = 0;
+		int fields = 0;
+		int i = start;
+		while (fields <= MAX_FIELDS) {
+			if (i < end && bytes[i] == '"') {
+				fieldBytes[fields] = unquoted;
+				fieldStarts[fields] = out;
+				++i;
+				while (true) {
+					if (i >= end)
+						return -1;
+					if (bytes[i] == '"') {
+						if (i + 1 < end && bytes[i + 1] == '"') {
+							unquoted[out++] = '"';
+							i += 2;
+						} else {
+							++i;
+							break;
+						}
+					} else {
+						unquoted[out++] = bytes[i++];
+					}
+				}
+				fieldEnds[fields++] = out;
+				while (i < end && bytes[i] != ',')
+					++i;
+			} else {
+				fieldBytes[fields] = bytes;
+				fieldStarts[fields] = i;
+				while (i < end && bytes[i] != ',')
+					++i;
+				fieldEnds[fields++] = i;
+			}
+			if (i >= end)
+				return fields;
+			++i; // skip the comma
+		}
+		return fields;
+	}
+
+	private String field(int f) {
+		return new String(fieldBytes[f], fieldStarts[f], fieldEnds[f] - fieldStarts[f], StandardCharsets.UTF_8);
+	}
+
+	private long price(int f) {
+		long price = Money.parse(priceText.of(fieldBytes[f], fieldStarts[f], fieldEnds[f]));
+		if (price < 0)
+			throw new NumberFormatException("Negative price");
+		return price;
+	}
+
+	// null if the field is empty
+	private Instant time(int f) {
+		return (fieldEnds[f] == fieldStarts[f]) ? null : Instant.parse(field(f));
+	}
+
+	private void reject(int start, int end, String reason) {
+		reject(new String(bytes, start, end - start, StandardCharsets.UTF_8), reason);
+	}
+
+	private void reject(String row, String reason) {
+		++rejectedRows;
+		listener.rejected(lines, row, reason);
+	}
+
+	/**
+	 * A view of ASCII bytes as characters, so that numbers can be parsed without creating a String
+	 */
+	private static final class AsciiSequence implements CharSequence {
+		private byte[] bytes;
+		private int start;
+		private int end;
+
+		AsciiSequence of(byte[] bytes, int start, int end) {
+			this.bytes = bytes;
+			this.start = start;
+			this.end = end;
+			return this;
+		}
+
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (bytes[start + index] & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			return toString().subSequence(from, to);
+		}
+
+		@Override
+		public String toString() {
+			return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
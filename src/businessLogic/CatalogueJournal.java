@@ -0,0 +1,713 @@
+package businessLogic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.IdentityHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * Makes the changes to a ProductDAO survive a restart. Every change is appended to a journal file, and from time to
+ * time the whole database is written to a snapshot file so that the journal can be cut short. Opening the journal
+ * rebuilds the database from the snapshot and the changes journaled after it.
+ * <p>
+ * Changes are buffered and written in groups: a background thread writes and syncs everything appended in the last
+ * few milliseconds at once, so a change is not on disk yet when the ProductDAO method returns. Call 'sync()' to wait
+ * until all changes made so far are on disk; concurrent callers share the same disk sync.
+ * <p>
+ * Both files hold records of: length (int), CRC32 of the rest of the record (int), database version after the change
+ * (long), type of change (byte) and its fields. A torn record at the end of the journal (e.g. after a power cut) is
+ * dropped on recovery. Offers with a period of validity are recorded with their start and end, so that an offer
+ * attached by an OfferScheduler still ends when it should after a restart; offers without one keep the shorter record
+ * of earlier versions.
+ * @author Daniele Palazzo
+ *
+ */
+public final class CatalogueJournal implements CatalogueListener, Closeable {
+
+	private static final String SNAPSHOT_FILE = "catalogue.snapshot";
+	private static final String JOURNAL_FILE = "catalogue.journal";
+	private static final int SNAPSHOT_MAGIC = 0x434B534E;
+	private static final int JOURNAL_MAGIC = 0x434B4A4C;
+	private static final int FILE_HEADER_SIZE = 4;
+
+	private static final int DEFAULT_COMMIT_MILLIS = 5;
+	private static final long DEFAULT_COMPACT_BYTES = 64 << 20;
+	private static final int FLUSH_BYTES = 1 << 20; // write early once this much is waiting
+	private static final int MAX_RECORD_SIZE = 64 << 20;
+
+	// record types, one for each change to the database, and the version a snapshot was taken at
+	private static final byte SNAPSHOT_VERSION = 0;
+	private static final byte ADD_PRODUCT = 1;
+	private static final byte REMOVE_PRODUCT = 2;
+	private static final byte ADD_OFFER = 3;
+	private static final byte REMOVE_OFFER = 4;
+	private static final byte ATTACH_OFFER = 5;
+	private static final byte DETACH_OFFER = 6;
+	private static final byte ADD_TIMED_OFFER = 7;
+
+	private static final int NO_TIME = -1; // in place of the nanoseconds of a start or end that is not set
+
+	private final Path directory;
+	private final ProductDAO productDatabase;
+	private final int commitMillis;
+	private final long compactBytes;
+	private final Thread flusher;
+
+	// held while writing to the journal file, or replacing it
+	private final ReentrantLock ioLock = new ReentrantLock();
+	private FileChannel journal;
+	private long journalSize;
+	private long syncs;
+
+	// the fields below are guarded by the monitor of this object
+	private RecordBuffer pending = new RecordBuffer();
+	private RecordBuffer spare = new RecordBuffer();
+	private long pendingSince; // when the oldest pending record was appended
+	private long appended; // bytes appended since opening, and of those:
+	private long durable; // ... bytes synced to disk
+	private long fileStart; // ... bytes before the start of the current journal file
+	private boolean syncRequested;
+	private boolean closed;
+	private IOException failure;
+
+	private CatalogueJournal(Path directory, ProductDAO productDatabase, FileChannel journal, int commitMillis,
+			long compactBytes) throws IOException {
+		this.directory = directory;
+		this.productDatabase = productDatabase;
+		this.journal = journal;
+		this.journalSize = journal.size();
+		this.commitMillis = commitMillis;
+		this.compactBytes = compactBytes;
+		this.fileStart = -(journalSize - FILE_HEADER_SIZE); // records already in the file were appended before opening
+		this.flusher = new Thread(this::runFlusher, "catalogue-journal");
+		flusher.setDaemon(true);
+	}
+
+	/**
+	 * Open the journal in a directory, rebuilding the database it records (an empty one if the directory is new)
+	 * @param directory The directory of the journal and snapshot files, created if needed
+	 * @param concurrent Passed to the ProductDAO
+	 * @return The journal, already recording all changes to its database
+	 * @throws IOException Thrown if the files can't be read or written, or don't match each other
+	 */
+	public static CatalogueJournal open(Path directory, boolean concurrent) throws IOException {
+		return open(directory, concurrent, DEFAULT_COMMIT_MILLIS, DEFAULT_COMPACT_BYTES);
+	}
+
+	/**
+	 * @param commitMillis How long changes wait to be written with later ones (unless 'sync()' is called)
+	 * @param compactBytes The size of the journal file after which a snapshot is written and the journal cut short
+	 * @see #open(Path, boolean)
+	 */
+	public static CatalogueJournal open(Path directory, boolean concurrent, int commitMillis, long compactBytes)
+			throws IOException {
+		Files.createDirectories(directory);
+		ProductDAO productDatabase = new ProductDAO(concurrent, false);
+
+		long version = 0;
+		Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+		if (Files.exists(snapshotFile)) {
+			try (FileChannel in = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+				RecordReader reader = new RecordReader(in, SNAPSHOT_MAGIC);
+				while (reader.next()) {
+					version = reader.version;
+					reader.applyTo(productDatabase);
+				}
+				if (reader.torn)
+					throw new IOException("Damaged catalogue snapshot: " + snapshotFile);
+			}
+		}
+
+		FileChannel journal = FileChannel.open(directory.resolve(JOURNAL_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (journal.size() == 0) {
+				writeHeader(journal, JOURNAL_MAGIC);
+				journal.force(true);
+			} else {
+				// older changes are already in the snapshot; a change may take several records under one version
+				// (e.g. 'removeOffers()'), so every record newer than the snapshot is replayed
+				long snapshotVersion = version;
+				RecordReader reader = new RecordReader(journal, JOURNAL_MAGIC);
+				while (reader.next()) {
+					if (reader.version > snapshotVersion) {
+						version = reader.version;
+						reader.applyTo(productDatabase);
+					}
+				}
+				journal.truncate(reader.end); // drop a torn record, if any
+			}
+			journal.position(journal.size());
+		} catch (IOException | RuntimeException e) {
+			journal.close();
+			throw e;
+		}
+		productDatabase.restoreVersion(version);
+
+		CatalogueJournal catalogueJournal = new CatalogueJournal(directory, productDatabase, journal, commitMillis,
+				compactBytes);
+		productDatabase.addListener(catalogueJournal);
+		catalogueJournal.flusher.start();
+		return catalogueJournal;
+	}
+
+	/**
+	 * @return The database whose changes are journaled
+	 */
+	public ProductDAO getProductDatabase() {
+		return productDatabase;
+	}
+
+	/**
+	 * Wait until all changes made so far are on disk
+	 * @throws IOException Thrown if the journal could not be written
+	 */
+	public synchronized void sync() throws IOException {
+		long target = appended;
+		boolean interrupted = false;
+		while (durable < target && failure == null) {
+			if (!syncRequested) { // only the first caller wakes the flusher, the others wait for the same sync
+				syncRequested = true;
+				notifyAll();
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (failure != null)
+			throw new IOException("Catalogue journal failed", failure);
+	}
+
+	/**
+	 * Write a snapshot of the database and remove the changes it contains from the journal. Done automatically when
+	 * the journal grows past its compaction size.
+	 * @throws IOException Thrown if the files can't be written
+	 */
+	public void compact() throws IOException {
+		ioLock.lock();
+		try {
+			long mark;
+			synchronized (this) {
+				mark = appended; // every change before this is in the snapshot taken next
+			}
+			CatalogueSnapshot snapshot = productDatabase.getSnapshot();
+			writeSnapshot(snapshot);
+
+			synchronized (this) { // changes wait here until the journal is replaced
+				writeRecords(pending);
+				pending.clear();
+
+				Path journalFile = directory.resolve(JOURNAL_FILE);
+				Path temporaryFile = directory.resolve(JOURNAL_FILE + ".tmp");
+				try (FileChannel compacted = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+					writeHeader(compacted, JOURNAL_MAGIC);
+
+					// copy the changes made after the snapshot, which can only follow the mark
+					RecordReader reader = new RecordReader(journal, FILE_HEADER_SIZE + mark - fileStart);
+					long tail;
+					while (true) {
+						if (!reader.next()) {
+							tail = reader.end;
+							break;
+						}
+						if (reader.version > snapshot.getVersion()) {
+							tail = reader.start;
+							break;
+						}
+					}
+					journal.transferTo(tail, journal.size() - tail, compacted);
+					compacted.force(true);
+				}
+				Files.move(temporaryFile, journalFile, StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+
+				journal.close();
+				journal = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				journalSize = journal.size();
+				journal.position(journalSize);
+				fileStart = appended - (journalSize - FILE_HEADER_SIZE);
+				durable = appended;
+				notifyAll();
+			}
+		} finally {
+			ioLock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of times the journal has been synced to disk, each covering one or more changes
+	 */
+	public long getSyncCount() {
+		ioLock.lock();
+		try {
+			return syncs;
+		} finally {
+			ioLock.unlock();
+		}
+	}
+
+	/**
+	 * Write all pending changes and stop journaling; later changes to the database are not recorded
+	 */
+	@Override
+	public void close() throws IOException {
+		productDatabase.removeListener(this);
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		ioLock.lock();
+		try {
+			journal.close();
+		} finally {
+			ioLock.unlock();
+		}
+		if (failure != null)
+			throw new IOException("Catalogue journal failed", failure);
+	}
+
+	@Override
+	public synchronized void productAdded(String SKU, Product product) {
+		RecordBuffer r = begin(ADD_PRODUCT);
+		r.putString(SKU);
+		r.putString(product.getName());
+		r.putLong(product.getPrice());
+		r.putString(product.getSKU());
+		end(r);
+	}
+
+	@Override
+	public synchronized void productRemoved(String SKU) {
+		RecordBuffer r = begin(REMOVE_PRODUCT);
+		r.putString(SKU);
+		end(r);
+	}
+
+	@Override
+	public synchronized void offerAdded(String offerName, Offer offer) {
+		putOffer(pending, productDatabase.getVersion(), offerName, offer);
+		end(pending);
+	}
+
+	@Override
+	public synchronized void offerRemoved(String offerName) {
+		RecordBuffer r = begin(REMOVE_OFFER);
+		r.putString(offerName);
+		end(r);
+	}
+
+	@Override
+	public synchronized void offerAttached(String offerName, String SKU) {
+		RecordBuffer r = begin(ATTACH_OFFER);
+		r.putString(offerName);
+		r.putString(SKU);
+		end(r);
+	}
+
+	@Override
+	public synchronized void offerDetached(String SKU) {
+		RecordBuffer r = begin(DETACH_OFFER);
+		r.putString(SKU);
+		end(r);
+	}
+
+	// called by the listener methods, from the thread changing the database
+	private RecordBuffer begin(byte type) {
+		pending.begin(productDatabase.getVersion(), type);
+		return pending;
+	}
+
+	private void end(RecordBuffer r) {
+		appended += r.end();
+		if (r.size() == r.lastRecordSize()) {
+			pendingSince = System.nanoTime();
+			notifyAll(); // the flusher waits for the first change
+		} else if (r.size() >= FLUSH_BYTES) {
+			notifyAll();
+		}
+	}
+
+	private void runFlusher() {
+		while (true) {
+			RecordBuffer toWrite = null;
+			long target = 0;
+			boolean last;
+			synchronized (this) {
+				try {
+					while (!closed && !syncRequested && pending.size() < FLUSH_BYTES) {
+						if (pending.size() == 0) {
+							wait();
+						} else {
+							long remaining = commitMillis - (System.nanoTime() - pendingSince) / 1_000_000;
+							if (remaining <= 0)
+								break;
+							wait(remaining);
+						}
+					}
+				} catch (InterruptedException e) {
+					closed = true;
+				}
+				last = closed;
+			}
+
+			boolean compactNow = false;
+			ioLock.lock(); // taken before the swap, so that a compaction never sees changes missing in between
+			try {
+				synchronized (this) {
+					syncRequested = false;
+					toWrite = pending;
+					pending = spare;
+					target = appended;
+				}
+				if (toWrite.size() > 0 && failure == null) {
+					writeRecords(toWrite);
+					journal.force(false);
+					++syncs;
+					compactNow = journalSize > compactBytes;
+				}
+			} catch (IOException e) {
+				synchronized (this) {
+					failure = e;
+				}
+			} finally {
+				ioLock.unlock();
+			}
+
+			synchronized (this) {
+				toWrite.clear();
+				spare = toWrite;
+				if (durable < target)
+					durable = target;
+				notifyAll();
+			}
+
+			if (compactNow && !last) {
+				try {
+					compact();
+				} catch (IOException e) {
+					synchronized (this) {
+						failure = e;
+						notifyAll();
+					}
+				}
+			}
+			if (last)
+				return;
+		}
+	}
+
+	// must be called while holding ioLock
+	private void writeRecords(RecordBuffer records) throws IOException {
+		ByteBuffer b = records.flip();
+		while (b.hasRemaining())
+			journalSize += journal.write(b);
+	}
+
+	private void writeSnapshot(CatalogueSnapshot snapshot) throws IOException {
+		Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+		Path temporaryFile = directory.resolve(SNAPSHOT_FILE + ".tmp");
+		long version = snapshot.getVersion();
+
+		try (FileChannel out = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			writeHeader(out, SNAPSHOT_MAGIC);
+			RecordBuffer r = new RecordBuffer();
+			r.begin(version, SNAPSHOT_VERSION); // in case the database is empty
+			r.end();
+
+			// products refer to their offer by the name it was added with
+			IdentityHashMap<Offer, String> offerNames = new IdentityHashMap<>();
+			for (Entry<String, Offer> e : snapshot.getAllAvailableOffers()) {
+				offerNames.put(e.getValue(), e.getKey());
+				putOffer(r, version, e.getKey(), e.getValue());
+				r.end();
+				if (r.size() >= FLUSH_BYTES)
+					r.writeTo(out);
+			}
+			for (Entry<String, Product> e : snapshot.getAllAvailableProducts()) {
+				r.begin(version, ADD_PRODUCT);
+				r.putString(e.getKey());
+				r.putString(e.getValue().getName());
+				r.putLong(e.getValue().getPrice());
+				r.putString(e.getValue().getSKU());
+				r.end();
+
+				Offer o = snapshot.findProductOffer(e.getKey());
+				if (o != null) {
+					r.begin(version, ATTACH_OFFER);
+					r.putString(offerNames.get(o));
+					r.putString(e.getKey());
+					r.end();
+				}
+				if (r.size() >= FLUSH_BYTES)
+					r.writeTo(out);
+			}
+			r.writeTo(out);
+			out.force(true);
+		}
+		Files.move(temporaryFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	// begins the record of an added offer, to be ended by the caller
+	private static void putOffer(RecordBuffer r, long version, String offerName, Offer offer) {
+		boolean timed = offer.getStart() != null || offer.getEnd() != null;
+		r.begin(version, timed ? ADD_TIMED_OFFER : ADD_OFFER);
+		r.putString(offerName);
+		r.putString(offer.getName());
+		r.putInt(offer.getGroupNumber());
+		r.putLong(offer.getPrice());
+		if (timed) {
+			r.putInstant(offer.getStart());
+			r.putInstant(offer.getEnd());
+		}
+	}
+
+	private static void writeHeader(FileChannel out, int magic) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		header.putInt(0, magic);
+		out.write(header, 0);
+		out.position(FILE_HEADER_SIZE);
+	}
+
+	/**
+	 * A growable buffer of encoded records
+	 */
+	private static final class RecordBuffer {
+		private ByteBuffer buffer = ByteBuffer.allocate(4096);
+		private final CRC32 crc = new CRC32();
+		private int recordStart;
+		private int lastRecordSize;
+
+		void begin(long version, byte type) {
+			recordStart = buffer.position();
+			ensure(17);
+			buffer.putInt(0).putInt(0).putLong(version).put(type); // length and CRC are filled in by 'end()'
+		}
+
+		void putString(String s) {
+			ensure(4 + 2 * s.length());
+			buffer.putInt(s.length());
+			for (int i = 0; i < s.length(); i++)
+				buffer.putChar(s.charAt(i));
+		}
+
+		void putLong(long l) {
+			ensure(8);
+			buffer.putLong(l);
+		}
+
+		void putInt(int i) {
+			ensure(4);
+			buffer.putInt(i);
+		}
+
+		// seconds and nanoseconds, exactly as given
+		void putInstant(Instant time) {
+			ensure(12);
+			if (time == null)
+				buffer.putLong(0).putInt(NO_TIME);
+			else
+				buffer.putLong(time.getEpochSecond()).putInt(time.getNano());
+		}
+
+		// returns the size of the record
+		int end() {
+			int length = buffer.position() - recordStart - 8;
+			crc.reset();
+			crc.update(buffer.array(), recordStart + 8, length);
+			buffer.putInt(recordStart, length);
+			buffer.putInt(recordStart + 4, (int) crc.getValue());
+			lastRecordSize = length + 8;
+			return lastRecordSize;
+		}
+
+		int lastRecordSize() {
+			return lastRecordSize;
+		}
+
+		int size() {
+			return buffer.position();
+		}
+
+		ByteBuffer flip() {
+			buffer.flip();
+			return buffer;
+		}
+
+		void clear() {
+			buffer.clear();
+		}
+
+		void writeTo(FileChannel out) throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				out.write(buffer);
+			buffer.clear();
+		}
+
+		private void ensure(int bytes) {
+			if (buffer.remaining() < bytes) {
+				ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+				buffer.flip();
+				buffer = bigger.put(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Reads the records of a file in order, stopping at the first torn or damaged one
+	 */
+	private static final class RecordReader {
+		private final FileChannel in;
+		private ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+		private final CRC32 crc = new CRC32();
+		private long bufferStart; // file position of the first byte in the buffer
+
+		long start; // file position of the current record
+		long end; // file position after the current record, i.e. after the last good one once 'next()' returns false
+		long version;
+		byte type;
+		boolean torn;
+
+		RecordReader(FileChannel in, int magic) throws IOException {
+			this(in, (long) FILE_HEADER_SIZE);
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			in.read(header, 0);
+			if (header.getInt(0) != magic)
+				throw new IOException("Not a catalogue journal or snapshot");
+		}
+
+		RecordReader(FileChannel in, long position) {
+			this.in = in;
+			this.bufferStart = position;
+			this.end = position;
+			buffer.flip(); // empty
+		}
+
+		boolean next() throws IOException {
+			start = end;
+			buffer.position((int) (start - bufferStart));
+			if (!fill(8))
+				return false;
+			int length = buffer.getInt(buffer.position());
+			if (length < 9 || length > MAX_RECORD_SIZE || !fill(8 + length)) {
+				torn = true;
+				return false;
+			}
+			int p = buffer.position();
+			crc.reset();
+			crc.update(buffer.array(), p + 8, length);
+			if ((int) crc.getValue() != buffer.getInt(p + 4)) {
+				torn = true;
+				return false;
+			}
+			version = buffer.getLong(p + 8);
+			type = buffer.get(p + 16);
+			buffer.position(p + 17);
+			end = start + 8 + length;
+			return true;
+		}
+
+		// make sure the given number of bytes from the current position are in the buffer, false at the end of file
+		private boolean fill(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes)
+				return true;
+			if (buffer.capacity() < bytes) {
+				ByteBuffer bigger = ByteBuffer.allocate(bytes);
+				bigger.put(buffer);
+				buffer = bigger;
+			} else {
+				buffer.compact();
+			}
+			bufferStart = start;
+			while (buffer.position() < bytes) {
+				if (in.read(buffer, bufferStart + buffer.position()) < 0)
+					break;
+			}
+			buffer.flip();
+			if (buffer.remaining() > 0 && buffer.remaining() < bytes)
+				torn = true;
+			return buffer.remaining() >= bytes;
+		}
+
+		void applyTo(ProductDAO productDatabase) throws IOException {
+			try {
+				switch (type) {
+				case SNAPSHOT_VERSION:
+					break;
+				case ADD_PRODUCT:
+					String SKU = getString();
+					String name = getString();
+					long price = buffer.getLong();
+					productDatabase.addProduct(SKU, new Product(name, price, getString()));
+					break;
+				case REMOVE_PRODUCT:
+					productDatabase.removeProduct(getString());
+					break;
+				case ADD_OFFER:
+				case ADD_TIMED_OFFER:
+					String offerName = getString();
+					String offerTitle = getString();
+					int groupNumber = buffer.getInt();
+					long offerPrice = buffer.getLong();
+					Instant start = (type == ADD_TIMED_OFFER) ? getInstant() : null;
+					Instant end = (type == ADD_TIMED_OFFER) ? getInstant() : null;
+					productDatabase.addOffer(offerName, new Offer(offerTitle, groupNumber, offerPrice, start, end));
+					break;
+				case REMOVE_OFFER:
+					productDatabase.removeOffer(getString());
+					break;
+				case ATTACH_OFFER:
+					String attached = getString();
+					productDatabase.attachOfferToProduct(attached, getString());
+					break;
+				case DETACH_OFFER:
+					productDatabase.removeOfferFromProduct(getString());
+					break;
+				default:
+					throw new IOException("Unknown change in catalogue journal: " + type);
+				}
+			} catch (ProductNotFound | OfferNotFound e) {
+				throw new IOException("Catalogue journal does not match its snapshot at version " + version);
+			}
+		}
+
+		private Instant getInstant() {
+			long seconds = buffer.getLong();
+			int nanos = buffer.getInt();
+			return (nanos == NO_TIME) ? null : Instant.ofEpochSecond(seconds, nanos);
+		}
+
+		private String getString() {
+			int length = buffer.getInt();
+			char[] chars = new char[length];
+			for (int i = 0; i < length; i++)
+				chars[i] = buffer.getChar();
+			return new String(chars);
+		}
+	}
+}
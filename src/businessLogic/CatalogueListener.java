@@ -0,0 +1,44 @@
+package businessLogic;
+
+import data.Offer;
+import data.Product;
+
+/**
+ * Gets notified of every change made to a ProductDAO. The calls are made in the order of the changes, by the thread
+ * making the change while it still holds the database write lock, so they must be quick and must not change the
+ * database themselves.
+ * @author Daniele Palazzo
+ *
+ */
+public interface CatalogueListener {
+
+	/**
+	 * Called after 'addProduct()'
+	 */
+	void productAdded(String SKU, Product product);
+
+	/**
+	 * Called after 'removeProduct()'
+	 */
+	void productRemoved(String SKU);
+
+	/**
+	 * Called after 'addOffer()'
+	 */
+	void offerAdded(String offerName, Offer offer);
+
+	/**
+	 * Called after 'removeOffer()', and for each offer removed by 'removeOffers()'
+	 */
+	void offerRemoved(String offerName);
+
+	/**
+	 * Called after 'attachOfferToProduct()'
+	 */
+	void offerAttached(String offerName, String SKU);
+
+	/**
+	 * Called after 'removeOfferFromProduct()'
+	 */
+	void offerDetached(String SKU);
+}
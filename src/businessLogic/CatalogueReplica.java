@@ -0,0 +1,260 @@
+package businessLogic;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import businessLogic.CatalogueChangeFeed.Change;
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+import metrics.LatencyHistogram;
+
+/**
+ * A till node's local read replica of a sharded catalogue: a ProductDAO for each shard, kept up to date by applying
+ * the changes of the shard's feed in order. A replica is loaded from snapshots of the shards once, and again only for
+ * a shard whose feed no longer holds the changes it has missed. Changes are pulled with 'sync()', or as they happen by
+ * a follower thread per shard once 'start()' is called. Lookups never wait for the changes being applied.
+ * @author Daniele Palazzo
+ *
+ */
+public final class CatalogueReplica implements Catalogue, Closeable {
+
+	private static final int BATCH_SIZE = 1024;
+	private static final long FOLLOW_MILLIS = 100; // how often a follower checks whether the replica is closed
+
+	private final ShardedCatalogue primary;
+	private final AtomicReferenceArray<ProductDAO> replicas;
+
+	// per shard, guarded by the monitor of the shard's batch
+	private final Change[][] batches;
+	private final long[] positions; // in the feed of the next change to apply
+	private final long[] loadedVersions; // of the shard snapshot loaded last, changes up to it are already applied
+
+	private final LatencyHistogram lag = new LatencyHistogram();
+	private final AtomicLong appliedCount = new AtomicLong();
+	private final AtomicLong reloadCount = new AtomicLong();
+
+	private Thread[] followers;
+	private volatile boolean closed;
+
+	/**
+	 * Load a replica of every shard
+	 * @param primary The sharded catalogue to replicate
+	 */
+	public CatalogueReplica(ShardedCatalogue primary) {
+		this.primary = primary;
+		int shardCount = primary.getShardCount();
+		replicas = new AtomicReferenceArray<>(shardCount);
+		batches = new Change[shardCount][BATCH_SIZE];
+		positions = new long[shardCount];
+		loadedVersions = new long[shardCount];
+		for (int shard = 0; shard < shardCount; shard++) {
+			synchronized (batches[shard]) {
+				reload(shard, false);
+			}
+		}
+	}
+
+	/**
+	 * Apply all the changes made to the shards so far
+	 */
+	public void sync() {
+		for (int shard = 0; shard < batches.length; shard++)
+			pull(shard);
+	}
+
+	/**
+	 * Start following the shards, applying their changes as they happen until the replica is closed
+	 */
+	public synchronized void start() {
+		if (followers != null)
+			return;
+		followers = new Thread[batches.length];
+		for (int shard = 0; shard < batches.length; shard++) {
+			int s = shard;
+			followers[shard] = new Thread(() -> follow(s), "catalogue-replica-" + shard);
+			followers[shard].setDaemon(true);
+			followers[shard].start();
+		}
+	}
+
+	/**
+	 * Stop following the shards
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Thread[] started;
+		synchronized (this) {
+			started = followers;
+		}
+		if (started == null)
+			return;
+		for (Thread t : started) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The time from a change being made on a shard to it being applied to the replica
+	 */
+	public LatencyHistogram.Snapshot getLag() {
+		return lag.snapshot();
+	}
+
+	/**
+	 * @return The number of changes applied
+	 */
+	public long getAppliedCount() {
+		return appliedCount.get();
+	}
+
+	/**
+	 * @return The number of times a shard had to be loaded again from a snapshot, after falling behind its feed
+	 */
+	public long getReloadCount() {
+		return reloadCount.get();
+	}
+
+	private void follow(int shard) {
+		CatalogueChangeFeed feed = primary.getFeed(shard);
+		try {
+			while (!closed) {
+				long position;
+				synchronized (batches[shard]) {
+					position = positions[shard];
+				}
+				if (feed.awaitChange(position, FOLLOW_MILLIS))
+					pull(shard);
+			}
+		} catch (InterruptedException e) {
+			// stop following
+		}
+	}
+
+	private void pull(int shard) {
+		CatalogueChangeFeed feed = primary.getFeed(shard);
+		Change[] batch = batches[shard];
+		synchronized (batch) {
+			while (true) {
+				int count = feed.read(positions[shard], batch);
+				if (count == CatalogueChangeFeed.TOO_OLD) {
+					reload(shard, true);
+					continue;
+				}
+				if (count == 0)
+					return;
+
+				ProductDAO replica = replicas.get(shard);
+				int first = 0; // skip the changes already in the snapshot the replica was loaded from
+				while (first < count && batch[first].version <= loadedVersions[shard])
+					++first;
+				boolean diverged = false;
+				for (int i = first; i < count && !diverged; i++)
+					diverged = !apply(replica, batch[i]);
+				if (diverged) { // should not happen, the shard and its replica have been changed in the same order
+					reload(shard, true);
+					continue;
+				}
+
+				long applied = System.nanoTime();
+				for (int i = first; i < count; i++)
+					lag.record(applied - batch[i].publishedNanos);
+				Arrays.fill(batch, 0, count, null);
+				positions[shard] += count;
+				appliedCount.addAndGet(count - first);
+			}
+		}
+	}
+
+	// returns false if the change does not apply to the replica
+	private static boolean apply(ProductDAO replica, Change c) {
+		try {
+			switch (c.type) {
+			case ADD_PRODUCT:
+				replica.addProduct(c.SKU, c.product);
+				break;
+			case REMOVE_PRODUCT:
+				replica.removeProduct(c.SKU);
+				break;
+			case ADD_OFFER:
+				replica.addOffer(c.offerName, c.offer);
+				break;
+			case REMOVE_OFFER:
+				replica.removeOffer(c.offerName);
+				break;
+			case ATTACH_OFFER:
+				replica.attachOfferToProduct(c.offerName, c.SKU);
+				break;
+			case DETACH_OFFER:
+				replica.removeOfferFromProduct(c.SKU);
+				break;
+			}
+			return true;
+		} catch (ProductNotFound | OfferNotFound e) {
+			return false;
+		}
+	}
+
+	// load a shard from a snapshot, must be called while holding the monitor of the shard's batch
+	private void reload(int shard, boolean again) {
+		CatalogueChangeFeed feed = primary.getFeed(shard);
+		long position = feed.getOldestPosition(); // taken first, so no change after the snapshot is missed
+		CatalogueSnapshot snapshot = primary.getShard(shard).getSnapshot();
+
+		replicas.set(shard, ProductDAO.copyOf(snapshot, true, true));
+		positions[shard] = position;
+		loadedVersions[shard] = snapshot.getVersion();
+		if (again)
+			reloadCount.incrementAndGet();
+	}
+
+	@Override
+	public Product findProduct(String SKU) {
+		return (SKU == null) ? null : replicaOf(SKU).findProduct(SKU);
+	}
+
+	@Override
+	public Offer findProductOffer(String SKU) {
+		return (SKU == null) ? PRODUCT_NOT_FOUND : replicaOf(SKU).findProductOffer(SKU);
+	}
+
+	@Override
+	public Product getProduct(String SKU) throws ProductNotFound {
+		Product p = findProduct(SKU);
+		if (p == null)
+			throw new ProductNotFound();
+		return p;
+	}
+
+	@Override
+	public Offer getProductOffer(String SKU) throws ProductNotFound {
+		Offer o = findProductOffer(SKU);
+		if (o == PRODUCT_NOT_FOUND)
+			throw new ProductNotFound();
+		return o;
+	}
+
+	/**
+	 * @return The snapshots of the replicas of all shards, each consistent on its own
+	 */
+	@Override
+	public Catalogue getSnapshot() {
+		Catalogue[] snapshots = new Catalogue[replicas.length()];
+		for (int shard = 0; shard < snapshots.length; shard++)
+			snapshots[shard] = replicas.get(shard).getSnapshot();
+		return new ShardedCatalogue.View(snapshots);
+	}
+
+	private ProductDAO replicaOf(String SKU) {
+		return replicas.get(ShardedCatalogue.shardOf(SKU, replicas.length()));
+	}
+}
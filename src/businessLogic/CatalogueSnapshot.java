@@ -0,0 +1,144 @@
+package businessLogic;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+import metrics.CheckoutMetrics;
+import metrics.CheckoutMetrics.Event;
+import metrics.CheckoutMetrics.Operation;
+
+/**
+ * An immutable copy of the product database at one point in time. As it never changes, it can be read from any number
+ * of threads without synchronization, and every item of a trolley priced against it sees the same prices and offers.
+ * @author Daniele Palazzo
+ *
+ */
+public final class CatalogueSnapshot implements Catalogue {
+
+	private final long version;
+	private final Map<String, Product> productTable;
+	private final Map<String, Offer> offerTable;
+	private final Map<String, Offer> productOfferTable; // offers by product SKU
+	private volatile CompiledCatalogue compiled; // built on first use
+
+	/**
+	 * Takes ownership of the given tables, which must not be changed afterwards
+	 * @param version The version of the database the snapshot was taken from
+	 * @param productTable Products by SKU
+	 * @param offerTable Offers by name
+	 * @param productOfferTable Attached offers by product SKU
+	 */
+	CatalogueSnapshot(long version, HashMap<String, Product> productTable, HashMap<String, Offer> offerTable,
+			HashMap<String, Offer> productOfferTable) {
+		this.version = version;
+		this.productTable = Collections.unmodifiableMap(productTable);
+		this.offerTable = Collections.unmodifiableMap(offerTable);
+		this.productOfferTable = Collections.unmodifiableMap(productOfferTable);
+	}
+
+	/**
+	 * @return The version of the database this snapshot was taken from, higher versions are more recent
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public Product getProduct(String SKU) throws ProductNotFound {
+		Product p = findProduct(SKU);
+		if (p == null)
+			throw new ProductNotFound();
+		else
+			return p;
+	}
+
+	@Override
+	public Product findProduct(String SKU) {
+		long start = CheckoutMetrics.start();
+		Product p = (SKU == null) ? null : productTable.get(SKU);
+		if (p == null)
+			CheckoutMetrics.count(Event.PRODUCT_NOT_FOUND);
+		else
+			CheckoutMetrics.record(Operation.GET_PRODUCT, start);
+		return p;
+	}
+
+	@Override
+	public Offer getProductOffer(String SKU) throws ProductNotFound {
+		Offer o = findProductOffer(SKU);
+		if (o == PRODUCT_NOT_FOUND)
+			throw new ProductNotFound();
+		else
+			return o;
+	}
+
+	@Override
+	public Offer findProductOffer(String SKU) {
+		long start = CheckoutMetrics.start();
+		if (SKU == null || !productTable.containsKey(SKU)) { // not findProduct(), which would time a GET_PRODUCT too
+			CheckoutMetrics.count(Event.PRODUCT_NOT_FOUND);
+			return PRODUCT_NOT_FOUND;
+		}
+		Offer o = productOfferTable.get(SKU);
+		CheckoutMetrics.record(Operation.GET_PRODUCT_OFFER, start);
+		return o;
+	}
+
+	/**
+	 * Get the specified offer from the snapshot
+	 * @param offerName The name of the offer
+	 * @return Returns an offer object representing the offer
+	 * @throws OfferNotFound Thrown if no such offer was in the database
+	 */
+	public Offer getOffer(String offerName) throws OfferNotFound {
+		Offer o = (offerName == null) ? null : offerTable.get(offerName);
+		if (o == null)
+			throw new OfferNotFound();
+		else
+			return o;
+	}
+
+	/**
+	 * Get the pricing rules of the snapshot compiled into flat tables, compiling them on the first call
+	 * @return The compiled snapshot, the same for every call
+	 */
+	public CompiledCatalogue compile() {
+		CompiledCatalogue c = compiled;
+		if (c == null) {
+			synchronized (this) {
+				if (compiled == null)
+					compiled = new CompiledCatalogue(productTable, productOfferTable);
+				c = compiled;
+			}
+		}
+		return c;
+	}
+
+	@Override
+	public CatalogueSnapshot getSnapshot() {
+		return this;
+	}
+
+	/**
+	 * Gets all products in the snapshot
+	 * @return
+	 */
+	public Set<Entry<String, Product>> getAllAvailableProducts() {
+		return productTable.entrySet();
+	}
+
+	/**
+	 * Gets all offers in the snapshot
+	 * @return
+	 */
+	public Set<Entry<String, Offer>> getAllAvailableOffers() {
+		return offerTable.entrySet();
+	}
+}
@@ -0,0 +1,164 @@
+package businessLogic;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import data.Money;
+import data.Offer;
+import data.Product;
+
+/**
+ * The pricing rules of a catalogue snapshot compiled into flat tables: every product gets a dense id, and its unit
+ * price, offer group size and group price sit in parallel arrays under that id. Pricing a line is then one SKU lookup
+ * and a little arithmetic, with no branch on whether the product has an offer. A snapshot is compiled on its first
+ * use (see 'CatalogueSnapshot.compile()'), i.e. once for every change published to the database.
+ * @author Daniele Palazzo
+ *
+ */
+public final class CompiledCatalogue {
+
+	public static final int NOT_FOUND = -1;
+
+	private static final int NO_GROUP = Integer.MAX_VALUE; // so that no quantity makes a whole group
+	private static final int RULE_SIZE = 3; // unit price, group size and group price, next to each other in memory
+
+	// open addressing, each slot is the spread hash of a SKU and its id + 1 (0 for an empty slot), so that probing
+	// past other SKUs does not touch them
+	private final int[] slots;
+	private final String[] SKUs;
+	private final Product[] products;
+	private final Offer[] offers;
+	private final long[] rules;
+
+	/**
+	 * @param productTable Products by SKU
+	 * @param productOfferTable Attached offers by product SKU
+	 */
+	CompiledCatalogue(Map<String, Product> productTable, Map<String, Offer> productOfferTable) {
+		int size = productTable.size();
+		int capacity = 2;
+		while (capacity < size * 2)
+			capacity <<= 1;
+		slots = new int[2 * capacity];
+		SKUs = new String[size];
+		products = new Product[size];
+		offers = new Offer[size];
+		rules = new long[RULE_SIZE * size];
+
+		int id = 0;
+		for (Entry<String, Product> e : productTable.entrySet()) {
+			Offer offer = productOfferTable.get(e.getKey());
+			boolean grouped = offer != null && offer.getGroupNumber() > 0;
+			SKUs[id] = e.getKey();
+			products[id] = e.getValue();
+			offers[id] = offer;
+			rules[RULE_SIZE * id] = e.getValue().getPrice();
+			rules[RULE_SIZE * id + 1] = grouped ? offer.getGroupNumber() : NO_GROUP;
+			rules[RULE_SIZE * id + 2] = grouped ? offer.getPrice() : 0;
+
+			int h = hash(e.getKey());
+			int slot = h & (capacity - 1);
+			while (slots[2 * slot + 1] != 0)
+				slot = (slot + 1) & (capacity - 1);
+			slots[2 * slot] = h;
+			slots[2 * slot + 1] = id + 1;
+			++id;
+		}
+	}
+
+	/**
+	 * @param SKU The SKU of a product
+	 * @return The id of the product in this compiled catalogue, or NOT_FOUND if it is not in the catalogue
+	 */
+	public int getId(String SKU) {
+		int h = hash(SKU);
+		int mask = slots.length / 2 - 1;
+		for (int slot = h & mask;; slot = (slot + 1) & mask) {
+			int id = slots[2 * slot + 1] - 1;
+			if (id < 0)
+				return NOT_FOUND;
+			if (slots[2 * slot] == h && SKU.equals(SKUs[id]))
+				return id;
+		}
+	}
+
+	/**
+	 * Look up the SKU held by part of a text (e.g. a line of a log) without copying it into a String
+	 * @param text The text
+	 * @param start The index of the first character of the SKU
+	 * @param end The index after its last character
+	 * @return The id of the product in this compiled catalogue, or NOT_FOUND if it is not in the catalogue
+	 */
+	public int getId(CharSequence text, int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++)
+			h = 31 * h + text.charAt(i); // as String.hashCode()
+		h ^= h >>> 16;
+		int mask = slots.length / 2 - 1;
+		for (int slot = h & mask;; slot = (slot + 1) & mask) {
+			int id = slots[2 * slot + 1] - 1;
+			if (id < 0)
+				return NOT_FOUND;
+			if (slots[2 * slot] == h && matches(SKUs[id], text, start, end))
+				return id;
+		}
+	}
+
+	/**
+	 * @return The number of products, ids go from 0 to this number - 1
+	 */
+	public int getProductCount() {
+		return products.length;
+	}
+
+	public Product getProduct(int id) {
+		return products[id];
+	}
+
+	/**
+	 * @return The offer attached to the product, or null if there is none
+	 */
+	public Offer getOffer(int id) {
+		return offers[id];
+	}
+
+	/**
+	 * @return The unit price of the product in pence
+	 */
+	public long getUnitPrice(int id) {
+		return rules[RULE_SIZE * id];
+	}
+
+	/**
+	 * Price a line of a trolley: whole groups at the group price, the rest at the unit price
+	 * @param id The id of the product on the line
+	 * @param quantity The quantity of the product
+	 * @return The price of the line in pence
+	 */
+	public long priceLine(int id, int quantity) {
+		int rule = RULE_SIZE * id;
+		return Money.groupPrice(rules[rule], quantity, (int) rules[rule + 1], rules[rule + 2]);
+	}
+
+	/**
+	 * @return True if the offer of the product applies to at least one group of the given quantity
+	 */
+	public boolean isOfferApplied(int id, int quantity) {
+		return quantity >= rules[RULE_SIZE * id + 1];
+	}
+
+	private static boolean matches(String SKU, CharSequence text, int start, int end) {
+		if (SKU.length() != end - start)
+			return false;
+		for (int i = 0; i < SKU.length(); i++) {
+			if (SKU.charAt(i) != text.charAt(start + i))
+				return false;
+		}
+		return true;
+	}
+
+	private static int hash(String SKU) {
+		int h = SKU.hashCode();
+		return h ^ (h >>> 16); // spread the high bits, the mask only keeps the low ones
+	}
+}
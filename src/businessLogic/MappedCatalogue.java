@@ -0,0 +1,242 @@
+package businessLogic;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+import metrics.CheckoutMetrics;
+import metrics.CheckoutMetrics.Event;
+import metrics.CheckoutMetrics.Operation;
+
+/**
+ * A read-only catalogue stored in a memory-mapped file written by MappedCatalogueWriter. Opening it only maps the
+ * file, so it takes the same time whatever the size of the catalogue: the SKU index and the records stay off the heap,
+ * and the operating system pages them in as they are looked up. As the file never changes, it can be read from any
+ * number of threads without synchronization. A product is read from the file once and then kept, so that every lookup
+ * of a SKU returns the same Product and a trolley adds up its scans on one line.
+ * <p>
+ * File layout (big-endian):
+ * <ul>
+ * <li>header: magic, format version, product count, offer count, index slot count, then the positions of the
+ * product records, the offer table and the index</li>
+ * <li>product records: SKU length (char) and chars, name length (char) and chars, price (long), offer number (int,
+ * -1 if none)</li>
+ * <li>offer table: the position of each offer record (int), followed by the offer records: group number (int), price
+ * (long), start and end (seconds (long) and nanoseconds (int) each, -1 nanoseconds if not set; not in files of format
+ * version 1), name length (char) and chars</li>
+ * <li>index: an open-addressing table of (SKU hash, product record position) int pairs, position 0 marking an empty
+ * slot</li>
+ * </ul>
+ * @author Daniele Palazzo
+ *
+ */
+public final class MappedCatalogue implements Catalogue {
+
+	static final int MAGIC = 0x434B4354;
+	static final int FORMAT_VERSION = 2;
+	static final int NO_TIME = -1;
+	static final int HEADER_SIZE = 32;
+	static final int SLOT_SIZE = 8;
+	static final int NO_OFFER = -1;
+
+	private final MappedByteBuffer buffer; // only read with absolute gets, so it can be shared between threads
+	private final int productCount;
+	private final int offerCount;
+	private final int slotMask;
+	private final int offerTable;
+	private final int index;
+	private final boolean offerPeriods; // false for files written before offers had a period of validity
+	private final ConcurrentHashMap<String, Product> products = new ConcurrentHashMap<>(); // the ones looked up so far
+
+	private MappedCatalogue(MappedByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a catalogue file");
+		int version = buffer.getInt(4);
+		if (version != 1 && version != FORMAT_VERSION)
+			throw new IOException("Unsupported catalogue format version " + version);
+		offerPeriods = (version >= 2);
+		productCount = buffer.getInt(8);
+		offerCount = buffer.getInt(12);
+		slotMask = buffer.getInt(16) - 1;
+		offerTable = buffer.getInt(24);
+		index = buffer.getInt(28);
+		if (index + (long) (slotMask + 1) * SLOT_SIZE != buffer.capacity())
+			throw new IOException("Truncated catalogue file");
+	}
+
+	/**
+	 * Map a catalogue file
+	 * @param file A file written by MappedCatalogueWriter
+	 * @return The catalogue, ready for lookups
+	 * @throws IOException Thrown if the file can't be read or is not a catalogue file
+	 */
+	public static MappedCatalogue open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Catalogue file too large: " + file);
+			// the mapping stays valid after the channel is closed
+			return new MappedCatalogue(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Write all products and offers of a catalogue snapshot to a file that can be opened as a MappedCatalogue
+	 * @param file The file to write, replaced atomically if it already exists
+	 * @param catalogue The products and offers to write
+	 * @throws IOException Thrown if the file can't be written
+	 */
+	public static void write(Path file, CatalogueSnapshot catalogue) throws IOException {
+		try (MappedCatalogueWriter writer = new MappedCatalogueWriter(file)) {
+			for (Entry<String, Offer> e : catalogue.getAllAvailableOffers())
+				writer.addOffer(e.getValue());
+			for (Entry<String, Product> e : catalogue.getAllAvailableProducts()) {
+				Offer o = catalogue.findProductOffer(e.getKey());
+				writer.addProduct(e.getValue(), (o == null) ? null : o.getName());
+			}
+			writer.commit();
+		} catch (OfferNotFound e) {
+			throw new IllegalStateException(e); // every attached offer of a snapshot is in its offer table
+		}
+	}
+
+	@Override
+	public Product getProduct(String SKU) throws ProductNotFound {
+		Product p = findProduct(SKU);
+		if (p == null)
+			throw new ProductNotFound();
+		else
+			return p;
+	}
+
+	@Override
+	public Product findProduct(String SKU) {
+		long start = CheckoutMetrics.start();
+		Product p = (SKU == null) ? null : products.get(SKU);
+		if (p == null) {
+			int record = (SKU == null) ? 0 : findRecord(SKU);
+			if (record == 0) {
+				CheckoutMetrics.count(Event.PRODUCT_NOT_FOUND);
+				return null;
+			}
+			p = readProduct(record, SKU);
+		}
+		CheckoutMetrics.record(Operation.GET_PRODUCT, start);
+		return p;
+	}
+
+	@Override
+	public Offer getProductOffer(String SKU) throws ProductNotFound {
+		Offer o = findProductOffer(SKU);
+		if (o == PRODUCT_NOT_FOUND)
+			throw new ProductNotFound();
+		else
+			return o;
+	}
+
+	@Override
+	public Offer findProductOffer(String SKU) {
+		long start = CheckoutMetrics.start();
+		int record = (SKU == null) ? 0 : findRecord(SKU);
+		if (record == 0) {
+			CheckoutMetrics.count(Event.PRODUCT_NOT_FOUND);
+			return PRODUCT_NOT_FOUND;
+		}
+		int name = record + 2 + 2 * buffer.getChar(record);
+		int offerNumber = buffer.getInt(name + 2 + 2 * buffer.getChar(name) + 8);
+		Offer o = (offerNumber == NO_OFFER) ? null : readOffer(buffer.getInt(offerTable + 4 * offerNumber));
+		CheckoutMetrics.record(Operation.GET_PRODUCT_OFFER, start);
+		return o;
+	}
+
+	/**
+	 * A mapped catalogue never changes, so it is its own snapshot
+	 */
+	@Override
+	public Catalogue getSnapshot() {
+		return this;
+	}
+
+	/**
+	 * @return The number of products in the catalogue
+	 */
+	public int getProductCount() {
+		return productCount;
+	}
+
+	/**
+	 * @return The number of offers in the catalogue
+	 */
+	public int getOfferCount() {
+		return offerCount;
+	}
+
+	static int hash(String SKU) {
+		int h = SKU.hashCode(); // specified by String, so the same in every JVM that reads the file
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return The position of the product record with the given SKU, or 0 if there is none
+	 */
+	private int findRecord(String SKU) {
+		int h = hash(SKU);
+		for (int slot = h & slotMask;; slot = (slot + 1) & slotMask) {
+			int entry = index + slot * SLOT_SIZE;
+			int record = buffer.getInt(entry + 4);
+			if (record == 0 || (buffer.getInt(entry) == h && skuEquals(record, SKU)))
+				return record;
+		}
+	}
+
+	private boolean skuEquals(int record, String SKU) {
+		int length = buffer.getChar(record);
+		if (length != SKU.length())
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (buffer.getChar(record + 2 + 2 * i) != SKU.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	private Product readProduct(int record, String SKU) {
+		int name = record + 2 + 2 * buffer.getChar(record);
+		int nameLength = buffer.getChar(name);
+		Product p = new Product(readString(name + 2, nameLength), buffer.getLong(name + 2 + 2 * nameLength), SKU);
+		Product read = products.putIfAbsent(SKU, p); // another lane may have read it first
+		return (read == null) ? p : read;
+	}
+
+	private Offer readOffer(int record) {
+		if (!offerPeriods) {
+			int nameLength = buffer.getChar(record + 12);
+			return new Offer(readString(record + 14, nameLength), buffer.getInt(record), buffer.getLong(record + 4));
+		}
+		int nameLength = buffer.getChar(record + 36);
+		return new Offer(readString(record + 38, nameLength), buffer.getInt(record), buffer.getLong(record + 4),
+				readInstant(record + 12), readInstant(record + 24));
+	}
+
+	private Instant readInstant(int position) {
+		int nanos = buffer.getInt(position + 8);
+		return (nanos == NO_TIME) ? null : Instant.ofEpochSecond(buffer.getLong(position), nanos);
+	}
+
+	private String readString(int position, int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++)
+			chars[i] = buffer.getChar(position + 2 * i);
+		return new String(chars);
+	}
+}
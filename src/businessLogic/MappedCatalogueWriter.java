@@ -0,0 +1,236 @@
+package businessLogic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+
+/**
+ * Writes a catalogue file for MappedCatalogue. Products are streamed to disk as they are added, so only the offers are
+ * kept on the heap; the SKU index is built in the mapped file on commit. The file is written next to its final name
+ * and only replaces it once complete, so a till never maps a half-written catalogue.
+ * @author Daniele Palazzo
+ *
+ */
+public final class MappedCatalogueWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int MAX_LENGTH = 0xFFFF; // lengths are stored in a char
+	private static final int OFFER_SIZE = 4 + 8 + 12 + 12 + 2; // an offer record without the chars of its name
+
+	private final Path file;
+	private final Path temporaryFile;
+	private final FileChannel channel;
+	private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	private final List<Offer> offers = new ArrayList<>();
+	private final HashMap<String, Integer> offerNumbers = new HashMap<>();
+
+	private long flushed = MappedCatalogue.HEADER_SIZE; // the header is written last
+	private int records;
+	private boolean committed;
+
+	/**
+	 * @param file The catalogue file to write, replaced on commit if it already exists
+	 * @throws IOException Thrown if the file can't be created
+	 */
+	public MappedCatalogueWriter(Path file) throws IOException {
+		this.file = file;
+		this.temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		this.channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		channel.position(flushed);
+	}
+
+	/**
+	 * Add an offer, to be attached to the products added after it
+	 * @param offer The offer, replacing any earlier offer with the same name (also for products already attached to it)
+	 */
+	public void addOffer(Offer offer) {
+		checkLength(offer.getName());
+		Integer number = offerNumbers.get(offer.getName());
+		if (number == null) {
+			offerNumbers.put(offer.getName(), offers.size());
+			offers.add(offer);
+		} else {
+			offers.set(number, offer);
+		}
+	}
+
+	/**
+	 * Add a product; if several products have the same SKU, the last one added is kept
+	 * @param product The product
+	 * @param offerName The name of the offer attached to the product, or null if there is none
+	 * @throws OfferNotFound Thrown if the offer has not been added
+	 * @throws IOException Thrown if the product can't be written, or the file would be too large to map
+	 */
+	public void addProduct(Product product, String offerName) throws OfferNotFound, IOException {
+		int offerNumber = MappedCatalogue.NO_OFFER;
+		if (offerName != null) {
+			Integer number = offerNumbers.get(offerName);
+			if (number == null)
+				throw new OfferNotFound();
+			offerNumber = number;
+		}
+		checkLength(product.getSKU());
+		checkLength(product.getName());
+
+		int size = 2 + 2 * product.getSKU().length() + 2 + 2 * product.getName().length() + 8 + 4;
+		if (flushed + out.position() + size > Integer.MAX_VALUE)
+			throw new IOException("Catalogue too large for a single mapping");
+		if (out.remaining() < size)
+			flush();
+		putString(out, product.getSKU());
+		putString(out, product.getName());
+		out.putLong(product.getPrice());
+		out.putInt(offerNumber);
+		++records;
+	}
+
+	/**
+	 * Write the offers and the SKU index, then replace the catalogue file with the one written
+	 * @throws IOException Thrown if the file can't be written
+	 */
+	public void commit() throws IOException {
+		flush();
+		int offerTable = (int) flushed;
+		int position = offerTable + 4 * offers.size();
+		for (Offer o : offers) {
+			if (out.remaining() < 4)
+				flush();
+			out.putInt(position);
+			position += OFFER_SIZE + 2 * o.getName().length();
+		}
+		flush();
+		for (Offer o : offers) {
+			if (out.remaining() < OFFER_SIZE + 2 * o.getName().length())
+				flush();
+			out.putInt(o.getGroupNumber());
+			out.putLong(o.getPrice());
+			putInstant(out, o.getStart());
+			putInstant(out, o.getEnd());
+			putString(out, o.getName());
+		}
+		flush();
+
+		int index = (int) ((flushed + 7) & ~7);
+		int slots = 2;
+		while (slots < records * 2L)
+			slots <<= 1;
+		long size = index + (long) slots * MappedCatalogue.SLOT_SIZE;
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Catalogue too large for a single mapping");
+
+		MappedByteBuffer mapping = channel.map(MapMode.READ_WRITE, 0, size); // grows the file, the index is all zeros
+		int products = buildIndex(mapping, index, slots - 1);
+		mapping.putInt(8, products);
+		mapping.putInt(12, offers.size());
+		mapping.putInt(16, slots);
+		mapping.putInt(20, MappedCatalogue.HEADER_SIZE);
+		mapping.putInt(24, offerTable);
+		mapping.putInt(28, index);
+		mapping.putInt(4, MappedCatalogue.FORMAT_VERSION);
+		mapping.putInt(0, MappedCatalogue.MAGIC);
+		mapping.force();
+		channel.close();
+
+		Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		committed = true;
+	}
+
+	/**
+	 * Discards the file being written, unless it has been committed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!committed) {
+			channel.close();
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	/**
+	 * Index every product record, reading the SKUs back from the mapping
+	 * @return The number of distinct SKUs
+	 */
+	private int buildIndex(MappedByteBuffer mapping, int index, int slotMask) {
+		int products = 0;
+		int record = MappedCatalogue.HEADER_SIZE;
+		for (int r = 0; r < records; r++) {
+			int skuLength = mapping.getChar(record);
+			int h = 0;
+			for (int i = 0; i < skuLength; i++)
+				h = 31 * h + mapping.getChar(record + 2 + 2 * i); // same as String.hashCode()
+			h ^= h >>> 16;
+
+			int slot = h & slotMask;
+			while (true) {
+				int entry = index + slot * MappedCatalogue.SLOT_SIZE;
+				int other = mapping.getInt(entry + 4);
+				if (other == 0) {
+					mapping.putInt(entry, h);
+					++products;
+				}
+				if (other == 0 || (mapping.getInt(entry) == h && sameSKU(mapping, record, other))) {
+					mapping.putInt(entry + 4, record);
+					break;
+				}
+				slot = (slot + 1) & slotMask;
+			}
+
+			int name = record + 2 + 2 * skuLength;
+			record = name + 2 + 2 * mapping.getChar(name) + 8 + 4;
+		}
+		return products;
+	}
+
+	private static boolean sameSKU(MappedByteBuffer mapping, int record, int other) {
+		int length = mapping.getChar(record);
+		if (length != mapping.getChar(other))
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (mapping.getChar(record + 2 + 2 * i) != mapping.getChar(other + 2 + 2 * i))
+				return false;
+		}
+		return true;
+	}
+
+	private void flush() throws IOException {
+		out.flip();
+		while (out.hasRemaining())
+			flushed += channel.write(out);
+		out.clear();
+	}
+
+	private static void putString(ByteBuffer out, String s) {
+		out.putChar((char) s.length());
+		for (int i = 0; i < s.length(); i++)
+			out.putChar(s.charAt(i));
+	}
+
+	private static void putInstant(ByteBuffer out, Instant time) {
+		if (time == null)
+			out.putLong(0).putInt(MappedCatalogue.NO_TIME);
+		else
+			out.putLong(time.getEpochSecond()).putInt(time.getNano());
+	}
+
+	private static void checkLength(String s) {
+		if (s.length() > MAX_LENGTH)
+			throw new IllegalArgumentException("Too long for a catalogue file: " + s.substring(0, 20) + "...");
+	}
+}
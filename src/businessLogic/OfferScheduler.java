@@ -0,0 +1,250 @@
+package businessLogic;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+
+import data.Offer;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * Attaches offers with a period of validity to their products when they start and detaches them when they end. The
+ * starts and ends of all scheduled offers are kept as a timeline ordered by time, and 'advance()' applies the ones
+ * that are due to the database, so that the database always holds the offers valid now: lookups stay a single read of
+ * the database and never check periods of validity, and the scheduler only does work at the boundaries of offers.
+ * <p>
+ * When offers overlap on a product, the one that started last is attached, and the one before it is attached again
+ * when it ends; once all have ended, the offer the product had before is attached again if it is still in the
+ * database. The names of scheduled offers must be unique in the database, as attaching an offer adds it under its
+ * name. Boundaries are applied by calling 'advance()', or as they come due by a thread once 'start()' is called; time
+ * is read from the clock given, so that a timeline can be tested without waiting for it.
+ * @author Daniele Palazzo
+ *
+ */
+public final class OfferScheduler implements Closeable {
+
+	private static final long MAX_WAIT_MILLIS = 1000; // how often the thread reads the clock, in case it is changed
+
+	// a start or end of an offer on a product
+	private static final class Boundary implements Comparable<Boundary> {
+		final Instant time;
+		final boolean start;
+		final Offer offer;
+		final String SKU;
+		final long sequence; // boundaries at the same time are applied in the order they were scheduled
+
+		Boundary(Instant time, boolean start, Offer offer, String SKU, long sequence) {
+			this.time = time;
+			this.start = start;
+			this.offer = offer;
+			this.SKU = SKU;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Boundary other) {
+			int c = time.compareTo(other.time);
+			if (c != 0)
+				return c;
+			if (start != other.start)
+				return start ? 1 : -1; // ends first, so that an offer can follow another one without overlapping
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+
+	private final ProductDAO productDatabase;
+	private final Clock clock;
+
+	// guarded by the monitor of the scheduler
+	private final PriorityQueue<Boundary> timeline = new PriorityQueue<>();
+	private final HashMap<String, ArrayList<Offer>> started = new HashMap<>(); // per SKU, in the order they started
+	private final HashMap<String, Offer> unscheduled = new HashMap<>(); // per SKU with started offers, the one before
+	private final IdentityHashMap<Offer, Integer> productCounts = new IdentityHashMap<>(); // of the started offers
+	private long sequence;
+	private long appliedCount;
+
+	private Thread thread;
+	private volatile boolean closed;
+
+	/**
+	 * @param productDatabase The database to attach offers in
+	 * @param clock The time offers start and end by
+	 */
+	public OfferScheduler(ProductDAO productDatabase, Clock clock) {
+		this.productDatabase = productDatabase;
+		this.clock = clock;
+	}
+
+	/**
+	 * Attach an offer to products for its period of validity, from the next 'advance()' on if it has already started
+	 * @param offer The offer
+	 * @param SKUs The products it is for
+	 */
+	public synchronized void schedule(Offer offer, String... SKUs) {
+		for (String SKU : SKUs) {
+			timeline.add(new Boundary((offer.getStart() == null) ? Instant.MIN : offer.getStart(), true, offer, SKU,
+					sequence++));
+			if (offer.getEnd() != null)
+				timeline.add(new Boundary(offer.getEnd(), false, offer, SKU, sequence++));
+		}
+		notifyAll(); // the next boundary may have changed
+	}
+
+	/**
+	 * Apply the starts and ends of offers that are due
+	 * @return The number of starts and ends applied
+	 */
+	public synchronized int advance() {
+		Instant now = clock.instant();
+		int count = 0;
+		while (!timeline.isEmpty() && !timeline.peek().time.isAfter(now)) {
+			Boundary b = timeline.poll();
+			if (b.start) {
+				if (b.offer.getEnd() == null || now.isBefore(b.offer.getEnd())) // not over already
+					start(b.offer, b.SKU);
+			} else {
+				end(b.offer, b.SKU);
+			}
+			++count;
+		}
+		appliedCount += count;
+		return count;
+	}
+
+	/**
+	 * @return When the next offer starts or ends, or null if none is scheduled
+	 */
+	public synchronized Instant getNextBoundary() {
+		return timeline.isEmpty() ? null : timeline.peek().time;
+	}
+
+	/**
+	 * @return The number of starts and ends still to apply
+	 */
+	public synchronized int getPendingCount() {
+		return timeline.size();
+	}
+
+	/**
+	 * @return The number of starts and ends applied
+	 */
+	public synchronized long getAppliedCount() {
+		return appliedCount;
+	}
+
+	/**
+	 * Start applying the starts and ends of offers as they come due, until the scheduler is closed
+	 */
+	public synchronized void start() {
+		if (thread != null)
+			return;
+		thread = new Thread(this::run, "offer-scheduler");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop applying the starts and ends of offers
+	 */
+	@Override
+	public void close() {
+		Thread started;
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+			started = thread;
+		}
+		if (started == null)
+			return;
+		try {
+			started.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private synchronized void run() {
+		try {
+			while (!closed) {
+				advance();
+				long wait = MAX_WAIT_MILLIS;
+				Instant now = clock.instant();
+				if (!timeline.isEmpty() && timeline.peek().time.isBefore(now.plusMillis(MAX_WAIT_MILLIS)))
+					wait = Math.max(1, Duration.between(now, timeline.peek().time).toMillis() + 1);
+				wait(wait);
+			}
+		} catch (InterruptedException e) {
+			// stop applying
+		}
+	}
+
+	private void start(Offer offer, String SKU) {
+		Offer before = productDatabase.findProductOffer(SKU);
+		if (!attach(offer, SKU))
+			return; // the product is not in the database
+		if (!started.containsKey(SKU) && before != null)
+			unscheduled.put(SKU, before);
+		started.computeIfAbsent(SKU, k -> new ArrayList<>(1)).add(offer);
+		productCounts.merge(offer, 1, Integer::sum);
+	}
+
+	private void end(Offer offer, String SKU) {
+		ArrayList<Offer> offers = started.get(SKU);
+		if (offers == null || !offers.remove(offer))
+			return; // never started
+		Offer before = null;
+		if (offers.isEmpty()) {
+			started.remove(SKU);
+			before = unscheduled.remove(SKU);
+		}
+
+		if (productDatabase.findProductOffer(SKU) == offer) { // not replaced by hand since it started
+			try {
+				if (!offers.isEmpty())
+					attach(offers.get(offers.size() - 1), SKU); // the one it overlapped is valid again
+				else if (before != null && isInDatabase(before))
+					productDatabase.attachOfferToProduct(before.getName(), SKU);
+				else
+					productDatabase.removeOfferFromProduct(SKU);
+			} catch (ProductNotFound | OfferNotFound e) {
+				// removed since, nothing to detach
+			}
+		}
+
+		if (productCounts.merge(offer, -1, Integer::sum) == 0) {
+			productCounts.remove(offer);
+			try {
+				if (productDatabase.getOffer(offer.getName()) == offer)
+					productDatabase.removeOffer(offer.getName()); // no product has it any more
+			} catch (OfferNotFound e) {
+				// removed with the last product it was attached to
+			}
+		}
+	}
+
+	// returns false if the product is not in the database
+	private boolean attach(Offer offer, String SKU) {
+		try {
+			if (!isInDatabase(offer))
+				productDatabase.addOffer(offer.getName(), offer);
+			productDatabase.attachOfferToProduct(offer.getName(), SKU);
+			return true;
+		} catch (ProductNotFound | OfferNotFound e) {
+			return false;
+		}
+	}
+
+	private boolean isInDatabase(Offer offer) {
+		try {
+			return productDatabase.getOffer(offer.getName()) == offer;
+		} catch (OfferNotFound e) {
+			return false;
+		}
+	}
+}
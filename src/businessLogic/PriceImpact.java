@@ -0,0 +1,213 @@
+package businessLogic;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import data.Offer;
+
+/**
+ * The revenue of a log of trolleys under the current catalogue and under a proposed one, as worked out by
+ * 'PriceImpactSimulator.simulate()': in total, for each SKU of the current catalogue, and for each offer attached to a
+ * product in either catalogue (the revenue of the lines of the products it is attached to, whether a group was made
+ * or not). Amounts are in pence.
+ * @author Daniele Palazzo
+ *
+ */
+public final class PriceImpact {
+
+	private final CompiledCatalogue current; // for the SKUs of the ids
+	private final Offer[] offers;
+
+	// by id in the current catalogue
+	private final long[] units;
+	private final long[] currentRevenue;
+	private final long[] proposedRevenue;
+
+	// by offer
+	private final long[] offerCurrentRevenue;
+	private final long[] offerProposedRevenue;
+
+	private long trolleyCount;
+	private long lineCount;
+	private long skippedLineCount;
+	private long currentTotal;
+	private long proposedTotal;
+
+	PriceImpact(CompiledCatalogue current, Offer[] offers) {
+		this.current = current;
+		this.offers = offers;
+		int size = current.getProductCount();
+		units = new long[size];
+		currentRevenue = new long[size];
+		proposedRevenue = new long[size];
+		offerCurrentRevenue = new long[offers.length];
+		offerProposedRevenue = new long[offers.length];
+	}
+
+	/**
+	 * @return The number of trolleys in the log
+	 */
+	public long getTrolleyCount() {
+		return trolleyCount;
+	}
+
+	/**
+	 * @return The number of lines priced
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return The number of lines not priced, as their SKU is not in the current catalogue or they can't be read
+	 */
+	public long getSkippedLineCount() {
+		return skippedLineCount;
+	}
+
+	public long getCurrentTotal() {
+		return currentTotal;
+	}
+
+	public long getProposedTotal() {
+		return proposedTotal;
+	}
+
+	/**
+	 * @return The proposed total less the current one
+	 */
+	public long getTotalDelta() {
+		return proposedTotal - currentTotal;
+	}
+
+	/**
+	 * @return The number of SKUs, indexes go from 0 to this number - 1
+	 */
+	public int getSKUCount() {
+		return units.length;
+	}
+
+	public String getSKU(int index) {
+		return current.getProduct(index).getSKU();
+	}
+
+	/**
+	 * @return The index of a SKU, or CompiledCatalogue.NOT_FOUND if it is not in the current catalogue
+	 */
+	public int indexOf(String SKU) {
+		return current.getId(SKU);
+	}
+
+	/**
+	 * @return The number of units of the SKU in the log
+	 */
+	public long getUnits(int index) {
+		return units[index];
+	}
+
+	public long getCurrentRevenue(int index) {
+		return currentRevenue[index];
+	}
+
+	/**
+	 * @return The revenue of the SKU under the proposed catalogue, 0 if it is not in it
+	 */
+	public long getProposedRevenue(int index) {
+		return proposedRevenue[index];
+	}
+
+	public long getRevenueDelta(int index) {
+		return proposedRevenue[index] - currentRevenue[index];
+	}
+
+	/**
+	 * @param count The number of SKUs wanted
+	 * @return The indexes of the SKUs whose revenue changes most (up or down), largest change first
+	 */
+	public int[] getLargestChanges(int count) {
+		Integer[] indexes = new Integer[units.length];
+		for (int i = 0; i < indexes.length; i++)
+			indexes[i] = i;
+		Arrays.sort(indexes, Comparator.comparingLong((Integer i) -> Math.abs(getRevenueDelta(i))).reversed());
+		int[] largest = new int[Math.min(count, indexes.length)];
+		for (int i = 0; i < largest.length; i++)
+			largest[i] = indexes[i];
+		return largest;
+	}
+
+	/**
+	 * @return The number of offers, indexes go from 0 to this number - 1
+	 */
+	public int getOfferCount() {
+		return offers.length;
+	}
+
+	public Offer getOffer(int index) {
+		return offers[index];
+	}
+
+	/**
+	 * @return The revenue of the lines of the products the offer is attached to in the current catalogue
+	 */
+	public long getOfferCurrentRevenue(int index) {
+		return offerCurrentRevenue[index];
+	}
+
+	/**
+	 * @return The revenue of the lines of the products the offer is attached to in the proposed catalogue
+	 */
+	public long getOfferProposedRevenue(int index) {
+		return offerProposedRevenue[index];
+	}
+
+	public long getOfferRevenueDelta(int index) {
+		return offerProposedRevenue[index] - offerCurrentRevenue[index];
+	}
+
+	void addTrolley() {
+		++trolleyCount;
+	}
+
+	void skipLine() {
+		++skippedLineCount;
+	}
+
+	/**
+	 * Add a priced line
+	 * @param id The id of the product in the current catalogue
+	 * @param currentOffer The index of the offer attached to it in the current catalogue, or -1
+	 * @param proposedOffer The index of the offer attached to it in the proposed catalogue, or -1
+	 */
+	void addLine(int id, int quantity, long current, long proposed, int currentOffer, int proposedOffer) {
+		++lineCount;
+		units[id] += quantity;
+		currentRevenue[id] += current;
+		proposedRevenue[id] += proposed;
+		currentTotal += current;
+		proposedTotal += proposed;
+		if (currentOffer >= 0)
+			offerCurrentRevenue[currentOffer] += current;
+		if (proposedOffer >= 0)
+			offerProposedRevenue[proposedOffer] += proposed;
+	}
+
+	/**
+	 * Add everything counted by another result for the same catalogues (e.g. of another part of the log)
+	 */
+	void merge(PriceImpact other) {
+		trolleyCount += other.trolleyCount;
+		lineCount += other.lineCount;
+		skippedLineCount += other.skippedLineCount;
+		currentTotal += other.currentTotal;
+		proposedTotal += other.proposedTotal;
+		for (int i = 0; i < units.length; i++) {
+			units[i] += other.units[i];
+			currentRevenue[i] += other.currentRevenue[i];
+			proposedRevenue[i] += other.proposedRevenue[i];
+		}
+		for (int i = 0; i < offers.length; i++) {
+			offerCurrentRevenue[i] += other.offerCurrentRevenue[i];
+			offerProposedRevenue[i] += other.offerProposedRevenue[i];
+		}
+	}
+}
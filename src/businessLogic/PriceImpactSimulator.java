@@ -0,0 +1,206 @@
+package businessLogic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import data.Offer;
+
+/**
+ * Works out what a change of offers or prices would have done to the revenue of recorded trolleys, before it is made:
+ * every trolley of a log is priced under the current catalogue and under the proposed one in the same pass, and the
+ * revenues are added up in total, per SKU and per offer (see PriceImpact). The proposed catalogue is either given, or a
+ * copy of the current one to make the changes on (see 'getProposed()').
+ * <p>
+ * A log has a trolley per line, each line of the trolley as SKU,quantity with lines separated by ';' - further fields
+ * of a line are ignored, so a log of compact receipts (see ReceiptRenderer) can be simulated as it is. Lines of the
+ * same SKU in a trolley are priced together. Both catalogues are compiled (see CompiledCatalogue) and the log is priced
+ * in parallel, each thread adding up into arrays of its own which are merged at the end.
+ * @author Daniele Palazzo
+ *
+ */
+public final class PriceImpactSimulator {
+
+	private static final int NO_OFFER = -1;
+
+	private final Catalogue current;
+	private final Catalogue proposed;
+
+	/**
+	 * Simulate changes made to a copy of a catalogue
+	 * @param current The catalogue, a ProductDAO or a CatalogueSnapshot (its snapshot when the copy is made)
+	 */
+	public PriceImpactSimulator(Catalogue current) {
+		CatalogueSnapshot snapshot = snapshotOf(current);
+		this.current = snapshot;
+		this.proposed = ProductDAO.copyOf(snapshot, false, false);
+	}
+
+	/**
+	 * @param current The catalogue in use, a ProductDAO or a CatalogueSnapshot
+	 * @param proposed The catalogue with the changes to simulate, a ProductDAO or a CatalogueSnapshot
+	 */
+	public PriceImpactSimulator(Catalogue current, Catalogue proposed) {
+		this.current = current;
+		this.proposed = proposed;
+	}
+
+	/**
+	 * @return The proposed catalogue, a ProductDAO to make the changes on if it was copied from the current one
+	 */
+	public Catalogue getProposed() {
+		return proposed;
+	}
+
+	/**
+	 * Price a log file of trolleys (UTF-8) under both catalogues
+	 * @param log The log
+	 * @return The revenues under both catalogues
+	 * @throws IOException Thrown if the log can't be read
+	 */
+	public PriceImpact simulate(Path log) throws IOException {
+		try (Stream<String> trolleys = Files.lines(log, StandardCharsets.UTF_8)) {
+			return simulate(trolleys);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Price trolleys under both catalogues, using the snapshots of the catalogues taken now
+	 * @param trolleys The lines of a log, one per trolley
+	 * @return The revenues under both catalogues
+	 */
+	public PriceImpact simulate(Stream<String> trolleys) {
+		Rules rules = new Rules(snapshotOf(current).compile(), snapshotOf(proposed).compile());
+		ConcurrentLinkedQueue<Worker> workers = new ConcurrentLinkedQueue<>();
+		ThreadLocal<Worker> worker = ThreadLocal.withInitial(() -> {
+			Worker w = new Worker(rules);
+			workers.add(w);
+			return w;
+		});
+		trolleys.parallel().forEach(trolley -> worker.get().price(trolley));
+
+		PriceImpact impact = new PriceImpact(rules.current, rules.offers);
+		for (Worker w : workers)
+			impact.merge(w.impact);
+		return impact;
+	}
+
+	private static CatalogueSnapshot snapshotOf(Catalogue catalogue) {
+		Catalogue snapshot = catalogue.getSnapshot();
+		if (!(snapshot instanceof CatalogueSnapshot))
+			throw new IllegalArgumentException("Only the snapshots of a ProductDAO can be compiled");
+		return (CatalogueSnapshot) snapshot;
+	}
+
+	// the pricing rules of both catalogues, by id in the current one
+	private static final class Rules {
+		final CompiledCatalogue current;
+		final CompiledCatalogue proposed;
+		final int[] proposedIds; // NOT_FOUND if the product is not in the proposed catalogue
+		final Offer[] offers; // attached to a product in either catalogue
+		final int[] currentOffers; // index in offers, or NO_OFFER
+		final int[] proposedOffers;
+
+		Rules(CompiledCatalogue current, CompiledCatalogue proposed) {
+			this.current = current;
+			this.proposed = proposed;
+			int size = current.getProductCount();
+			proposedIds = new int[size];
+			currentOffers = new int[size];
+			proposedOffers = new int[size];
+
+			IdentityHashMap<Offer, Integer> indexes = new IdentityHashMap<>();
+			for (int id = 0; id < size; id++) {
+				proposedIds[id] = proposed.getId(current.getProduct(id).getSKU());
+				currentOffers[id] = indexOf(current.getOffer(id), indexes);
+				proposedOffers[id] = (proposedIds[id] == CompiledCatalogue.NOT_FOUND) ? NO_OFFER
+						: indexOf(proposed.getOffer(proposedIds[id]), indexes);
+			}
+			offers = new Offer[indexes.size()];
+			indexes.forEach((offer, index) -> offers[index] = offer);
+		}
+
+		private static int indexOf(Offer offer, IdentityHashMap<Offer, Integer> indexes) {
+			return (offer == null) ? NO_OFFER : indexes.computeIfAbsent(offer, o -> indexes.size());
+		}
+	}
+
+	// prices the trolleys given to one thread
+	private static final class Worker {
+		final Rules rules;
+		final PriceImpact impact;
+		final int[] quantities; // of the trolley being priced, by id in the current catalogue
+		int[] ids = new int[64]; // the ids with a quantity
+		int idCount;
+
+		Worker(Rules rules) {
+			this.rules = rules;
+			impact = new PriceImpact(rules.current, rules.offers);
+			quantities = new int[rules.current.getProductCount()];
+		}
+
+		void price(String trolley) {
+			impact.addTrolley();
+			int length = trolley.length();
+			for (int start = 0; start < length;) {
+				int end = trolley.indexOf(';', start);
+				if (end < 0)
+					end = length;
+				if (end > start)
+					add(trolley, start, end);
+				start = end + 1;
+			}
+
+			for (int i = 0; i < idCount; i++) {
+				int id = ids[i];
+				int quantity = quantities[id];
+				quantities[id] = 0;
+				int proposedId = rules.proposedIds[id];
+				long proposed = (proposedId == CompiledCatalogue.NOT_FOUND) ? 0 // not sold any more
+						: rules.proposed.priceLine(proposedId, quantity);
+				impact.addLine(id, quantity, rules.current.priceLine(id, quantity), proposed, rules.currentOffers[id],
+						rules.proposedOffers[id]);
+			}
+			idCount = 0;
+		}
+
+		// a line of a trolley, from start to end of the text: SKU,quantity[,...]
+		private void add(String trolley, int start, int end) {
+			int comma = trolley.indexOf(',', start);
+			if (comma < 0 || comma > end) {
+				impact.skipLine();
+				return;
+			}
+			int quantity = 0;
+			for (int i = comma + 1; i < end && trolley.charAt(i) != ','; i++) {
+				char c = trolley.charAt(i);
+				if (c < '0' || c > '9' || quantity > (Integer.MAX_VALUE - 9) / 10) {
+					quantity = 0;
+					break;
+				}
+				quantity = quantity * 10 + (c - '0');
+			}
+			int id = rules.current.getId(trolley, start, comma);
+			if (id == CompiledCatalogue.NOT_FOUND || quantity == 0) {
+				if (!trolley.startsWith("TOTAL,", start)) // the totals of a compact receipt
+					impact.skipLine();
+				return;
+			}
+
+			if (quantities[id] == 0) {
+				if (idCount == ids.length)
+					ids = Arrays.copyOf(ids, idCount * 2);
+				ids[idCount++] = id;
+			}
+			quantities[id] = (int) Math.min((long) quantities[id] + quantity, Integer.MAX_VALUE);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package businessLogic;
+
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+
+/**
+ * The result of pricing one trolley of a batch
+ * @author Daniele Palazzo
+ *
+ */
+public class PricedTrolley {
+
+	private ShoppingTrolley trolley;
+	private PricingResult result;
+	private boolean valid;
+
+	PricedTrolley(ShoppingTrolley trolley, PricingResult result, boolean valid) {
+		this.trolley = trolley;
+		this.result = result;
+		this.valid = valid;
+	}
+
+	public ShoppingTrolley getTrolley() {
+		return trolley;
+	}
+
+	/**
+	 * @return The total for the trolley in pence
+	 * @throws InvalidItemInTrolley Thrown if the trolley contains an item which is not in the database
+	 */
+	public long getTotal() throws InvalidItemInTrolley {
+		if (!valid)
+			throw new InvalidItemInTrolley();
+		return result.getTotal();
+	}
+
+	/**
+	 * @return The priced lines of the trolley (without the lines of items which are not in the database)
+	 */
+	public PricingResult getPricingResult() {
+		return result;
+	}
+
+	public String getOfferAppliedTo(Product p) {
+		return result.getOfferAppliedTo(p);
+	}
+}
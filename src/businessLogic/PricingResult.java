@@ -0,0 +1,177 @@
+package businessLogic;
+
+import java.util.Arrays;
+
+import data.Money;
+import data.Offer;
+import data.Product;
+import data.SkuIndex;
+
+/**
+ * The priced lines of a trolley, as filled by 'TrolleyTotalCalculator.calculate()': for each line its quantity, the
+ * groups its offer was applied to and the units left over, the line total and the saving over the unit price. The
+ * lines are kept in arrays that are reused when the result is filled again, so a result allocated once can serve
+ * every trolley of a lane, and receipts and reports read everything from it without pricing or looking up again.
+ * @author Daniele Palazzo
+ *
+ */
+public final class PricingResult {
+
+	private static final int INITIAL_LINES = 16;
+
+	private Product[] products;
+	private int[] quantities;
+	private Offer[] appliedOffers;
+	private int[] groups;
+	private long[] lineTotals;
+	private long[] savings;
+	private int lineCount;
+	private long total;
+	private long saved;
+
+	private final SkuIndex lineIndex = new SkuIndex(); // built on first lookup by product
+	private boolean indexed;
+
+	public PricingResult() {
+		this(INITIAL_LINES);
+	}
+
+	/**
+	 * @param expectedLines The number of lines the result should hold without growing
+	 */
+	public PricingResult(int expectedLines) {
+		int capacity = Math.max(expectedLines, 1);
+		products = new Product[capacity];
+		quantities = new int[capacity];
+		appliedOffers = new Offer[capacity];
+		groups = new int[capacity];
+		lineTotals = new long[capacity];
+		savings = new long[capacity];
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	public Product getProduct(int line) {
+		return products[line];
+	}
+
+	public int getQuantity(int line) {
+		return quantities[line];
+	}
+
+	/**
+	 * @return The offer applied to the line, or null if none was (no offer, or too few units for a group)
+	 */
+	public Offer getAppliedOffer(int line) {
+		return appliedOffers[line];
+	}
+
+	/**
+	 * @return The number of groups priced at the offer's group price
+	 */
+	public int getGroupsApplied(int line) {
+		return groups[line];
+	}
+
+	/**
+	 * @return The number of units priced at the unit price
+	 */
+	public int getRemainder(int line) {
+		return (appliedOffers[line] == null) ? quantities[line]
+				: quantities[line] - groups[line] * appliedOffers[line].getGroupNumber();
+	}
+
+	/**
+	 * @return The price of the line in pence
+	 */
+	public long getLineTotal(int line) {
+		return lineTotals[line];
+	}
+
+	/**
+	 * @return The saving of the line over its unit price in pence
+	 */
+	public long getSaving(int line) {
+		return savings[line];
+	}
+
+	/**
+	 * @return The total of the trolley in pence
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return The savings of all lines in pence
+	 */
+	public long getSavings() {
+		return saved;
+	}
+
+	/**
+	 * @return The name of the offer applied to the line of a product, or null if there is none
+	 */
+	public String getOfferAppliedTo(Product p) {
+		if (!indexed) {
+			for (int line = 0; line < lineCount; line++)
+				index(line);
+			indexed = true;
+		}
+		int line = lineIndex.get(p.getSKU());
+		return (line == SkuIndex.NOT_FOUND || appliedOffers[line] == null) ? null : appliedOffers[line].getName();
+	}
+
+	/**
+	 * Empty the result, to be filled for another trolley
+	 */
+	void clear() {
+		Arrays.fill(products, 0, lineCount, null);
+		Arrays.fill(appliedOffers, 0, lineCount, null);
+		lineCount = 0;
+		total = Money.ZERO;
+		saved = Money.ZERO;
+		if (indexed) {
+			lineIndex.clear();
+			indexed = false;
+		}
+	}
+
+	/**
+	 * Add a priced line
+	 * @param offer The offer attached to the product, or null
+	 * @param applied True if the offer was applied to the line
+	 * @param lineTotal The price of the line
+	 */
+	void addLine(Product p, int quantity, Offer offer, boolean applied, long lineTotal) {
+		if (lineCount == products.length) {
+			int capacity = lineCount * 2;
+			products = Arrays.copyOf(products, capacity);
+			quantities = Arrays.copyOf(quantities, capacity);
+			appliedOffers = Arrays.copyOf(appliedOffers, capacity);
+			groups = Arrays.copyOf(groups, capacity);
+			lineTotals = Arrays.copyOf(lineTotals, capacity);
+			savings = Arrays.copyOf(savings, capacity);
+		}
+		int line = lineCount++;
+		products[line] = p;
+		quantities[line] = quantity;
+		appliedOffers[line] = applied ? offer : null;
+		groups[line] = applied ? quantity / offer.getGroupNumber() : 0;
+		lineTotals[line] = lineTotal;
+		savings[line] = Money.multiply(p.getPrice(), quantity) - lineTotal;
+		total = Money.add(total, lineTotal);
+		saved = Money.add(saved, savings[line]);
+		if (indexed)
+			index(line);
+	}
+
+	// lines of products with the same SKU are found by the first one with an offer applied
+	private void index(int line) {
+		int first = lineIndex.get(products[line].getSKU());
+		if (first == SkuIndex.NOT_FOUND || (appliedOffers[first] == null && appliedOffers[line] != null))
+			lineIndex.put(products[line].getSKU(), line);
+	}
+}
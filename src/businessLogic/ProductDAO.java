@@ -1,15 +1,25 @@
 package businessLogic;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import data.Offer;
 import data.Product;
 import exceptions.OfferNotFound;
 import exceptions.ProductNotFound;
+import metrics.CheckoutMetrics;
+import metrics.CheckoutMetrics.Event;
+import metrics.CheckoutMetrics.Operation;
 
 /**
  * A Data Access Object for accessing the products (and offers) database 
@@ -17,34 +27,106 @@ import exceptions.ProductNotFound;
  *
  */
 
-public class ProductDAO {
+public class ProductDAO implements Catalogue {
 
 	// the database - could be replaced by a real SQL database connection
 	// In that case, these could be used as cache
-	private HashMap<String, Product> productTable;
-	private HashMap<String, Offer> offerTable;
-	private HashMap<Product, Offer> productOfferConTable;
+	private Map<String, Product> productTable;
+	private Map<String, Offer> offerTable;
+	private Map<Product, Offer> productOfferConTable;
+
+	// reverse of productOfferConTable (the products each offer is attached to), only used by writers
+	private HashMap<Offer, Set<Product>> offerProductConTable = new HashMap<>();
+
+	// serializes catalogue changes so that each one is applied to all tables as a unit
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	// incremented on every change; the snapshot of the current version is taken on first request
+	private long version;
+	private volatile CatalogueSnapshot snapshot;
+
+	// notified of every change, only used by writers
+	private final List<CatalogueListener> listeners = new ArrayList<>(1);
+
+	// if false, an offer is removed with the last product it is attached to
+	private final boolean keepsOrphanOffers;
 
 	public ProductDAO() {
-		productTable = new HashMap<>();
-		offerTable = new HashMap<>();
-		productOfferConTable = new HashMap<>();
+		this(false);
+	}
+
+	/**
+	 * @param concurrent If true, the database can be shared between several checkout lanes: lookups are lock-free and
+	 *                   never block on catalogue changes made by other threads
+	 */
+	public ProductDAO(boolean concurrent) {
+		this(concurrent, true);
+	}
+
+	/**
+	 * @param sampleData If false, the database starts empty (e.g. to be filled from a journal)
+	 */
+	ProductDAO(boolean concurrent, boolean sampleData) {
+		this(concurrent, sampleData, false);
+	}
+
+	/**
+	 * @param keepsOrphanOffers If true, offers are only removed by 'removeOffer()', not with the last product they are
+	 *                          attached to (e.g. for a shard, which must hold the same offers as the other shards)
+	 */
+	ProductDAO(boolean concurrent, boolean sampleData, boolean keepsOrphanOffers) {
+		this.keepsOrphanOffers = keepsOrphanOffers;
+		if (concurrent) {
+			productTable = new ConcurrentHashMap<>();
+			offerTable = new ConcurrentHashMap<>();
+			productOfferConTable = new ConcurrentHashMap<>();
+		} else {
+			productTable = new HashMap<>();
+			offerTable = new HashMap<>();
+			productOfferConTable = new HashMap<>();
+		}
+		if (!sampleData)
+			return;
 
 		// fill product table (would already be in real database)
-		productTable.put("A", new Product("Apple", 0.50f, "A"));
-		productTable.put("B", new Product("Beetroot", 0.30f, "B"));
-		productTable.put("C", new Product("Carrot", 0.20f, "C"));
-		productTable.put("D", new Product("Date", 0.15f, "D"));
+		productTable.put("A", new Product("Apple", 50, "A"));
+		productTable.put("B", new Product("Beetroot", 30, "B"));
+		productTable.put("C", new Product("Carrot", 20, "C"));
+		productTable.put("D", new Product("Date", 15, "D"));
 
 		// fill offer table (would already be in real database)
-		offerTable.put("3 for 1.30", new Offer("3 for 1.30", 3, 1.30f));
-		offerTable.put("2 for 0.45", new Offer("2 for 0.45", 2, 0.45f));
+		offerTable.put("3 for £1.30", new Offer("3 for £1.30", 3, 130));
+		offerTable.put("2 for £0.45", new Offer("2 for £0.45", 2, 45));
 
 		// connect products to offers (would be handled by database)
-		productOfferConTable.put(productTable.get("A"), offerTable.get("3 for 1.30"));
-		productOfferConTable.put(productTable.get("B"), offerTable.get("2 for 0.45"));
+		connect(productTable.get("A"), offerTable.get("3 for £1.30"));
+		connect(productTable.get("B"), offerTable.get("2 for £0.45"));
 	}
 	
+	/**
+	 * Make a new database holding the products, offers and connections of a snapshot (e.g. a replica, or a copy to
+	 * try changes on)
+	 */
+	static ProductDAO copyOf(CatalogueSnapshot snapshot, boolean concurrent, boolean keepsOrphanOffers) {
+		ProductDAO copy = new ProductDAO(concurrent, false, keepsOrphanOffers);
+		IdentityHashMap<Offer, String> offerNames = new IdentityHashMap<>();
+		try {
+			for (Entry<String, Offer> e : snapshot.getAllAvailableOffers()) {
+				offerNames.put(e.getValue(), e.getKey());
+				copy.addOffer(e.getKey(), e.getValue());
+			}
+			for (Entry<String, Product> e : snapshot.getAllAvailableProducts()) {
+				copy.addProduct(e.getKey(), e.getValue());
+				Offer o = snapshot.findProductOffer(e.getKey());
+				if (o != null)
+					copy.attachOfferToProduct(offerNames.get(o), e.getKey());
+			}
+		} catch (ProductNotFound | OfferNotFound e) {
+			throw new IllegalStateException("Inconsistent catalogue snapshot", e);
+		}
+		return copy;
+	}
+
 	/**
 	 * Get product from database
 	 * @param SKU Unique product identified of the desired product
@@ -52,20 +134,43 @@ public class ProductDAO {
 	 * @throws ProductNotFound Exception is thrown if the product is not in the database
 	 */
 
+	@Override
 	public Product getProduct(String SKU) throws ProductNotFound {
-		if (productTable.get(SKU) == null)
+		Product p = findProduct(SKU);
+		if (p == null)
 			throw new ProductNotFound();
 		else
-			return productTable.get(SKU);
+			return p;
 	}
-	
+
+	@Override
+	public Product findProduct(String SKU) {
+		long start = CheckoutMetrics.start();
+		Product p = (SKU == null) ? null : productTable.get(SKU); // single read, the table may change in between
+		if (p == null)
+			CheckoutMetrics.count(Event.PRODUCT_NOT_FOUND);
+		else
+			CheckoutMetrics.record(Operation.GET_PRODUCT, start);
+		return p;
+	}
+
 	/**
 	 * Add a new product to the database
 	 * @param SKU The SKU of the new product, if it matches an old SKU, that product will be replaced in the database
 	 * @param product The new product to put in the database
 	 */
 	public void addProduct(String SKU, Product product) {
-		productTable.put(SKU, product);
+		writeLock.lock();
+		try {
+			Product old = productTable.put(SKU, product);
+			if (old != null && old != product)
+				disconnect(old); // the replaced product is no longer in the database
+			publishChange();
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).productAdded(SKU, product);
+		} finally {
+			writeLock.unlock();
+		}
 	}
 
 	/**
@@ -74,15 +179,22 @@ public class ProductDAO {
 	 * @throws ProductNotFound Thrown if no such product exists in the database
 	 */
 	public void removeProduct(String SKU) throws ProductNotFound {
-		Product p = getProduct(SKU);
-		productTable.remove(SKU);
+		writeLock.lock();
+		try {
+			Product p = getProduct(SKU);
+			productTable.remove(SKU);
 
-		// remove connection to offer if present in database (keep data integrity)
-		Offer o = productOfferConTable.get(p);
-		productOfferConTable.remove(p);
-		if (o != null && !productOfferConTable.containsValue(o)) // offer attached to any other products? if not, remove
-																	// it
-			offerTable.remove(o.getName());
+			// remove connection to offer if present in database (keep data integrity)
+			Offer o = disconnect(p);
+			// offer attached to any other products? if not, remove it (unless orphan offers are kept)
+			if (o != null && !keepsOrphanOffers && !offerProductConTable.containsKey(o))
+				offerTable.remove(o.getName());
+			publishChange();
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).productRemoved(SKU);
+		} finally {
+			writeLock.unlock();
+		}
 	}
 
 	/**
@@ -92,10 +204,11 @@ public class ProductDAO {
 	 * @throws OfferNotFound Thrown if no such offer is in the database
 	 */
 	public Offer getOffer(String offerName) throws OfferNotFound {
-		if (offerTable.get(offerName) == null)
+		Offer o = (offerName == null) ? null : offerTable.get(offerName);
+		if (o == null)
 			throw new OfferNotFound();
 		else
-			return offerTable.get(offerName);
+			return o;
 	}
 
 	/**
@@ -104,18 +217,52 @@ public class ProductDAO {
 	 * @return Returns an offer object describing the associated offer
 	 * @throws ProductNotFound Thrown if no such product exists in the database
 	 */
+	@Override
 	public Offer getProductOffer(String SKU) throws ProductNotFound {
-		Product p = getProduct(SKU);
-		return productOfferConTable.get(p);
+		Offer o = findProductOffer(SKU);
+		if (o == PRODUCT_NOT_FOUND)
+			throw new ProductNotFound();
+		else
+			return o;
+	}
+
+	@Override
+	public Offer findProductOffer(String SKU) {
+		long start = CheckoutMetrics.start();
+		Product p = (SKU == null) ? null : productTable.get(SKU); // not findProduct(), which would time a GET_PRODUCT too
+		if (p == null) {
+			CheckoutMetrics.count(Event.PRODUCT_NOT_FOUND);
+			return PRODUCT_NOT_FOUND;
+		}
+		Offer o = productOfferConTable.get(p);
+		CheckoutMetrics.record(Operation.GET_PRODUCT_OFFER, start);
+		return o;
 	}
 
 	/**
 	 * Add a new offer to the database (will not be associated with any products until manually done so using 'attachOfferToProduct()')
-	 * @param offerName The name of the offer that may be displayed to the customer
+	 * @param offerName The name of the offer that may be displayed to the customer, if it matches an old offer name, that offer will be replaced in the database (and on all products it is attached to)
 	 * @param offer The offer object describing the offer
 	 */
 	public void addOffer(String offerName, Offer offer) {
-		offerTable.put(offerName, offer);
+		writeLock.lock();
+		try {
+			Offer old = offerTable.put(offerName, offer);
+
+			// keep products attached to the replaced offer pointing at the one in the database (keep data integrity)
+			if (old != null && old != offer) {
+				Set<Product> attached = offerProductConTable.get(old);
+				if (attached != null) {
+					for (Product p : new ArrayList<>(attached))
+						connect(p, offer);
+				}
+			}
+			publishChange();
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).offerAdded(offerName, offer);
+		} finally {
+			writeLock.unlock();
+		}
 	}
 
 	/**
@@ -124,16 +271,41 @@ public class ProductDAO {
 	 * @throws OfferNotFound Thrown if no such offer exists in the database
 	 */
 	public void removeOffer(String offerName) throws OfferNotFound {
-		Offer o = getOffer(offerName);
-		offerTable.remove(offerName);
-
-		// remove all connections to products (keep data integrity)
-		Iterator<Map.Entry<Product, Offer>> it = productOfferConTable.entrySet().iterator();
-		while (it.hasNext()) {
-			Map.Entry<Product, Offer> pair = it.next();
-			if (pair.getValue().equals(o)) {
-				it.remove();
+		writeLock.lock();
+		try {
+			deleteOffer(offerName, getOffer(offerName));
+			publishChange();
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).offerRemoved(offerName);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Remove several offers from the database (and from all associated products) in one change. Either all of them
+	 * are removed or, if any is missing, none.
+	 * @param offerNames The names of the offers to remove, a name given more than once is removed once
+	 * @throws OfferNotFound Thrown if any of the offers does not exist in the database
+	 */
+	public void removeOffers(Collection<String> offerNames) throws OfferNotFound {
+		offerNames = new LinkedHashSet<>(offerNames); // listeners are told of each removed offer once
+		writeLock.lock();
+		try {
+			List<Offer> offers = new ArrayList<>(offerNames.size());
+			for (String offerName : offerNames)
+				offers.add(getOffer(offerName)); // check all before removing any
+
+			int i = 0;
+			for (String offerName : offerNames)
+				deleteOffer(offerName, offers.get(i++));
+			publishChange();
+			for (String offerName : offerNames) {
+				for (int l = 0; l < listeners.size(); l++)
+					listeners.get(l).offerRemoved(offerName);
 			}
+		} finally {
+			writeLock.unlock();
 		}
 	}
 
@@ -145,7 +317,15 @@ public class ProductDAO {
 	 * @throws OfferNotFound Thrown if no such offer exists in the database
 	 */
 	public void attachOfferToProduct(String offerName, String SKU) throws ProductNotFound, OfferNotFound {
-		productOfferConTable.put(getProduct(SKU), getOffer(offerName));
+		writeLock.lock();
+		try {
+			connect(getProduct(SKU), getOffer(offerName));
+			publishChange();
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).offerAttached(offerName, SKU);
+		} finally {
+			writeLock.unlock();
+		}
 	}
 
 	/**
@@ -154,7 +334,62 @@ public class ProductDAO {
 	 * @throws ProductNotFound Thrown if no such product exists in the database
 	 */
 	public void removeOfferFromProduct(String SKU) throws ProductNotFound {
-		productOfferConTable.remove(getProduct(SKU));
+		writeLock.lock();
+		try {
+			disconnect(getProduct(SKU));
+			publishChange();
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).offerDetached(SKU);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Notify a listener of all later changes to the database
+	 * @param listener The listener to notify
+	 */
+	public void addListener(CatalogueListener listener) {
+		writeLock.lock();
+		try {
+			listeners.add(listener);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Stop notifying a listener added with 'addListener()'
+	 * @param listener The listener to remove
+	 */
+	public void removeListener(CatalogueListener listener) {
+		writeLock.lock();
+		try {
+			listeners.remove(listener);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * @return The version of the latest change, only consistent when read from a CatalogueListener (or by the thread
+	 *         holding the write lock)
+	 */
+	long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Set the version of the database, when its content has been restored to that version (e.g. from a journal)
+	 */
+	void restoreVersion(long restored) {
+		writeLock.lock();
+		try {
+			version = restored;
+			snapshot = null;
+		} finally {
+			writeLock.unlock();
+		}
 	}
 
 	/**
@@ -173,4 +408,73 @@ public class ProductDAO {
 		return offerTable.entrySet();
 	}
 
+	/**
+	 * Get an immutable copy of the database as it is now. The same snapshot is shared by all callers until the
+	 * database changes, after which a new one is built and published on the next request.
+	 * @return A snapshot consistent across products, offers and their connections
+	 */
+	@Override
+	public CatalogueSnapshot getSnapshot() {
+		CatalogueSnapshot s = snapshot;
+		if (s != null)
+			return s;
+
+		writeLock.lock(); // no changes while copying, so all tables are copied at the same version
+		try {
+			if (snapshot == null) {
+				HashMap<String, Product> products = new HashMap<>(productTable);
+				HashMap<String, Offer> productOffers = new HashMap<>();
+				for (Entry<String, Product> e : products.entrySet()) {
+					Offer o = productOfferConTable.get(e.getValue());
+					if (o != null)
+						productOffers.put(e.getKey(), o);
+				}
+				snapshot = new CatalogueSnapshot(version, products, new HashMap<>(offerTable), productOffers);
+			}
+			return snapshot;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	// the helpers below keep productOfferConTable and its reverse in step, and must be called while holding the write lock
+
+	private void connect(Product p, Offer o) {
+		Offer old = productOfferConTable.put(p, o);
+		if (old != null && old != o)
+			forgetConnection(p, old);
+		offerProductConTable.computeIfAbsent(o, k -> new HashSet<>()).add(p);
+	}
+
+	// returns the offer that was attached to the product, or null
+	private Offer disconnect(Product p) {
+		Offer o = productOfferConTable.remove(p);
+		if (o != null)
+			forgetConnection(p, o);
+		return o;
+	}
+
+	private void forgetConnection(Product p, Offer o) {
+		Set<Product> attached = offerProductConTable.get(o);
+		if (attached != null && attached.remove(p) && attached.isEmpty())
+			offerProductConTable.remove(o);
+	}
+
+	private void deleteOffer(String offerName, Offer o) {
+		// remove all connections to products first (keep data integrity), so that a concurrent lookup never
+		// finds a product attached to an offer that is no longer in the database
+		Set<Product> attached = offerProductConTable.remove(o);
+		if (attached != null) {
+			for (Product p : attached)
+				productOfferConTable.remove(p);
+		}
+		offerTable.remove(offerName, o);
+	}
+
+	// must be called while holding the write lock, after changing any of the tables
+	private void publishChange() {
+		++version;
+		snapshot = null;
+	}
+
 }
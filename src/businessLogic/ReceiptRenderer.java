@@ -0,0 +1,158 @@
+package businessLogic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import data.Money;
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+
+/**
+ * Renders receipts into a buffer reused from one receipt to the next, in one pass over the priced lines of a trolley
+ * (a PricingResult): each line with its quantity, price and applied offer, then the savings of each offer and the
+ * total. Amounts are appended with 'Money.appendTo()' and columns padded by hand, so that rendering a receipt
+ * allocates nothing once the buffer has grown to the size of a receipt (e.g. when rendering the receipts of a day
+ * again for audit).
+ * <p>
+ * The text format is the till's printed receipt. The compact format is one line of comma-separated fields in pence:
+ * SKU,quantity,line total,saving; for each line, then TOTAL,total,savings.
+ * @author Daniele Palazzo
+ *
+ */
+public final class ReceiptRenderer {
+
+	public enum Format {
+		TEXT, COMPACT
+	}
+
+	private static final int COLUMN = 12;
+
+	private final Format format;
+	private final StringBuilder receipt = new StringBuilder(1024);
+	private char[] chars = new char[1024];
+
+	// the savings of each offer applied on the receipt being rendered
+	private Offer[] offers = new Offer[8];
+	private long[] savings = new long[8];
+	private int offerCount;
+
+	private long total;
+	private long saved;
+
+	private final PricingResult priced = new PricingResult(); // for receipts of trolleys not priced yet
+
+	public ReceiptRenderer(Format format) {
+		this.format = format;
+	}
+
+	/**
+	 * Price a trolley and render its receipt
+	 * @param trolley The trolley
+	 * @param pricingRules The catalogue to price it from (a single snapshot of it is used for the whole receipt)
+	 * @return The receipt, valid until the next one is rendered
+	 * @throws InvalidItemInTrolley Thrown if the trolley contains an item which is not in the catalogue
+	 */
+	public CharSequence render(ShoppingTrolley trolley, Catalogue pricingRules) throws InvalidItemInTrolley {
+		TrolleyTotalCalculator.price(trolley, pricingRules.getSnapshot(), priced);
+		return render(priced);
+	}
+
+	/**
+	 * Render the receipt of a priced trolley
+	 * @param result The priced lines of the trolley
+	 * @return The receipt, valid until the next one is rendered
+	 */
+	public CharSequence render(PricingResult result) {
+		receipt.setLength(0);
+		Arrays.fill(offers, 0, offerCount, null);
+		offerCount = 0;
+
+		if (format == Format.TEXT)
+			pad(pad(pad(receipt.append("Product"), 0).append("Quantity"), COLUMN).append("Price"), 2 * COLUMN)
+					.append("Applied Offer\n");
+
+		for (int line = 0; line < result.getLineCount(); line++) {
+			Offer offer = result.getAppliedOffer(line);
+			if (offer != null)
+				addSaving(offer, result.getSaving(line));
+			appendLine(result.getProduct(line), result.getQuantity(line), result.getLineTotal(line),
+					result.getSaving(line), offer);
+		}
+
+		total = result.getTotal();
+		saved = result.getSavings();
+		if (format == Format.TEXT) {
+			for (int i = 0; i < offerCount; i++)
+				Money.appendTo(receipt.append("Savings on ").append(offers[i].getName()).append(": £"), savings[i])
+						.append('\n');
+			Money.appendTo(receipt.append("Your total is: £"), total);
+		} else {
+			receipt.append("TOTAL,").append(total).append(',').append(saved);
+		}
+		receipt.append('\n');
+		return receipt;
+	}
+
+	/**
+	 * Write the last receipt rendered
+	 * @param out Where to write it
+	 * @throws IOException Thrown if it can't be written
+	 */
+	public void writeTo(Writer out) throws IOException {
+		if (chars.length < receipt.length())
+			chars = new char[Math.max(chars.length * 2, receipt.length())];
+		receipt.getChars(0, receipt.length(), chars, 0);
+		out.write(chars, 0, receipt.length());
+	}
+
+	/**
+	 * @return The total of the last receipt rendered, in pence
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return The savings of all offers on the last receipt rendered, in pence
+	 */
+	public long getSavings() {
+		return saved;
+	}
+
+	private void appendLine(Product product, int quantity, long line, long saving, Offer offer) {
+		if (format == Format.COMPACT) {
+			receipt.append(product.getSKU()).append(',').append(quantity).append(',').append(line).append(',')
+					.append(saving).append(';');
+			return;
+		}
+		int start = receipt.length();
+		pad(receipt.append(product.getName()), start).append(quantity);
+		Money.appendTo(pad(receipt, start + COLUMN).append('£'), line);
+		pad(receipt, start + 2 * COLUMN).append((offer != null) ? offer.getName() : "-").append('\n');
+	}
+
+	// pad the current line with spaces up to a column, which starts at the given position in the receipt
+	private StringBuilder pad(StringBuilder out, int columnStart) {
+		for (int i = out.length(); i < columnStart + COLUMN; i++)
+			out.append(' ');
+		return out;
+	}
+
+	private void addSaving(Offer offer, long saving) {
+		for (int i = 0; i < offerCount; i++) {
+			if (offers[i] == offer) {
+				savings[i] += saving;
+				return;
+			}
+		}
+		if (offerCount == offers.length) {
+			offers = Arrays.copyOf(offers, offerCount * 2);
+			savings = Arrays.copyOf(savings, offerCount * 2);
+		}
+		offers[offerCount] = offer;
+		savings[offerCount++] = saving;
+	}
+}
@@ -0,0 +1,91 @@
+package businessLogic;
+
+import java.util.HashMap;
+
+import data.Money;
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+import data.TrolleyListener;
+import exceptions.InvalidItemInTrolley;
+import metrics.CheckoutMetrics;
+import metrics.CheckoutMetrics.Event;
+
+/**
+ * A service keeping a trolley's total up to date as items are scanned. Each change to the trolley only re-prices the
+ * line that changed, instead of the whole trolley.
+ * @author Daniele Palazzo
+ *
+ */
+public class RunningTotalCalculator implements TrolleyListener {
+
+	private ShoppingTrolley trolley;
+	private Catalogue pricingRules;
+	private HashMap<String, String> offersAppliedToProducts; // keep track of applied offers
+	private long total;
+	private int invalidLines; // lines of products that are not in the database
+
+	/**
+	 * Prices the items already in the trolley and starts following its changes
+	 * @param trolley The trolley in question
+	 * @param productDatabase The product database to use for getting the associated offers (a snapshot of it is used
+	 *                        for the whole life of the calculator, like a checkout transaction)
+	 */
+	public RunningTotalCalculator(ShoppingTrolley trolley, Catalogue productDatabase) {
+		this.trolley = trolley;
+		this.pricingRules = productDatabase.getSnapshot();
+		offersAppliedToProducts = new HashMap<>();
+
+		trolley.forEachLine((product, quantity) -> quantityChanged(product, 0, quantity));
+		trolley.addListener(this);
+	}
+
+	public ShoppingTrolley getTrolley() {
+		return trolley;
+	}
+
+	/**
+	 * Stop following the changes of the trolley
+	 */
+	public void detach() {
+		trolley.removeListener(this);
+	}
+
+	/**
+	 * Get the total price of the trolley based on product prices and offers
+	 * @return Return the total for the trolley in pence
+	 * @throws InvalidItemInTrolley Thrown if the trolley contains an item which is not in the database
+	 */
+	public long getRunningTotal() throws InvalidItemInTrolley {
+		if (invalidLines > 0) {
+			CheckoutMetrics.count(Event.INVALID_ITEM_IN_TROLLEY);
+			throw new InvalidItemInTrolley();
+		}
+		return total;
+	}
+
+	public String getOfferAppliedTo(Product p) {
+		return offersAppliedToProducts.get(p.getSKU());
+	}
+
+	@Override
+	public void quantityChanged(Product p, int oldQuantity, int newQuantity) {
+		Offer offer = pricingRules.findProductOffer(p.getSKU()); //get offer associated with product
+		if (offer == Catalogue.PRODUCT_NOT_FOUND) {
+			if (oldQuantity == 0 && newQuantity != 0)
+				++invalidLines;
+			else if (oldQuantity != 0 && newQuantity == 0)
+				--invalidLines;
+			return;
+		}
+
+		// replace the old contribution of the line with the new one
+		total = Money.add(total, TrolleyTotalCalculator.priceLine(p, newQuantity, offer)
+				- TrolleyTotalCalculator.priceLine(p, oldQuantity, offer));
+
+		if (TrolleyTotalCalculator.isOfferApplied(offer, newQuantity))
+			offersAppliedToProducts.put(p.getSKU(), offer.getName());
+		else
+			offersAppliedToProducts.remove(p.getSKU());
+	}
+}
@@ -0,0 +1,197 @@
+package businessLogic;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import data.Money;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+
+/**
+ * Feeds a stream of scans (one SKU per line, e.g. the queued offline scans of a scanner) into a trolley in batches: a
+ * batch of lines is read, its SKUs are looked up together, the scans of each product are added in one go, and the
+ * unknown SKUs and the running total are reported once per batch through a buffered writer. A line "checkout" ends
+ * the scans, as at the till.
+ * @author Daniele Palazzo
+ *
+ */
+public final class ScanPipeline {
+
+	public static final int DEFAULT_BATCH_SIZE = 1024;
+
+	private final Catalogue pricingRules;
+	private final RunningTotalCalculator runningTotal;
+	private final ShoppingTrolley trolley;
+
+	private final String[] SKUs;
+	private final Product[] products;
+
+	// the products of a batch, each with its number of scans, found through an open addressing table
+	private final Product[] batchProducts;
+	private final int[] batchQuantities;
+	private final int[] slots; // index in batchProducts + 1, 0 for an empty slot
+	private int batchLines;
+
+	private long scanCount;
+	private long unknownCount;
+
+	/**
+	 * @param pricingRules The catalogue to look up the scanned SKUs in, e.g. a snapshot for a whole replay against one
+	 *        version of a catalogue which is changing
+	 * @param runningTotal The running total of the trolley to add the scans to
+	 * @param batchSize The maximum number of scans handled together
+	 */
+	public ScanPipeline(Catalogue pricingRules, RunningTotalCalculator runningTotal, int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("batchSize must be positive");
+		this.pricingRules = pricingRules;
+		this.runningTotal = runningTotal;
+		this.trolley = runningTotal.getTrolley();
+		SKUs = new String[batchSize];
+		products = new Product[batchSize];
+		batchProducts = new Product[batchSize];
+		batchQuantities = new int[batchSize];
+		int capacity = 2;
+		while (capacity < batchSize * 2)
+			capacity <<= 1;
+		slots = new int[capacity];
+	}
+
+	/**
+	 * Add the scans read from an input to the trolley, until the input ends or a "checkout" line
+	 * @param in The scans, one SKU per line (blank lines are skipped)
+	 * @param out Where to report the unknown SKUs and the running total after each batch, flushed after each batch
+	 * @return True if the scans were ended by a "checkout" line
+	 * @throws IOException Thrown if the scans can't be read or the report written
+	 * @throws InvalidItemInTrolley Thrown if the trolley already held an item which is not in the catalogue
+	 */
+	public boolean replay(BufferedReader in, Writer out) throws IOException, InvalidItemInTrolley {
+		while (true) {
+			int count = 0;
+			boolean checkout = false;
+			String line;
+			while (count < SKUs.length && (line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.equals("checkout")) {
+					checkout = true;
+					break;
+				}
+				if (!line.isEmpty())
+					SKUs[count++] = line;
+			}
+			if (count > 0)
+				addBatch(count, out);
+			if (checkout || count < SKUs.length)
+				return checkout;
+		}
+	}
+
+	private void addBatch(int count, Writer out) throws IOException, InvalidItemInTrolley {
+		pricingRules.findProducts(SKUs, count, products);
+
+		for (int i = 0; i < count; i++) {
+			if (products[i] == null) {
+				++unknownCount;
+				out.write("Error: No such product in the database: ");
+				out.write(SKUs[i]);
+				out.write('\n');
+			} else {
+				count(products[i]);
+			}
+		}
+
+		int added = 0; // the unknown SKUs are not counted
+		for (int l = 0; l < batchLines; l++) { // in the order first scanned
+			trolley.addItem(batchProducts[l], batchQuantities[l]);
+			added += batchQuantities[l];
+		}
+		scanCount += added;
+
+		out.write("Scanned ");
+		out.write(Integer.toString(added));
+		out.write(" items, running total: £");
+		out.write(Money.format(runningTotal.getRunningTotal()));
+		out.write('\n');
+		out.flush();
+
+		Arrays.fill(SKUs, 0, count, null);
+		Arrays.fill(products, 0, count, null);
+		Arrays.fill(batchProducts, 0, batchLines, null);
+		Arrays.fill(slots, 0);
+		batchLines = 0;
+	}
+
+	/**
+	 * Add counted items to the trolley, e.g. the items of a basket scanned elsewhere, looking up their SKUs in batches
+	 * @param quantities The number of units of each SKU, all positive
+	 * @return The number of SKUs not in the catalogue, which are left out
+	 */
+	public int addQuantities(Map<String, Integer> quantities) {
+		int count = 0;
+		int unknown = 0;
+		for (Entry<String, Integer> e : quantities.entrySet()) {
+			SKUs[count] = e.getKey();
+			batchQuantities[count++] = e.getValue();
+			if (count == SKUs.length) {
+				unknown += addQuantities(count);
+				count = 0;
+			}
+		}
+		return unknown + addQuantities(count);
+	}
+
+	private int addQuantities(int count) {
+		pricingRules.findProducts(SKUs, count, products);
+		int unknown = 0;
+		for (int i = 0; i < count; i++) {
+			if (products[i] == null) {
+				++unknown;
+			} else {
+				trolley.addItem(products[i], batchQuantities[i]);
+				scanCount += batchQuantities[i];
+			}
+		}
+		unknownCount += unknown;
+		Arrays.fill(SKUs, 0, count, null);
+		Arrays.fill(products, 0, count, null);
+		return unknown;
+	}
+
+	// one more scan of a product in this batch
+	private void count(Product p) {
+		int mask = slots.length - 1;
+		int h = p.hashCode();
+		for (int slot = (h ^ (h >>> 16)) & mask;; slot = (slot + 1) & mask) {
+			int line = slots[slot] - 1;
+			if (line < 0) {
+				batchProducts[batchLines] = p;
+				batchQuantities[batchLines] = 1;
+				slots[slot] = ++batchLines;
+				return;
+			}
+			if (batchProducts[line].equals(p)) {
+				++batchQuantities[line];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of scans added to the trolley
+	 */
+	public long getScanCount() {
+		return scanCount;
+	}
+
+	/**
+	 * @return The number of scans (or counted SKUs) not in the catalogue
+	 */
+	public long getUnknownCount() {
+		return unknownCount;
+	}
+}
@@ -0,0 +1,193 @@
+package businessLogic;
+
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+/**
+ * A catalogue partitioned by SKU across several store nodes (shards), each a ProductDAO holding its share of the
+ * products with the offers attached to them, and publishing its changes on a CatalogueChangeFeed for the till nodes'
+ * replicas (see CatalogueReplica). Offers are added to and removed from every shard, so that a product and its offer
+ * are always on the same shard; a change to an offer is therefore applied shard by shard, not all at once. Unlike a
+ * single ProductDAO, an offer stays in the catalogue after the last product it is attached to is removed, until
+ * 'removeOffer()': a shard dropping it on its own would no longer hold the same offers as the others.
+ * @author Daniele Palazzo
+ *
+ */
+public final class ShardedCatalogue implements Catalogue {
+
+	private final ProductDAO[] shards;
+	private final CatalogueChangeFeed[] feeds;
+	private final View view;
+
+	/**
+	 * @param shardCount The number of shards
+	 */
+	public ShardedCatalogue(int shardCount) {
+		this(shardCount, CatalogueChangeFeed.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param shardCount The number of shards
+	 * @param feedCapacity The number of latest changes each shard keeps for the replicas
+	 */
+	public ShardedCatalogue(int shardCount, int feedCapacity) {
+		if (shardCount <= 0)
+			throw new IllegalArgumentException("shardCount must be positive");
+		shards = new ProductDAO[shardCount];
+		feeds = new CatalogueChangeFeed[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			shards[i] = new ProductDAO(true, false, true); // offers are only removed from all shards at once
+			feeds[i] = new CatalogueChangeFeed(shards[i], feedCapacity);
+		}
+		view = new View(shards);
+	}
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	public ProductDAO getShard(int shard) {
+		return shards[shard];
+	}
+
+	public CatalogueChangeFeed getFeed(int shard) {
+		return feeds[shard];
+	}
+
+	/**
+	 * @return The shard holding a SKU, out of the given number of shards
+	 */
+	public static int shardOf(String SKU, int shardCount) {
+		int h = SKU.hashCode();
+		return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % shardCount;
+	}
+
+	/**
+	 * Add a product to its shard (replacing the product of the same SKU)
+	 */
+	public void addProduct(String SKU, Product product) {
+		shards[shardOf(SKU, shards.length)].addProduct(SKU, product);
+	}
+
+	/**
+	 * Remove a product from its shard
+	 * @throws ProductNotFound Thrown if no such product exists
+	 */
+	public void removeProduct(String SKU) throws ProductNotFound {
+		shards[shardOf(SKU, shards.length)].removeProduct(SKU);
+	}
+
+	/**
+	 * Add an offer to every shard (replacing the offer of the same name)
+	 */
+	public void addOffer(String offerName, Offer offer) {
+		for (ProductDAO shard : shards)
+			shard.addOffer(offerName, offer);
+	}
+
+	/**
+	 * Remove an offer from every shard (and from the products it is attached to)
+	 * @throws OfferNotFound Thrown if no such offer exists
+	 */
+	public void removeOffer(String offerName) throws OfferNotFound {
+		shards[0].getOffer(offerName); // check before removing from any shard, all shards hold the same offers
+		for (ProductDAO shard : shards)
+			shard.removeOffer(offerName);
+	}
+
+	/**
+	 * Attach an offer to a product, on the product's shard
+	 * @throws ProductNotFound Thrown if no such product exists
+	 * @throws OfferNotFound Thrown if no such offer exists
+	 */
+	public void attachOfferToProduct(String offerName, String SKU) throws ProductNotFound, OfferNotFound {
+		shards[shardOf(SKU, shards.length)].attachOfferToProduct(offerName, SKU);
+	}
+
+	/**
+	 * Detach the offer of a product, on the product's shard
+	 * @throws ProductNotFound Thrown if no such product exists
+	 */
+	public void removeOfferFromProduct(String SKU) throws ProductNotFound {
+		shards[shardOf(SKU, shards.length)].removeOfferFromProduct(SKU);
+	}
+
+	@Override
+	public Product findProduct(String SKU) {
+		return view.findProduct(SKU);
+	}
+
+	@Override
+	public Offer findProductOffer(String SKU) {
+		return view.findProductOffer(SKU);
+	}
+
+	@Override
+	public Product getProduct(String SKU) throws ProductNotFound {
+		return view.getProduct(SKU);
+	}
+
+	@Override
+	public Offer getProductOffer(String SKU) throws ProductNotFound {
+		return view.getProductOffer(SKU);
+	}
+
+	/**
+	 * @return The snapshots of all shards, each consistent on its own
+	 */
+	@Override
+	public Catalogue getSnapshot() {
+		return view.getSnapshot();
+	}
+
+	/**
+	 * Reads from a set of shards, each SKU from the shard holding it
+	 */
+	static final class View implements Catalogue {
+		private final Catalogue[] shards;
+
+		View(Catalogue[] shards) {
+			this.shards = shards;
+		}
+
+		private Catalogue shardOf(String SKU) {
+			return shards[ShardedCatalogue.shardOf(SKU, shards.length)];
+		}
+
+		@Override
+		public Product findProduct(String SKU) {
+			return (SKU == null) ? null : shardOf(SKU).findProduct(SKU);
+		}
+
+		@Override
+		public Offer findProductOffer(String SKU) {
+			return (SKU == null) ? PRODUCT_NOT_FOUND : shardOf(SKU).findProductOffer(SKU);
+		}
+
+		@Override
+		public Product getProduct(String SKU) throws ProductNotFound {
+			Product p = findProduct(SKU);
+			if (p == null)
+				throw new ProductNotFound();
+			return p;
+		}
+
+		@Override
+		public Offer getProductOffer(String SKU) throws ProductNotFound {
+			Offer o = findProductOffer(SKU);
+			if (o == PRODUCT_NOT_FOUND)
+				throw new ProductNotFound();
+			return o;
+		}
+
+		@Override
+		public Catalogue getSnapshot() {
+			Catalogue[] snapshots = new Catalogue[shards.length];
+			for (int i = 0; i < shards.length; i++)
+				snapshots[i] = shards[i].getSnapshot();
+			return new View(snapshots);
+		}
+	}
+}
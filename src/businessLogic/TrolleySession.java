@@ -0,0 +1,98 @@
+package businessLogic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import data.Product;
+import data.ShoppingTrolley;
+import data.TrolleyListener;
+
+/**
+ * An open checkout session of a TrolleySessionStore: logs every change to its trolley, until the session is finished
+ * at checkout or closed to be resumed later. The trolley notifies its listeners without a way to fail, so an error
+ * writing the log is kept and thrown by 'finish()' or 'close()'; changes after the error are not logged.
+ * @author Daniele Palazzo
+ *
+ */
+public final class TrolleySession implements TrolleyListener, Closeable {
+
+	private final TrolleySessionStore store;
+	private final Path file;
+	private final FileChannel log;
+	private final ShoppingTrolley trolley;
+	private final ByteBuffer record = ByteBuffer.allocate(2 * TrolleySessionStore.MAX_VARINT_BYTES);
+
+	private IOException error;
+	private long bytesWritten;
+	private boolean closed;
+
+	TrolleySession(TrolleySessionStore store, Path file, FileChannel log, ShoppingTrolley trolley) {
+		this.store = store;
+		this.file = file;
+		this.log = log;
+		this.trolley = trolley;
+		trolley.addListener(this);
+	}
+
+	/**
+	 * @return The trolley of the session
+	 */
+	public ShoppingTrolley getTrolley() {
+		return trolley;
+	}
+
+	/**
+	 * @return The number of bytes this session has appended to its log
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	@Override
+	public void quantityChanged(Product p, int oldQuantity, int newQuantity) {
+		if (error != null)
+			return;
+		try {
+			// the new quantity rather than the difference, so that the last record of a SKU is all a restore needs
+			record.clear();
+			TrolleySessionStore.putVarint(record, store.idOf(p.getSKU()));
+			TrolleySessionStore.putVarint(record, newQuantity);
+			record.flip();
+			while (record.hasRemaining())
+				bytesWritten += log.write(record);
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * End the session at checkout: stop logging and delete the log, the session can't be resumed any more
+	 * @throws IOException Thrown if the log could not be written or deleted
+	 */
+	public void finish() throws IOException {
+		try {
+			close();
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Stop logging, keeping the log so that the session can be resumed
+	 * @throws IOException Thrown if the log could not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		trolley.removeListener(this);
+		log.close();
+		if (error != null)
+			throw error;
+	}
+}
@@ -0,0 +1,266 @@
+package businessLogic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import data.Product;
+import data.ShoppingTrolley;
+
+/**
+ * Keeps the shopping trolleys of open checkout sessions on disk, so that a session can be resumed after the till has
+ * crashed. Each session has a log to which every change of quantity is appended as it happens, as two varints: the id
+ * of the SKU and the new quantity. SKU ids come from a dictionary shared by all sessions, kept in its own append-only
+ * file, so a scan usually costs a single write of 2-4 bytes.
+ * <p>
+ * Logs are written but not synced: they survive a crash of the till application, not necessarily of the machine. A
+ * record cut short by a crash, or referring to a SKU whose dictionary entry was lost, is skipped on restore.
+ * @author Daniele Palazzo
+ *
+ */
+public final class TrolleySessionStore implements Closeable {
+
+	private static final String DICTIONARY_FILE = "skus.dict";
+	private static final String SESSION_SUFFIX = ".session";
+	private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9_-]+");
+	static final int MAX_VARINT_BYTES = 5;
+
+	private final Path directory;
+	private final FileChannel dictionary;
+	private final ConcurrentHashMap<String, Integer> idsBySKU = new ConcurrentHashMap<>();
+	private volatile String[] SKUsById; // grown by copy, so readers never see a partly filled array
+	private int dictionarySize; // guarded by the dictionary channel
+
+	/**
+	 * @param directory The directory of the session logs and the SKU dictionary, created if needed
+	 * @throws IOException Thrown if the dictionary can't be read or created
+	 */
+	public TrolleySessionStore(Path directory) throws IOException {
+		this.directory = directory;
+		Files.createDirectories(directory);
+		dictionary = FileChannel.open(directory.resolve(DICTIONARY_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		// load the dictionary, dropping an entry cut short by a crash
+		ByteBuffer in = read(dictionary);
+		List<String> SKUs = new ArrayList<>();
+		int good = 0;
+		while (in.hasRemaining()) {
+			int length = getVarint(in);
+			if (length < 0 || length > in.remaining())
+				break;
+			SKUs.add(new String(in.array(), in.position(), length, StandardCharsets.UTF_8));
+			in.position(in.position() + length);
+			good = in.position();
+		}
+		dictionary.truncate(good);
+		dictionary.position(good);
+
+		SKUsById = SKUs.toArray(new String[Math.max(16, SKUs.size())]);
+		dictionarySize = SKUs.size();
+		for (int id = 0; id < dictionarySize; id++)
+			idsBySKU.put(SKUsById[id], id);
+	}
+
+	/**
+	 * Start a new session, logging every later change to the trolley
+	 * @param sessionId The id of the session (letters, digits, '-' and '_'); any earlier log with the same id is
+	 *                  discarded
+	 * @param trolley The trolley of the session, normally empty
+	 * @return The session, to be finished at checkout
+	 * @throws IOException Thrown if the log can't be created
+	 */
+	public TrolleySession open(String sessionId, ShoppingTrolley trolley) throws IOException {
+		FileChannel log = FileChannel.open(sessionFile(sessionId), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		return new TrolleySession(this, sessionFile(sessionId), log, trolley);
+	}
+
+	/**
+	 * Resume a session from its log: fill the trolley with its content, and log every later change to it
+	 * @param sessionId The id of the session
+	 * @param catalogue The catalogue to look up the logged SKUs in; SKUs no longer in the catalogue are dropped
+	 * @param trolley An empty trolley to restore the content into
+	 * @return The resumed session
+	 * @throws IOException Thrown if the log can't be read
+	 */
+	public TrolleySession resume(String sessionId, Catalogue catalogue, ShoppingTrolley trolley) throws IOException {
+		FileChannel log = FileChannel.open(sessionFile(sessionId), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			ByteBuffer in = read(log);
+			Map<Integer, Integer> quantities = new LinkedHashMap<>(); // by SKU id in scan order, the last record wins
+			int good = 0;
+			while (in.hasRemaining()) {
+				int id = getVarint(in);
+				int quantity = getVarint(in);
+				if (id < 0 || quantity < 0)
+					break;
+				quantities.put(id, quantity);
+				good = in.position();
+			}
+			log.truncate(good);
+			log.position(good);
+
+			for (Map.Entry<Integer, Integer> line : quantities.entrySet()) {
+				Product p = productOf(line.getKey(), catalogue);
+				if (p != null && line.getValue() > 0)
+					trolley.addItem(p, line.getValue());
+			}
+		} catch (IOException | RuntimeException e) {
+			log.close();
+			throw e;
+		}
+		return new TrolleySession(this, sessionFile(sessionId), log, trolley);
+	}
+
+	/**
+	 * @return The ids of all sessions with a log, i.e. not finished
+	 * @throws IOException Thrown if the directory can't be read
+	 */
+	public List<String> getSessionIds() throws IOException {
+		List<String> ids = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SESSION_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				ids.add(name.substring(0, name.length() - SESSION_SUFFIX.length()));
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Encode the whole content of a trolley: the number of lines, then the SKU id and quantity of each line, as varints
+	 * @param trolley The trolley
+	 * @return The encoded trolley
+	 * @throws IOException Thrown if a new SKU can't be added to the dictionary
+	 */
+	public byte[] encode(ShoppingTrolley trolley) throws IOException {
+		int[] lines = new int[1];
+		trolley.forEachLine((p, quantity) -> ++lines[0]);
+		ByteBuffer out = ByteBuffer.allocate(MAX_VARINT_BYTES * (1 + 2 * lines[0]));
+		putVarint(out, lines[0]);
+		trolley.forEachLine((p, quantity) -> {
+			putVarint(out, idOf(p.getSKU()));
+			putVarint(out, quantity);
+		});
+		return Arrays.copyOf(out.array(), out.position());
+	}
+
+	/**
+	 * Decode a trolley encoded by 'encode()'
+	 * @param encoded The encoded trolley
+	 * @param catalogue The catalogue to look up the SKUs in; SKUs no longer in the catalogue are dropped
+	 * @param trolley An empty trolley to decode into
+	 * @throws IOException Thrown if the encoded trolley is damaged
+	 */
+	public void decode(byte[] encoded, Catalogue catalogue, ShoppingTrolley trolley) throws IOException {
+		ByteBuffer in = ByteBuffer.wrap(encoded);
+		int lines = getVarint(in);
+		for (int l = 0; l < lines; l++) {
+			int id = getVarint(in);
+			int quantity = getVarint(in);
+			if (id < 0 || quantity < 0)
+				throw new IOException("Damaged trolley encoding");
+			Product p = productOf(id, catalogue);
+			if (p != null && quantity > 0)
+				trolley.addItem(p, quantity);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		dictionary.close();
+	}
+
+	/**
+	 * @return The dictionary id of a SKU, added to the dictionary if new
+	 */
+	int idOf(String SKU) throws IOException {
+		Integer id = idsBySKU.get(SKU);
+		if (id != null)
+			return id;
+
+		synchronized (dictionary) {
+			id = idsBySKU.get(SKU);
+			if (id != null)
+				return id;
+
+			// written before any log refers to it
+			byte[] bytes = SKU.getBytes(StandardCharsets.UTF_8);
+			ByteBuffer entry = ByteBuffer.allocate(MAX_VARINT_BYTES + bytes.length);
+			putVarint(entry, bytes.length);
+			entry.put(bytes).flip();
+			while (entry.hasRemaining())
+				dictionary.write(entry);
+
+			String[] SKUs = SKUsById;
+			if (dictionarySize == SKUs.length)
+				SKUs = Arrays.copyOf(SKUs, 2 * SKUs.length);
+			SKUs[dictionarySize] = SKU;
+			SKUsById = SKUs;
+			id = dictionarySize++;
+			idsBySKU.put(SKU, id);
+			return id;
+		}
+	}
+
+	private Product productOf(int id, Catalogue catalogue) {
+		String[] SKUs = SKUsById;
+		String SKU = (id < SKUs.length) ? SKUs[id] : null;
+		return (SKU == null) ? null : catalogue.findProduct(SKU);
+	}
+
+	private Path sessionFile(String sessionId) {
+		if (!SESSION_ID.matcher(sessionId).matches())
+			throw new IllegalArgumentException("Invalid session id: " + sessionId);
+		return directory.resolve(sessionId + SESSION_SUFFIX);
+	}
+
+	private static ByteBuffer read(FileChannel channel) throws IOException {
+		if (channel.size() > Integer.MAX_VALUE)
+			throw new IOException("File too large");
+		ByteBuffer in = ByteBuffer.allocate((int) channel.size());
+		while (in.hasRemaining() && channel.read(in, in.position()) >= 0)
+			;
+		in.flip();
+		return in;
+	}
+
+	static void putVarint(ByteBuffer out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	/**
+	 * @return The value, or -1 if the input ends before the varint does (or it is too long)
+	 */
+	static int getVarint(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0; shift < 7 * MAX_VARINT_BYTES; shift += 7) {
+			if (!in.hasRemaining())
+				return -1;
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		return -1;
+	}
+}
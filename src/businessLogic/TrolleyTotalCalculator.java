@@ -1,15 +1,13 @@
 package businessLogic;
 
-import java.util.HashMap;
-import java.util.Map.Entry;
-import java.util.Set;
-
+import data.Money;
 import data.Offer;
 import data.Product;
-import data.ProductCounter;
 import data.ShoppingTrolley;
 import exceptions.InvalidItemInTrolley;
-import exceptions.ProductNotFound;
+import metrics.CheckoutMetrics;
+import metrics.CheckoutMetrics.Event;
+import metrics.CheckoutMetrics.Operation;
 
 /**
  * A service for calculating a trolleys total
@@ -19,18 +17,18 @@ import exceptions.ProductNotFound;
 public class TrolleyTotalCalculator {
 
 	private ShoppingTrolley trolley;
-	private ProductDAO productDatabase;
-	private HashMap<String, String> offersAppliedToProducts; // keep track of applied offers
+	private Catalogue productDatabase;
+	private final PricingResult result = new PricingResult(); // of the last calculation, reused by the next one
 
 	/**
 	 * 
 	 * @param trolley The trolley in question
-	 * @param productDatabase The product database to use for getting the associated offers
+	 * @param productDatabase The product database to use for getting the associated offers (each calculation is priced
+	 *                        against a single snapshot of it)
 	 */
-	public TrolleyTotalCalculator(ShoppingTrolley trolley, ProductDAO productDatabase) {
+	public TrolleyTotalCalculator(ShoppingTrolley trolley, Catalogue productDatabase) {
 		this.trolley = trolley;
 		this.productDatabase = productDatabase;
-		offersAppliedToProducts = new HashMap<>();
 	}
 
 	public ShoppingTrolley getTrolley() {
@@ -39,47 +37,103 @@ public class TrolleyTotalCalculator {
 
 	public void setTrolley(ShoppingTrolley trolley) {
 		this.trolley = trolley;
-		offersAppliedToProducts.clear();
+		result.clear();
 	}
 
 	/**
 	 * Calculate the total price based on product prices and offers
-	 * @return Return the total for the trolley
+	 * @return Return the total for the trolley in pence
 	 * @throws InvalidItemInTrolley Thrown if the trolley contains an item which is not in the database
 	 */
-	public float calculateTrolleyTotal() throws InvalidItemInTrolley {
-		float total = 0.0f;
-
-		Set<Entry<Product, ProductCounter>> itemsInTrolley = trolley.getAllItemsInTrolley();
-
-		for (Entry<Product, ProductCounter> productQuantityPair : itemsInTrolley) {
+	public long calculateTrolleyTotal() throws InvalidItemInTrolley {
+		calculate(result);
+		return result.getTotal();
+	}
 
-			Offer offer;
-			try {
-				offer = productDatabase.getProductOffer(productQuantityPair.getKey().getSKU()); //get offer associated with product
-				if (offer != null && productQuantityPair.getValue().getCount() >= offer.getGroupNumber()) {
+	/**
+	 * Price every line of the trolley
+	 * @param into The result to fill, emptied first (e.g. one result reused for every trolley of a lane)
+	 * @throws InvalidItemInTrolley Thrown if the trolley contains an item which is not in the database
+	 */
+	public void calculate(PricingResult into) throws InvalidItemInTrolley {
+		price(trolley, productDatabase.getSnapshot(), into); // same prices for the whole trolley
+	}
 
-					if (offersAppliedToProducts.get(productQuantityPair.getKey().getSKU()) == null)
-						offersAppliedToProducts.put(productQuantityPair.getKey().getSKU(), offer.getName());
+	/**
+	 * @return The result of the last 'calculateTrolleyTotal()'
+	 */
+	public PricingResult getPricingResult() {
+		return result;
+	}
 
-					int offerAppliedCount = productQuantityPair.getValue().getCount() / offer.getGroupNumber();
-					float offerTotal = offer.getPrice() * offerAppliedCount;
-					total += offerTotal + ((productQuantityPair.getValue().getCount() % offer.getGroupNumber())
-							* productQuantityPair.getKey().getPrice());
+	/**
+	 * @return The name of the offer applied to a product by the last 'calculateTrolleyTotal()', or null if there is
+	 *         none
+	 */
+	public String getOfferAppliedTo(Product p) {
+		return result.getOfferAppliedTo(p);
+	}
 
-				} else {
-					total += productQuantityPair.getKey().getPrice() * productQuantityPair.getValue().getCount();
+	/**
+	 * Price every line of a trolley against one snapshot of the catalogue
+	 */
+	static void price(ShoppingTrolley trolley, Catalogue pricingRules, PricingResult result)
+			throws InvalidItemInTrolley {
+		long start = CheckoutMetrics.start();
+		result.clear();
+
+		if (pricingRules instanceof CatalogueSnapshot) {
+			CompiledCatalogue compiled = ((CatalogueSnapshot) pricingRules).compile();
+			trolley.forEachLine((product, quantity) -> {
+				int id = compiled.getId(product.getSKU());
+				if (id == CompiledCatalogue.NOT_FOUND) {
+					result.clear(); // no partial result
+					CheckoutMetrics.count(Event.INVALID_ITEM_IN_TROLLEY);
+					throw new InvalidItemInTrolley();
 				}
-			} catch (ProductNotFound e1) {
+				Offer offer = compiled.getOffer(id);
+
+				// lines are priced at the scanned product's price, which the compiled one is unless it changed since
+				result.addLine(product, quantity, offer, compiled.isOfferApplied(id, quantity),
+						(compiled.getUnitPrice(id) == product.getPrice()) ? compiled.priceLine(id, quantity)
+								: priceLine(product, quantity, offer));
+			});
+			CheckoutMetrics.record(Operation.CALCULATE_TROLLEY_TOTAL, start);
+			return;
+		}
+
+		trolley.forEachLine((product, quantity) -> {
+			Offer offer = pricingRules.findProductOffer(product.getSKU()); //get offer associated with product
+			if (offer == Catalogue.PRODUCT_NOT_FOUND) {
+				result.clear(); // no partial result
+				CheckoutMetrics.count(Event.INVALID_ITEM_IN_TROLLEY);
 				throw new InvalidItemInTrolley();
 			}
-		}
+			result.addLine(product, quantity, offer, isOfferApplied(offer, quantity),
+					priceLine(product, quantity, offer));
+		});
 
-		return total;
+		CheckoutMetrics.record(Operation.CALCULATE_TROLLEY_TOTAL, start);
+	}
 
+	/**
+	 * Price a single line of a trolley
+	 * @param p The product on the line
+	 * @param quantity The quantity of the product
+	 * @param offer The offer attached to the product (or null)
+	 * @return The price of the line in pence
+	 */
+	static long priceLine(Product p, int quantity, Offer offer) {
+		if (isOfferApplied(offer, quantity))
+			return Money.groupPrice(p.getPrice(), quantity, offer.getGroupNumber(), offer.getPrice());
+		else
+			return Money.multiply(p.getPrice(), quantity);
 	}
 
-	public String getOfferAppliedTo(Product p) {
-		return offersAppliedToProducts.get(p.getSKU());
+	/**
+	 * @return True if the offer applies to at least one group of the given quantity
+	 */
+	static boolean isOfferApplied(Offer offer, int quantity) {
+		return offer != null && quantity >= offer.getGroupNumber();
 	}
 }
@@ -0,0 +1,135 @@
+package data;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import exceptions.ItemNotInTrolley;
+import metrics.CheckoutMetrics;
+import metrics.CheckoutMetrics.Operation;
+
+/**
+ * A shopping trolley storing its lines in dense arrays (products and int quantities) indexed through a SKU table.
+ * Once the arrays have grown to the size of a basket, scanning allocates nothing, and the trolley can be reused with
+ * 'clear()' for the next customer. Lines are identified by SKU, so products with the same SKU share a line.
+ * @author Daniele Palazzo
+ *
+ */
+public class CompactShoppingTrolley extends ShoppingTrolley {
+
+	private static final int INITIAL_LINES = 16;
+
+	private SkuIndex lineIndex; // SKU -> position in the arrays below
+	private Product[] products;
+	private int[] quantities;
+	private int lineCount;
+
+	public CompactShoppingTrolley() {
+		this(INITIAL_LINES);
+	}
+
+	/**
+	 * @param expectedLines The number of distinct products the trolley should hold without growing
+	 */
+	public CompactShoppingTrolley(int expectedLines) {
+		lineIndex = new SkuIndex(expectedLines);
+		products = new Product[Math.max(expectedLines, 1)];
+		quantities = new int[products.length];
+	}
+
+	@Override
+	public void addItem(Product p, int quantity) {
+		if (quantity <= 0)
+			throw new IllegalArgumentException("quantity must be positive");
+		long start = CheckoutMetrics.start();
+		int line = lineIndex.get(p.getSKU());
+		if (line == SkuIndex.NOT_FOUND) {
+			if (lineCount == products.length) {
+				products = Arrays.copyOf(products, lineCount * 2);
+				quantities = Arrays.copyOf(quantities, lineCount * 2);
+			}
+			line = lineCount++;
+			products[line] = p;
+			lineIndex.put(p.getSKU(), line);
+		}
+		int oldCount = quantities[line];
+		quantities[line] = oldCount + quantity;
+		fireQuantityChanged(products[line], oldCount, oldCount + quantity);
+		CheckoutMetrics.record(Operation.ADD_ITEM, start);
+	}
+
+	@Override
+	public void removeItem(Product p, int number) throws ItemNotInTrolley {
+		int line = lineIndex.get(p.getSKU());
+		if (line == SkuIndex.NOT_FOUND)
+			throw new ItemNotInTrolley();
+
+		long start = CheckoutMetrics.start();
+		Product product = products[line];
+		int oldCount = quantities[line];
+		if (oldCount == number) {
+			// keep the lines dense by moving the last line into the freed position
+			lineIndex.remove(product.getSKU());
+			int last = --lineCount;
+			if (line != last) {
+				products[line] = products[last];
+				quantities[line] = quantities[last];
+				lineIndex.put(products[line].getSKU(), line);
+			}
+			products[last] = null;
+			quantities[last] = 0;
+		} else {
+			quantities[line] = oldCount - number;
+		}
+		fireQuantityChanged(product, oldCount, oldCount - number);
+		CheckoutMetrics.record(Operation.REMOVE_ITEM, start);
+	}
+
+	/**
+	 * @return A copy of the lines in the trolley, in scanning order (prefer 'forEachLine()', which does not allocate)
+	 */
+	@Override
+	public Set<Entry<Product, ProductCounter>> getAllItemsInTrolley() {
+		LinkedHashMap<Product, ProductCounter> items = new LinkedHashMap<>();
+		for (int line = 0; line < lineCount; line++) {
+			ProductCounter count = new ProductCounter();
+			count.setCount(quantities[line]);
+			items.put(products[line], count);
+		}
+		return items.entrySet();
+	}
+
+	@Override
+	int quantityOf(Product p) {
+		int line = lineIndex.get(p.getSKU());
+		return (line == SkuIndex.NOT_FOUND) ? 0 : quantities[line];
+	}
+
+	@Override
+	public <E extends Throwable> void forEachLine(TrolleyLineVisitor<E> visitor) throws E {
+		for (int line = 0; line < lineCount; line++)
+			visitor.visit(products[line], quantities[line]);
+	}
+
+	@Override
+	public void clear() {
+		int lines = lineCount;
+		lineCount = 0;
+		lineIndex.clear();
+		for (int line = 0; line < lines; line++) {
+			Product product = products[line];
+			int count = quantities[line];
+			products[line] = null;
+			quantities[line] = 0;
+			fireQuantityChanged(product, count, 0);
+		}
+	}
+
+	/**
+	 * @return The number of distinct products in the trolley
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+}
@@ -0,0 +1,118 @@
+package data;
+
+/**
+ * Arithmetic on amounts of money held as a whole number of pence in a primitive long, so that totals are exact and
+ * no objects are allocated while pricing. A long holds about 9e16 pounds, so the pricing operations do not check for
+ * overflow; only parsing, which takes outside input, does.
+ * @author Daniele Palazzo
+ *
+ */
+public final class Money {
+
+	public static final long ZERO = 0L;
+
+	private static final int PENCE_PER_POUND = 100;
+
+	private Money() {
+	}
+
+	/**
+	 * @param pounds Whole pounds
+	 * @param pence Pence on top of the pounds (0-99)
+	 * @return The amount in pence
+	 */
+	public static long of(long pounds, int pence) {
+		return Math.addExact(Math.multiplyExact(pounds, PENCE_PER_POUND), pence);
+	}
+
+	/**
+	 * Add two amounts
+	 */
+	public static long add(long a, long b) {
+		return a + b;
+	}
+
+	/**
+	 * Multiply an amount by a quantity
+	 */
+	public static long multiply(long amount, int quantity) {
+		return amount * quantity;
+	}
+
+	/**
+	 * Price a quantity of an item sold at a group price ("groupNumber for groupPrice"), any items left over after
+	 * forming whole groups are charged at the unit price
+	 * @param unitPrice The price of a single item
+	 * @param quantity The number of items
+	 * @param groupNumber The number of items in a group
+	 * @param groupPrice The price of a whole group
+	 * @return The price of all items
+	 */
+	public static long groupPrice(long unitPrice, int quantity, int groupNumber, long groupPrice) {
+		int groups = quantity / groupNumber;
+		int remainder = quantity - groups * groupNumber;
+		return groupPrice * groups + unitPrice * remainder;
+	}
+
+	/**
+	 * Parse a decimal amount of pounds such as "1.30", "0.5" or "12"
+	 * @param pounds The amount, with at most two decimal places
+	 * @return The amount in pence
+	 * @throws NumberFormatException Thrown if the text is not a valid amount
+	 */
+	public static long parse(CharSequence pounds) {
+		int length = pounds.length();
+		int i = 0;
+		boolean negative = length > 0 && pounds.charAt(0) == '-';
+		if (negative)
+			++i;
+
+		long value = 0;
+		int decimals = -1; // -1 until the decimal point is seen
+		for (; i < length; i++) {
+			char c = pounds.charAt(i);
+			if (c == '.' && decimals < 0) {
+				decimals = 0;
+			} else if (c >= '0' && c <= '9' && decimals < 2) {
+				value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+				if (decimals >= 0)
+					++decimals;
+			} else {
+				throw new NumberFormatException("Not an amount of money: " + pounds);
+			}
+		}
+		if (length == (negative ? 1 : 0) || decimals == 0)
+			throw new NumberFormatException("Not an amount of money: " + pounds);
+
+		for (int d = Math.max(decimals, 0); d < 2; d++)
+			value = Math.multiplyExact(value, 10);
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Append an amount as pounds with two decimal places (e.g. 130 as "1.30")
+	 * @param out Where to append the amount
+	 * @param amount The amount in pence
+	 * @return The given StringBuilder
+	 */
+	public static StringBuilder appendTo(StringBuilder out, long amount) {
+		if (amount < 0) {
+			out.append('-');
+			amount = -amount;
+		}
+		long pence = amount % PENCE_PER_POUND;
+		out.append(amount / PENCE_PER_POUND).append('.');
+		if (pence < 10)
+			out.append('0');
+		return out.append(pence);
+	}
+
+	/**
+	 * Format an amount as pounds with two decimal places (e.g. 130 as "1.30")
+	 * @param amount The amount in pence
+	 * @return The formatted amount
+	 */
+	public static String format(long amount) {
+		return appendTo(new StringBuilder(12), amount).toString();
+	}
+}
@@ -1,7 +1,10 @@
 package data;
 
+import java.time.Instant;
+
 /**
- * An offer / discount that can be applied to anything
+ * An offer / discount that can be applied to anything, optionally only during a period of time (see
+ * businessLogic.OfferScheduler)
  * @author Daniele Palazzo
  *
  */
@@ -9,12 +12,34 @@ package data;
 public class Offer {
 	private String name;
 	private int groupNumber;
-	private float price;
+	private long price; // in pence
+	private Instant start; // null if the offer has always been valid
+	private Instant end; // null if the offer never ends
 	
-	public Offer(String name, int groupNumber,float price) {
+	/**
+	 * @param name The name of the offer
+	 * @param groupNumber The number of items the offer price is for
+	 * @param price The price in pence of a group of items
+	 */
+	public Offer(String name, int groupNumber, long price) {
+		this(name, groupNumber, price, null, null);
+	}
+
+	/**
+	 * @param name The name of the offer
+	 * @param groupNumber The number of items the offer price is for
+	 * @param price The price in pence of a group of items
+	 * @param start When the offer starts, or null if it is already valid
+	 * @param end When the offer ends (exclusive), or null if it never does
+	 */
+	public Offer(String name, int groupNumber, long price, Instant start, Instant end) {
+		if (start != null && end != null && !start.isBefore(end))
+			throw new IllegalArgumentException("An offer must start before it ends");
 		this.name = name;
 		this.groupNumber = groupNumber;
 		this.price = price;
+		this.start = start;
+		this.end = end;
 	}
 	
 	public String getName() {
@@ -25,10 +50,34 @@ public class Offer {
 		return groupNumber;
 	}
 	
-	public float getPrice() {
+	/**
+	 * @return The price in pence of a group of items
+	 */
+	public long getPrice() {
 		return price;
 	}
 
+	/**
+	 * @return When the offer starts, or null if it has always been valid
+	 */
+	public Instant getStart() {
+		return start;
+	}
+
+	/**
+	 * @return When the offer ends (exclusive), or null if it never does
+	 */
+	public Instant getEnd() {
+		return end;
+	}
+
+	/**
+	 * @return True if the offer is valid at the given time
+	 */
+	public boolean isValidAt(Instant time) {
+		return (start == null || !time.isBefore(start)) && (end == null || time.isBefore(end));
+	}
+
 	@Override
 	public String toString() {
 		return getName();
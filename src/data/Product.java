@@ -9,10 +9,15 @@ package data;
 public class Product {
 
 	private String name;
-	private float price;
+	private long price; // in pence
 	private String SKU;
 
-	public Product(String name, float price, String SKU) {
+	/**
+	 * @param name The name of the product
+	 * @param price The price of one item in pence
+	 * @param SKU The unique identifier of the product
+	 */
+	public Product(String name, long price, String SKU) {
 		this.name = name;
 		this.price = price;
 		this.SKU = SKU;
@@ -22,7 +27,10 @@ public class Product {
 		return name;
 	}
 
-	public float getPrice() {
+	/**
+	 * @return The price of one item in pence
+	 */
+	public long getPrice() {
 		return price;
 	}
 
@@ -30,4 +38,3 @@ public class Product {
 		return SKU;
 	}
 }
-
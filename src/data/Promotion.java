@@ -0,0 +1,161 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * A promotion over one or more products, beyond the "N for Y" Offer attached to a single product: a bundle across
+ * products (meal deal), a mix-and-match group price, "buy N get M free" or a percentage off. A promotion is made of
+ * slots, each filled with a number of items chosen from a set of SKUs; every time the promotion is applied, all its
+ * slots are filled with items of the trolley that no other promotion has used.
+ * @author Daniele Palazzo
+ *
+ */
+public final class Promotion {
+
+	/**
+	 * How the price of the items a promotion is applied to is worked out
+	 */
+	public enum Kind {
+		/** The items cost a fixed price */
+		FIXED_PRICE,
+		/** The items cost their unit price, except for the cheapest ones which are free */
+		CHEAPEST_FREE,
+		/** Each item costs its unit price less a percentage */
+		PERCENTAGE_OFF
+	}
+
+	private final String name;
+	private final Kind kind;
+	private final String[][] slotSKUs;
+	private final int[] slotSizes;
+	private final long price; // in pence, for FIXED_PRICE
+	private final int freeItems; // for CHEAPEST_FREE
+	private final int percent; // for PERCENTAGE_OFF
+
+	private Promotion(String name, Kind kind, String[][] slotSKUs, int[] slotSizes, long price, int freeItems,
+			int percent) {
+		for (int size : slotSizes) {
+			if (size < 1)
+				throw new IllegalArgumentException("A promotion needs at least one item in each slot");
+		}
+		this.name = name;
+		this.kind = kind;
+		this.slotSKUs = slotSKUs;
+		this.slotSizes = slotSizes;
+		this.price = price;
+		this.freeItems = freeItems;
+		this.percent = percent;
+	}
+
+	/**
+	 * A bundle of one item from each of several sets of products for a fixed price (e.g. a main, a snack and a drink)
+	 * @param name The name of the promotion
+	 * @param price The price in pence of the bundle
+	 * @param slots For each item of the bundle, the SKUs it can be chosen from
+	 */
+	public static Promotion bundle(String name, long price, String[]... slots) {
+		int[] sizes = new int[slots.length];
+		Arrays.fill(sizes, 1);
+		return new Promotion(name, Kind.FIXED_PRICE, slots.clone(), sizes, price, 0, 0);
+	}
+
+	/**
+	 * A number of items, mixed and matched from a set of products, for a fixed price (e.g. "any 3 for £5")
+	 * @param name The name of the promotion
+	 * @param groupNumber The number of items the price is for
+	 * @param price The price in pence of a group of items
+	 * @param SKUs The products the items can be chosen from
+	 */
+	public static Promotion multiBuy(String name, int groupNumber, long price, String... SKUs) {
+		return new Promotion(name, Kind.FIXED_PRICE, new String[][] { SKUs.clone() }, new int[] { groupNumber }, price,
+				0, 0);
+	}
+
+	/**
+	 * Buy a number of items, get more free from the same set of products, the cheapest being free (e.g. BOGOF is
+	 * buyGetFree(name, 1, 1, SKUs))
+	 * @param name The name of the promotion
+	 * @param buy The number of items paid for
+	 * @param free The number of items free on top of them
+	 * @param SKUs The products the items can be chosen from
+	 */
+	public static Promotion buyGetFree(String name, int buy, int free, String... SKUs) {
+		if (buy < 1 || free < 1)
+			throw new IllegalArgumentException("Buy and free items must be positive");
+		return new Promotion(name, Kind.CHEAPEST_FREE, new String[][] { SKUs.clone() }, new int[] { buy + free }, 0,
+				free, 0);
+	}
+
+	/**
+	 * A percentage off every item of a set of products
+	 * @param name The name of the promotion
+	 * @param percent The percentage off (1-100), the discount is rounded down to the penny
+	 * @param SKUs The products the discount is for
+	 */
+	public static Promotion percentageOff(String name, int percent, String... SKUs) {
+		if (percent < 1 || percent > 100)
+			throw new IllegalArgumentException("Percentage must be between 1 and 100");
+		return new Promotion(name, Kind.PERCENTAGE_OFF, new String[][] { SKUs.clone() }, new int[] { 1 }, 0, 0,
+				percent);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public int getSlotCount() {
+		return slotSizes.length;
+	}
+
+	/**
+	 * @return The SKUs the items of a slot can be chosen from
+	 */
+	public String[] getSlotSKUs(int slot) {
+		return slotSKUs[slot].clone();
+	}
+
+	/**
+	 * @return The number of items in a slot
+	 */
+	public int getSlotSize(int slot) {
+		return slotSizes[slot];
+	}
+
+	/**
+	 * @return The price in pence of the items, for a FIXED_PRICE promotion
+	 */
+	public long getPrice() {
+		return price;
+	}
+
+	/**
+	 * @return The number of free items, for a CHEAPEST_FREE promotion
+	 */
+	public int getFreeItems() {
+		return freeItems;
+	}
+
+	/**
+	 * @return The percentage off, for a PERCENTAGE_OFF promotion
+	 */
+	public int getPercent() {
+		return percent;
+	}
+
+	/**
+	 * @param unitPrice The unit price of an item
+	 * @return The price of the item with a PERCENTAGE_OFF promotion
+	 */
+	public long discounted(long unitPrice) {
+		return unitPrice - unitPrice * percent / 100;
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+}
@@ -1,10 +1,14 @@
 package data;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import exceptions.ItemNotInTrolley;
+import metrics.CheckoutMetrics;
+import metrics.CheckoutMetrics.Operation;
 
 /**
  * A shopping trolley that can be used to hold the items the customer is intending to buy
@@ -15,9 +19,27 @@ import exceptions.ItemNotInTrolley;
 public class ShoppingTrolley {
 
 	private HashMap<Product, ProductCounter> itemsInTrolley;
+	private List<TrolleyListener> listeners;
 
 	public ShoppingTrolley() {
 		itemsInTrolley = new HashMap<>();
+		listeners = new ArrayList<>(1);
+	}
+
+	/**
+	 * Get notified of every change to the trolley from now on
+	 * @param listener The listener to notify
+	 */
+	public void addListener(TrolleyListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Stop notifying a listener added with 'addListener()'
+	 * @param listener The listener to remove
+	 */
+	public void removeListener(TrolleyListener listener) {
+		listeners.remove(listener);
 	}
 
 	/**
@@ -25,13 +47,58 @@ public class ShoppingTrolley {
 	 * @param p The product to add
 	 */
 	public void addItem(Product p) {
-		// add new product or increment existing product count
+		addItem(p, 1);
+	}
+
+	/**
+	 * Add several units of a product to the trolley at once (e.g. a case, or a weighed item), with one lookup and one
+	 * notification of the listeners
+	 * @param p The product to add
+	 * @param quantity The number of units to add
+	 */
+	public void addItem(Product p, int quantity) {
+		if (quantity <= 0)
+			throw new IllegalArgumentException("quantity must be positive");
+		// add new product or increase existing product count
+		long start = CheckoutMetrics.start();
 		ProductCounter count = itemsInTrolley.get(p);
 		if (count == null) {
-			itemsInTrolley.put(p, new ProductCounter());
+			count = new ProductCounter();
+			count.setCount(quantity);
+			itemsInTrolley.put(p, count);
+			fireQuantityChanged(p, 0, quantity);
 		} else {
-			count.increment();
+			count.setCount(count.getCount() + quantity);
+			fireQuantityChanged(p, count.getCount() - quantity, count.getCount());
 		}
+		CheckoutMetrics.record(Operation.ADD_ITEM, start);
+	}
+
+	/**
+	 * Add all the items of another trolley to this one, a line at a time (the other trolley is left as it is)
+	 * @param other The trolley to merge into this one
+	 */
+	public void addAll(ShoppingTrolley other) {
+		other.forEachLine(this::addItem);
+	}
+
+	/**
+	 * Move some units of a product to another trolley, e.g. to split a shared basket
+	 * @param p The product to move
+	 * @param quantity The number of units to move
+	 * @param to The trolley to move them to
+	 * @throws ItemNotInTrolley Thrown if the product is not in this trolley
+	 * @throws IllegalArgumentException Thrown if the quantity is not positive or more than the units in this trolley
+	 */
+	public void moveItem(Product p, int quantity, ShoppingTrolley to) throws ItemNotInTrolley {
+		// checked before either trolley changes, so no units are lost or made up
+		int current = quantityOf(p);
+		if (current == 0)
+			throw new ItemNotInTrolley();
+		if (quantity <= 0 || quantity > current)
+			throw new IllegalArgumentException("quantity must be positive and at most " + current);
+		removeItem(p, quantity);
+		to.addItem(p, quantity);
 	}
 
 	/**
@@ -44,15 +111,57 @@ public class ShoppingTrolley {
 		if (itemsInTrolley.get(p) == null)
 			throw new ItemNotInTrolley();
 		
+		long start = CheckoutMetrics.start();
 		ProductCounter count = itemsInTrolley.get(p);
+		int oldCount = count.getCount();
 		if (count.getCount() == number) {
 			itemsInTrolley.remove(p);
 		} else {
 			count.setCount(count.getCount()-number);
 		}
+		fireQuantityChanged(p, oldCount, oldCount - number);
+		CheckoutMetrics.record(Operation.REMOVE_ITEM, start);
 	}
 
 	public Set<Entry<Product, ProductCounter>> getAllItemsInTrolley() {
 		return itemsInTrolley.entrySet();
 	}
+
+	// the number of units of a product in the trolley, 0 if it is not in it
+	int quantityOf(Product p) {
+		ProductCounter count = itemsInTrolley.get(p);
+		return (count == null) ? 0 : count.getCount();
+	}
+
+	/**
+	 * Visit every line of the trolley (product and quantity) without allocating
+	 * @param visitor The visitor to call for each line
+	 * @throws E Thrown if the visitor stops the visit by throwing
+	 */
+	public <E extends Throwable> void forEachLine(TrolleyLineVisitor<E> visitor) throws E {
+		for (Entry<Product, ProductCounter> productQuantityPair : itemsInTrolley.entrySet())
+			visitor.visit(productQuantityPair.getKey(), productQuantityPair.getValue().getCount());
+	}
+
+	/**
+	 * Remove all items from the trolley, so that it can be reused for the next customer
+	 */
+	public void clear() {
+		if (listeners.isEmpty()) {
+			itemsInTrolley.clear();
+			return;
+		}
+		HashMap<Product, ProductCounter> removed = itemsInTrolley;
+		itemsInTrolley = new HashMap<>();
+		for (Entry<Product, ProductCounter> productQuantityPair : removed.entrySet())
+			fireQuantityChanged(productQuantityPair.getKey(), productQuantityPair.getValue().getCount(), 0);
+	}
+
+	/**
+	 * Notify the listeners of a change, must be called by subclasses after each change
+	 */
+	protected void fireQuantityChanged(Product p, int oldQuantity, int newQuantity) {
+		for (int i = 0; i < listeners.size(); i++)
+			listeners.get(i).quantityChanged(p, oldQuantity, newQuantity);
+	}
 }
@@ -0,0 +1,128 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash table from SKU to a non-negative int (e.g. the position of the SKU in an array), which does
+ * not box its values and only allocates when it grows
+ * @author Daniele Palazzo
+ *
+ */
+public final class SkuIndex {
+
+	public static final int NOT_FOUND = -1;
+
+	private static final int INITIAL_CAPACITY = 16; // must be a power of two
+
+	private String[] keys;
+	private int[] values;
+	private int size;
+
+	public SkuIndex() {
+		this(INITIAL_CAPACITY / 2);
+	}
+
+	/**
+	 * @param expectedSize The number of SKUs the table should hold without growing
+	 */
+	public SkuIndex(int expectedSize) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < expectedSize * 2)
+			capacity <<= 1;
+		keys = new String[capacity];
+		values = new int[capacity];
+	}
+
+	/**
+	 * @param SKU The SKU to look up
+	 * @return The value stored for the SKU, or NOT_FOUND
+	 */
+	public int get(String SKU) {
+		int mask = keys.length - 1;
+		for (int slot = hash(SKU) & mask;; slot = (slot + 1) & mask) {
+			String key = keys[slot];
+			if (key == null)
+				return NOT_FOUND;
+			if (key.equals(SKU))
+				return values[slot];
+		}
+	}
+
+	/**
+	 * Store a value for a SKU, replacing any previous one
+	 * @param SKU The SKU
+	 * @param value The value, must not be negative
+	 */
+	public void put(String SKU, int value) {
+		if ((size + 1) * 2 > keys.length)
+			resize(keys.length * 2);
+
+		int mask = keys.length - 1;
+		int slot = hash(SKU) & mask;
+		while (keys[slot] != null && !keys[slot].equals(SKU))
+			slot = (slot + 1) & mask;
+		if (keys[slot] == null) {
+			keys[slot] = SKU;
+			++size;
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * Remove a SKU from the table
+	 * @param SKU The SKU
+	 * @return The value that was stored for the SKU, or NOT_FOUND
+	 */
+	public int remove(String SKU) {
+		int mask = keys.length - 1;
+		int slot = hash(SKU) & mask;
+		while (keys[slot] != null && !keys[slot].equals(SKU))
+			slot = (slot + 1) & mask;
+		if (keys[slot] == null)
+			return NOT_FOUND;
+
+		int value = values[slot];
+		// shift back following keys of the same probe run, so that lookups never stop at the freed slot
+		int free = slot;
+		for (int next = (free + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+			int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+		}
+		keys[free] = null;
+		--size;
+		return value;
+	}
+
+	/**
+	 * Remove all SKUs, keeping the allocated capacity
+	 */
+	public void clear() {
+		Arrays.fill(keys, null);
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void resize(int capacity) {
+		String[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new String[capacity];
+		values = new int[capacity];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null)
+				put(oldKeys[i], oldValues[i]);
+		}
+	}
+
+	private static int hash(String SKU) {
+		int h = SKU.hashCode();
+		return h ^ (h >>> 16); // spread the high bits, the mask only keeps the low ones
+	}
+}
@@ -0,0 +1,16 @@
+package data;
+
+/**
+ * Visits the lines of a shopping trolley (see 'ShoppingTrolley.forEachLine()')
+ * @author Daniele Palazzo
+ *
+ * @param <E> The exception the visitor may throw to stop the visit
+ */
+public interface TrolleyLineVisitor<E extends Throwable> {
+
+	/**
+	 * @param p The product on the line
+	 * @param quantity The quantity of the product in the trolley
+	 */
+	void visit(Product p, int quantity) throws E;
+}
@@ -0,0 +1,17 @@
+package data;
+
+/**
+ * Gets notified whenever the quantity of a product in a shopping trolley changes
+ * @author Daniele Palazzo
+ *
+ */
+public interface TrolleyListener {
+
+	/**
+	 * Called after the quantity of a product in the trolley has changed
+	 * @param p The product in question
+	 * @param oldQuantity The quantity before the change (0 if the product was not in the trolley)
+	 * @param newQuantity The quantity after the change (0 if the product was removed from the trolley)
+	 */
+	void quantityChanged(Product p, int oldQuantity, int newQuantity);
+}
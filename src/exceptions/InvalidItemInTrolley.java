@@ -2,6 +2,6 @@ package exceptions;
 
 public class InvalidItemInTrolley extends Throwable {
 	public InvalidItemInTrolley() {
-		super("An invalid item was detected in the trolley");
+		super("An invalid item was detected in the trolley", null, false, false); // no stack trace, it is an expected outcome
 	}
 }
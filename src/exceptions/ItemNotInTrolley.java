@@ -2,6 +2,6 @@ package exceptions;
 
 public class ItemNotInTrolley extends Throwable {
 	public ItemNotInTrolley() {
-		super("Item not found in trolley");
+		super("Item not found in trolley", null, false, false); // no stack trace, it is an expected outcome
 	}
 }
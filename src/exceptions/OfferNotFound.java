@@ -2,6 +2,6 @@ package exceptions;
 
 public class OfferNotFound extends Throwable {
 	public OfferNotFound() {
-		super("Offer not found in the database");
+		super("Offer not found in the database", null, false, false); // no stack trace, it is an expected outcome
 	}
 }
@@ -2,6 +2,6 @@ package exceptions;
 
 public class ProductNotFound extends Throwable {
 	public ProductNotFound() {
-		super("Product not found in the database");
+		super("Product not found in the database", null, false, false); // no stack trace, it is an expected outcome
 	}
 }
@@ -1,83 +1,150 @@
 package main;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Map.Entry;
 
+import businessLogic.Catalogue;
+import businessLogic.CatalogueSnapshot;
+import businessLogic.MappedCatalogue;
 import businessLogic.ProductDAO;
-import businessLogic.TrolleyTotalCalculator;
+import businessLogic.ReceiptRenderer;
+import businessLogic.RunningTotalCalculator;
+import businessLogic.ScanPipeline;
+import businessLogic.TrolleySession;
+import businessLogic.TrolleySessionStore;
+import data.Money;
 import data.Offer;
 import data.Product;
-import data.ProductCounter;
 import data.ShoppingTrolley;
 import exceptions.InvalidItemInTrolley;
-import exceptions.ProductNotFound;
 
 public class CheckOutMain {
 
 	public static void main(String[] args) {
 
-		ProductDAO productDatabase = new ProductDAO();
+		Catalogue pricingRules; // pinned for this checkout transaction
 		ShoppingTrolley shoppingTrolley = new ShoppingTrolley();
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out))); // flushed before input
 
-		System.out.println("Enter product to add to your shopping trolley.");
-		System.out.println("Available items: ");
+		out.println("Enter product to add to your shopping trolley.");
 
-		// Printing Catalogue
-		System.out.printf("%-12s%-12s%-12s%-12s\n", "SKU", "Name", "Price", "Current Offer");
-		for (Entry<String, Product> e : productDatabase.getAllAvailableProducts()) {
-			Product product = e.getValue();
+		if (args.length > 0) { // catalogue file written by MappedCatalogueWriter, too large to list
 			try {
-				Offer offer = productDatabase.getProductOffer(e.getKey());
-				System.out.printf("%-12s%-12s%-11.2f%-12s\n", product.getSKU(), product.getName(), product.getPrice(),
-						(offer != null) ? offer.getName() : "-");
-			} catch (ProductNotFound ex) {
-				continue;
+				MappedCatalogue catalogue = MappedCatalogue.open(Paths.get(args[0]));
+				out.printf("%,d products available.\n", catalogue.getProductCount());
+				pricingRules = catalogue;
+			} catch (IOException e1) {
+				out.println("Error: Can't open the catalogue file: " + e1.getMessage());
+				out.flush();
+				System.exit(1);
+				return;
+			}
+		} else {
+			CatalogueSnapshot catalogue = new ProductDAO().getSnapshot();
+			out.println("Available items: ");
+
+			// Printing Catalogue
+			out.printf("%-12s%-12s%-12s%-12s\n", "SKU", "Name", "Price", "Current Offer");
+			for (Entry<String, Product> e : catalogue.getAllAvailableProducts()) {
+				Product product = e.getValue();
+				Offer offer = catalogue.findProductOffer(e.getKey());
+				out.printf("%-12s%-12s£%-11s%-12s\n", product.getSKU(), product.getName(),
+						Money.format(product.getPrice()), (offer != null) ? offer.getName() : "-");
 			}
+			pricingRules = catalogue;
 		}
 
 		BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+		RunningTotalCalculator runningTotal = new RunningTotalCalculator(shoppingTrolley, pricingRules);
+
+		// Resuming the trolley of the session interrupted by a crash, if sessions are kept
+		TrolleySession session = null;
+		String sessionDirectory = System.getProperty("checkout.sessions");
+		if (sessionDirectory != null) {
+			try {
+				TrolleySessionStore sessions = new TrolleySessionStore(Paths.get(sessionDirectory));
+				session = sessions.resume("till", pricingRules, shoppingTrolley);
+				if (!shoppingTrolley.getAllItemsInTrolley().isEmpty())
+					out.printf("Resumed %d products from the last session, running total: £%s\n",
+							shoppingTrolley.getAllItemsInTrolley().size(), Money.format(runningTotal.getRunningTotal()));
+			} catch (IOException | InvalidItemInTrolley e1) {
+				out.println("Error: Can't resume the session: " + e1.getMessage());
+				out.flush();
+				System.exit(1);
+				return;
+			}
+		}
+
+		// Replaying the scans queued by a scanner while it was offline, if any
+		boolean checkedOut = false;
+		String replayFile = System.getProperty("checkout.replay");
+		if (replayFile != null) {
+			try (BufferedReader scans = Files.newBufferedReader(Paths.get(replayFile))) {
+				checkedOut = new ScanPipeline(pricingRules, runningTotal, ScanPipeline.DEFAULT_BATCH_SIZE).replay(scans,
+						out);
+			} catch (IOException | InvalidItemInTrolley e1) {
+				out.println("Error: Can't replay the scans: " + e1.getMessage());
+				out.flush();
+				System.exit(1);
+				return;
+			}
+		}
 
 		// Shopping
 		String order = "";
-		while (true) {
+		while (!checkedOut) {
 			try {
-				System.out.println("\nProduct SKU to add (type \"checkout\" to stop):");
+				out.println("\nProduct SKU to add (type \"checkout\" to stop):");
+				out.flush();
 				order = input.readLine();
 
 				if (order.equals("checkout")) // stop shopping with checkout command
 					break;
 
-				Product product = productDatabase.getProduct(order);
+				Product product = pricingRules.findProduct(order); // mistyped SKUs are common, so no exception
+				if (product == null) {
+					out.println("Error: No such product in the database. Please try again.\n");
+					continue;
+				}
 				shoppingTrolley.addItem(product);
+				out.printf("Running total: £%s\n", Money.format(runningTotal.getRunningTotal()));
 
 			} catch (IOException e1) {
-				System.out.println("Error: An unexpected error occured.");
+				out.println("Error: An unexpected error occured.");
+				out.flush();
+				System.exit(1);// close application (should never happen in theory)
+			} catch (InvalidItemInTrolley e1) {
+				out.println("Error: An unexpected error occured.");
+				out.flush();
 				System.exit(1);// close application (should never happen in theory)
-			} catch (ProductNotFound e1) {
-				System.out.println("Error: No such product in the database. Please try again.\n");
-				continue;
 			}
 		}
 
 		// Printing Receipt
-		TrolleyTotalCalculator totalCalculator = new TrolleyTotalCalculator(shoppingTrolley, productDatabase);
+		ReceiptRenderer receipt = new ReceiptRenderer(ReceiptRenderer.Format.TEXT);
 		try {
-			System.out.println("Thank you for shopping with us!");
-			System.out.println("Your Receipt: ");
-
-			float total = totalCalculator.calculateTrolleyTotal(); // calculate trolley
-
-			System.out.printf("%-12s%-12s%-12s\n", "Product", "Quantity", "Applied Offer");
-			for (Entry<Product, ProductCounter> e : shoppingTrolley.getAllItemsInTrolley()) {
-				String appliedOffer = (totalCalculator.getOfferAppliedTo(e.getKey()) == null) ? "-"
-						: totalCalculator.getOfferAppliedTo(e.getKey());
-				System.out.printf("%-12s%-12s%-12s\n", e.getKey().getName(), e.getValue().getCount(), appliedOffer);
-			}
-			System.out.printf("Your total is: %.2f", total);
+			out.println("Thank you for shopping with us!");
+			out.println("Your Receipt: ");
+
+			receipt.render(shoppingTrolley, pricingRules); // priced while rendered
+			receipt.writeTo(out);
+			out.flush();
+			if (session != null)
+				session.finish();
+		} catch (IOException e1) {
+			out.println("Error: Can't end the session: " + e1.getMessage());
+			out.flush();
+			System.exit(1);
 		} catch (InvalidItemInTrolley e1) {
-			System.out.println("Error: An unexpected error occured.");
+			out.println("Error: An unexpected error occured.");
+			out.flush();
 			System.exit(1);// close application (should never happen in theory)
 		}
 
@@ -0,0 +1,282 @@
+package main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import businessLogic.Catalogue;
+import businessLogic.MappedCatalogue;
+import businessLogic.ProductDAO;
+import businessLogic.RunningTotalCalculator;
+import businessLogic.TrolleyTotalCalculator;
+import data.CompactShoppingTrolley;
+import data.Money;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.ItemNotInTrolley;
+
+/**
+ * Serves many checkout lanes from one process over loopback TCP. Each connection is a lane with its own trolley,
+ * driven by one request per line, each answered by one line ("OK ..." or "ERR ..."):
+ * <ul>
+ * <li>SCAN SKU - add one item, answers the running total</li>
+ * <li>REMOVE SKU - remove one item, answers the running total</li>
+ * <li>TOTAL - answers the running total</li>
+ * <li>CHECKOUT - answers the total of the trolley, which is then emptied for the next customer</li>
+ * <li>QUIT - close the lane</li>
+ * </ul>
+ * Every lane is served by its own thread, blocking on its socket: a virtual thread when the JVM has them (Java 21+),
+ * so that idle lanes only cost their buffers, otherwise a platform thread. Each checkout transaction is priced against
+ * a snapshot of the catalogue pinned when it starts.
+ * @author Daniele Palazzo
+ *
+ */
+public final class CheckoutServer implements Closeable {
+
+	private static final int MAX_REQUEST = 256; // bytes, a request is a command and a SKU
+	private static final int MAX_REPLY = 64; // an error message or "OK " and a total
+	private static final int PLATFORM_STACK_SIZE = 256 * 1024;
+
+	private final Catalogue catalogue;
+	private final ServerSocket serverSocket;
+	private final ExecutorService lanes;
+	private final boolean virtualThreads;
+	private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger laneCount = new AtomicInteger();
+	private final Thread acceptor;
+
+	/**
+	 * Start serving lanes
+	 * @param catalogue The catalogue to sell from
+	 * @param port The loopback port to listen on, 0 for any free port
+	 * @throws IOException Thrown if the port can't be listened on
+	 */
+	public CheckoutServer(Catalogue catalogue, int port) throws IOException {
+		this.catalogue = catalogue;
+		serverSocket = new ServerSocket();
+		serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+
+		ExecutorService executor;
+		boolean virtual;
+		try { // through reflection, as the code is built for Java 8
+			executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			virtual = true;
+		} catch (ReflectiveOperationException e) {
+			executor = Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(null, r, "checkout-lane", PLATFORM_STACK_SIZE);
+				t.setDaemon(true);
+				return t;
+			});
+			virtual = false;
+		}
+		lanes = executor;
+		virtualThreads = virtual;
+
+		acceptor = new Thread(this::accept, "checkout-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * @return The port the server listens on
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return True if lanes are served by virtual threads
+	 */
+	public boolean isUsingVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * @return The number of lanes connected
+	 */
+	public int getLaneCount() {
+		return laneCount.get();
+	}
+
+	/**
+	 * Stop accepting lanes and disconnect the connected ones
+	 */
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		for (Socket s : connections)
+			s.close();
+		lanes.shutdown();
+	}
+
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				connections.add(socket);
+				lanes.execute(() -> serve(socket));
+			} catch (IOException e) {
+				// closed, or a connection failed before it was accepted
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		laneCount.incrementAndGet();
+		try (Socket s = socket) {
+			new Lane(s.getInputStream(), s.getOutputStream()).run();
+		} catch (IOException e) {
+			// disconnected
+		} finally {
+			connections.remove(socket);
+			laneCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * A checkout lane: reads requests, and answers them from its trolley. Requests are ASCII, read into a small buffer
+	 * rather than through a Reader, so that an idle lane holds less than a kilobyte.
+	 */
+	private final class Lane {
+		private final InputStream in;
+		private final OutputStream out;
+		private final byte[] request = new byte[MAX_REQUEST];
+		private int buffered; // bytes read past the end of the last request
+		private final StringBuilder reply = new StringBuilder(MAX_REPLY);
+		private final byte[] replyBytes = new byte[MAX_REPLY + 1];
+
+		private final ShoppingTrolley trolley = new CompactShoppingTrolley();
+		private Catalogue pricingRules; // pinned for the checkout transaction
+		private RunningTotalCalculator runningTotal;
+
+		Lane(InputStream in, OutputStream out) {
+			this.in = in;
+			this.out = out;
+			startTransaction();
+		}
+
+		void run() throws IOException {
+			String line;
+			while ((line = readRequest()) != null) {
+				reply.setLength(0);
+				boolean quit = handle(line);
+				for (int i = 0; i < reply.length(); i++)
+					replyBytes[i] = (byte) reply.charAt(i); // replies are ASCII
+				replyBytes[reply.length()] = '\n';
+				out.write(replyBytes, 0, reply.length() + 1);
+				out.flush();
+				if (quit)
+					return;
+			}
+		}
+
+		/**
+		 * Read the next request, keeping any bytes after it at the start of the buffer
+		 * @return The request, without the newline, or null if the lane has disconnected
+		 */
+		private String readRequest() throws IOException {
+			int start = 0;
+			while (true) {
+				for (int i = start; i < buffered; i++) {
+					if (request[i] == '\n') {
+						int length = (i > 0 && request[i - 1] == '\r') ? i - 1 : i;
+						String line = new String(request, 0, length, StandardCharsets.US_ASCII);
+						System.arraycopy(request, i + 1, request, 0, buffered - i - 1);
+						buffered -= i + 1;
+						return line;
+					}
+				}
+				start = buffered;
+				if (buffered == request.length)
+					throw new IOException("Request too long");
+				int n = in.read(request, buffered, request.length - buffered);
+				if (n < 0)
+					return null;
+				buffered += n;
+			}
+		}
+
+		/**
+		 * Carry out a request, appending the reply
+		 * @return True if the lane should be closed
+		 */
+		private boolean handle(String line) {
+			int space = line.indexOf(' ');
+			String command = (space < 0) ? line : line.substring(0, space);
+			String SKU = (space < 0) ? null : line.substring(space + 1);
+
+			try {
+				switch (command) {
+				case "SCAN":
+				case "REMOVE":
+					Product p = (SKU == null) ? null : pricingRules.findProduct(SKU);
+					if (p == null) {
+						reply.append("ERR No such product");
+						return false;
+					}
+					if (command.equals("SCAN"))
+						trolley.addItem(p);
+					else
+						trolley.removeItem(p, 1);
+					Money.appendTo(reply.append("OK "), runningTotal.getRunningTotal());
+					return false;
+				case "TOTAL":
+					Money.appendTo(reply.append("OK "), runningTotal.getRunningTotal());
+					return false;
+				case "CHECKOUT":
+					long total = new TrolleyTotalCalculator(trolley, pricingRules).calculateTrolleyTotal();
+					Money.appendTo(reply.append("OK "), total);
+					runningTotal.detach();
+					trolley.clear();
+					startTransaction();
+					return false;
+				case "QUIT":
+					reply.append("OK");
+					return true;
+				default:
+					reply.append("ERR Unknown command");
+					return false;
+				}
+			} catch (ItemNotInTrolley e) {
+				reply.append("ERR Item not in trolley");
+			} catch (InvalidItemInTrolley e) {
+				reply.append("ERR Invalid item in trolley");
+			}
+			return false;
+		}
+
+		private void startTransaction() {
+			pricingRules = catalogue.getSnapshot();
+			runningTotal = new RunningTotalCalculator(trolley, pricingRules);
+		}
+	}
+
+	/**
+	 * Run a server until the process is stopped
+	 * @param args The port to listen on (default 7070), then optionally a catalogue file written by
+	 *             MappedCatalogueWriter (by default the sample products)
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : 7070;
+		Catalogue catalogue = (args.length > 1) ? MappedCatalogue.open(Paths.get(args[1])) : new ProductDAO(true);
+		try (CheckoutServer server = new CheckoutServer(catalogue, port)) {
+			System.out.printf("Serving checkout lanes on port %d (%s threads)\n", server.getPort(),
+					server.isUsingVirtualThreads() ? "virtual" : "platform");
+			server.acceptor.join();
+		}
+	}
+}
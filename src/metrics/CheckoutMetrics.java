@@ -0,0 +1,136 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and counters for the checkout hot path. Collection is switched on for the whole JVM with
+ * -Dcheckout.metrics=true; the switch is a constant, so when it is off the JIT removes the instrumentation entirely.
+ * 
+ * Instrumented code takes a start time with 'start()' and hands it to 'record()' when the operation is done. Only a
+ * random sample of the operations is timed (1 in 64 by default, set with -Dcheckout.metrics.sampling), as reading the
+ * clock costs far more than the lookups being timed, and operation counts are estimated from the sample. Events are
+ * rare, so they are all counted.
+ * @author Daniele Palazzo
+ *
+ */
+public final class CheckoutMetrics {
+
+	/**
+	 * The timed operations
+	 */
+	public enum Operation {
+		CALCULATE_TROLLEY_TOTAL, GET_PRODUCT, GET_PRODUCT_OFFER, ADD_ITEM, REMOVE_ITEM
+	}
+
+	/**
+	 * The counted events
+	 */
+	public enum Event {
+		PRODUCT_NOT_FOUND, INVALID_ITEM_IN_TROLLEY
+	}
+
+	public static final boolean ENABLED = Boolean.getBoolean("checkout.metrics");
+
+	// one in (SAMPLE_MASK + 1) operations is timed, rounded down to a power of two
+	private static final int SAMPLE_MASK = Integer
+			.highestOneBit(Math.max(1, Integer.getInteger("checkout.metrics.sampling", 64))) - 1;
+	private static final long NOT_TIMED = Long.MIN_VALUE;
+
+	private static final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+	private static final LongAdder[] counters = new LongAdder[Event.values().length];
+
+	static {
+		for (int i = 0; i < histograms.length; i++)
+			histograms[i] = new LatencyHistogram();
+		for (int i = 0; i < counters.length; i++)
+			counters[i] = new LongAdder();
+	}
+
+	private CheckoutMetrics() {
+	}
+
+	/**
+	 * @return The start time of an operation, to be passed to 'record()' (a marker if the operation is not timed)
+	 */
+	public static long start() {
+		if (ENABLED && (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0)
+			return System.nanoTime();
+		return NOT_TIMED;
+	}
+
+	/**
+	 * Record the latency of an operation that has just finished, if it was timed
+	 * @param operation The operation
+	 * @param start The start time of the operation returned by 'start()'
+	 */
+	public static void record(Operation operation, long start) {
+		if (ENABLED && start != NOT_TIMED)
+			histograms[operation.ordinal()].record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Count an event
+	 * @param event The event that happened
+	 */
+	public static void count(Event event) {
+		if (ENABLED)
+			counters[event.ordinal()].increment();
+	}
+
+	/**
+	 * @return The metrics collected so far
+	 */
+	public static MetricsSnapshot snapshot() {
+		Map<Operation, LatencyHistogram.Snapshot> latencies = new EnumMap<>(Operation.class);
+		Map<Operation, Long> operationCounts = new EnumMap<>(Operation.class);
+		for (Operation operation : Operation.values()) {
+			latencies.put(operation, histograms[operation.ordinal()].snapshot());
+			operationCounts.put(operation, latencies.get(operation).getCount() * (SAMPLE_MASK + 1));
+		}
+		Map<Event, Long> counts = new EnumMap<>(Event.class);
+		for (Event event : Event.values())
+			counts.put(event, counters[event.ordinal()].sum());
+		return new MetricsSnapshot(System.currentTimeMillis(), operationCounts, latencies, counts);
+	}
+
+	/**
+	 * Clear all metrics collected so far
+	 */
+	public static void reset() {
+		for (LatencyHistogram histogram : histograms)
+			histogram.reset();
+		for (LongAdder counter : counters)
+			counter.reset();
+	}
+
+	/**
+	 * Periodically print the metrics as text
+	 * @param out Where to print the metrics
+	 * @param periodSeconds The time between dumps
+	 * @return The scheduler doing the dumps, shut it down to stop them
+	 */
+	public static ScheduledExecutorService startPeriodicDump(PrintStream out, long periodSeconds) {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "checkout-metrics-dump");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.scheduleAtFixedRate(() -> {
+			try {
+				snapshot().writeText(out);
+				out.flush();
+			} catch (IOException e) {
+				// a PrintStream does not throw, it records the error instead
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+		return scheduler;
+	}
+}
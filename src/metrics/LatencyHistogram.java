@@ -0,0 +1,133 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds with log-linear buckets (as in HdrHistogram): every power of two
+ * is split into 32 buckets, so any recorded value is reported within about 3% of its true value, from 1 ns up to
+ * hours, in a fixed 16 KB of counters.
+ * @author Daniele Palazzo
+ *
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Record one latency
+	 * @param nanos The latency in nanoseconds, negative values are counted as 0
+	 */
+	public void record(long nanos) {
+		counts.incrementAndGet(bucketOf(Math.max(nanos, 0)));
+	}
+
+	/**
+	 * Remove all recorded values
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+	}
+
+	/**
+	 * @return A copy of the recorded values, which later recording does not change
+	 */
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			copy[i] = counts.get(i);
+		return new Snapshot(copy);
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value; // small values are exact
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS; // keeps the leading one and 5 bits below
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	// the lowest value that falls into the given bucket
+	static long lowestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+	}
+
+	// the highest value that falls into the given bucket
+	static long highestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		return lowestValueOf(bucket) + (1L << shift) - 1;
+	}
+
+	/**
+	 * The counts of a histogram at one point in time
+	 */
+	public static final class Snapshot {
+		private final long[] counts;
+		private final long totalCount;
+
+		Snapshot(long[] counts) {
+			this.counts = counts;
+			long total = 0;
+			for (long c : counts)
+				total += c;
+			this.totalCount = total;
+		}
+
+		/**
+		 * @return The number of recorded values
+		 */
+		public long getCount() {
+			return totalCount;
+		}
+
+		/**
+		 * @param percentile The percentile (0-100) to get, e.g. 99 for the 99th percentile
+		 * @return The value at the given percentile (an upper bound within the bucket precision), 0 if empty
+		 */
+		public long getValueAtPercentile(double percentile) {
+			if (totalCount == 0)
+				return 0;
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank)
+					return highestValueOf(i);
+			}
+			return getMax();
+		}
+
+		/**
+		 * @return The highest recorded value (within the bucket precision), 0 if empty
+		 */
+		public long getMax() {
+			for (int i = counts.length - 1; i >= 0; i--) {
+				if (counts[i] != 0)
+					return highestValueOf(i);
+			}
+			return 0;
+		}
+
+		/**
+		 * @return The mean of the recorded values (within the bucket precision), 0 if empty
+		 */
+		public double getMean() {
+			if (totalCount == 0)
+				return 0;
+			double sum = 0;
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] != 0)
+					sum += counts[i] * ((lowestValueOf(i) + (double) highestValueOf(i)) / 2);
+			}
+			return sum / totalCount;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package metrics;
+
+import java.io.IOException;
+import java.util.Map;
+
+import metrics.CheckoutMetrics.Event;
+import metrics.CheckoutMetrics.Operation;
+
+/**
+ * The checkout metrics at one point in time
+ * @author Daniele Palazzo
+ *
+ */
+public final class MetricsSnapshot {
+
+	private final long timestamp;
+	private final Map<Operation, Long> operationCounts;
+	private final Map<Operation, LatencyHistogram.Snapshot> latencies;
+	private final Map<Event, Long> counts;
+
+	MetricsSnapshot(long timestamp, Map<Operation, Long> operationCounts,
+			Map<Operation, LatencyHistogram.Snapshot> latencies, Map<Event, Long> counts) {
+		this.timestamp = timestamp;
+		this.operationCounts = operationCounts;
+		this.latencies = latencies;
+		this.counts = counts;
+	}
+
+	/**
+	 * @return When the snapshot was taken, in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @param operation The operation in question
+	 * @return How many times the operation was done (estimated from the number of operations timed)
+	 */
+	public long getCount(Operation operation) {
+		return operationCounts.get(operation);
+	}
+
+	/**
+	 * @param operation The operation in question
+	 * @return The latencies recorded for the sample of the operations that were timed
+	 */
+	public LatencyHistogram.Snapshot getLatencies(Operation operation) {
+		return latencies.get(operation);
+	}
+
+	/**
+	 * @param event The event in question
+	 * @return How many times the event happened
+	 */
+	public long getCount(Event event) {
+		return counts.get(event);
+	}
+
+	/**
+	 * Write the snapshot as a text table, one line per operation and event
+	 * @param out Where to write the snapshot
+	 * @throws IOException Thrown if writing fails
+	 */
+	public void writeText(Appendable out) throws IOException {
+		out.append(String.format("%-24s%12s%12s%12s%12s%12s%12s%12s\n", "operation", "count", "timed", "mean ns",
+				"p50 ns", "p99 ns", "p99.9 ns", "max ns"));
+		for (Map.Entry<Operation, LatencyHistogram.Snapshot> e : latencies.entrySet()) {
+			LatencyHistogram.Snapshot h = e.getValue();
+			out.append(String.format("%-24s%12d%12d%12.0f%12d%12d%12d%12d\n", e.getKey(), operationCounts.get(e.getKey()),
+					h.getCount(), h.getMean(),
+					h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMax()));
+		}
+		for (Map.Entry<Event, Long> e : counts.entrySet())
+			out.append(String.format("%-24s%12d\n", e.getKey(), e.getValue()));
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		try {
+			writeText(text);
+		} catch (IOException e) {
+			// a StringBuilder does not throw
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,216 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.BasketOptimiser;
+import businessLogic.ProductDAO;
+import businessLogic.TrolleyTotalCalculator;
+import data.Product;
+import data.Promotion;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+
+class BasketOptimiserTest {
+
+	private static final String[] SKUS = { "W", "X", "Y", "Z", "DEAR", "CHEAP" }; // the products without offers
+
+	private final ProductDAO productDatabase = new ProductDAO();
+
+	private BasketOptimiserTest() {
+		for (String SKU : new String[] { "W", "X", "Y", "Z" })
+			productDatabase.addProduct(SKU, new Product("Product " + SKU, 200, SKU));
+		productDatabase.addProduct("DEAR", new Product("Dear", 300, "DEAR"));
+		productDatabase.addProduct("CHEAP", new Product("Cheap", 100, "CHEAP"));
+	}
+
+	private ShoppingTrolley trolleyOf(String... SKUs) {
+		ShoppingTrolley trolley = new ShoppingTrolley();
+		for (String SKU : SKUs)
+			trolley.addItem(productDatabase.findProduct(SKU));
+		return trolley;
+	}
+
+	@Test
+	void sameAsOffersAloneTest() throws InvalidItemInTrolley {
+		ShoppingTrolley trolley = trolleyOf("A", "A", "A", "A", "B", "B", "B", "C", "D");
+		BasketOptimiser optimiser = new BasketOptimiser(productDatabase, Collections.emptyList());
+
+		assertEquals(new TrolleyTotalCalculator(trolley, productDatabase).calculateTrolleyTotal(),
+				optimiser.calculateTrolleyTotal(trolley));
+		assertEquals(1, (int) optimiser.getAppliedPromotions().get("3 for £1.30"));
+		assertTrue(optimiser.isOptimal());
+	}
+
+	@Test
+	void competingBundlesTest() throws InvalidItemInTrolley {
+		// taking the bundle saving the most first leaves Y and Z at full price
+		BasketOptimiser optimiser = new BasketOptimiser(productDatabase,
+				Arrays.asList(Promotion.bundle("W+X", 300, new String[] { "W" }, new String[] { "X" }),
+						Promotion.bundle("W+Y", 310, new String[] { "W" }, new String[] { "Y" }),
+						Promotion.bundle("X+Z", 305, new String[] { "X" }, new String[] { "Z" })));
+
+		assertEquals(615, optimiser.calculateTrolleyTotal(trolleyOf("W", "X", "Y", "Z")));
+		assertEquals(1, (int) optimiser.getAppliedPromotions().get("W+Y"));
+		assertEquals(1, (int) optimiser.getAppliedPromotions().get("X+Z"));
+	}
+
+	@Test
+	void cheapestFreeTest() throws InvalidItemInTrolley {
+		BasketOptimiser optimiser = new BasketOptimiser(productDatabase,
+				Arrays.asList(Promotion.buyGetFree("BOGOF", 1, 1, "DEAR", "CHEAP")));
+
+		assertEquals(300, optimiser.calculateTrolleyTotal(trolleyOf("DEAR", "CHEAP")));
+		// pairing alike items frees a dear one
+		assertEquals(400, optimiser.calculateTrolleyTotal(trolleyOf("DEAR", "CHEAP", "DEAR", "CHEAP")));
+		assertEquals(2, (int) optimiser.getAppliedPromotions().get("BOGOF"));
+	}
+
+	@Test
+	void percentageAgainstBundleTest() throws InvalidItemInTrolley {
+		BasketOptimiser optimiser = new BasketOptimiser(productDatabase,
+				Arrays.asList(Promotion.percentageOff("Half price", 50, "DEAR"),
+						Promotion.bundle("Dear+W", 400, new String[] { "DEAR" }, new String[] { "W" })));
+
+		assertEquals(150 + 150 + 200, optimiser.calculateTrolleyTotal(trolleyOf("DEAR", "DEAR", "W")));
+		assertEquals(2, (int) optimiser.getAppliedPromotions().get("Half price"));
+		assertEquals(null, optimiser.getAppliedPromotions().get("Dear+W"));
+	}
+
+	@Test
+	void mixAndMatchWithOffersTest() throws InvalidItemInTrolley {
+		// "3 for £1.30" on apples competes with any 3 of A, B and C for £1.00
+		BasketOptimiser optimiser = new BasketOptimiser(productDatabase,
+				Arrays.asList(Promotion.multiBuy("Any 3 for £1", 3, 100, "A", "B", "C")));
+
+		assertEquals(100 + 100, optimiser.calculateTrolleyTotal(trolleyOf("A", "A", "A", "A", "B", "C")));
+		assertEquals(100 + 45 + 15, optimiser.calculateTrolleyTotal(trolleyOf("A", "A", "A", "B", "B", "D")));
+		assertEquals(1, (int) optimiser.getAppliedPromotions().get("Any 3 for £1"));
+		assertEquals(1, (int) optimiser.getAppliedPromotions().get("2 for £0.45"));
+		assertTrue(optimiser.isOptimal());
+	}
+
+	@Test
+	void greedyTest() throws InvalidItemInTrolley {
+		// with no steps to search, the bundle saving the most is taken first, and Y+Z saves nothing
+		BasketOptimiser optimiser = new BasketOptimiser(productDatabase,
+				Arrays.asList(Promotion.bundle("W+X", 300, new String[] { "W" }, new String[] { "X" }),
+						Promotion.bundle("W+Y", 310, new String[] { "W" }, new String[] { "Y" }),
+						Promotion.bundle("X+Z", 305, new String[] { "X" }, new String[] { "Z" }),
+						Promotion.bundle("Y+Z", 450, new String[] { "Y" }, new String[] { "Z" })),
+				0);
+
+		assertEquals(300 + 200 + 200, optimiser.calculateTrolleyTotal(trolleyOf("W", "X", "Y", "Z")));
+		assertEquals(1, (int) optimiser.getAppliedPromotions().get("W+X"));
+		assertEquals(null, optimiser.getAppliedPromotions().get("Y+Z"));
+		assertFalse(optimiser.isOptimal());
+	}
+
+	@Test
+	void tooLargeToSearchTest() throws InvalidItemInTrolley {
+		BasketOptimiser optimiser = new BasketOptimiser(productDatabase,
+				Arrays.asList(Promotion.bundle("W+X", 300, new String[] { "W" }, new String[] { "X" })));
+		ShoppingTrolley trolley = new ShoppingTrolley();
+		trolley.addItem(productDatabase.findProduct("W"), 40);
+		trolley.addItem(productDatabase.findProduct("X"), 41);
+
+		assertEquals(40 * 300 + 200, optimiser.calculateTrolleyTotal(trolley));
+		assertEquals(40, (int) optimiser.getAppliedPromotions().get("W+X"));
+		assertFalse(optimiser.isOptimal());
+		assertEquals(300 + 200, optimiser.calculateTrolleyTotal(trolleyOf("W", "X", "X")));
+		assertTrue(optimiser.isOptimal());
+	}
+
+	@Test
+	void overlappingPromotionsTest() throws InvalidItemInTrolley {
+		// every item is in several promotions, each trolley is checked against trying every way of applying them
+		Random random = new Random(1);
+		List<Promotion> promotions = new ArrayList<>();
+		for (int p = 0; p < 9; p++) {
+			String[] SKUs = new String[3];
+			for (int i = 0; i < SKUs.length; i++)
+				SKUs[i] = SKUS[random.nextInt(SKUS.length)];
+			if (p % 3 == 0)
+				promotions.add(Promotion.bundle("Bundle " + p, 250 + random.nextInt(200), new String[] { SKUs[0] },
+						new String[] { SKUs[1], SKUs[2] }));
+			else if (p % 3 == 1)
+				promotions.add(Promotion.multiBuy("Any 3 " + p, 3, 400 + random.nextInt(300), SKUs));
+			else
+				promotions.add(Promotion.buyGetFree("BOGOF " + p, 1, 1, SKUs));
+		}
+		BasketOptimiser optimiser = new BasketOptimiser(productDatabase, promotions);
+
+		for (int t = 0; t < 30; t++) {
+			ShoppingTrolley trolley = new ShoppingTrolley();
+			int[] quantities = new int[SKUS.length];
+			for (int i = 6 + random.nextInt(5); i > 0; i--) {
+				int product = random.nextInt(SKUS.length);
+				trolley.addItem(productDatabase.findProduct(SKUS[product]));
+				++quantities[product];
+			}
+			assertEquals(lowestPrice(promotions, quantities), optimiser.calculateTrolleyTotal(trolley));
+			assertTrue(optimiser.isOptimal());
+		}
+	}
+
+	// the lowest price of the items left, trying the first of them at its price and in every way in every promotion
+	private long lowestPrice(List<Promotion> promotions, int[] left) {
+		int first = 0;
+		while (first < left.length && left[first] == 0)
+			++first;
+		if (first == left.length)
+			return 0;
+		--left[first];
+		long lowest = priceOf(first) + lowestPrice(promotions, left);
+		++left[first];
+		for (Promotion promotion : promotions)
+			lowest = Math.min(lowest, lowestPrice(promotions, promotion, 0, 0, first, false, new ArrayList<>(), left));
+		return lowest;
+	}
+
+	private long lowestPrice(List<Promotion> promotions, Promotion promotion, int slot, int filled, int first,
+			boolean usesFirst, List<Long> prices, int[] left) {
+		if (slot == promotion.getSlotCount()) {
+			if (!usesFirst)
+				return Long.MAX_VALUE;
+			long price = promotion.getPrice();
+			if (promotion.getKind() == Promotion.Kind.CHEAPEST_FREE) {
+				List<Long> sorted = new ArrayList<>(prices);
+				Collections.sort(sorted);
+				price = 0;
+				for (int i = promotion.getFreeItems(); i < sorted.size(); i++)
+					price += sorted.get(i);
+			}
+			return price + lowestPrice(promotions, left);
+		}
+		if (filled == promotion.getSlotSize(slot))
+			return lowestPrice(promotions, promotion, slot + 1, 0, first, usesFirst, prices, left);
+
+		long lowest = Long.MAX_VALUE;
+		for (String SKU : promotion.getSlotSKUs(slot)) {
+			int product = Arrays.asList(SKUS).indexOf(SKU);
+			if (left[product] == 0)
+				continue;
+			--left[product];
+			prices.add(priceOf(product));
+			lowest = Math.min(lowest, lowestPrice(promotions, promotion, slot, filled + 1, first,
+					usesFirst || product == first, prices, left));
+			prices.remove(prices.size() - 1);
+			++left[product];
+		}
+		return lowest;
+	}
+
+	private long priceOf(int product) {
+		return productDatabase.findProduct(SKUS[product]).getPrice();
+	}
+}
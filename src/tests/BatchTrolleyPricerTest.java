@@ -0,0 +1,95 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.BatchTrolleyPricer;
+import businessLogic.PricedTrolley;
+import businessLogic.ProductDAO;
+import businessLogic.TrolleyTotalCalculator;
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class BatchTrolleyPricerTest {
+
+	private static final int PRODUCTS = 50;
+
+	private ProductDAO productDatabase;
+	private Product[] products;
+
+	private BatchTrolleyPricerTest() {
+		productDatabase = new ProductDAO();
+		products = new Product[PRODUCTS];
+		for (int i = 0; i < PRODUCTS; i++) {
+			products[i] = new Product("P" + i, 10 + i, "P" + i);
+			productDatabase.addProduct("P" + i, products[i]);
+			if (i % 3 == 0) {
+				productDatabase.addOffer("O" + i, new Offer("O" + i, 2 + i % 4, 15 + i));
+				try {
+					productDatabase.attachOfferToProduct("O" + i, "P" + i);
+				} catch (ProductNotFound | OfferNotFound e) {
+				}
+			}
+		}
+	}
+
+	@Test
+	void priceAllMatchesCalculatorInOrderTest() {
+		Random random = new Random(5);
+		List<ShoppingTrolley> trolleys = new ArrayList<>();
+		for (int t = 0; t < 2000; t++) {
+			ShoppingTrolley trolley = new ShoppingTrolley();
+			int items = random.nextInt(30);
+			for (int i = 0; i < items; i++)
+				trolley.addItem(products[random.nextInt(PRODUCTS)]);
+			trolleys.add(trolley);
+		}
+
+		List<PricedTrolley> priced = new BatchTrolleyPricer(productDatabase).priceAll(trolleys);
+
+		assertEquals(trolleys.size(), priced.size());
+		try {
+			for (int t = 0; t < trolleys.size(); t++) {
+				assertSame(trolleys.get(t), priced.get(t).getTrolley());
+				TrolleyTotalCalculator calc = new TrolleyTotalCalculator(trolleys.get(t), productDatabase);
+				assertEquals(calc.calculateTrolleyTotal(), priced.get(t).getTotal());
+				for (Product p : products)
+					assertEquals(calc.getOfferAppliedTo(p), priced.get(t).getOfferAppliedTo(p));
+			}
+		} catch (InvalidItemInTrolley e) {
+			fail("Valid item not found in database");
+		}
+	}
+
+	@Test
+	void invalidTrolleyTest() {
+		ShoppingTrolley valid = new ShoppingTrolley();
+		valid.addItem(products[1]);
+		ShoppingTrolley invalid = new ShoppingTrolley();
+		invalid.addItem(new Product("Unknown", 10, "Z"));
+
+		List<PricedTrolley> priced = new BatchTrolleyPricer(productDatabase).priceAll(Arrays.asList(valid, invalid));
+		try {
+			assertEquals(products[1].getPrice(), priced.get(0).getTotal());
+		} catch (InvalidItemInTrolley e) {
+			fail("Valid item not found in database");
+		}
+		try {
+			priced.get(1).getTotal();
+			fail("Invalid item not detected!");
+		} catch (InvalidItemInTrolley e) {
+		}
+	}
+}
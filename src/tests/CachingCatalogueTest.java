@@ -0,0 +1,136 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.CachingCatalogue;
+import businessLogic.Catalogue;
+import businessLogic.ProductDAO;
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class CachingCatalogueTest {
+
+	private ProductDAO productDatabase;
+	private int storeReads;
+	private CachingCatalogue cache;
+
+	// initialize test object
+	private void InitializeTestObject(int maxEntries) {
+		productDatabase = new ProductDAO(true);
+		storeReads = 0;
+		Catalogue store = new Catalogue() { // counts the reads that reach the database
+			@Override
+			public Product findProduct(String SKU) {
+				return productDatabase.findProduct(SKU);
+			}
+
+			@Override
+			public Offer findProductOffer(String SKU) {
+				++storeReads; // read first on every miss
+				return productDatabase.findProductOffer(SKU);
+			}
+
+			@Override
+			public Product getProduct(String SKU) throws ProductNotFound {
+				return productDatabase.getProduct(SKU);
+			}
+
+			@Override
+			public Offer getProductOffer(String SKU) throws ProductNotFound {
+				return productDatabase.getProductOffer(SKU);
+			}
+
+			@Override
+			public Catalogue getSnapshot() {
+				return productDatabase.getSnapshot();
+			}
+		};
+		cache = new CachingCatalogue(store, maxEntries);
+		productDatabase.addListener(cache);
+	}
+
+	@Test
+	void readThroughTest() {
+		InitializeTestObject(100);
+		assertEquals("Apple", cache.findProduct("A").getName());
+		assertEquals("3 for £1.30", cache.findProductOffer("A").getName());
+		assertNull(cache.findProductOffer("C"));
+		assertEquals(2, storeReads);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+
+		// unknown SKUs are cached too
+		assertNull(cache.findProduct("Z"));
+		assertSame(Catalogue.PRODUCT_NOT_FOUND, cache.findProductOffer("Z"));
+		try {
+			cache.getProduct("Z");
+			fail("Non existing product found!");
+		} catch (ProductNotFound e) {
+		}
+		assertEquals(3, storeReads);
+		assertEquals(0.5, cache.getHitRate());
+	}
+
+	@Test
+	void invalidateOnChangeTest() {
+		InitializeTestObject(100);
+		cache.findProduct("A");
+		cache.findProduct("B");
+		cache.findProduct("C");
+		cache.findProduct("Z");
+
+		try {
+			productDatabase.attachOfferToProduct("2 for £0.45", "C");
+			assertEquals("2 for £0.45", cache.findProductOffer("C").getName());
+
+			productDatabase.removeOffer("2 for £0.45");
+			assertNull(cache.findProductOffer("B"));
+			assertNull(cache.findProductOffer("C"));
+			assertEquals("3 for £1.30", cache.findProductOffer("A").getName()); // not affected, still cached
+
+			productDatabase.addOffer("3 for £1.30", new Offer("3 for £1.30", 3, 120));
+			assertEquals(120, cache.findProductOffer("A").getPrice());
+
+			productDatabase.addProduct("Z", new Product("Zucchini", 70, "Z"));
+			assertEquals("Zucchini", cache.findProduct("Z").getName());
+
+			productDatabase.removeProduct("A");
+			assertNull(cache.findProduct("A"));
+		} catch (ProductNotFound | OfferNotFound e) {
+			fail("Can't change existing catalogue entries");
+		}
+		assertEquals(10, storeReads);
+	}
+
+	@Test
+	void offerKeyTest() throws ProductNotFound, OfferNotFound {
+		InitializeTestObject(100);
+		productDatabase.addOffer("weekly", new Offer("Weekly deal", 2, 80)); // named differently from its key
+		productDatabase.attachOfferToProduct("weekly", "C");
+		assertEquals("Weekly deal", cache.findProductOffer("C").getName());
+
+		productDatabase.addOffer("weekly", new Offer("Weekly deal", 2, 70));
+		assertEquals(70, cache.findProductOffer("C").getPrice());
+
+		productDatabase.removeOffer("weekly");
+		assertNull(cache.findProductOffer("C"));
+		assertEquals("3 for £1.30", cache.findProductOffer("A").getName());
+	}
+
+	@Test
+	void boundedSizeTest() {
+		InitializeTestObject(32);
+		for (int i = 0; i < 1000; i++)
+			cache.findProduct("Missing " + i);
+		assertTrue(cache.size() <= 32);
+		assertEquals(1000 - cache.size(), cache.getEvictionCount());
+	}
+}
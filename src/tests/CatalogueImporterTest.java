@@ -0,0 +1,127 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.CatalogueImporter;
+import businessLogic.ProductDAO;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class CatalogueImporterTest {
+
+	private ProductDAO productDatabase;
+	private CatalogueImporter importer;
+	private List<String> rejected;
+	private long lastProgress;
+
+	// initialize test object
+	private void InitializeTestObject() {
+		productDatabase = new ProductDAO();
+		rejected = new ArrayList<>();
+		importer = new CatalogueImporter(productDatabase, new CatalogueImporter.Listener() {
+			@Override
+			public void progress(long rows, long bytes) {
+				lastProgress = rows;
+			}
+
+			@Override
+			public void rejected(long line, String row, String reason) {
+				rejected.add(line + ": " + reason);
+			}
+		});
+	}
+
+	private long importText(String text) throws IOException {
+		return importer.importFrom(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))));
+	}
+
+	@Test
+	void importRowsTest() throws IOException {
+		InitializeTestObject();
+		long imported = importText("# nightly prices\r\n"
+				+ "P,E,Egg,0.25\r\n"
+				+ "P,F,\"Flour, plain\",1.05\n"
+				+ "O,\"2 for \"\"£\"\"0.40\",2,0.40\n"
+				+ "L,E,\"2 for \"\"£\"\"0.40\"\n"
+				+ "L,C,3 for £1.30\n"
+				+ "O,May,2,0.70,2024-05-01T00:00:00Z,2024-06-01T00:00:00Z\n"
+				+ "O,Summer,2,0.70,2024-06-01T00:00:00Z,\n"
+				+ "L,F,May\n"
+				+ "\n"
+				+ "P,A,Apple,0.55");
+
+		assertEquals(9, imported);
+		assertEquals(0, rejected.size());
+		assertEquals(11, lastProgress);
+		try {
+			assertEquals("Flour, plain", productDatabase.getProduct("F").getName());
+			assertEquals(105, productDatabase.getProduct("F").getPrice());
+			assertEquals("2 for \"£\"0.40", productDatabase.getProductOffer("E").getName());
+			assertEquals(40, productDatabase.getProductOffer("E").getPrice());
+			assertEquals("3 for £1.30", productDatabase.getProductOffer("C").getName());
+			assertEquals(55, productDatabase.getProduct("A").getPrice());
+			assertNull(productDatabase.getProductOffer("A")); // replaced product loses its offer
+			assertEquals(Instant.parse("2024-05-01T00:00:00Z"), productDatabase.getProductOffer("F").getStart());
+			assertEquals(Instant.parse("2024-06-01T00:00:00Z"), productDatabase.getProductOffer("F").getEnd());
+			assertNull(productDatabase.getOffer("Summer").getEnd());
+		} catch (ProductNotFound | OfferNotFound e) {
+			fail("Imported product or offer not found!");
+		}
+	}
+
+	@Test
+	void rejectedRowsTest() throws IOException {
+		InitializeTestObject();
+		long imported = importText("P,E,Egg,0.25\n"
+				+ "X,E,Egg,0.25\n"
+				+ "P,G,Grape\n"
+				+ "P,G,Grape,1.234\n"
+				+ "O,Free,0,0\n"
+				+ "L,Z,3 for £1.30\n"
+				+ "L,E,No offer\n"
+				+ "P,H,\"Ham,2.00\n"
+				+ "O,May,2,0.70,1 May,\n"
+				+ "O,May,2,0.70,2024-06-01T00:00:00Z,2024-05-01T00:00:00Z\n");
+
+		assertEquals(1, imported);
+		assertEquals(9, importer.getRejectedRows());
+		assertEquals("2: Unknown row type", rejected.get(0));
+		assertEquals("3: Expected 4 fields", rejected.get(1));
+		assertEquals("4: Invalid number", rejected.get(2));
+		assertEquals("5: Invalid number", rejected.get(3));
+		assertEquals("6: Unknown product", rejected.get(4));
+		assertEquals("7: Unknown offer", rejected.get(5));
+		assertEquals("8: Unterminated quoted field", rejected.get(6));
+		assertEquals("9: Invalid time", rejected.get(7));
+		assertEquals("10: Offer must start before it ends", rejected.get(8));
+	}
+
+	@Test
+	void rowsAcrossChunksTest() throws IOException {
+		InitializeTestObject();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100_000; i++)
+			text.append("P,SKU").append(i).append(",Product ").append(i).append(",").append(i % 100).append(".99\n");
+
+		assertEquals(100_000, importText(text.toString()));
+		assertEquals(0, rejected.size());
+		try {
+			for (int i = 0; i < 100_000; i += 997)
+				assertEquals((i % 100) * 100 + 99, productDatabase.getProduct("SKU" + i).getPrice());
+		} catch (ProductNotFound e) {
+			fail("Imported product or offer not found!");
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.CatalogueJournal;
+import businessLogic.ProductDAO;
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class CatalogueJournalTest {
+
+	// make some changes covering every kind of change
+	private void changeDatabase(ProductDAO productDatabase) {
+		productDatabase.addProduct("A", new Product("Apple", 50, "A"));
+		productDatabase.addProduct("B", new Product("Beetroot", 30, "B"));
+		productDatabase.addProduct("C", new Product("Carrot", 20, "C"));
+		productDatabase.addOffer("3 for £1.30", new Offer("3 for £1.30", 3, 130));
+		productDatabase.addOffer("2 for £0.45", new Offer("2 for £0.45", 2, 45));
+		productDatabase.addOffer("Gone", new Offer("Gone", 2, 10));
+		try {
+			productDatabase.attachOfferToProduct("3 for £1.30", "A");
+			productDatabase.attachOfferToProduct("2 for £0.45", "B");
+			productDatabase.attachOfferToProduct("2 for £0.45", "C");
+			productDatabase.removeOfferFromProduct("C");
+			productDatabase.removeOffers(Arrays.asList("Gone"));
+			productDatabase.addProduct("D", new Product("Date", 15, "D"));
+			productDatabase.removeProduct("D");
+		} catch (ProductNotFound | OfferNotFound e) {
+			fail("Can't change added products and offers");
+		}
+	}
+
+	private void assertRecovered(ProductDAO productDatabase) {
+		try {
+			assertEquals("Apple", productDatabase.getProduct("A").getName());
+			assertEquals(50, productDatabase.getProduct("A").getPrice());
+			assertEquals("3 for £1.30", productDatabase.getProductOffer("A").getName());
+			assertEquals(45, productDatabase.getProductOffer("B").getPrice());
+			assertNull(productDatabase.getProductOffer("C"));
+			assertNull(productDatabase.findProduct("D"));
+			assertEquals(3, productDatabase.getAllAvailableProducts().size());
+			assertEquals(2, productDatabase.getAllAvailableOffers().size());
+		} catch (ProductNotFound e) {
+			fail("Journaled product not recovered!");
+		}
+	}
+
+	private void deleteDirectory(Path directory) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Test
+	void recoverJournalTest() throws IOException {
+		Path directory = Files.createTempDirectory("journal");
+		try {
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, true)) {
+				assertEquals(0, journal.getProductDatabase().getAllAvailableProducts().size());
+				changeDatabase(journal.getProductDatabase());
+				journal.sync();
+			}
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, true)) {
+				assertRecovered(journal.getProductDatabase());
+			}
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	void recoverRemovedOffersTest() throws IOException, ProductNotFound, OfferNotFound {
+		Path directory = Files.createTempDirectory("journal");
+		try {
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, false)) {
+				ProductDAO productDatabase = journal.getProductDatabase();
+				for (String name : new String[] { "o1", "o2", "o3", "o4" })
+					productDatabase.addOffer(name, new Offer(name, 2, 10));
+				productDatabase.addProduct("A", new Product("Apple", 50, "A"));
+				productDatabase.attachOfferToProduct("o2", "A");
+				productDatabase.removeOffers(Arrays.asList("o1", "o2")); // one change, several records
+				journal.compact();
+				productDatabase.removeOffers(Arrays.asList("o3", "o4")); // after the snapshot
+				journal.sync();
+			}
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, false)) {
+				ProductDAO productDatabase = journal.getProductDatabase();
+				assertEquals(0, productDatabase.getAllAvailableOffers().size());
+				assertNull(productDatabase.getProductOffer("A"));
+			}
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	void recoverDuplicateRemovedOfferTest() throws IOException, ProductNotFound, OfferNotFound {
+		Path directory = Files.createTempDirectory("journal");
+		try {
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, false)) {
+				ProductDAO productDatabase = journal.getProductDatabase();
+				productDatabase.addOffer("o1", new Offer("o1", 2, 10));
+				productDatabase.addOffer("o2", new Offer("o2", 3, 10));
+				productDatabase.addProduct("A", new Product("Apple", 50, "A"));
+				productDatabase.attachOfferToProduct("o1", "A");
+				productDatabase.removeOffers(Arrays.asList("o1", "o1")); // removed once, journalled once
+				journal.sync();
+			}
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, false)) {
+				ProductDAO productDatabase = journal.getProductDatabase();
+				assertEquals(1, productDatabase.getAllAvailableOffers().size());
+				assertNull(productDatabase.getProductOffer("A"));
+			}
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	void recoverOfferPeriodsTest() throws IOException, ProductNotFound, OfferNotFound {
+		Instant start = Instant.parse("2024-05-06T09:00:00.000000001Z");
+		Instant end = Instant.parse("2024-05-13T09:00:00Z");
+		Path directory = Files.createTempDirectory("journal");
+		try {
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, false)) {
+				ProductDAO productDatabase = journal.getProductDatabase();
+				productDatabase.addOffer("week", new Offer("week", 2, 80, start, end));
+				productDatabase.addOffer("from", new Offer("from", 3, 90, start, null));
+				productDatabase.addOffer("always", new Offer("always", 2, 45));
+				productDatabase.addProduct("A", new Product("Apple", 50, "A"));
+				productDatabase.attachOfferToProduct("week", "A");
+				journal.sync();
+			}
+			for (int reopened = 0; reopened < 2; reopened++) { // from the journal, then from a snapshot
+				try (CatalogueJournal journal = CatalogueJournal.open(directory, false)) {
+					ProductDAO productDatabase = journal.getProductDatabase();
+					assertEquals(start, productDatabase.getProductOffer("A").getStart());
+					assertEquals(end, productDatabase.getProductOffer("A").getEnd());
+					assertEquals(start, productDatabase.getOffer("from").getStart());
+					assertNull(productDatabase.getOffer("from").getEnd());
+					assertNull(productDatabase.getOffer("always").getStart());
+					assertNull(productDatabase.getOffer("always").getEnd());
+					journal.compact();
+				}
+			}
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	void recoverCompactedJournalTest() throws IOException {
+		Path directory = Files.createTempDirectory("journal");
+		try {
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, false)) {
+				ProductDAO productDatabase = journal.getProductDatabase();
+				for (int i = 0; i < 1000; i++)
+					productDatabase.addProduct("P", new Product("Replaced " + i, i, "P"));
+				journal.sync();
+				long before = Files.size(directory.resolve("catalogue.journal"));
+				journal.compact();
+				assertTrue(Files.size(directory.resolve("catalogue.journal")) < before);
+
+				productDatabase.removeProduct("P");
+				changeDatabase(productDatabase);
+			} catch (ProductNotFound e) {
+				fail("Added product not found!");
+			}
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, false)) {
+				assertRecovered(journal.getProductDatabase());
+				journal.compact(); // a snapshot with all the changes and an empty journal
+			}
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, false)) {
+				assertRecovered(journal.getProductDatabase());
+			}
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	void tornRecordDroppedTest() throws IOException {
+		Path directory = Files.createTempDirectory("journal");
+		try {
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, true)) {
+				changeDatabase(journal.getProductDatabase());
+			}
+			// a record cut short by a crash
+			try (FileChannel out = FileChannel.open(directory.resolve("catalogue.journal"), StandardOpenOption.APPEND)) {
+				out.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 40, 1, 2, 3 }));
+			}
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, true)) {
+				assertRecovered(journal.getProductDatabase());
+				journal.getProductDatabase().addProduct("E", new Product("Egg", 25, "E"));
+			}
+			try (CatalogueJournal journal = CatalogueJournal.open(directory, true)) {
+				assertEquals(25, journal.getProductDatabase().findProduct("E").getPrice());
+			}
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+}
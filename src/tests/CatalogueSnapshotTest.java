@@ -0,0 +1,122 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.CatalogueSnapshot;
+import businessLogic.CompiledCatalogue;
+import businessLogic.ProductDAO;
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class CatalogueSnapshotTest {
+
+	private ProductDAO productDatabase;
+
+	// initialize test object
+	private void InitializeTestObject() {
+		productDatabase = new ProductDAO(true);
+		productDatabase.addProduct("A", new Product("A", 23, "A"));
+		productDatabase.addProduct("B", new Product("B", 23, "B"));
+		productDatabase.addOffer("A offer", new Offer("A offer", 5, 123));
+
+		try {
+			productDatabase.attachOfferToProduct("A offer", "A");
+		} catch (ProductNotFound e) {
+			fail("Can't find added product");
+		} catch (OfferNotFound e) {
+			fail("Can't find added offer");
+		}
+	}
+
+	@Test
+	void snapshotSharedUntilChangeTest() {
+		InitializeTestObject();
+		CatalogueSnapshot first = productDatabase.getSnapshot();
+		assertSame(first, productDatabase.getSnapshot());
+
+		productDatabase.addProduct("L", new Product("L", 12, "L"));
+		CatalogueSnapshot second = productDatabase.getSnapshot();
+		assertNotSame(first, second);
+		assertTrue(second.getVersion() > first.getVersion());
+	}
+
+	@Test
+	void snapshotUnaffectedByLaterChangesTest() {
+		InitializeTestObject();
+		CatalogueSnapshot pinned = productDatabase.getSnapshot();
+
+		try {
+			productDatabase.removeOffer("A offer");
+			productDatabase.removeProduct("B");
+			productDatabase.addProduct("A", new Product("A", 99, "A"));
+		} catch (OfferNotFound | ProductNotFound e) {
+			fail("Can't change existing catalogue entries");
+		}
+
+		try {
+			assertEquals(23, pinned.getProduct("A").getPrice());
+			assertEquals("A offer", pinned.getProductOffer("A").getName());
+			assertEquals("B", pinned.getProduct("B").getSKU());
+			assertEquals("A offer", pinned.getOffer("A offer").getName());
+		} catch (ProductNotFound | OfferNotFound e) {
+			fail("Pinned snapshot lost an entry after the database changed!");
+		}
+
+		CatalogueSnapshot current = productDatabase.getSnapshot();
+		try {
+			assertEquals(99, current.getProduct("A").getPrice());
+			assertNull(current.getProductOffer("A"));
+		} catch (ProductNotFound e) {
+			fail("Existing product not found!");
+		}
+		try {
+			current.getProduct("B");
+			fail("Removed product found in new snapshot!");
+		} catch (ProductNotFound e) {
+		}
+	}
+
+	@Test
+	void snapshotIsReadOnlyTest() {
+		InitializeTestObject();
+		try {
+			productDatabase.getSnapshot().getAllAvailableProducts().clear();
+			fail("Snapshot was changed!");
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	@Test
+	void compiledSnapshotTest() {
+		InitializeTestObject();
+		CatalogueSnapshot snapshot = productDatabase.getSnapshot();
+		CompiledCatalogue compiled = snapshot.compile();
+		assertSame(compiled, snapshot.compile());
+		assertEquals(4, compiled.getProductCount()); // with the sample products
+		assertEquals(CompiledCatalogue.NOT_FOUND, compiled.getId("Z"));
+
+		int a = compiled.getId("A");
+		int b = compiled.getId("B");
+		assertEquals("A offer", compiled.getOffer(a).getName());
+		assertNull(compiled.getOffer(b));
+		assertEquals(4 * 23, compiled.priceLine(a, 4));
+		assertEquals(123 + 2 * 23, compiled.priceLine(a, 7));
+		assertEquals(7 * 23, compiled.priceLine(b, 7));
+		assertTrue(compiled.isOfferApplied(a, 5));
+		assertTrue(!compiled.isOfferApplied(b, 500));
+
+		productDatabase.addProduct("B", new Product("B", 31, "B"));
+		CompiledCatalogue recompiled = productDatabase.getSnapshot().compile();
+		assertNotSame(compiled, recompiled);
+		assertEquals(7 * 31, recompiled.priceLine(recompiled.getId("B"), 7));
+	}
+}
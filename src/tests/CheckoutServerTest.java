@@ -0,0 +1,53 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.ProductDAO;
+import data.Product;
+import main.CheckoutServer;
+
+class CheckoutServerTest {
+
+	@Test
+	void laneTest() throws IOException {
+		ProductDAO productDatabase = new ProductDAO(true);
+		try (CheckoutServer server = new CheckoutServer(productDatabase, 0);
+				Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+			OutputStream out = socket.getOutputStream();
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			// requests can be sent before the answers to the previous ones are read
+			out.write("SCAN A\nSCAN A\r\nSCAN B\nSCAN A\nREMOVE B\nREMOVE B\nSCAN X\nTOTAL\n"
+					.getBytes(StandardCharsets.US_ASCII));
+			assertEquals("OK 0.50", in.readLine());
+			assertEquals("OK 1.00", in.readLine());
+			assertEquals("OK 1.30", in.readLine());
+			assertEquals("OK 1.60", in.readLine());
+			assertEquals("OK 1.30", in.readLine());
+			assertEquals("ERR Item not in trolley", in.readLine());
+			assertEquals("ERR No such product", in.readLine());
+			assertEquals("OK 1.30", in.readLine());
+
+			// the next transaction is priced from the catalogue as it is when it starts
+			productDatabase.addProduct("E", new Product("Egg", 25, "E"));
+			out.write("SCAN E\nCHECKOUT\nTOTAL\nSCAN E\nPAY\nQUIT\n".getBytes(StandardCharsets.US_ASCII));
+			assertEquals("ERR No such product", in.readLine());
+			assertEquals("OK 1.30", in.readLine());
+			assertEquals("OK 0.00", in.readLine());
+			assertEquals("OK 0.25", in.readLine());
+			assertEquals("ERR Unknown command", in.readLine());
+			assertEquals("OK", in.readLine());
+			assertEquals(null, in.readLine());
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.ProductDAO;
+import businessLogic.RunningTotalCalculator;
+import businessLogic.TrolleyTotalCalculator;
+import data.CompactShoppingTrolley;
+import data.Product;
+import data.ShoppingTrolley;
+import data.SkuIndex;
+import exceptions.InvalidItemInTrolley;
+import exceptions.ItemNotInTrolley;
+
+class CompactShoppingTrolleyTest {
+
+	private static final int PRODUCTS = 100;
+
+	// the lines of a trolley as SKU -> quantity
+	private static Map<String, Integer> linesOf(ShoppingTrolley trolley) {
+		Map<String, Integer> lines = new HashMap<>();
+		trolley.forEachLine((p, quantity) -> lines.put(p.getSKU(), quantity));
+		return lines;
+	}
+
+	@Test
+	void sameLinesAsShoppingTrolleyTest() {
+		ProductDAO productDatabase = new ProductDAO();
+		Product[] products = new Product[PRODUCTS];
+		for (int i = 0; i < PRODUCTS; i++) {
+			products[i] = new Product("P" + i, 1 + i, "P" + i);
+			productDatabase.addProduct("P" + i, products[i]);
+		}
+
+		ShoppingTrolley expected = new ShoppingTrolley();
+		CompactShoppingTrolley compact = new CompactShoppingTrolley(4); // small, so that it has to grow
+		Random random = new Random(3);
+		for (int scan = 0; scan < 20000; scan++) {
+			Product p = products[random.nextInt(PRODUCTS)];
+			if (random.nextInt(3) == 0) {
+				Integer quantity = linesOf(expected).get(p.getSKU());
+				try {
+					compact.removeItem(p, quantity == null ? 1 : quantity); // remove whole lines too
+					if (quantity == null)
+						fail("Removed item that is not in the trolley!");
+					expected.removeItem(p, quantity);
+				} catch (ItemNotInTrolley e) {
+					if (quantity != null)
+						fail("Item in trolley not found!");
+				}
+			} else {
+				expected.addItem(p);
+				compact.addItem(p);
+			}
+		}
+
+		assertEquals(linesOf(expected), linesOf(compact));
+		assertEquals(expected.getAllItemsInTrolley().size(), compact.getLineCount());
+		try {
+			assertEquals(new TrolleyTotalCalculator(expected, productDatabase).calculateTrolleyTotal(),
+					new TrolleyTotalCalculator(compact, productDatabase).calculateTrolleyTotal());
+		} catch (InvalidItemInTrolley e) {
+			fail("Valid item not found in database");
+		}
+
+		compact.clear();
+		assertEquals(0, compact.getLineCount());
+		assertEquals(0, linesOf(compact).size());
+	}
+
+	@Test
+	void quantityScansTest() throws InvalidItemInTrolley, ItemNotInTrolley {
+		ProductDAO productDatabase = new ProductDAO();
+		Product apple = productDatabase.findProduct("A");
+		Product beetroot = productDatabase.findProduct("B");
+
+		for (ShoppingTrolley shared : new ShoppingTrolley[] { new ShoppingTrolley(), new CompactShoppingTrolley(1) }) {
+			RunningTotalCalculator runningTotal = new RunningTotalCalculator(shared, productDatabase);
+			shared.addItem(apple, 24); // a case
+			shared.addItem(beetroot);
+			shared.addItem(beetroot, 2);
+			assertEquals(8 * 130 + 45 + 30, runningTotal.getRunningTotal());
+
+			// split the basket, then merge it back
+			ShoppingTrolley mine = new CompactShoppingTrolley();
+			shared.moveItem(apple, 4, mine);
+			shared.moveItem(beetroot, 3, mine);
+			assertEquals(20, (int) linesOf(shared).get("A"));
+			assertEquals(null, linesOf(shared).get("B"));
+			assertEquals(6 * 130 + 2 * 50, runningTotal.getRunningTotal());
+			assertEquals(130 + 50 + 45 + 30, new TrolleyTotalCalculator(mine, productDatabase).calculateTrolleyTotal());
+
+			// moves of more units than there are, or of no units, leave both trolleys as they are
+			assertThrows(IllegalArgumentException.class, () -> shared.moveItem(apple, 21, mine));
+			assertThrows(IllegalArgumentException.class, () -> shared.moveItem(apple, -3, mine));
+			assertThrows(ItemNotInTrolley.class, () -> shared.moveItem(beetroot, 1, mine));
+			assertEquals(20, (int) linesOf(shared).get("A"));
+			assertEquals(4, (int) linesOf(mine).get("A"));
+			assertEquals(3, (int) linesOf(mine).get("B"));
+
+			shared.addAll(mine);
+			assertEquals(8 * 130 + 45 + 30, runningTotal.getRunningTotal());
+			assertEquals(2, linesOf(mine).size());
+		}
+	}
+
+	@Test
+	void skuIndexTest() {
+		SkuIndex index = new SkuIndex();
+		for (int i = 0; i < 1000; i++)
+			index.put("S" + i, i);
+		for (int i = 0; i < 1000; i += 2)
+			assertEquals(i, index.remove("S" + i));
+
+		assertEquals(500, index.size());
+		for (int i = 0; i < 1000; i++)
+			assertEquals(i % 2 == 0 ? SkuIndex.NOT_FOUND : i, index.get("S" + i));
+		assertEquals(SkuIndex.NOT_FOUND, index.remove("S0"));
+	}
+}
@@ -0,0 +1,60 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import metrics.CheckoutMetrics;
+import metrics.CheckoutMetrics.Operation;
+import metrics.LatencyHistogram;
+
+class LatencyHistogramTest {
+
+	@Test
+	void percentilesWithinPrecisionTest() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long v = 1; v <= 100_000; v++)
+			histogram.record(v);
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(100_000, snapshot.getCount());
+		assertWithin(50_000, snapshot.getValueAtPercentile(50));
+		assertWithin(99_000, snapshot.getValueAtPercentile(99));
+		assertWithin(100_000, snapshot.getMax());
+		assertWithin(50_000, (long) snapshot.getMean());
+		assertEquals(1, snapshot.getValueAtPercentile(0));
+	}
+
+	@Test
+	void extremeValuesTest() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Random random = new Random(9);
+		for (int i = 0; i < 1000; i++)
+			histogram.record(random.nextLong() >>> random.nextInt(64));
+		histogram.record(Long.MAX_VALUE);
+		histogram.record(-5);
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(1002, snapshot.getCount());
+		assertWithin(Long.MAX_VALUE, snapshot.getMax());
+		assertEquals(0, snapshot.getValueAtPercentile(0));
+
+		histogram.reset();
+		assertEquals(0, histogram.snapshot().getCount());
+	}
+
+	@Test
+	void snapshotTextTest() {
+		// metrics are off in tests, but the snapshot still lists every operation
+		String text = CheckoutMetrics.snapshot().toString();
+		for (Operation operation : Operation.values())
+			assertTrue(text.contains(operation.name()));
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(Math.abs((double) actual - expected) <= expected / 32.0, "expected ~" + expected + " but was " + actual);
+	}
+}
@@ -0,0 +1,146 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.Catalogue;
+import businessLogic.MappedCatalogue;
+import businessLogic.MappedCatalogueWriter;
+import businessLogic.ProductDAO;
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class MappedCatalogueTest {
+
+	@Test
+	void writtenCatalogueMatchesDatabaseTest() throws IOException {
+		Path file = Files.createTempFile("catalogue", ".bin");
+		try {
+			ProductDAO productDatabase = new ProductDAO();
+			MappedCatalogue.write(file, productDatabase.getSnapshot());
+			MappedCatalogue catalogue = MappedCatalogue.open(file);
+
+			assertEquals(4, catalogue.getProductCount());
+			assertEquals(2, catalogue.getOfferCount());
+			try {
+				for (String SKU : new String[] { "A", "B", "C", "D" }) {
+					assertEquals(productDatabase.getProduct(SKU).getName(), catalogue.getProduct(SKU).getName());
+					assertEquals(productDatabase.getProduct(SKU).getPrice(), catalogue.getProduct(SKU).getPrice());
+					Offer expected = productDatabase.getProductOffer(SKU);
+					Offer o = catalogue.getProductOffer(SKU);
+					if (expected == null) {
+						assertNull(o);
+					} else {
+						assertEquals(expected.getName(), o.getName());
+						assertEquals(expected.getGroupNumber(), o.getGroupNumber());
+						assertEquals(expected.getPrice(), o.getPrice());
+					}
+				}
+			} catch (ProductNotFound e) {
+				fail("Written product not found!");
+			}
+
+			assertNull(catalogue.findProduct("Z"));
+			assertNull(catalogue.findProduct(null));
+			assertSame(Catalogue.PRODUCT_NOT_FOUND, catalogue.findProductOffer("Z"));
+			try {
+				catalogue.getProduct("Z");
+				fail("Non existing product found!");
+			} catch (ProductNotFound e) {
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	void laterEntriesReplaceEarlierOnesTest() throws IOException {
+		Path file = Files.createTempFile("catalogue", ".bin");
+		try (MappedCatalogueWriter writer = new MappedCatalogueWriter(file)) {
+			writer.addOffer(new Offer("Offer", 2, 30));
+			for (int i = 0; i < 1000; i++)
+				writer.addProduct(new Product("Product " + i, i, "P" + i), (i % 2 == 0) ? "Offer" : null);
+			writer.addProduct(new Product("Replaced", 1, "P7"), "Offer");
+			writer.addOffer(new Offer("Offer", 3, 40));
+			writer.commit();
+
+			MappedCatalogue catalogue = MappedCatalogue.open(file);
+			assertEquals(1000, catalogue.getProductCount());
+			assertEquals("Replaced", catalogue.findProduct("P7").getName());
+			assertEquals(999, catalogue.findProduct("P999").getPrice());
+			assertEquals(3, catalogue.findProductOffer("P0").getGroupNumber());
+			assertEquals(40, catalogue.findProductOffer("P7").getPrice());
+			assertNull(catalogue.findProductOffer("P9"));
+		} catch (OfferNotFound e) {
+			fail("Added offer not found!");
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	void offerPeriodsTest() throws IOException, OfferNotFound {
+		Instant start = Instant.parse("2024-05-06T09:00:00Z");
+		Instant end = Instant.parse("2024-05-13T09:00:00.5Z");
+		Path file = Files.createTempFile("catalogue", ".bin");
+		try (MappedCatalogueWriter writer = new MappedCatalogueWriter(file)) {
+			writer.addOffer(new Offer("week", 2, 80, start, end));
+			writer.addOffer(new Offer("until", 3, 90, null, end));
+			writer.addProduct(new Product("Apple", 50, "A"), "week");
+			writer.addProduct(new Product("Beetroot", 30, "B"), "until");
+			writer.commit();
+
+			MappedCatalogue catalogue = MappedCatalogue.open(file);
+			assertEquals(start, catalogue.findProductOffer("A").getStart());
+			assertEquals(end, catalogue.findProductOffer("A").getEnd());
+			assertNull(catalogue.findProductOffer("B").getStart());
+			assertEquals(end, catalogue.findProductOffer("B").getEnd());
+			assertEquals(90, catalogue.findProductOffer("B").getPrice());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	void rescannedProductIsOneLineTest() throws IOException, OfferNotFound {
+		Path file = Files.createTempFile("catalogue", ".bin");
+		try (MappedCatalogueWriter writer = new MappedCatalogueWriter(file)) {
+			writer.addProduct(new Product("Apple", 50, "A"), null);
+			writer.commit();
+
+			// products have no value equality, so a trolley only adds up scans of one SKU given the same instance
+			MappedCatalogue catalogue = MappedCatalogue.open(file);
+			assertSame(catalogue.findProduct("A"), catalogue.findProduct("A"));
+			ShoppingTrolley trolley = new ShoppingTrolley();
+			trolley.addItem(catalogue.findProduct("A"));
+			trolley.addItem(catalogue.findProduct("A"));
+			assertEquals(1, trolley.getAllItemsInTrolley().size());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	void uncommittedWriterLeavesNoFileTest() throws IOException, OfferNotFound {
+		Path file = Files.createTempFile("catalogue", ".bin");
+		Files.delete(file);
+		try (MappedCatalogueWriter writer = new MappedCatalogueWriter(file)) {
+			writer.addProduct(new Product("A", 1, "A"), null);
+		}
+		assertFalse(Files.exists(file));
+		assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+	}
+}
@@ -0,0 +1,105 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.ProductDAO;
+import businessLogic.TrolleyTotalCalculator;
+import data.Money;
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class MoneyTest {
+
+	private static final int PRODUCTS = 20;
+	private static final int TRIALS = 500;
+
+	@Test
+	void formatAndParseTest() {
+		assertEquals("1.30", Money.format(130));
+		assertEquals("0.05", Money.format(5));
+		assertEquals("-0.45", Money.format(-45));
+		assertEquals(130, Money.parse("1.30"));
+		assertEquals(130, Money.parse("1.3"));
+		assertEquals(1200, Money.parse("12"));
+		assertEquals(-45, Money.parse("-0.45"));
+		assertEquals(Money.of(3, 55), Money.parse(Money.format(355)));
+
+		for (String invalid : new String[] { "", "-", "1.", "1.234", "1,30", "a" }) {
+			try {
+				Money.parse(invalid);
+				fail("Invalid amount parsed: " + invalid);
+			} catch (NumberFormatException e) {
+			}
+		}
+	}
+
+	@Test
+	void groupPriceTest() {
+		assertEquals(105, Money.multiply(15, 7)); // 0.15f * 7 is not exact
+		assertEquals(130 * 2 + 50, Money.groupPrice(50, 7, 3, 130));
+		assertEquals(50 * 2, Money.groupPrice(50, 2, 3, 130));
+	}
+
+	@Test
+	void trolleyTotalIsExactTest() {
+		// property: for random catalogues and trolleys, the total equals the same sum done in BigDecimal
+		Random random = new Random(42);
+
+		for (int trial = 0; trial < TRIALS; trial++) {
+			ProductDAO productDatabase = new ProductDAO();
+			Product[] products = new Product[PRODUCTS];
+			Offer[] offers = new Offer[PRODUCTS];
+			for (int i = 0; i < PRODUCTS; i++) {
+				products[i] = new Product("P" + i, 1 + random.nextInt(2000), "P" + i);
+				productDatabase.addProduct("P" + i, products[i]);
+				if (random.nextBoolean()) {
+					offers[i] = new Offer("O" + i, 2 + random.nextInt(5), 1 + random.nextInt(5000));
+					productDatabase.addOffer("O" + i, offers[i]);
+					try {
+						productDatabase.attachOfferToProduct("O" + i, "P" + i);
+					} catch (ProductNotFound | OfferNotFound e) {
+						fail("Can't attach added offer");
+					}
+				}
+			}
+
+			ShoppingTrolley shoppingTrolley = new ShoppingTrolley();
+			int[] quantities = new int[PRODUCTS];
+			int items = random.nextInt(200);
+			for (int n = 0; n < items; n++) {
+				int i = random.nextInt(PRODUCTS);
+				shoppingTrolley.addItem(products[i]);
+				++quantities[i];
+			}
+
+			BigDecimal expected = BigDecimal.ZERO;
+			for (int i = 0; i < PRODUCTS; i++) {
+				BigDecimal unit = new BigDecimal(Money.format(products[i].getPrice()));
+				int quantity = quantities[i];
+				if (offers[i] != null && quantity >= offers[i].getGroupNumber()) {
+					BigDecimal group = new BigDecimal(Money.format(offers[i].getPrice()));
+					expected = expected.add(group.multiply(BigDecimal.valueOf(quantity / offers[i].getGroupNumber())));
+					quantity %= offers[i].getGroupNumber();
+				}
+				expected = expected.add(unit.multiply(BigDecimal.valueOf(quantity)));
+			}
+
+			try {
+				long total = new TrolleyTotalCalculator(shoppingTrolley, productDatabase).calculateTrolleyTotal();
+				assertEquals(expected, new BigDecimal(Money.format(total)));
+			} catch (InvalidItemInTrolley e) {
+				fail("Valid item not found in database");
+			}
+		}
+	}
+}
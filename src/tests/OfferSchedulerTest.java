@@ -0,0 +1,147 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.OfferScheduler;
+import businessLogic.ProductDAO;
+import businessLogic.TrolleyTotalCalculator;
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class OfferSchedulerTest {
+
+	private static final Instant MONDAY = Instant.parse("2024-01-01T00:00:00Z");
+
+	// a clock the test moves by hand
+	private static final class TestClock extends Clock {
+		Instant now = MONDAY;
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+
+	private static Instant day(int days) {
+		return MONDAY.plusSeconds(days * 86_400L);
+	}
+
+	@Test
+	void windowTest() throws ProductNotFound, InvalidItemInTrolley {
+		ProductDAO productDatabase = new ProductDAO();
+		TestClock clock = new TestClock();
+		OfferScheduler scheduler = new OfferScheduler(productDatabase, clock);
+		Offer week = new Offer("C week", 2, 30, day(1), day(8));
+		scheduler.schedule(week, "C", "D");
+		assertEquals(4, scheduler.getPendingCount());
+		assertEquals(day(1), scheduler.getNextBoundary());
+
+		assertEquals(0, scheduler.advance());
+		assertNull(productDatabase.getProductOffer("C"));
+
+		clock.now = day(1);
+		assertEquals(2, scheduler.advance());
+		assertSame(week, productDatabase.getProductOffer("C"));
+		assertSame(week, productDatabase.getProductOffer("D"));
+		assertSame(week, productDatabase.getSnapshot().getProductOffer("C"));
+		ShoppingTrolley trolley = new ShoppingTrolley();
+		trolley.addItem(productDatabase.getProduct("C"), 2);
+		assertEquals(30, new TrolleyTotalCalculator(trolley, productDatabase).calculateTrolleyTotal());
+
+		clock.now = day(8); // the end is exclusive
+		assertEquals(2, scheduler.advance());
+		assertNull(productDatabase.getProductOffer("C"));
+		assertNull(productDatabase.getProductOffer("D"));
+		assertThrows(OfferNotFound.class, () -> productDatabase.getOffer("C week"));
+		assertEquals(40, new TrolleyTotalCalculator(trolley, productDatabase).calculateTrolleyTotal());
+		assertNull(scheduler.getNextBoundary());
+		assertEquals(4, scheduler.getAppliedCount());
+	}
+
+	@Test
+	void overlapTest() throws ProductNotFound {
+		ProductDAO productDatabase = new ProductDAO();
+		TestClock clock = new TestClock();
+		OfferScheduler scheduler = new OfferScheduler(productDatabase, clock);
+		Offer month = new Offer("C month", 3, 50, null, day(30));
+		Offer weekend = new Offer("C weekend", 2, 20, day(5), day(7));
+		Offer next = new Offer("C next", 4, 60, day(30), null);
+		Offer missed = new Offer("C missed", 2, 10, day(1), day(2));
+		scheduler.schedule(weekend, "C");
+		scheduler.schedule(month, "C");
+		scheduler.schedule(next, "C");
+		scheduler.schedule(missed, "C", "X"); // X is not in the database
+
+		scheduler.advance();
+		assertSame(month, productDatabase.getProductOffer("C"));
+
+		clock.now = day(3); // advanced late, the missed offer is over already
+		scheduler.advance();
+		assertSame(month, productDatabase.getProductOffer("C"));
+
+		clock.now = day(6);
+		scheduler.advance();
+		assertSame(weekend, productDatabase.getProductOffer("C"));
+
+		clock.now = day(7);
+		scheduler.advance();
+		assertSame(month, productDatabase.getProductOffer("C")); // valid again
+
+		clock.now = day(30);
+		scheduler.advance();
+		assertSame(next, productDatabase.getProductOffer("C"));
+		assertEquals(0, scheduler.getPendingCount());
+	}
+
+	@Test
+	void threadTest() throws ProductNotFound, InterruptedException {
+		ProductDAO productDatabase = new ProductDAO(true);
+		Instant now = Instant.now();
+		Offer flash = new Offer("A flash", 2, 80, now.plusMillis(50), now.plusMillis(150));
+		try (OfferScheduler scheduler = new OfferScheduler(productDatabase, Clock.systemUTC())) {
+			scheduler.start();
+			scheduler.schedule(flash, "A");
+			long deadline = System.currentTimeMillis() + 5_000;
+			while (scheduler.getAppliedCount() < 2 && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+			assertEquals(2, scheduler.getAppliedCount());
+		}
+		assertEquals("3 for £1.30", productDatabase.getProductOffer("A").getName()); // A's offer before the flash one
+	}
+
+	@Test
+	void validityTest() {
+		Offer week = new Offer("week", 2, 30, day(1), day(8));
+		assertFalse(week.isValidAt(MONDAY));
+		assertTrue(week.isValidAt(day(1)));
+		assertFalse(week.isValidAt(day(8)));
+		assertTrue(new Offer("always", 2, 30).isValidAt(MONDAY));
+		assertThrows(IllegalArgumentException.class, () -> new Offer("never", 2, 30, day(8), day(1)));
+	}
+}
@@ -0,0 +1,88 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.PriceImpact;
+import businessLogic.PriceImpactSimulator;
+import businessLogic.ProductDAO;
+import data.Offer;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class PriceImpactSimulatorTest {
+
+	private static final String[] LOG = { "A,3;B,2;C,1",
+			"A,1;A,2;X,1", // both lines of A are priced together, X is not in the catalogue
+			"A,4,180,20;B,1,30,0;TOTAL,210,20" }; // a compact receipt
+
+	private static int offerIndex(PriceImpact impact, String name) {
+		for (int i = 0; i < impact.getOfferCount(); i++) {
+			if (impact.getOffer(i).getName().equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	@Test
+	void offerChangeTest() throws IOException, ProductNotFound, OfferNotFound {
+		ProductDAO productDatabase = new ProductDAO();
+		PriceImpactSimulator simulator = new PriceImpactSimulator(productDatabase);
+		ProductDAO proposed = (ProductDAO) simulator.getProposed();
+		proposed.addOffer("3 for £1.20", new Offer("3 for £1.20", 3, 120));
+		proposed.attachOfferToProduct("3 for £1.20", "A");
+
+		Path log = Files.createTempFile("trolleys", ".log");
+		try {
+			Files.write(log, Arrays.asList(LOG), StandardCharsets.UTF_8);
+			PriceImpact impact = simulator.simulate(log);
+
+			assertEquals(3, impact.getTrolleyCount());
+			assertEquals(6, impact.getLineCount());
+			assertEquals(1, impact.getSkippedLineCount());
+			assertEquals(130 + 45 + 20 + 130 + 180 + 30, impact.getCurrentTotal());
+			assertEquals(-30, impact.getTotalDelta());
+
+			int apple = impact.indexOf("A");
+			assertEquals(10, impact.getUnits(apple));
+			assertEquals(440, impact.getCurrentRevenue(apple));
+			assertEquals(410, impact.getProposedRevenue(apple));
+			assertEquals(apple, impact.getLargestChanges(1)[0]);
+			assertEquals(0, impact.getRevenueDelta(impact.indexOf("B")));
+
+			int old = offerIndex(impact, "3 for £1.30");
+			assertEquals(440, impact.getOfferCurrentRevenue(old));
+			assertEquals(0, impact.getOfferProposedRevenue(old));
+			assertEquals(410, impact.getOfferProposedRevenue(offerIndex(impact, "3 for £1.20")));
+			assertEquals(0, impact.getOfferRevenueDelta(offerIndex(impact, "2 for £0.45")));
+		} finally {
+			Files.delete(log);
+		}
+		assertEquals(50, productDatabase.getProduct("A").getPrice()); // the catalogue in use is left alone
+		assertEquals("3 for £1.30", productDatabase.getProductOffer("A").getName());
+	}
+
+	@Test
+	void parallelTest() throws ProductNotFound {
+		ProductDAO productDatabase = new ProductDAO();
+		ProductDAO proposed = new ProductDAO();
+		proposed.removeProduct("C"); // not sold any more
+		PriceImpact impact = new PriceImpactSimulator(productDatabase, proposed)
+				.simulate(IntStream.range(0, 100_000).mapToObj(i -> LOG[i % LOG.length]));
+
+		assertEquals(100_000, impact.getTrolleyCount());
+		int carrot = impact.indexOf("C");
+		long carrots = (100_000 + 2) / 3; // in the first trolley of every three
+		assertEquals(carrots, impact.getUnits(carrot));
+		assertEquals(-20 * carrots, impact.getRevenueDelta(carrot));
+		assertEquals(-20 * carrots, impact.getTotalDelta());
+	}
+}
@@ -0,0 +1,77 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.PricingResult;
+import businessLogic.ProductDAO;
+import businessLogic.TrolleyTotalCalculator;
+import data.CompactShoppingTrolley;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.ItemNotInTrolley;
+
+class PricingResultTest {
+
+	@Test
+	void linesTest() throws InvalidItemInTrolley {
+		ProductDAO productDatabase = new ProductDAO();
+		ShoppingTrolley trolley = new CompactShoppingTrolley(); // lines in scanning order
+		trolley.addItem(productDatabase.findProduct("A"), 7);
+		trolley.addItem(productDatabase.findProduct("B"), 1);
+
+		PricingResult result = new PricingResult(1); // small, so that it has to grow
+		new TrolleyTotalCalculator(trolley, productDatabase).calculate(result);
+
+		assertEquals(2, result.getLineCount());
+		assertEquals(7, result.getQuantity(0));
+		assertEquals("3 for £1.30", result.getAppliedOffer(0).getName());
+		assertEquals(2, result.getGroupsApplied(0));
+		assertEquals(1, result.getRemainder(0));
+		assertEquals(2 * 130 + 50, result.getLineTotal(0));
+		assertEquals(7 * 50 - (2 * 130 + 50), result.getSaving(0));
+
+		assertNull(result.getAppliedOffer(1)); // too few for "2 for £0.45"
+		assertEquals(0, result.getGroupsApplied(1));
+		assertEquals(1, result.getRemainder(1));
+		assertEquals(30, result.getLineTotal(1));
+		assertEquals(0, result.getSaving(1));
+
+		assertEquals(2 * 130 + 50 + 30, result.getTotal());
+		assertEquals(40, result.getSavings());
+	}
+
+	@Test
+	void reusedTest() throws InvalidItemInTrolley, ItemNotInTrolley {
+		ProductDAO productDatabase = new ProductDAO();
+		Product apple = productDatabase.findProduct("A");
+		ShoppingTrolley trolley = new ShoppingTrolley();
+		trolley.addItem(apple, 3);
+		TrolleyTotalCalculator calculator = new TrolleyTotalCalculator(trolley, productDatabase);
+		PricingResult result = calculator.getPricingResult();
+
+		assertEquals(130, calculator.calculateTrolleyTotal());
+		assertEquals("3 for £1.30", calculator.getOfferAppliedTo(apple));
+
+		// the offers applied by the last calculation only
+		trolley.removeItem(apple, 1);
+		assertEquals(100, calculator.calculateTrolleyTotal());
+		assertNull(calculator.getOfferAppliedTo(apple));
+		assertSame(result, calculator.getPricingResult());
+		assertEquals(1, result.getLineCount());
+
+		trolley.addItem(new Product("Unknown", 10, "X"));
+		try {
+			calculator.calculateTrolleyTotal();
+			fail("Trolley with an item which is not in the database priced");
+		} catch (InvalidItemInTrolley e) {
+			assertEquals(0, result.getLineCount());
+			assertEquals(0, result.getTotal());
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.ProductDAO;
+import data.Offer;
+import data.Product;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class ProductDAOConcurrencyTest {
+
+	private static final int STABLE_PRODUCTS = 1000;
+	private static final long RUN_MILLIS = 300;
+
+	private ProductDAO productDatabase;
+
+	// initialize test object
+	private void InitializeTestObject() {
+		productDatabase = new ProductDAO(true);
+		for (int i = 0; i < STABLE_PRODUCTS; i++) {
+			productDatabase.addProduct("S" + i, new Product("Stable " + i, 10, "S" + i));
+		}
+		productDatabase.addOffer("Stable offer", new Offer("Stable offer", 2, 15));
+		try {
+			productDatabase.attachOfferToProduct("Stable offer", "S0");
+		} catch (ProductNotFound | OfferNotFound e) {
+			fail("Can't attach offer to added product");
+		}
+	}
+
+	/**
+	 * Keeps changing the catalogue until told to stop: volatile products and offers come and go, and get attached to
+	 * each other
+	 */
+	private Thread startWriter(AtomicBoolean running, AtomicReference<Throwable> failure) {
+		Thread writer = new Thread(() -> {
+			int round = 0;
+			while (running.get()) {
+				String SKU = "V" + (round % 50);
+				String offerName = "V offer " + (round % 10);
+				try {
+					productDatabase.addProduct(SKU, new Product("Volatile", 20, SKU));
+					productDatabase.addOffer(offerName, new Offer(offerName, 3, 50));
+					productDatabase.attachOfferToProduct(offerName, SKU);
+					if (round % 3 == 0)
+						productDatabase.removeOffer(offerName);
+					if (round % 7 == 0)
+						productDatabase.removeProduct(SKU);
+				} catch (ProductNotFound | OfferNotFound e) {
+					failure.compareAndSet(null, e); // only this thread writes, so everything it added must be there
+				}
+				++round;
+			}
+		});
+		writer.start();
+		return writer;
+	}
+
+	/**
+	 * Runs the given number of lanes looking up stable products while the catalogue is being changed
+	 * @return The number of lookups done by each lane
+	 */
+	private long[] runLanes(int lanes, AtomicReference<Throwable> failure) throws InterruptedException {
+		AtomicBoolean running = new AtomicBoolean(true);
+		CountDownLatch start = new CountDownLatch(1);
+		long[] lookups = new long[lanes];
+		List<Thread> threads = new ArrayList<>();
+
+		for (int l = 0; l < lanes; l++) {
+			final int lane = l;
+			Thread t = new Thread(() -> {
+				try {
+					start.await();
+					int i = lane;
+					long count = 0;
+					while (running.get()) {
+						String SKU = "S" + (i % STABLE_PRODUCTS);
+						Product p = productDatabase.getProduct(SKU);
+						Offer o = productDatabase.getProductOffer(SKU);
+						if (!SKU.equals(p.getSKU()) || (i % STABLE_PRODUCTS == 0) != (o != null))
+							failure.compareAndSet(null, new AssertionError("Inconsistent lookup for " + SKU));
+						count += 2;
+						++i;
+					}
+					lookups[lane] = count;
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			t.start();
+			threads.add(t);
+		}
+
+		Thread writer = startWriter(running, failure);
+		start.countDown();
+		Thread.sleep(RUN_MILLIS);
+		running.set(false);
+		writer.join();
+		for (Thread t : threads)
+			t.join();
+
+		return lookups;
+	}
+
+	@Test
+	void concurrentReadsDuringWritesTest() throws InterruptedException {
+		InitializeTestObject();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		int lanes = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+		// every lane keeps finding the stable products while the catalogue is changing (throughput per number of
+		// lanes is measured by benchmarks.ConcurrentLookupBenchmark)
+		long[] lookups = runLanes(lanes, failure);
+		if (failure.get() != null)
+			fail("Lookup failed while the catalogue was changing: " + failure.get());
+		for (long count : lookups)
+			assertTrue(count > 0, "A lane was blocked by the writer");
+	}
+
+	@Test
+	void tablesConsistentAfterConcurrentWritesTest() throws InterruptedException {
+		InitializeTestObject();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		runLanes(2, failure);
+		if (failure.get() != null)
+			fail("Lookup failed while the catalogue was changing: " + failure.get());
+
+		// every product offer must still be in the offer table
+		for (Map.Entry<String, Product> pair : productDatabase.getAllAvailableProducts()) {
+			try {
+				Offer o = productDatabase.getProductOffer(pair.getKey());
+				if (o != null) {
+					assertNotNull(productDatabase.getOffer(o.getName()));
+				}
+			} catch (ProductNotFound e) {
+				fail("Listed product not found!");
+			} catch (OfferNotFound e) {
+				fail("Product attached to an offer that is no longer in the database!");
+			}
+		}
+
+		try {
+			assertNotNull(productDatabase.getProduct("S" + (STABLE_PRODUCTS - 1)));
+			assertTrue(productDatabase.getProductOffer("S0") != null);
+		} catch (ProductNotFound e) {
+			fail("Stable product lost!");
+		}
+	}
+}
@@ -1,15 +1,18 @@
 package tests;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
+import businessLogic.Catalogue;
 import businessLogic.ProductDAO;
 import data.Offer;
 import data.Product;
@@ -23,12 +26,12 @@ class ProductDAOTest {
 	// initialize test object
 	private void InitializeTestObject() {
 		productDatabase = new ProductDAO();
-		productDatabase.addProduct("A", new Product("A", 0.23f, "A"));
-		productDatabase.addProduct("B", new Product("B", 0.23f, "B"));
-		productDatabase.addProduct("C", new Product("C", 0.23f, "C"));
-		productDatabase.addProduct("D", new Product("D", 0.23f, "D"));
-		productDatabase.addOffer("A offer", new Offer("A offer", 5, 1.23f));
-		productDatabase.addOffer("B offer", new Offer("B offer", 5, 1.23f));
+		productDatabase.addProduct("A", new Product("A", 23, "A"));
+		productDatabase.addProduct("B", new Product("B", 23, "B"));
+		productDatabase.addProduct("C", new Product("C", 23, "C"));
+		productDatabase.addProduct("D", new Product("D", 23, "D"));
+		productDatabase.addOffer("A offer", new Offer("A offer", 5, 123));
+		productDatabase.addOffer("B offer", new Offer("B offer", 5, 123));
 
 		try {
 			productDatabase.attachOfferToProduct("A offer", "A");
@@ -82,7 +85,7 @@ class ProductDAOTest {
 	@Test
 	void addProductTest() {
 		InitializeTestObject();
-		productDatabase.addProduct("L", new Product("L", 0.12f, "L"));
+		productDatabase.addProduct("L", new Product("L", 12, "L"));
 
 		try {
 			Product p = productDatabase.getProduct("L");
@@ -172,10 +175,23 @@ class ProductDAOTest {
 		}
 	}
 
+	@Test
+	void findProductTest() {
+		InitializeTestObject();
+		assertEquals(productDatabase.findProduct("A").getSKU(), "A");
+		assertTrue(productDatabase.findProduct("Z") == null);
+		assertTrue(productDatabase.findProduct(null) == null);
+
+		assertEquals(productDatabase.findProductOffer("A").getName(), "A offer");
+		assertTrue(productDatabase.findProductOffer("D") == null);
+		assertTrue(productDatabase.findProductOffer("Z") == Catalogue.PRODUCT_NOT_FOUND);
+		assertTrue(productDatabase.getSnapshot().findProductOffer("Z") == Catalogue.PRODUCT_NOT_FOUND);
+	}
+
 	@Test
 	void addOfferTest() {
 		InitializeTestObject();
-		productDatabase.addOffer("Z offer", new Offer("Z offer", 5, 1.12f));
+		productDatabase.addOffer("Z offer", new Offer("Z offer", 5, 112));
 
 		try {
 			Offer o = productDatabase.getOffer("Z offer");
@@ -227,4 +243,90 @@ class ProductDAOTest {
 
 		}
 	}
+
+	@Test
+	void removeProductWithSharedOfferTest() {
+		InitializeTestObject();
+		// B offer is also attached to C, so it must stay in the database
+		try {
+			productDatabase.removeProduct("B");
+		} catch (ProductNotFound e) {
+			fail("Existing product not found when trying to remove it!");
+		}
+
+		try {
+			assertNotNull(productDatabase.getOffer("B offer"));
+			assertEquals(productDatabase.getProductOffer("C").getName(), "B offer");
+		} catch (OfferNotFound e) {
+			fail("Offer still attached to another product was removed!");
+		} catch (ProductNotFound e) {
+			fail("Unrelated product removed!");
+		}
+
+		// now C is its only product, so removing C removes the offer
+		try {
+			productDatabase.removeProduct("C");
+		} catch (ProductNotFound e) {
+			fail("Existing product not found when trying to remove it!");
+		}
+
+		try {
+			productDatabase.getOffer("B offer");
+			fail("Offer wasn't removed along with its last attached product!");
+		} catch (OfferNotFound e) {
+		}
+	}
+
+	@Test
+	void removeOffersTest() {
+		InitializeTestObject();
+		// invalid remove - nothing must be removed
+		try {
+			productDatabase.removeOffers(Arrays.asList("A offer", "U offer"));
+			fail("Non existant offer found when trying to remove it!");
+		} catch (OfferNotFound e) {
+		}
+
+		try {
+			assertNotNull(productDatabase.getOffer("A offer"));
+			assertNotNull(productDatabase.getProductOffer("A"));
+		} catch (OfferNotFound | ProductNotFound e) {
+			fail("Offer removed by a failed bulk remove!");
+		}
+
+		// valid remove
+		try {
+			productDatabase.removeOffers(Arrays.asList("A offer", "B offer"));
+		} catch (OfferNotFound e) {
+			fail("Existing offer not found when trying to remove it.");
+		}
+
+		for (String SKU : Arrays.asList("A", "B", "C", "D")) {
+			try {
+				assertTrue(productDatabase.getProductOffer(SKU) == null);
+			} catch (ProductNotFound e) {
+				fail("Product removed along with its offer!");
+			}
+		}
+		assertFalse(productDatabase.getAllAvailableOffers().isEmpty()); // default offers are untouched
+	}
+
+	@Test
+	void replaceOfferTest() {
+		InitializeTestObject();
+		// replacing an offer keeps it attached to the same products
+		productDatabase.addOffer("B offer", new Offer("B offer", 2, 40));
+
+		try {
+			assertEquals(productDatabase.getProductOffer("B").getGroupNumber(), 2);
+			assertEquals(productDatabase.getProductOffer("C").getGroupNumber(), 2);
+			productDatabase.removeOffer("B offer");
+			assertTrue(productDatabase.getProductOffer("B") == null);
+			assertTrue(productDatabase.getProductOffer("C") == null);
+		} catch (ProductNotFound e) {
+			fail("Existing product not found!");
+		} catch (OfferNotFound e) {
+			fail("Existing offer not found when trying to remove it.");
+		}
+	}
 }
@@ -0,0 +1,63 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.ProductDAO;
+import businessLogic.ReceiptRenderer;
+import businessLogic.TrolleyTotalCalculator;
+import data.CompactShoppingTrolley;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+
+class ReceiptRendererTest {
+
+	private final ProductDAO productDatabase = new ProductDAO();
+
+	private ShoppingTrolley trolleyOf(String... SKUs) {
+		ShoppingTrolley trolley = new CompactShoppingTrolley(); // lines in scanning order
+		for (String SKU : SKUs)
+			trolley.addItem(productDatabase.findProduct(SKU));
+		return trolley;
+	}
+
+	@Test
+	void textTest() throws InvalidItemInTrolley {
+		ShoppingTrolley trolley = trolleyOf("A", "A", "A", "A", "B", "B", "C");
+		ReceiptRenderer renderer = new ReceiptRenderer(ReceiptRenderer.Format.TEXT);
+
+		assertEquals("Product     Quantity    Price       Applied Offer\n"
+				+ "Apple       4           £1.80       3 for £1.30\n"
+				+ "Beetroot    2           £0.45       2 for £0.45\n"
+				+ "Carrot      1           £0.20       -\n"
+				+ "Savings on 3 for £1.30: £0.20\n"
+				+ "Savings on 2 for £0.45: £0.15\n"
+				+ "Your total is: £2.45\n", renderer.render(trolley, productDatabase).toString());
+		assertEquals(new TrolleyTotalCalculator(trolley, productDatabase).calculateTrolleyTotal(), renderer.getTotal());
+		assertEquals(35, renderer.getSavings());
+
+		// the buffer is reused, nothing is left from the last receipt
+		assertEquals("Product     Quantity    Price       Applied Offer\n"
+				+ "Date        1           £0.15       -\n"
+				+ "Your total is: £0.15\n", renderer.render(trolleyOf("D"), productDatabase).toString());
+	}
+
+	@Test
+	void compactTest() throws InvalidItemInTrolley {
+		ReceiptRenderer renderer = new ReceiptRenderer(ReceiptRenderer.Format.COMPACT);
+		assertEquals("A,4,180,20;B,1,30,0;TOTAL,210,20\n",
+				renderer.render(trolleyOf("A", "A", "B", "A", "A"), productDatabase).toString());
+
+		ShoppingTrolley invalid = trolleyOf("A");
+		invalid.addItem(new Product("Unknown", 10, "X"));
+		try {
+			renderer.render(invalid, productDatabase);
+			fail("Receipt rendered for an item which is not in the database");
+		} catch (InvalidItemInTrolley e) {
+			// expected
+		}
+	}
+}
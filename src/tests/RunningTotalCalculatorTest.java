@@ -0,0 +1,126 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.ProductDAO;
+import businessLogic.RunningTotalCalculator;
+import businessLogic.TrolleyTotalCalculator;
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.ItemNotInTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class RunningTotalCalculatorTest {
+
+	private ProductDAO productDatabase;
+
+	private RunningTotalCalculatorTest() {
+		productDatabase = new ProductDAO();
+
+		productDatabase.addProduct("A", new Product("Apple", 50, "A"));
+		productDatabase.addProduct("B", new Product("Beetroot", 30, "B"));
+		productDatabase.addProduct("C", new Product("Carrot", 20, "C"));
+		productDatabase.addProduct("D", new Product("Date", 15, "D"));
+
+		productDatabase.addOffer("3 for 1.30", new Offer("3 for 1.30", 3, 130));
+		productDatabase.addOffer("2 for 0.45", new Offer("2 for 0.45", 2, 45));
+
+		try {
+			productDatabase.attachOfferToProduct("3 for 1.30", "A");
+			productDatabase.attachOfferToProduct("2 for 0.45", "B");
+		} catch (ProductNotFound | OfferNotFound e) {
+		}
+	}
+
+	@Test
+	void runningTotalAfterEachScanTest() {
+		// scanning B, A, B gives 30, 80, 95 (the two B's are recognised as an offer)
+		ShoppingTrolley shoppingTrolley = new ShoppingTrolley();
+		RunningTotalCalculator calc = new RunningTotalCalculator(shoppingTrolley, productDatabase);
+
+		try {
+			Product A = productDatabase.getProduct("A");
+			Product B = productDatabase.getProduct("B");
+
+			shoppingTrolley.addItem(B);
+			assertEquals(30, calc.getRunningTotal());
+			assertNull(calc.getOfferAppliedTo(B));
+			shoppingTrolley.addItem(A);
+			assertEquals(80, calc.getRunningTotal());
+			shoppingTrolley.addItem(B);
+			assertEquals(95, calc.getRunningTotal());
+			assertEquals("2 for 0.45", calc.getOfferAppliedTo(B));
+
+			shoppingTrolley.removeItem(B, 1);
+			assertEquals(80, calc.getRunningTotal());
+			assertNull(calc.getOfferAppliedTo(B)); // no longer applied
+		} catch (ProductNotFound e) {
+			fail("Existing product not found!");
+		} catch (InvalidItemInTrolley e) {
+			fail("Valid item not found in database");
+		} catch (ItemNotInTrolley e) {
+			fail("Item in trolley not found!");
+		}
+	}
+
+	@Test
+	void runningTotalMatchesFullCalculationTest() {
+		ShoppingTrolley shoppingTrolley = new ShoppingTrolley();
+		shoppingTrolley.addItem(new Product("Apple", 50, "A")); // items already in the trolley are priced too
+		RunningTotalCalculator running = new RunningTotalCalculator(shoppingTrolley, productDatabase);
+		TrolleyTotalCalculator full = new TrolleyTotalCalculator(shoppingTrolley, productDatabase);
+
+		Random random = new Random(7);
+		String[] SKUs = { "A", "B", "C", "D" };
+		try {
+			for (int scan = 0; scan < 1000; scan++) {
+				Product p = productDatabase.getProduct(SKUs[random.nextInt(SKUs.length)]);
+				if (random.nextInt(4) == 0) {
+					try {
+						shoppingTrolley.removeItem(p, 1);
+					} catch (ItemNotInTrolley e) {
+					}
+				} else {
+					shoppingTrolley.addItem(p);
+				}
+				assertEquals(full.calculateTrolleyTotal(), running.getRunningTotal());
+			}
+		} catch (ProductNotFound e) {
+			fail("Existing product not found!");
+		} catch (InvalidItemInTrolley e) {
+			fail("Valid item not found in database");
+		}
+	}
+
+	@Test
+	void invalidItemTest() {
+		ShoppingTrolley shoppingTrolley = new ShoppingTrolley();
+		RunningTotalCalculator calc = new RunningTotalCalculator(shoppingTrolley, productDatabase);
+		Product unknown = new Product("Unknown", 10, "Z");
+
+		shoppingTrolley.addItem(unknown);
+		try {
+			calc.getRunningTotal();
+			fail("Invalid item not detected!");
+		} catch (InvalidItemInTrolley e) {
+		}
+
+		try {
+			shoppingTrolley.removeItem(unknown, 1);
+			assertEquals(0, calc.getRunningTotal());
+		} catch (ItemNotInTrolley e) {
+			fail("Item in trolley not found!");
+		} catch (InvalidItemInTrolley e) {
+			fail("Removed invalid item still detected!");
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.ProductDAO;
+import businessLogic.RunningTotalCalculator;
+import businessLogic.ScanPipeline;
+import businessLogic.TrolleyTotalCalculator;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+
+class ScanPipelineTest {
+
+	@Test
+	void replayTest() throws IOException, InvalidItemInTrolley {
+		ProductDAO productDatabase = new ProductDAO();
+		ShoppingTrolley trolley = new ShoppingTrolley();
+		RunningTotalCalculator runningTotal = new RunningTotalCalculator(trolley, productDatabase);
+		ScanPipeline pipeline = new ScanPipeline(productDatabase, runningTotal, 3);
+		StringWriter out = new StringWriter();
+
+		BufferedReader scans = new BufferedReader(new StringReader("A\nB\nA\n\n X \nA\nB\nC\ncheckout\nD\n"));
+		assertTrue(pipeline.replay(scans, out));
+		assertEquals("D", scans.readLine()); // the scans after checkout are left
+
+		assertEquals(6, pipeline.getScanCount());
+		assertEquals(1, pipeline.getUnknownCount());
+		assertEquals(130 + 45 + 20, runningTotal.getRunningTotal());
+		assertEquals(130 + 45 + 20, new TrolleyTotalCalculator(trolley, productDatabase).calculateTrolleyTotal());
+		assertEquals("Scanned 3 items, running total: £1.30\n"
+				+ "Error: No such product in the database: X\n"
+				+ "Scanned 2 items, running total: £1.75\n"
+				+ "Scanned 1 items, running total: £1.95\n", out.toString());
+	}
+}
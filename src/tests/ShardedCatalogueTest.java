@@ -0,0 +1,124 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.Catalogue;
+import businessLogic.CatalogueReplica;
+import businessLogic.ShardedCatalogue;
+import businessLogic.TrolleyTotalCalculator;
+import data.Offer;
+import data.Product;
+import data.ShoppingTrolley;
+import exceptions.InvalidItemInTrolley;
+import exceptions.OfferNotFound;
+import exceptions.ProductNotFound;
+
+class ShardedCatalogueTest {
+
+	private static final int PRODUCTS = 200;
+
+	// every product of the primary has the same price and offer in the replica
+	private static void assertReplicated(ShardedCatalogue primary, Catalogue replica) {
+		for (int i = 0; i < PRODUCTS; i++) {
+			String SKU = "SKU" + i;
+			assertEquals(primary.findProduct(SKU), replica.findProduct(SKU));
+			assertEquals(primary.findProductOffer(SKU), replica.findProductOffer(SKU));
+		}
+	}
+
+	@Test
+	void replicaTest() throws ProductNotFound, OfferNotFound, InvalidItemInTrolley {
+		ShardedCatalogue primary = new ShardedCatalogue(4);
+		primary.addOffer("3 for 2", new Offer("3 for 2", 3, 200));
+		for (int i = 0; i < PRODUCTS; i++)
+			primary.addProduct("SKU" + i, new Product("Product " + i, 100, "SKU" + i));
+		primary.attachOfferToProduct("3 for 2", "SKU7");
+		for (int s = 0; s < primary.getShardCount(); s++)
+			assertTrue(primary.getShard(s).getAllAvailableProducts().size() < PRODUCTS); // spread over the shards
+
+		try (CatalogueReplica replica = new CatalogueReplica(primary)) {
+			assertReplicated(primary, replica);
+			Catalogue pricingRules = replica.getSnapshot();
+
+			primary.addProduct("SKU1", new Product("Product 1", 150, "SKU1"));
+			primary.removeProduct("SKU2");
+			primary.addOffer("2 for 1", new Offer("2 for 1", 2, 150));
+			primary.attachOfferToProduct("2 for 1", "SKU1");
+			primary.removeOffer("3 for 2");
+			replica.sync();
+			assertReplicated(primary, replica);
+			assertNull(replica.findProduct("SKU2"));
+			assertEquals(0, replica.getReloadCount());
+
+			// a transaction is priced from the replica as it was when it started
+			ShoppingTrolley trolley = new ShoppingTrolley();
+			trolley.addItem(pricingRules.findProduct("SKU1"));
+			assertEquals(100, new TrolleyTotalCalculator(trolley, pricingRules).calculateTrolleyTotal());
+			assertSame(null, pricingRules.findProductOffer("SKU1"));
+		}
+	}
+
+	@Test
+	void orphanOfferTest() throws ProductNotFound, OfferNotFound {
+		ShardedCatalogue primary = new ShardedCatalogue(4);
+		for (int i = 0; i < PRODUCTS; i++)
+			primary.addProduct("SKU" + i, new Product("Product " + i, 100, "SKU" + i));
+		Offer x = new Offer("X", 2, 150);
+		primary.addOffer("X", x);
+		primary.attachOfferToProduct("X", "SKU7");
+
+		try (CatalogueReplica replica = new CatalogueReplica(primary)) {
+			primary.removeProduct("SKU7"); // the only product with the offer, on one shard
+			for (int s = 0; s < primary.getShardCount(); s++)
+				assertSame(x, primary.getShard(s).getOffer("X")); // the shards still agree
+
+			// the offer can still be attached on the same shard, and the replica follows
+			String sameShard = null;
+			for (int i = 0; i < PRODUCTS && sameShard == null; i++) {
+				if (i != 7 && ShardedCatalogue.shardOf("SKU" + i, 4) == ShardedCatalogue.shardOf("SKU7", 4))
+					sameShard = "SKU" + i;
+			}
+			primary.attachOfferToProduct("X", sameShard);
+			replica.sync();
+			assertSame(x, replica.findProductOffer(sameShard));
+			assertEquals(0, replica.getReloadCount());
+
+			primary.removeOffer("X");
+			for (int s = 0; s < primary.getShardCount(); s++) {
+				int shard = s;
+				assertThrows(OfferNotFound.class, () -> primary.getShard(shard).getOffer("X"));
+			}
+			replica.sync();
+			assertNull(replica.findProductOffer(sameShard));
+			assertEquals(0, replica.getReloadCount());
+		}
+	}
+
+	@Test
+	void reloadTest() throws InterruptedException {
+		ShardedCatalogue primary = new ShardedCatalogue(2, 16); // keeps few changes, so the replica falls behind
+		try (CatalogueReplica replica = new CatalogueReplica(primary)) {
+			for (int i = 0; i < PRODUCTS; i++)
+				primary.addProduct("SKU" + i, new Product("Product " + i, 100, "SKU" + i));
+			replica.sync();
+			assertReplicated(primary, replica);
+			assertEquals(2, replica.getReloadCount());
+
+			replica.start(); // then follows the changes as they happen
+			primary.addProduct("SKU0", new Product("Product 0", 90, "SKU0"));
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (replica.findProduct("SKU0").getPrice() != 90 && System.nanoTime() < deadline)
+				Thread.sleep(1);
+			assertReplicated(primary, replica);
+			assertEquals(1, replica.getAppliedCount());
+		}
+	}
+}
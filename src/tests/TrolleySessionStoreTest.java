@@ -0,0 +1,123 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import businessLogic.Catalogue;
+import businessLogic.ProductDAO;
+import businessLogic.TrolleySession;
+import businessLogic.TrolleySessionStore;
+import data.ShoppingTrolley;
+import exceptions.ItemNotInTrolley;
+
+class TrolleySessionStoreTest {
+
+	private final Catalogue catalogue = new ProductDAO().getSnapshot();
+
+	private Map<String, Integer> contentOf(ShoppingTrolley trolley) {
+		Map<String, Integer> content = new HashMap<>();
+		trolley.forEachLine((p, quantity) -> content.put(p.getSKU(), quantity));
+		return content;
+	}
+
+	private void deleteDirectory(Path directory) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Test
+	void resumeSessionTest() throws IOException {
+		Path directory = Files.createTempDirectory("sessions");
+		try {
+			ShoppingTrolley trolley = new ShoppingTrolley();
+			try (TrolleySessionStore store = new TrolleySessionStore(directory)) {
+				TrolleySession session = store.open("lane-1", trolley);
+				for (int i = 0; i < 200; i++)
+					trolley.addItem(catalogue.findProduct("A"));
+				trolley.addItem(catalogue.findProduct("B"));
+				trolley.addItem(catalogue.findProduct("C"));
+				trolley.removeItem(catalogue.findProduct("C"), 1);
+				session.close(); // the till goes down
+				assertTrue(session.getBytesWritten() <= 4 * 203); // id and quantity, 1-2 bytes each
+			} catch (ItemNotInTrolley e) {
+				fail("Added item not in trolley!");
+			}
+
+			try (TrolleySessionStore store = new TrolleySessionStore(directory)) {
+				assertEquals(1, store.getSessionIds().size());
+				ShoppingTrolley resumed = new ShoppingTrolley();
+				TrolleySession session = store.resume("lane-1", catalogue, resumed);
+				assertEquals(contentOf(trolley), contentOf(resumed));
+
+				resumed.addItem(catalogue.findProduct("D"));
+				session.close();
+				ShoppingTrolley again = new ShoppingTrolley();
+				store.resume("lane-1", catalogue, again).finish();
+				assertEquals(3, contentOf(again).size());
+				assertEquals(0, store.getSessionIds().size());
+			}
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	void tornRecordDroppedTest() throws IOException {
+		Path directory = Files.createTempDirectory("sessions");
+		try {
+			try (TrolleySessionStore store = new TrolleySessionStore(directory)) {
+				ShoppingTrolley trolley = new ShoppingTrolley();
+				TrolleySession session = store.open("lane-1", trolley);
+				trolley.addItem(catalogue.findProduct("A"));
+				trolley.addItem(catalogue.findProduct("B"));
+				session.close();
+			}
+			// a record cut short by a crash
+			try (FileChannel out = FileChannel.open(directory.resolve("lane-1.session"), StandardOpenOption.APPEND)) {
+				out.write(ByteBuffer.wrap(new byte[] { 0, (byte) 0x85 }));
+			}
+			try (TrolleySessionStore store = new TrolleySessionStore(directory)) {
+				ShoppingTrolley trolley = new ShoppingTrolley();
+				store.resume("lane-1", catalogue, trolley).close();
+				assertEquals(1, (int) contentOf(trolley).get("A"));
+				assertEquals(1, (int) contentOf(trolley).get("B"));
+			}
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	void encodeDecodeTest() throws IOException {
+		Path directory = Files.createTempDirectory("sessions");
+		try (TrolleySessionStore store = new TrolleySessionStore(directory)) {
+			ShoppingTrolley trolley = new ShoppingTrolley();
+			for (int i = 0; i < 300; i++)
+				trolley.addItem(catalogue.findProduct("B"));
+			trolley.addItem(catalogue.findProduct("D"));
+
+			byte[] encoded = store.encode(trolley);
+			assertEquals(1 + 3 + 2, encoded.length); // line count, then 300 takes 2 bytes
+			ShoppingTrolley decoded = new ShoppingTrolley();
+			store.decode(encoded, catalogue, decoded);
+			assertEquals(contentOf(trolley), contentOf(decoded));
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+}
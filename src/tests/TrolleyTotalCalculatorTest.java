@@ -20,17 +20,17 @@ class TrolleyTotalCalculatorTest {
 	private TrolleyTotalCalculatorTest() {
 		productDatabase = new ProductDAO();
 
-		productDatabase.addProduct("A", new Product("Apple", 0.50f, "A"));
-		productDatabase.addProduct("B", new Product("Beetroot", 0.30f, "B"));
-		productDatabase.addProduct("C", new Product("Carrot", 0.20f, "C"));
-		productDatabase.addProduct("D", new Product("Date", 0.15f, "D"));
+		productDatabase.addProduct("A", new Product("Apple", 50, "A"));
+		productDatabase.addProduct("B", new Product("Beetroot", 30, "B"));
+		productDatabase.addProduct("C", new Product("Carrot", 20, "C"));
+		productDatabase.addProduct("D", new Product("Date", 15, "D"));
 
-		productDatabase.addOffer("3 for 1.30", new Offer("3 for 1.30", 3, 1.30f));
-		productDatabase.addOffer("2 for 0.45", new Offer("2 for 0.45", 2, 0.45f));
+		productDatabase.addOffer("3 for £1.30", new Offer("3 for £1.30", 3, 130));
+		productDatabase.addOffer("2 for £0.45", new Offer("2 for £0.45", 2, 45));
 
 		try {
-			productDatabase.attachOfferToProduct("3 for 1.30", "A");
-			productDatabase.attachOfferToProduct("2 for 0.45", "B");
+			productDatabase.attachOfferToProduct("3 for £1.30", "A");
+			productDatabase.attachOfferToProduct("2 for £0.45", "B");
 		} catch (ProductNotFound | OfferNotFound e) {
 		}
 
@@ -81,7 +81,7 @@ class TrolleyTotalCalculatorTest {
 		shoppingTrolley.addItem(B);
 
 		try {
-			assertEquals(calc.calculateTrolleyTotal(), 1.25f);
+			assertEquals(calc.calculateTrolleyTotal(), 125);
 		} catch (InvalidItemInTrolley e) {
 		}
 	}
@@ -108,7 +108,7 @@ class TrolleyTotalCalculatorTest {
 		shoppingTrolley.addItem(B);
 
 		try {
-			assertEquals(calc.calculateTrolleyTotal(), 1.70f);
+			assertEquals(calc.calculateTrolleyTotal(), 170);
 		} catch (InvalidItemInTrolley e) {
 		}
 	}
@@ -145,7 +145,7 @@ class TrolleyTotalCalculatorTest {
 		shoppingTrolley.addItem(D);
 
 		try {
-			assertEquals(calc.calculateTrolleyTotal(), 3.55f);
+			assertEquals(calc.calculateTrolleyTotal(), 355);
 		} catch (InvalidItemInTrolley e) {
 		}
 	}